@@ -1,7 +1,8 @@
 package org.lsmr.selfcheckout;
 
-import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Currency;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.lsmr.selfcheckout.devices.SimulationException;
 
@@ -9,14 +10,22 @@ import org.lsmr.selfcheckout.devices.SimulationException;
  * Instances of this class represent individual banknotes. The value of a
  * banknote is assumed to always be a positive integer multiple of the base
  * currency.
+ * <p>
+ * Banknotes are immutable, so simulations that handle many banknotes can share
+ * one canonical instance per currency and denomination, obtained from
+ * {@link #valueOf(int, Currency)}. Devices that hold many banknotes can store
+ * their cash codes ({@link #getCode()}) in a primitive array instead, and
+ * recover the canonical banknote with {@link #fromCode(long)}.
+ * </p>
  */
 public class Banknote {
-	private int value;
-	private Currency currency;
+	private final int value;
+	private final Currency currency;
+	private final long code;
 
 	/**
 	 * Constructs a banknote.
-	 * 
+	 *
 	 * @param value
 	 *            The value of the banknote, in multiples of the unit of currency.
 	 * @param currency
@@ -36,20 +45,111 @@ public class Banknote {
 
 		this.value = value;
 		this.currency = currency;
+		this.code = Money.encode(currency, Money.toMinorUnits(value, currency));
+	}
+
+	private static final int DENSE_LIMIT = 1 << 12;
+	private static volatile Banknote[][] dense = new Banknote[0][];
+	private static final ConcurrentHashMap<Long, Banknote> sparse = new ConcurrentHashMap<>();
+
+	/**
+	 * Obtains the canonical banknote of the indicated value and currency.
+	 * Repeated calls with the same arguments return the same instance.
+	 *
+	 * @param value
+	 *            The value of the banknote, in multiples of the unit of currency.
+	 * @param currency
+	 *            The currency represented by this banknote.
+	 * @return The banknote. Will never be null.
+	 * @throws SimulationException
+	 *             If the value is &le;0.
+	 * @throws SimulationException
+	 *             If currency is null.
+	 */
+	public static Banknote valueOf(int value, Currency currency) {
+		if(currency == null)
+			throw new SimulationException(new NullPointerException("currency is null"));
+
+		if(value <= 0)
+			throw new SimulationException(
+				new IllegalArgumentException("The value must be greater than 0: the argument passed was " + value));
+
+		return fromCode(Money.encode(currency, Money.toMinorUnits(value, currency)));
+	}
+
+	/**
+	 * Obtains the canonical banknote represented by the indicated cash code.
+	 *
+	 * @param code
+	 *            A cash code, as returned by {@link #getCode()}.
+	 * @return The banknote. Will never be null.
+	 * @throws SimulationException
+	 *             If the code is not a valid cash code for a banknote.
+	 */
+	public static Banknote fromCode(long code) {
+		Currency currency = Money.currencyOf(code);
+		long minorUnits = Money.minorUnitsOf(code);
+		long unit = Money.unit(currency);
+
+		if(minorUnits == 0 || minorUnits % unit != 0 || minorUnits / unit > Integer.MAX_VALUE)
+			throw new SimulationException(new IllegalArgumentException("Not a valid banknote code: " + code));
+
+		int value = (int)(minorUnits / unit);
+
+		if(value >= DENSE_LIMIT)
+			return sparse.computeIfAbsent(code, k -> new Banknote(value, currency));
+
+		int index = Money.currencyIndexOf(code);
+		Banknote[][] tables = dense;
+
+		if(index < tables.length && tables[index] != null) {
+			Banknote banknote = tables[index][value];
+
+			if(banknote != null)
+				return banknote;
+		}
+
+		synchronized(Banknote.class) {
+			tables = dense;
+
+			if(index >= tables.length)
+				tables = dense = Arrays.copyOf(tables, index + 1);
+
+			if(tables[index] == null)
+				tables[index] = new Banknote[DENSE_LIMIT];
+
+			Banknote banknote = tables[index][value];
+
+			if(banknote == null)
+				banknote = tables[index][value] = new Banknote(value, currency);
+
+			return banknote;
+		}
 	}
 
 	/**
 	 * Accessor for the value.
-	 * 
+	 *
 	 * @return The value of the banknote. Should always be &gt;0.
 	 */
 	public int getValue() {
 		return value;
 	}
 
+	/**
+	 * Accessor for the cash code of this banknote: its currency and value in minor
+	 * units packed into a single long (see {@link Money#encode(Currency, long)}).
+	 * Banknotes of the same currency and value have the same code.
+	 *
+	 * @return The code. Will be &ge;0.
+	 */
+	public long getCode() {
+		return code;
+	}
+
 	/**
 	 * Accessor for the currency.
-	 * 
+	 *
 	 * @return The currency for this banknote. Note that this is not the same as the
 	 *             "denomination" (e.g., a Canadian $10 bill is worth 10 Canadian
 	 *             dollars, so a Canadian $10 bill would have currency "Canadian
@@ -0,0 +1,207 @@
+package org.lsmr.selfcheckout;
+
+import java.util.Arrays;
+import java.util.Currency;
+
+import org.lsmr.selfcheckout.devices.SimulationException;
+
+/**
+ * A count of coins or banknotes per denomination, keyed by cash code (see
+ * {@link Money#encode(Currency, long)}), as produced when a device is unloaded.
+ * Denominations are kept in the order they were first seen.
+ * <p>
+ * A device holds only a handful of denominations, so the tally is a pair of
+ * small parallel arrays searched linearly, starting from the most recent
+ * denomination; runs of the same denomination are counted without searching.
+ * </p>
+ */
+public final class CashTally {
+	private long[] codes = new long[8];
+	private int[] counts = new int[8];
+	private int size = 0;
+	private int last = 0;
+	private int unencoded = 0;
+
+	/**
+	 * Creates an empty tally.
+	 */
+	public CashTally() {}
+
+	/**
+	 * Counts one coin or banknote.
+	 *
+	 * @param code
+	 *            Its cash code, or a negative value if it has none (e.g., a coin
+	 *            whose value is not a whole number of minor units).
+	 */
+	public void add(long code) {
+		add(code, 1);
+	}
+
+	/**
+	 * Counts several coins or banknotes of the same denomination.
+	 *
+	 * @param code
+	 *            Their cash code, or a negative value if they have none.
+	 * @param count
+	 *            How many to count. Must be positive.
+	 * @throws SimulationException
+	 *             If count is not positive.
+	 */
+	public void add(long code, int count) {
+		if(count <= 0)
+			throw new SimulationException(new IllegalArgumentException("count must be positive: " + count));
+
+		if(code < 0) {
+			unencoded += count;
+			return;
+		}
+
+		if(size > 0 && codes[last] == code) {
+			counts[last] += count;
+			return;
+		}
+
+		for(int i = 0; i < size; i++)
+			if(codes[i] == code) {
+				counts[i] += count;
+				last = i;
+				return;
+			}
+
+		if(size == codes.length) {
+			codes = Arrays.copyOf(codes, size * 2);
+			counts = Arrays.copyOf(counts, size * 2);
+		}
+
+		codes[size] = code;
+		counts[size] = count;
+		last = size++;
+	}
+
+	/**
+	 * Gets the number of distinct denominations counted.
+	 *
+	 * @return The number of denominations. Will be &ge;0.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the cash code of a denomination.
+	 *
+	 * @param index
+	 *            The index of the denomination, from 0 to {@link #size()} - 1.
+	 * @return The cash code.
+	 * @throws IndexOutOfBoundsException
+	 *             If the index is out of range.
+	 */
+	public long getCode(int index) {
+		checkIndex(index);
+		return codes[index];
+	}
+
+	/**
+	 * Gets the number counted of a denomination.
+	 *
+	 * @param index
+	 *            The index of the denomination, from 0 to {@link #size()} - 1.
+	 * @return The count. Will be positive.
+	 * @throws IndexOutOfBoundsException
+	 *             If the index is out of range.
+	 */
+	public int getCount(int index) {
+		checkIndex(index);
+		return counts[index];
+	}
+
+	/**
+	 * Gets the number counted with the indicated cash code.
+	 *
+	 * @param code
+	 *            The cash code of interest.
+	 * @return The count. Will be &ge;0.
+	 */
+	public int getCountOf(long code) {
+		for(int i = 0; i < size; i++)
+			if(codes[i] == code)
+				return counts[i];
+
+		return 0;
+	}
+
+	/**
+	 * Gets the number counted that had no cash code.
+	 *
+	 * @return The count. Will be &ge;0.
+	 */
+	public int getUnencodedCount() {
+		return unencoded;
+	}
+
+	/**
+	 * Gets the total number counted, with or without a cash code.
+	 *
+	 * @return The count. Will be &ge;0.
+	 */
+	public int getTotalCount() {
+		int total = unencoded;
+
+		for(int i = 0; i < size; i++)
+			total += counts[i];
+
+		return total;
+	}
+
+	/**
+	 * Gets the total value counted in the indicated currency. Anything counted
+	 * without a cash code is not included.
+	 *
+	 * @param currency
+	 *            The currency of interest.
+	 * @return The total value, in minor units.
+	 * @throws SimulationException
+	 *             If currency is null.
+	 * @throws SimulationException
+	 *             If the total overflows.
+	 */
+	public long getValue(Currency currency) {
+		int index = Money.currencyIndex(currency);
+		long total = 0;
+
+		try {
+			for(int i = 0; i < size; i++)
+				if(Money.currencyIndexOf(codes[i]) == index)
+					total = Money.add(total, Math.multiplyExact(Money.minorUnitsOf(codes[i]), (long)counts[i]));
+		}
+		catch(ArithmeticException e) {
+			throw new SimulationException(e);
+		}
+
+		return total;
+	}
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("index " + index + " with " + size + " denominations");
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+
+		for(int i = 0; i < size; i++) {
+			if(i > 0)
+				sb.append(", ");
+
+			sb.append(Money.toString(Money.minorUnitsOf(codes[i]), Money.currencyOf(codes[i]))).append(" x")
+				.append(counts[i]);
+		}
+
+		if(unencoded > 0)
+			sb.append(size > 0 ? ", " : "").append("unencoded x").append(unencoded);
+
+		return sb.append("}").toString();
+	}
+}
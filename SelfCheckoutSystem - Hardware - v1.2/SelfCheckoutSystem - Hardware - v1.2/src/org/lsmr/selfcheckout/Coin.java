@@ -1,20 +1,31 @@
 package org.lsmr.selfcheckout;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Currency;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.lsmr.selfcheckout.devices.SimulationException;
 
 /**
  * Instances of this class represent individual coins.
+ * <p>
+ * Coins are immutable, so simulations that handle many coins can share one
+ * canonical instance per currency and denomination, obtained from
+ * {@link #valueOf(BigDecimal, Currency)}. Devices that hold many coins can store
+ * their cash codes ({@link #getCode()}) in a primitive array instead, and
+ * recover the canonical coin with {@link #fromCode(long)}.
+ * </p>
  */
 public class Coin {
-	private BigDecimal value;
-	private Currency currency;
+	private final BigDecimal value;
+	private final Currency currency;
+	private final long valueInMinorUnits;
+	private final long code;
 
 	/**
 	 * Constructs a coin.
-	 * 
+	 *
 	 * @param value
 	 *            The value of the coin, in multiples of the unit of currency.
 	 * @param currency
@@ -37,20 +48,129 @@ public class Coin {
 
 		this.value = value;
 		this.currency = currency;
+		this.valueInMinorUnits = Money.toMinorUnitsExact(value, currency);
+		this.code = valueInMinorUnits >= 0 && valueInMinorUnits <= Money.MAXIMUM_ENCODED_MINOR_UNITS
+			? Money.encode(currency, valueInMinorUnits) : -1;
+	}
+
+	private static final int DENSE_LIMIT = 1 << 12;
+	private static volatile Coin[][] dense = new Coin[0][];
+	private static final ConcurrentHashMap<Long, Coin> sparse = new ConcurrentHashMap<>();
+
+	/**
+	 * Obtains the canonical coin of the indicated value and currency. Repeated
+	 * calls with equal values (regardless of their scale, so 0.1 and 0.10 are
+	 * equal) return the same instance, whose value has the scale of the currency.
+	 * Values that are not a whole number of minor units cannot be shared, so a new
+	 * coin is constructed for them.
+	 *
+	 * @param value
+	 *            The value of the coin, in multiples of the unit of currency.
+	 * @param currency
+	 *            The currency represented by this coin.
+	 * @return The coin. Will never be null.
+	 * @throws SimulationException
+	 *             If the value is &le;0.
+	 * @throws SimulationException
+	 *             If either argument is null.
+	 */
+	public static Coin valueOf(BigDecimal value, Currency currency) {
+		if(value == null)
+			throw new SimulationException(new NullPointerException("value is null"));
+
+		if(currency == null)
+			throw new SimulationException(new NullPointerException("currency is null"));
+
+		long minorUnits = Money.toMinorUnitsExact(value, currency);
+
+		if(minorUnits <= 0 || minorUnits > Money.MAXIMUM_ENCODED_MINOR_UNITS)
+			return new Coin(value, currency);
+
+		return fromCode(Money.encode(currency, minorUnits));
+	}
+
+	/**
+	 * Obtains the canonical coin represented by the indicated cash code.
+	 *
+	 * @param code
+	 *            A cash code, as returned by {@link #getCode()}.
+	 * @return The coin. Will never be null.
+	 * @throws SimulationException
+	 *             If the code is not a valid cash code for a coin.
+	 */
+	public static Coin fromCode(long code) {
+		Currency currency = Money.currencyOf(code);
+		long minorUnits = Money.minorUnitsOf(code);
+
+		if(minorUnits == 0)
+			throw new SimulationException(new IllegalArgumentException("Not a valid coin code: " + code));
+
+		if(minorUnits >= DENSE_LIMIT)
+			return sparse.computeIfAbsent(code, k -> new Coin(Money.toBigDecimal(minorUnits, currency), currency));
+
+		int index = Money.currencyIndexOf(code);
+		Coin[][] tables = dense;
+
+		if(index < tables.length && tables[index] != null) {
+			Coin coin = tables[index][(int)minorUnits];
+
+			if(coin != null)
+				return coin;
+		}
+
+		synchronized(Coin.class) {
+			tables = dense;
+
+			if(index >= tables.length)
+				tables = dense = Arrays.copyOf(tables, index + 1);
+
+			if(tables[index] == null)
+				tables[index] = new Coin[DENSE_LIMIT];
+
+			Coin coin = tables[index][(int)minorUnits];
+
+			if(coin == null)
+				coin = tables[index][(int)minorUnits] = new Coin(Money.toBigDecimal(minorUnits, currency), currency);
+
+			return coin;
+		}
 	}
 
 	/**
 	 * Accessor for the value.
-	 * 
+	 *
 	 * @return The value of the coin. Should always be greater than 0.
 	 */
 	public BigDecimal getValue() {
 		return value;
 	}
 
+	/**
+	 * Accessor for the value in minor units of the currency (e.g., 10 for a
+	 * Canadian dime). Computed once, when the coin is constructed.
+	 *
+	 * @return The value in minor units, or -1 if the value is not a whole number
+	 *             of minor units.
+	 */
+	public long getValueInMinorUnits() {
+		return valueInMinorUnits;
+	}
+
+	/**
+	 * Accessor for the cash code of this coin: its currency and value packed into
+	 * a single long (see {@link Money#encode(Currency, long)}). Coins of the same
+	 * currency and value have the same code.
+	 *
+	 * @return The code, or -1 if the value is not a whole number of minor units
+	 *             or is too large to encode.
+	 */
+	public long getCode() {
+		return code;
+	}
+
 	/**
 	 * Accessor for the currency.
-	 * 
+	 *
 	 * @return The currency for this coin. Note that this is not the same as the
 	 *             "denomination" (e.g., a Canadian dime is worth 0.1 Canadian
 	 *             dollars, so a Canadian dime would have currency "Canadian
@@ -0,0 +1,361 @@
+package org.lsmr.selfcheckout;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Currency;
+
+import org.lsmr.selfcheckout.devices.SimulationException;
+
+/**
+ * Fixed-point arithmetic on amounts of money expressed in minor units (e.g.,
+ * cents for Canadian dollars), held in a primitive <code>long</code>.
+ * <p>
+ * Amounts are converted from {@link BigDecimal} once, at the edge of the
+ * system, after which all addition, subtraction and comparison is exact and
+ * performed without allocating. The number of minor units in one unit of a
+ * currency is taken from {@link Currency#getDefaultFractionDigits()}.
+ * </p>
+ */
+public final class Money {
+	/**
+	 * Instances of this class are not needed, so the constructor is private.
+	 */
+	private Money() {}
+
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L };
+
+	/**
+	 * The number of low-order bits of a cash code that hold the minor units.
+	 */
+	public static final int MINOR_UNIT_BITS = 48;
+
+	/**
+	 * The largest number of minor units that can be held in a cash code.
+	 */
+	public static final long MAXIMUM_ENCODED_MINOR_UNITS = (1L << MINOR_UNIT_BITS) - 1;
+
+	/**
+	 * The largest number of distinct currencies that can be held in cash codes.
+	 */
+	public static final int MAXIMUM_CURRENCIES = 1 << (63 - MINOR_UNIT_BITS);
+
+	private static volatile Currency[] currencies = new Currency[0];
+
+	/**
+	 * Gets the number of decimal places used by the minor units of the indicated
+	 * currency. Currencies without minor units (or pseudo-currencies like gold)
+	 * have a scale of 0.
+	 *
+	 * @param currency
+	 *            The currency of interest.
+	 * @return The scale. Will be &ge;0.
+	 * @throws SimulationException
+	 *             If currency is null.
+	 */
+	public static int scale(Currency currency) {
+		if(currency == null)
+			throw new SimulationException(new NullPointerException("currency is null"));
+
+		int digits = currency.getDefaultFractionDigits();
+
+		return digits < 0 ? 0 : digits;
+	}
+
+	/**
+	 * Gets the number of minor units in one unit of the indicated currency (e.g.,
+	 * 100 for Canadian dollars).
+	 *
+	 * @param currency
+	 *            The currency of interest.
+	 * @return The number of minor units per unit. Will be positive.
+	 * @throws SimulationException
+	 *             If currency is null.
+	 */
+	public static long unit(Currency currency) {
+		return POWERS_OF_TEN[scale(currency)];
+	}
+
+	/**
+	 * Converts an amount of money into minor units of the indicated currency.
+	 * Digits beyond the scale of the currency are rounded half-up, so that prices
+	 * constructed from binary floating-point values (e.g.,
+	 * <code>new BigDecimal(15.2)</code>) land on the intended minor unit.
+	 *
+	 * @param amount
+	 *            The amount, in multiples of the unit of currency.
+	 * @param currency
+	 *            The currency of the amount.
+	 * @return The amount in minor units.
+	 * @throws SimulationException
+	 *             If either argument is null.
+	 * @throws SimulationException
+	 *             If the amount does not fit in a long.
+	 */
+	public static long toMinorUnits(BigDecimal amount, Currency currency) {
+		if(amount == null)
+			throw new SimulationException(new NullPointerException("amount is null"));
+
+		try {
+			return amount.setScale(scale(currency), RoundingMode.HALF_UP).unscaledValue().longValueExact();
+		}
+		catch(ArithmeticException e) {
+			throw new SimulationException(e);
+		}
+	}
+
+	/**
+	 * Converts an amount of money into minor units of the indicated currency,
+	 * without rounding.
+	 *
+	 * @param amount
+	 *            The amount, in multiples of the unit of currency.
+	 * @param currency
+	 *            The currency of the amount.
+	 * @return The amount in minor units, or -1 if the amount is negative or cannot
+	 *             be expressed exactly in minor units (e.g., 0.001 Canadian
+	 *             dollars).
+	 * @throws SimulationException
+	 *             If either argument is null.
+	 */
+	public static long toMinorUnitsExact(BigDecimal amount, Currency currency) {
+		if(amount == null)
+			throw new SimulationException(new NullPointerException("amount is null"));
+
+		if(amount.signum() < 0)
+			return -1;
+
+		try {
+			return amount.setScale(scale(currency), RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+		}
+		catch(ArithmeticException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Converts a whole number of units of the indicated currency (e.g., the face
+	 * value of a banknote) into minor units.
+	 *
+	 * @param units
+	 *            The number of whole units.
+	 * @param currency
+	 *            The currency of the amount.
+	 * @return The amount in minor units.
+	 * @throws SimulationException
+	 *             If currency is null.
+	 */
+	public static long toMinorUnits(int units, Currency currency) {
+		return units * unit(currency);
+	}
+
+	/**
+	 * Converts an amount in minor units back into a {@link BigDecimal} in
+	 * multiples of the unit of currency, with the scale of the currency.
+	 *
+	 * @param minorUnits
+	 *            The amount in minor units.
+	 * @param currency
+	 *            The currency of the amount.
+	 * @return The amount as a BigDecimal. Will never be null.
+	 * @throws SimulationException
+	 *             If currency is null.
+	 */
+	public static BigDecimal toBigDecimal(long minorUnits, Currency currency) {
+		return BigDecimal.valueOf(minorUnits, scale(currency));
+	}
+
+	/**
+	 * Adds two amounts in minor units.
+	 *
+	 * @param a
+	 *            The first amount.
+	 * @param b
+	 *            The second amount.
+	 * @return The sum.
+	 * @throws SimulationException
+	 *             If the sum overflows.
+	 */
+	public static long add(long a, long b) {
+		long sum = a + b;
+
+		if(((a ^ sum) & (b ^ sum)) < 0)
+			throw new SimulationException(new ArithmeticException("Money overflow: " + a + " + " + b));
+
+		return sum;
+	}
+
+	/**
+	 * Subtracts one amount in minor units from another.
+	 *
+	 * @param a
+	 *            The amount to subtract from.
+	 * @param b
+	 *            The amount to subtract.
+	 * @return The difference.
+	 * @throws SimulationException
+	 *             If the difference overflows.
+	 */
+	public static long subtract(long a, long b) {
+		long difference = a - b;
+
+		if(((a ^ b) & (a ^ difference)) < 0)
+			throw new SimulationException(new ArithmeticException("Money overflow: " + a + " - " + b));
+
+		return difference;
+	}
+
+	/**
+	 * Multiplies an amount in minor units by a count, e.g. a unit price by a
+	 * quantity.
+	 *
+	 * @param amount
+	 *            The amount.
+	 * @param count
+	 *            The count.
+	 * @return The product.
+	 * @throws SimulationException
+	 *             If the product overflows.
+	 */
+	public static long multiply(long amount, long count) {
+		try {
+			return Math.multiplyExact(amount, count);
+		}
+		catch(ArithmeticException e) {
+			throw new SimulationException(new ArithmeticException("Money overflow: " + amount + " * " + count));
+		}
+	}
+
+	/**
+	 * Compares two amounts in minor units.
+	 *
+	 * @param a
+	 *            The first amount.
+	 * @param b
+	 *            The second amount.
+	 * @return A negative value, zero, or a positive value as a is less than, equal
+	 *             to, or greater than b.
+	 */
+	public static int compare(long a, long b) {
+		return Long.compare(a, b);
+	}
+
+	/**
+	 * Formats an amount in minor units for display, e.g., "12.50 CAD".
+	 *
+	 * @param minorUnits
+	 *            The amount in minor units.
+	 * @param currency
+	 *            The currency of the amount.
+	 * @return The formatted amount.
+	 */
+	public static String toString(long minorUnits, Currency currency) {
+		return toBigDecimal(minorUnits, currency).toPlainString() + " " + currency;
+	}
+
+	/**
+	 * Gets the small integer index assigned to the indicated currency within this
+	 * JVM, assigning the next free index the first time a currency is seen.
+	 * Indices are only meaningful within one run of the simulation.
+	 *
+	 * @param currency
+	 *            The currency of interest.
+	 * @return The index. Will be &ge;0.
+	 * @throws SimulationException
+	 *             If currency is null.
+	 * @throws SimulationException
+	 *             If too many currencies have been indexed.
+	 */
+	public static int currencyIndex(Currency currency) {
+		if(currency == null)
+			throw new SimulationException(new NullPointerException("currency is null"));
+
+		Currency[] known = currencies;
+
+		for(int i = 0; i < known.length; i++)
+			if(known[i] == currency)
+				return i;
+
+		synchronized(Money.class) {
+			known = currencies;
+
+			for(int i = 0; i < known.length; i++)
+				if(known[i] == currency)
+					return i;
+
+			if(known.length == MAXIMUM_CURRENCIES)
+				throw new SimulationException("Too many currencies.");
+
+			Currency[] grown = Arrays.copyOf(known, known.length + 1);
+			grown[known.length] = currency;
+			currencies = grown;
+
+			return known.length;
+		}
+	}
+
+	/**
+	 * Packs a currency and an amount in minor units into a single non-negative
+	 * long, the "cash code", suitable for storing coins and banknotes in primitive
+	 * arrays.
+	 *
+	 * @param currency
+	 *            The currency of the amount.
+	 * @param minorUnits
+	 *            The amount in minor units. Must be between 0 and
+	 *            {@link #MAXIMUM_ENCODED_MINOR_UNITS}.
+	 * @return The cash code.
+	 * @throws SimulationException
+	 *             If currency is null.
+	 * @throws SimulationException
+	 *             If the amount is out of range.
+	 */
+	public static long encode(Currency currency, long minorUnits) {
+		if(minorUnits < 0 || minorUnits > MAXIMUM_ENCODED_MINOR_UNITS)
+			throw new SimulationException(
+				new IllegalArgumentException("The amount cannot be encoded: " + minorUnits));
+
+		return ((long)currencyIndex(currency) << MINOR_UNIT_BITS) | minorUnits;
+	}
+
+	/**
+	 * Gets the currency index packed into a cash code.
+	 *
+	 * @param code
+	 *            A cash code produced by {@link #encode(Currency, long)}.
+	 * @return The currency index.
+	 */
+	public static int currencyIndexOf(long code) {
+		return (int)(code >>> MINOR_UNIT_BITS);
+	}
+
+	/**
+	 * Gets the currency packed into a cash code.
+	 *
+	 * @param code
+	 *            A cash code produced by {@link #encode(Currency, long)}.
+	 * @return The currency.
+	 * @throws SimulationException
+	 *             If the code does not refer to a known currency.
+	 */
+	public static Currency currencyOf(long code) {
+		Currency[] known = currencies;
+		int index = currencyIndexOf(code);
+
+		if(code < 0 || index >= known.length)
+			throw new SimulationException(new IllegalArgumentException("Not a valid cash code: " + code));
+
+		return known[index];
+	}
+
+	/**
+	 * Gets the amount in minor units packed into a cash code.
+	 *
+	 * @param code
+	 *            A cash code produced by {@link #encode(Currency, long)}.
+	 * @return The amount in minor units.
+	 */
+	public static long minorUnitsOf(long code) {
+		return code & MAXIMUM_ENCODED_MINOR_UNITS;
+	}
+}
@@ -1,9 +1,7 @@
 package org.lsmr.selfcheckout.devices;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
 
 import org.lsmr.selfcheckout.Banknote;
 import org.lsmr.selfcheckout.devices.listeners.BanknoteDispenserListener;
@@ -16,11 +14,16 @@ import org.lsmr.selfcheckout.devices.listeners.BanknoteDispenserListener;
  * simulation, no check is performed on the value of each banknote, meaning it
  * is an external responsibility to ensure the correct routing of banknotes.
  * </p>
+ * <p>
+ * Banknotes are held in a fixed-capacity ring buffer, so loading, emitting and
+ * unloading move whole ranges of banknotes without allocating per banknote.
+ * </p>
  */
 public final class BanknoteDispenser extends AbstractDevice<BanknoteDispenserListener>
 	implements FromStorageEmitter<Banknote> {
-	private int maxCapacity;
-	private Queue<Banknote> queue = new LinkedList<Banknote>();
+	private final Banknote[] ring;
+	private int head = 0; // index of the next banknote to emit
+	private int count = 0;
 	private UnidirectionalChannel<Banknote> sink;
 
 	/**
@@ -35,7 +38,7 @@ public final class BanknoteDispenser extends AbstractDevice<BanknoteDispenserLis
 	public BanknoteDispenser(int capacity) {
 		if(capacity <= 0)
 			throw new SimulationException(new IllegalArgumentException("Capacity must be positive: " + capacity));
-		this.maxCapacity = capacity;
+		ring = new Banknote[capacity];
 	}
 
 	/**
@@ -44,7 +47,7 @@ public final class BanknoteDispenser extends AbstractDevice<BanknoteDispenserLis
 	 * @return The number of banknotes currently in the dispenser.
 	 */
 	public int size() {
-		return queue.size();
+		return count;
 	}
 
 	/**
@@ -58,17 +61,26 @@ public final class BanknoteDispenser extends AbstractDevice<BanknoteDispenserLis
 	 *             if the number of banknotes to be loaded exceeds the capacity of
 	 *             the dispenser.
 	 * @throws SimulationException
-	 *             If any banknote is null.
+	 *             If banknotes is null, or any banknote is null. No banknotes are
+	 *             loaded.
 	 */
 	public void load(Banknote... banknotes) throws SimulationException, OverloadException {
-		if(maxCapacity < queue.size() + banknotes.length)
+		if(banknotes == null)
+			throw new SimulationException(new NullPointerException("banknotes is null"));
+
+		if(ring.length < count + banknotes.length)
 			throw new OverloadException("Capacity of dispenser is exceeded by load");
 
 		for(Banknote banknote : banknotes)
 			if(banknote == null)
 				throw new SimulationException(new NullPointerException("A banknote is null."));
-			else
-				queue.add(banknote);
+
+		int tail = (head + count) % ring.length;
+		int first = Math.min(banknotes.length, ring.length - tail);
+
+		System.arraycopy(banknotes, 0, ring, tail, first);
+		System.arraycopy(banknotes, first, ring, 0, banknotes.length - first);
+		count += banknotes.length;
 
 		notifyLoad(banknotes);
 	}
@@ -80,17 +92,33 @@ public final class BanknoteDispenser extends AbstractDevice<BanknoteDispenserLis
 
 	/**
 	 * Unloads banknotes from the dispenser directly. Causes a "banknotesUnloaded"
-	 * event to be announced.
+	 * event to be announced. The banknotes are copied out once, in the order they
+	 * would have been emitted; the array announced to listeners is the one backing
+	 * the returned list.
 	 * 
-	 * @return A list of the banknotes unloaded. May be empty. Will never be null.
+	 * @return A fixed-size list of the banknotes unloaded. May be empty. Will never
+	 *             be null.
 	 */
 	public List<Banknote> unload() {
-		List<Banknote> result = new ArrayList<>(queue);
-		queue.clear();
+		Banknote[] unloaded = new Banknote[count];
+		int first = Math.min(count, ring.length - head);
+
+		System.arraycopy(ring, head, unloaded, 0, first);
+		System.arraycopy(ring, 0, unloaded, first, count - first);
+		clear(head, count);
+		head = 0;
+		count = 0;
 
-		notifyUnload(result.toArray(new Banknote[result.size()]));
+		notifyUnload(unloaded);
 
-		return result;
+		return Arrays.asList(unloaded);
+	}
+
+	private void clear(int from, int length) {
+		int first = Math.min(length, ring.length - from);
+
+		Arrays.fill(ring, from, from + first, null);
+		Arrays.fill(ring, 0, length - first, null);
 	}
 
 	private void notifyUnload(Banknote[] banknotes) {
@@ -110,13 +138,25 @@ public final class BanknoteDispenser extends AbstractDevice<BanknoteDispenserLis
 		this.sink = sink;
 	}
 
+	/**
+	 * Returns how many banknotes the output channel can take at once. A sink that
+	 * takes banknotes one at a time, like a slot, can take at most one. Announces
+	 * no events.
+	 * 
+	 * @return The number of banknotes that can be emitted at once; 0 if there is no
+	 *             output.
+	 */
+	public int getOutputSpace() {
+		return sink == null ? 0 : sink.spaceAvailable();
+	}
+
 	/**
 	 * Returns the maximum capacity of this banknote dispenser.
 	 * 
 	 * @return The capacity. Will be positive.
 	 */
 	public int getCapacity() {
-		return maxCapacity;
+		return ring.length;
 	}
 
 	/**
@@ -126,36 +166,82 @@ public final class BanknoteDispenser extends AbstractDevice<BanknoteDispenserLis
 	 * event is instead announced to its listeners.
 	 * 
 	 * @throws OverloadException
-	 *             if the output channel is unable to accept another banknote.
+	 *             if the output channel is unable to accept another banknote. The
+	 *             banknote stays in the dispenser.
 	 * @throws EmptyException
 	 *             if no banknotes are present in the dispenser to release.
 	 * @throws DisabledException
 	 *             if the dispenser is currently disabled.
 	 */
 	public void emit() throws EmptyException, DisabledException, OverloadException {
+		emit(1);
+	}
+
+	/**
+	 * Emits several banknotes from this banknote dispenser at once, in the order
+	 * they were added, passing them to the output channel together. A
+	 * "banknoteRemoved" event is announced for each banknote, except that a
+	 * "banknotesEmpty" event is instead announced for the one that empties the
+	 * dispenser. Nothing is emitted if the dispenser holds too few banknotes or
+	 * the output channel lacks space for all of them. A sink that takes banknotes
+	 * one at a time, like a slot, takes only one per call; see
+	 * {@link #getOutputSpace()}.
+	 * 
+	 * @param count
+	 *            The number of banknotes to emit. Must be &ge;0.
+	 * @throws OverloadException
+	 *             if the output channel is unable to accept that many banknotes.
+	 * @throws EmptyException
+	 *             if fewer banknotes than that are present in the dispenser.
+	 * @throws DisabledException
+	 *             if the dispenser is currently disabled.
+	 * @throws SimulationException
+	 *             If count is negative.
+	 */
+	@Override
+	public void emit(int count) throws EmptyException, DisabledException, OverloadException {
 		if(isDisabled())
 			throw new DisabledException();
 
-		if(queue.size() == 0)
+		if(count < 0)
+			throw new SimulationException(new IllegalArgumentException("count must be non-negative: " + count));
+
+		if(count > this.count)
 			throw new EmptyException();
 
-		Banknote banknote = queue.remove();
-
-		if(sink.hasSpace())
-			try {
-				sink.deliver(banknote);
-			}
-			catch(OverloadException e) {
-				// Should never happen
-				throw new SimulationException(e);
-			}
-		else
+		if(count == 0)
+			return;
+
+		if(sink.spaceAvailable() < count)
 			throw new OverloadException("The sink is full.");
 
-		if(queue.isEmpty())
-			notifyBanknotesEmpty();
-		else
-			notifyBanknoteRemoved(banknote);
+		int from = head;
+		int first = Math.min(count, ring.length - from);
+
+		head = (head + count) % ring.length;
+		this.count -= count;
+
+		try {
+			sink.deliverAll(ring, from, first);
+
+			if(count > first)
+				sink.deliverAll(ring, 0, count - first);
+		}
+		catch(OverloadException e) {
+			// Should never happen
+			throw new SimulationException(e);
+		}
+
+		for(int i = 0; i < count; i++) {
+			Banknote banknote = ring[(from + i) % ring.length];
+
+			if(this.count == 0 && i == count - 1)
+				notifyBanknotesEmpty();
+			else
+				notifyBanknoteRemoved(banknote);
+		}
+
+		clear(from, count);
 	}
 
 	private void notifyBanknoteRemoved(Banknote banknote) {
@@ -11,9 +11,15 @@ import org.lsmr.selfcheckout.devices.listeners.BanknoteStorageUnitListener;
  * dispense them. To access the banknotes inside, a human operator needs to
  * physically remove the banknotes, simulated with the {@link #unload()} method.
  * A {@link #load(Banknote...)} method is provided for symmetry.
+ * <p>
+ * Banknotes are held as their cash codes (see {@link Banknote#getCode()}) in a
+ * primitive array, so unloading yields the canonical banknote instances rather
+ * than the objects originally stored.
+ * </p>
  */
 public class BanknoteStorageUnit extends AbstractDevice<BanknoteStorageUnitListener> implements Acceptor<Banknote> {
-	private Banknote[] storage;
+	private long[] storage; // cash codes of the stored banknotes
+	private long[] spare; // the buffer handed out by the last unloadAll, recycled by the next
 	private int nextIndex = 0;
 
 	/**
@@ -29,7 +35,7 @@ public class BanknoteStorageUnit extends AbstractDevice<BanknoteStorageUnitListe
 		if(capacity <= 0)
 			throw new SimulationException(new IllegalArgumentException("The capacity must be positive."));
 
-		storage = new Banknote[capacity];
+		storage = new long[capacity];
 	}
 
 	/**
@@ -79,9 +85,12 @@ public class BanknoteStorageUnit extends AbstractDevice<BanknoteStorageUnitListe
 			if(banknote == null)
 				throw new SimulationException(new NullPointerException("No banknote may be null"));
 
-		System.arraycopy(banknotes, 0, storage, nextIndex, banknotes.length);
-		nextIndex += banknotes.length;
+		int first = nextIndex;
 
+		for(Banknote banknote : banknotes)
+			storage[nextIndex++] = banknote.getCode();
+
+		notifyBanknotesStored(first, banknotes.length);
 		notifyBanknotesLoaded();
 	}
 
@@ -89,12 +98,42 @@ public class BanknoteStorageUnit extends AbstractDevice<BanknoteStorageUnitListe
 	 * Unloads banknotes from the storage unit directly. Causes a
 	 * "banknotesUnloaded" event to be announced.
 	 * 
-	 * @return A list of the banknotes unloaded. May be empty. Will never be null.
+	 * @return A list of the banknotes unloaded, as long as the capacity of the
+	 *             unit, with null in the positions that were empty. Will never be
+	 *             null. See {@link #unloadAll()} for a list of just the banknotes.
 	 */
 	public List<Banknote> unload() {
-		List<Banknote> banknotes = Arrays.asList(storage);
+		Banknote[] unloaded = new Banknote[storage.length];
+
+		for(int i = 0; i < nextIndex; i++)
+			unloaded[i] = Banknote.fromCode(storage[i]);
+
+		List<Banknote> banknotes = Arrays.asList(unloaded);
 
-		storage = new Banknote[storage.length];
+		nextIndex = 0;
+		notifyBanknotesUnloaded();
+
+		return banknotes;
+	}
+
+	/**
+	 * Unloads banknotes from the storage unit directly, without copying them.
+	 * Causes a "banknotesUnloaded" event to be announced.
+	 * <p>
+	 * The result is a read-only view of exactly the banknotes that were stored,
+	 * backed by the unit's buffer, with a tally per denomination computed while
+	 * unloading. The unit continues with a second buffer and recycles this one on
+	 * the following unload, so the view is only valid until then.
+	 * </p>
+	 * 
+	 * @return The banknotes unloaded. May be empty. Will never be null.
+	 */
+	public UnloadedCash<Banknote> unloadAll() {
+		UnloadedCash<Banknote> banknotes = UnloadedCash.ofCodes(storage, nextIndex, Banknote::fromCode);
+		long[] recycled = spare != null ? spare : new long[storage.length];
+
+		spare = storage;
+		storage = recycled;
 		nextIndex = 0;
 		notifyBanknotesUnloaded();
 
@@ -123,7 +162,8 @@ public class BanknoteStorageUnit extends AbstractDevice<BanknoteStorageUnitListe
 			throw new SimulationException(new NullPointerException("banknote is null"));
 
 		if(nextIndex < storage.length) {
-			storage[nextIndex++] = banknote;
+			storage[nextIndex++] = banknote.getCode();
+			notifyBanknotesStored(nextIndex - 1, 1);
 
 			if(nextIndex == storage.length)
 				notifyBanknotesFull();
@@ -139,6 +179,11 @@ public class BanknoteStorageUnit extends AbstractDevice<BanknoteStorageUnitListe
 		return nextIndex < storage.length;
 	}
 
+	private void notifyBanknotesStored(int offset, int length) {
+		for(BanknoteStorageUnitListener l : listeners)
+			l.banknotesStored(this, storage, offset, length);
+	}
+
 	private void notifyBanknotesLoaded() {
 		for(BanknoteStorageUnitListener l : listeners)
 			l.banknotesLoaded(this);
@@ -12,18 +12,21 @@ import org.lsmr.selfcheckout.devices.listeners.BanknoteValidatorListener;
 /**
  * Represents a device for optically and/or magnetically validating banknotes.
  * Banknotes deemed valid are moved to storage; banknotes deemed invalid are
- * ejected.
+ * ejected. Storage only keeps banknotes of the validator's own currency: a valid
+ * banknote of a further currency (see {@link #addDenominations(Currency, int[])})
+ * is ejected too.
  */
 public final class BanknoteValidator extends AbstractDevice<BanknoteValidatorListener>
 	implements Acceptor<Banknote>, Emitter<Banknote> {
 	private final Currency currency;
-	private final int[] denominations;
+	private final DenominationTable table = new DenominationTable();
 	private BidirectionalChannel<Banknote> source;
 	private UnidirectionalChannel<Banknote> sink;
 
 	/**
 	 * Creates a banknote validator that recognizes banknotes of the specified
-	 * denominations (i.e., values) and currency.
+	 * denominations (i.e., values) and currency. Further currencies can be
+	 * recognized by calling {@link #addDenominations(Currency, int[])}.
 	 * 
 	 * @param currency
 	 *            The kind of currency to accept.
@@ -43,16 +46,49 @@ public final class BanknoteValidator extends AbstractDevice<BanknoteValidatorLis
 		if(currency == null)
 			throw new SimulationException(new NullPointerException("currency is null"));
 
+		this.currency = currency;
+		addDenominations(currency, denominations);
+	}
+
+	/**
+	 * Adds a further currency, and its banknote denominations, to those
+	 * recognized by this validator. Valid banknotes of the currency are ejected
+	 * rather than kept. Causes no events.
+	 * 
+	 * @param currency
+	 *            The additional kind of currency to accept.
+	 * @param denominations
+	 *            An array of the valid banknote denominations (like $5, $10, etc.)
+	 *            to accept. Each value must be &gt;0 and unique in this array.
+	 * @throws SimulationException
+	 *             If either argument is null.
+	 * @throws SimulationException
+	 *             If the currency is already recognized.
+	 * @throws SimulationException
+	 *             If the denominations array does not contain at least one value.
+	 * @throws SimulationException
+	 *             If any value in the denominations array is non-positive.
+	 * @throws SimulationException
+	 *             If any value in the denominations array is non-unique.
+	 */
+	public void addDenominations(Currency currency, int[] denominations) {
+		if(currency == null)
+			throw new SimulationException(new NullPointerException("currency is null"));
+
 		if(denominations == null)
 			throw new SimulationException(new NullPointerException("denominations is null"));
 
 		if(denominations.length < 1)
 			throw new SimulationException(new IllegalArgumentException("There must be at least one denomination."));
 
-		this.currency = currency;
+		if(table.contains(currency))
+			throw new SimulationException(new IllegalArgumentException(currency + " is already recognized."));
+
 		Arrays.sort(denominations);
 
 		HashSet<Integer> set = new HashSet<>();
+		long[] values = new long[denominations.length];
+		int i = 0;
 
 		for(int denomination : denominations) {
 			if(denomination <= 0)
@@ -64,9 +100,20 @@ public final class BanknoteValidator extends AbstractDevice<BanknoteValidatorLis
 					"Each denomination must be unique, but " + denomination + " is repeated."));
 
 			set.add(denomination);
+			values[i++] = denomination;
 		}
 
-		this.denominations = denominations;
+		table.add(currency, values);
+	}
+
+	/**
+	 * Gets the currencies recognized by this validator, starting with the one it
+	 * was created with.
+	 * 
+	 * @return The currencies. Will never be null or empty.
+	 */
+	public Currency[] getCurrencies() {
+		return table.currencies();
 	}
 
 	/**
@@ -87,26 +134,24 @@ public final class BanknoteValidator extends AbstractDevice<BanknoteValidatorLis
 	private static final int PROBABILITY_OF_FALSE_REJECTION = 1; /* out of 100 */
 
 	private boolean isValid(Banknote banknote) {
-		if(currency.equals(banknote.getCurrency()))
-			for(int denomination : denominations)
-				if(denomination == banknote.getValue())
-					return pseudoRandomNumberGenerator.nextInt(100) >= PROBABILITY_OF_FALSE_REJECTION;
+		if(table.contains(banknote.getCurrency(), banknote.getValue()))
+			return pseudoRandomNumberGenerator.nextInt(100) >= PROBABILITY_OF_FALSE_REJECTION;
 
 		return false;
 	}
 
 	/**
 	 * Tells the banknote validator that the indicated banknote is being inserted.
-	 * If the banknote is valid, a "validBanknoteDetected" event is announced to its
-	 * listeners; otherwise, an "invalidBanknoteDetected" event is announced to its
-	 * listeners.
+	 * If the banknote is valid and of this validator's currency, a
+	 * "validBanknoteDetected" event is announced to its listeners; otherwise, an
+	 * "invalidBanknoteDetected" event is announced to its listeners.
 	 * <p>
 	 * If there is space in the machine to store a valid banknote, it is passed to
 	 * the sink channel.
 	 * </p>
 	 * <p>
-	 * If there is no space in the machine to store it or the banknote is invalid,
-	 * the banknote is ejected to the source.
+	 * If there is no space in the machine to store it, the banknote is of another
+	 * currency, or the banknote is invalid, the banknote is ejected to the source.
 	 * </p>
 	 * 
 	 * @param banknote
@@ -124,7 +169,7 @@ public final class BanknoteValidator extends AbstractDevice<BanknoteValidatorLis
 		if(banknote == null)
 			throw new SimulationException(new NullPointerException("banknote is null"));
 		
-		if(isValid(banknote)) {
+		if(isValid(banknote) && banknote.getCurrency() == currency) {
 			notifyValidBanknoteDetected(banknote);
 
 			if(sink.hasSpace()) {
@@ -0,0 +1,34 @@
+package org.lsmr.selfcheckout.devices;
+
+/**
+ * A device that accepts things, and that can also accept a whole batch of
+ * things at once (like a hopper full of coins) more cheaply than one at a time.
+ *
+ * @param <T>
+ *            The type of the things to accept.
+ */
+public interface BulkAcceptor<T> extends Acceptor<T> {
+	/**
+	 * Instructs the device to take a range of things as input, in order. Either
+	 * all of the things are taken or, if an exception is thrown, none are.
+	 *
+	 * @param things
+	 *            The array holding the things to be taken as input.
+	 * @param offset
+	 *            The index of the first thing to take.
+	 * @param length
+	 *            The number of things to take.
+	 * @throws OverloadException
+	 *             If the device does not have enough space for all the things.
+	 * @throws DisabledException
+	 *             If the device is disabled.
+	 */
+	public void acceptAll(T[] things, int offset, int length) throws OverloadException, DisabledException;
+
+	/**
+	 * Gets how many more things the device can accept right now.
+	 *
+	 * @return The number of things that would fit. Will be &ge;0.
+	 */
+	public int spaceAvailable();
+}
@@ -1,9 +1,7 @@
 package org.lsmr.selfcheckout.devices;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
 
 import org.lsmr.selfcheckout.Coin;
 import org.lsmr.selfcheckout.devices.listeners.CoinDispenserListener;
@@ -16,11 +14,16 @@ import org.lsmr.selfcheckout.devices.listeners.CoinDispenserListener;
  * simulation, no check is performed on the value of each coin, meaning it is an
  * external responsibility to ensure the correct routing of coins.
  * </p>
+ * <p>
+ * Coins are held in a fixed-capacity ring buffer, so loading, emitting and
+ * unloading move whole ranges of coins without allocating per coin.
+ * </p>
  */
 public final class CoinDispenser extends AbstractDevice<CoinDispenserListener>
-	implements Acceptor<Coin>, FromStorageEmitter<Coin> {
-	private int maxCapacity;
-	private Queue<Coin> queue = new LinkedList<Coin>();
+	implements BulkAcceptor<Coin>, FromStorageEmitter<Coin> {
+	private final Coin[] ring;
+	private int head = 0; // index of the next coin to emit
+	private int count = 0;
 	private UnidirectionalChannel<Coin> sink;
 
 	/**
@@ -36,7 +39,7 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserListener>
 		if(capacity <= 0)
 			throw new SimulationException(new IllegalArgumentException("Capacity must be positive: " + capacity));
 
-		this.maxCapacity = capacity;
+		ring = new Coin[capacity];
 	}
 
 	/**
@@ -45,7 +48,7 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserListener>
 	 * @return The number of coins currently in the dispenser.
 	 */
 	public int size() {
-		return queue.size();
+		return count;
 	}
 
 	/**
@@ -59,17 +62,25 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserListener>
 	 *             if the number of coins to be loaded exceeds the capacity of the
 	 *             dispenser.
 	 * @throws SimulationException
-	 *             If any coin is null.
+	 *             If coins is null, or any coin is null. No coins are loaded.
 	 */
 	public void load(Coin... coins) throws SimulationException, OverloadException {
-		if(maxCapacity < queue.size() + coins.length)
+		if(coins == null)
+			throw new SimulationException(new NullPointerException("coins is null"));
+
+		if(ring.length < count + coins.length)
 			throw new OverloadException("Capacity of dispenser is exceeded by load");
 
 		for(Coin coin : coins)
 			if(coin == null)
 				throw new SimulationException(new NullPointerException("A coin is null"));
-			else
-				queue.add(coin);
+
+		int tail = (head + count) % ring.length;
+		int first = Math.min(coins.length, ring.length - tail);
+
+		System.arraycopy(coins, 0, ring, tail, first);
+		System.arraycopy(coins, first, ring, 0, coins.length - first);
+		count += coins.length;
 
 		notifyLoad(coins);
 	}
@@ -81,17 +92,33 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserListener>
 
 	/**
 	 * Unloads coins from the dispenser directly. Causes a "coinsUnloaded" event to
-	 * be announced.
+	 * be announced. The coins are copied out once, in the order they would have
+	 * been emitted; the array announced to listeners is the one backing the
+	 * returned list.
 	 * 
-	 * @return A list of the coins unloaded. May be empty. Will never be null.
+	 * @return A fixed-size list of the coins unloaded. May be empty. Will never be
+	 *             null.
 	 */
 	public List<Coin> unload() {
-		List<Coin> result = new ArrayList<>(queue);
-		queue.clear();
+		Coin[] unloaded = new Coin[count];
+		int first = Math.min(count, ring.length - head);
+
+		System.arraycopy(ring, head, unloaded, 0, first);
+		System.arraycopy(ring, 0, unloaded, first, count - first);
+		clear(head, count);
+		head = 0;
+		count = 0;
+
+		notifyUnload(unloaded);
+
+		return Arrays.asList(unloaded);
+	}
 
-		notifyUnload(result.toArray(new Coin[result.size()]));
+	private void clear(int from, int length) {
+		int first = Math.min(length, ring.length - from);
 
-		return result;
+		Arrays.fill(ring, from, from + first, null);
+		Arrays.fill(ring, 0, length - first, null);
 	}
 
 	private void notifyUnload(Coin[] coins) {
@@ -111,13 +138,25 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserListener>
 		this.sink = sink;
 	}
 
+	/**
+	 * Returns how many coins the output channel can take at once. A sink that
+	 * takes coins one at a time, like a slot, can take at most one. Announces
+	 * no events.
+	 * 
+	 * @return The number of coins that can be emitted at once; 0 if there is no
+	 *             output.
+	 */
+	public int getOutputSpace() {
+		return sink == null ? 0 : sink.spaceAvailable();
+	}
+
 	/**
 	 * Returns the maximum capacity of this coin dispenser.
 	 * 
 	 * @return The capacity. Will be positive.
 	 */
 	public int getCapacity() {
-		return maxCapacity;
+		return ring.length;
 	}
 
 	/**
@@ -141,13 +180,60 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserListener>
 		if(coin == null)
 			throw new SimulationException(new NullPointerException("coin is null"));
 
-		if(queue.size() >= maxCapacity)
+		if(count >= ring.length)
 			throw new OverloadException();
 
-		queue.add(coin);
+		ring[(head + count) % ring.length] = coin;
+		count++;
 		notifyCoinAdded(coin);
 
-		if(queue.size() >= maxCapacity)
+		if(count >= ring.length)
+			notifyCoinsFull();
+	}
+
+	/**
+	 * Causes a range of coins to be added into the dispenser at once, as when
+	 * coins are recycled from the validator. A "coinAdded" event is announced to
+	 * its listeners for each coin, and a "coinsFull" event if the dispenser
+	 * becomes full. If the coins do not all fit, none are added.
+	 * 
+	 * @param coins
+	 *            The array holding the coins to add.
+	 * @param offset
+	 *            The index of the first coin to add.
+	 * @param length
+	 *            The number of coins to add.
+	 * @throws DisabledException
+	 *             If the coin dispenser is currently disabled.
+	 * @throws SimulationException
+	 *             If coins is null, or any coin in the range is null.
+	 * @throws OverloadException
+	 *             If the dispenser would overflow.
+	 */
+	@Override
+	public void acceptAll(Coin[] coins, int offset, int length) throws OverloadException, DisabledException {
+		if(isDisabled())
+			throw new DisabledException();
+
+		CoinSlot.checkBatch(coins, offset, length);
+
+		if(count + length > ring.length)
+			throw new OverloadException();
+
+		if(length == 0)
+			return;
+
+		int tail = (head + count) % ring.length;
+		int first = Math.min(length, ring.length - tail);
+
+		System.arraycopy(coins, offset, ring, tail, first);
+		System.arraycopy(coins, offset + first, ring, 0, length - first);
+		count += length;
+
+		for(int i = offset; i < offset + length; i++)
+			notifyCoinAdded(coins[i]);
+
+		if(count >= ring.length)
 			notifyCoinsFull();
 	}
 
@@ -168,15 +254,81 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserListener>
 		if(isDisabled())
 			throw new DisabledException();
 
-		if(queue.size() == 0)
+		if(count == 0)
 			throw new EmptyException();
 
-		Coin coin = queue.remove();
+		Coin coin = ring[head];
+
+		ring[head] = null;
+		head = (head + 1) % ring.length;
+		count--;
 
 		notifyCoinRemoved(coin);
 		sink.deliver(coin);
 
-		if(queue.isEmpty())
+		if(count == 0)
+			notifyCoinsEmpty();
+	}
+
+	/**
+	 * Releases several coins from this coin dispenser at once, in the order they
+	 * were added. A "coinRemoved" event is announced for each coin, then the coins
+	 * are passed to the output channel together. If this empties the dispenser, a
+	 * "coinsEmpty" event is announced afterwards. Nothing is released if the
+	 * dispenser holds too few coins or the output channel lacks space for all of
+	 * them.
+	 * 
+	 * @param count
+	 *            The number of coins to release. Must be &ge;0.
+	 * @throws OverloadException
+	 *             If the output channel is unable to accept that many coins.
+	 * @throws EmptyException
+	 *             If fewer coins than that are present in the dispenser.
+	 * @throws DisabledException
+	 *             If the dispenser is currently disabled.
+	 * @throws SimulationException
+	 *             If count is negative.
+	 */
+	@Override
+	public void emit(int count) throws OverloadException, EmptyException, DisabledException {
+		if(isDisabled())
+			throw new DisabledException();
+
+		if(count < 0)
+			throw new SimulationException(new IllegalArgumentException("count must be non-negative: " + count));
+
+		if(count > this.count)
+			throw new EmptyException();
+
+		if(count == 0)
+			return;
+
+		if(sink.spaceAvailable() < count)
+			throw new OverloadException("The sink cannot take " + count + " coins.");
+
+		int from = head;
+		int first = Math.min(count, ring.length - from);
+
+		head = (head + count) % ring.length;
+		this.count -= count;
+
+		for(int i = 0; i < first; i++)
+			notifyCoinRemoved(ring[from + i]);
+
+		for(int i = 0; i < count - first; i++)
+			notifyCoinRemoved(ring[i]);
+
+		try {
+			sink.deliverAll(ring, from, first);
+
+			if(count > first)
+				sink.deliverAll(ring, 0, count - first);
+		}
+		finally {
+			clear(from, count);
+		}
+
+		if(this.count == 0)
 			notifyCoinsEmpty();
 	}
 
@@ -186,7 +338,12 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserListener>
 	 */
 	@Override
 	public boolean hasSpace() {
-		return queue.size() < maxCapacity;
+		return count < ring.length;
+	}
+
+	@Override
+	public int spaceAvailable() {
+		return ring.length - count;
 	}
 
 	private void notifyCoinAdded(Coin coin) {
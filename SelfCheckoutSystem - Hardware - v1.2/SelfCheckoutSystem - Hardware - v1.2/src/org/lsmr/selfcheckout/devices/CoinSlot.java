@@ -8,7 +8,7 @@ import org.lsmr.selfcheckout.devices.listeners.CoinSlotListener;
  * stupid: it has no functionality other than being enabled/disabled, and cannot
  * determine the value and currency of the coin.
  */
-public final class CoinSlot extends AbstractDevice<CoinSlotListener> implements Acceptor<Coin> {
+public final class CoinSlot extends AbstractDevice<CoinSlotListener> implements BulkAcceptor<Coin> {
 	private UnidirectionalChannel<Coin> sink;
 
 	/**
@@ -61,13 +61,95 @@ public final class CoinSlot extends AbstractDevice<CoinSlotListener> implements
 			throw new SimulationException("Unable to route coin: Output channel is full");
 	}
 
+	/**
+	 * Tells the coin slot that a batch of coins is being inserted at once, as from
+	 * a hopper. If the slot is enabled, this causes a single "coinsInserted" event
+	 * to be announced to its listeners, and the whole batch is passed on to the
+	 * sink together.
+	 * 
+	 * @param coins
+	 *            The coins to be added. Neither the array nor any coin in it can
+	 *            be null.
+	 * @throws DisabledException
+	 *             If the coin slot is currently disabled.
+	 * @throws SimulationException
+	 *             If coins is null, or any coin is null.
+	 */
+	public void acceptAll(Coin... coins) throws DisabledException {
+		if(coins == null)
+			throw new SimulationException(new NullPointerException("coins is null"));
+
+		acceptAll(coins, 0, coins.length);
+	}
+
+	/**
+	 * Tells the coin slot that a range of coins is being inserted at once. See
+	 * {@link #acceptAll(Coin...)}.
+	 * 
+	 * @param coins
+	 *            The array holding the coins to be added.
+	 * @param offset
+	 *            The index of the first coin to add.
+	 * @param length
+	 *            The number of coins to add.
+	 * @throws DisabledException
+	 *             If the coin slot is currently disabled.
+	 * @throws SimulationException
+	 *             If coins is null, or any coin in the range is null.
+	 * @throws SimulationException
+	 *             If the range is outside the array.
+	 */
+	@Override
+	public void acceptAll(Coin[] coins, int offset, int length) throws DisabledException {
+		if(isDisabled())
+			throw new DisabledException();
+
+		checkBatch(coins, offset, length);
+
+		if(length == 0)
+			return;
+
+		notifyCoinsInserted(length);
+
+		try {
+			sink.deliverAll(coins, offset, length);
+		}
+		catch(OverloadException e) {
+			// Should never happen
+			throw new SimulationException(e);
+		}
+	}
+
+	static void checkBatch(Coin[] coins, int offset, int length) {
+		if(coins == null)
+			throw new SimulationException(new NullPointerException("coins is null"));
+
+		if(offset < 0 || length < 0 || offset > coins.length - length)
+			throw new SimulationException(new IndexOutOfBoundsException(
+				"offset " + offset + " and length " + length + " do not fit an array of " + coins.length));
+
+		for(int i = offset; i < offset + length; i++)
+			if(coins[i] == null)
+				throw new SimulationException(new NullPointerException("No coin may be null"));
+	}
+
 	@Override
 	public boolean hasSpace() {
 		return sink.hasSpace();
 	}
 
+	@Override
+	public int spaceAvailable() {
+		return sink.spaceAvailable();
+	}
+
 	private void notifyCoinInserted() {
 		for(CoinSlotListener listener : listeners)
 			listener.coinInserted(this);
 	}
+
+	private void notifyCoinsInserted(int count) {
+		for(CoinSlotListener listener : listeners)
+			listener.coinsInserted(this, count);
+	}
 }
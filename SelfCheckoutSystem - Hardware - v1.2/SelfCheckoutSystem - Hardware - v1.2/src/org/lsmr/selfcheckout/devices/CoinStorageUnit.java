@@ -12,9 +12,15 @@ import org.lsmr.selfcheckout.devices.listeners.CoinStorageUnitListener;
  * them. To access the coins inside, a human operator needs to physically remove
  * the coins, simulated with the {@link #unload()} method. A
  * {@link #load(Coin...)} method is provided for symmetry.
+ * <p>
+ * Coins are held as their cash codes (see {@link Coin#getCode()}) in a
+ * primitive array, so unloading yields the canonical coin instances rather than
+ * the objects originally stored.
+ * </p>
  */
-public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitListener> implements Acceptor<Coin> {
-	private Coin[] storage;
+public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitListener> implements BulkAcceptor<Coin> {
+	private long[] storage; // cash codes of the stored coins
+	private long[] spare; // the buffer handed out by the last unloadAll, recycled by the next
 	private int nextIndex = 0;
 
 	/**
@@ -29,7 +35,7 @@ public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitListener> imp
 		if(capacity <= 0)
 			throw new SimulationException(new IllegalArgumentException("The capacity must be positive."));
 
-		storage = new Coin[capacity];
+		storage = new long[capacity];
 	}
 
 	/**
@@ -64,6 +70,8 @@ public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitListener> imp
 	 *             If coins is null.
 	 * @throws SimulationException
 	 *             If any coin is null.
+	 * @throws SimulationException
+	 *             If any coin has no cash code.
 	 * @throws OverloadException
 	 *             If too many coins are loaded.
 	 */
@@ -77,10 +85,15 @@ public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitListener> imp
 		for(Coin coin : coins)
 			if(coin == null)
 				throw new SimulationException(new NullPointerException("No coin may be null"));
+			else if(coin.getCode() < 0)
+				throw new SimulationException(new IllegalArgumentException("Cannot store " + coin));
+
+		int first = nextIndex;
 
-		System.arraycopy(coins, 0, storage, nextIndex, coins.length);
-		nextIndex += coins.length;
+		for(Coin coin : coins)
+			storage[nextIndex++] = coin.getCode();
 
+		notifyCoinsStored(first, coins.length);
 		notifyCoinsLoaded();
 	}
 
@@ -88,12 +101,42 @@ public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitListener> imp
 	 * Unloads coins from the storage unit directly. Causes a "coinsUnloaded" event
 	 * to be announced.
 	 * 
-	 * @return A list of the coins unloaded. May be empty. Will never be null.
+	 * @return A list of the coins unloaded, as long as the capacity of the unit,
+	 *             with null in the positions that were empty. Will never be null.
+	 *             See {@link #unloadAll()} for a list of just the coins.
 	 */
 	public List<Coin> unload() {
-		List<Coin> coins = Arrays.asList(storage);
+		Coin[] unloaded = new Coin[storage.length];
+
+		for(int i = 0; i < nextIndex; i++)
+			unloaded[i] = Coin.fromCode(storage[i]);
+
+		List<Coin> coins = Arrays.asList(unloaded);
+
+		nextIndex = 0;
+		notifyCoinsUnloaded();
+
+		return coins;
+	}
+
+	/**
+	 * Unloads coins from the storage unit directly, without copying them. Causes a
+	 * "coinsUnloaded" event to be announced.
+	 * <p>
+	 * The result is a read-only view of exactly the coins that were stored, backed
+	 * by the unit's buffer, with a tally per denomination computed while
+	 * unloading. The unit continues with a second buffer and recycles this one on
+	 * the following unload, so the view is only valid until then.
+	 * </p>
+	 * 
+	 * @return The coins unloaded. May be empty. Will never be null.
+	 */
+	public UnloadedCash<Coin> unloadAll() {
+		UnloadedCash<Coin> coins = UnloadedCash.ofCodes(storage, nextIndex, Coin::fromCode);
+		long[] recycled = spare != null ? spare : new long[storage.length];
 
-		storage = new Coin[storage.length];
+		spare = storage;
+		storage = recycled;
 		nextIndex = 0;
 		notifyCoinsUnloaded();
 
@@ -110,6 +153,8 @@ public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitListener> imp
 	 *             If the unit is currently disabled.
 	 * @throws SimulationException
 	 *             If coin is null.
+	 * @throws SimulationException
+	 *             If the coin has no cash code.
 	 * @throws OverloadException
 	 *             If the unit is already full.
 	 */
@@ -120,8 +165,12 @@ public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitListener> imp
 		if(coin == null)
 			throw new SimulationException(new NullPointerException("coin is null"));
 
+		if(coin.getCode() < 0)
+			throw new SimulationException(new IllegalArgumentException("Cannot store " + coin));
+
 		if(nextIndex < storage.length) {
-			storage[nextIndex++] = coin;
+			storage[nextIndex++] = coin.getCode();
+			notifyCoinsStored(nextIndex - 1, 1);
 
 			if(nextIndex == storage.length)
 				notifyCoinsFull();
@@ -132,11 +181,77 @@ public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitListener> imp
 			throw new OverloadException();
 	}
 
+	/**
+	 * Causes a range of coins to be added to the storage unit at once. If
+	 * successful, a single "coinsAdded" event is announced to its listeners; if
+	 * the batch fills the unit, the "coinsAdded" event covers all but the last
+	 * coin and is followed by a "coinsFull" event. If the coins do not all fit,
+	 * none are added.
+	 * 
+	 * @param coins
+	 *            The array holding the coins to add.
+	 * @param offset
+	 *            The index of the first coin to add.
+	 * @param length
+	 *            The number of coins to add.
+	 * @throws DisabledException
+	 *             If the unit is currently disabled.
+	 * @throws SimulationException
+	 *             If coins is null, or any coin in the range is null.
+	 * @throws SimulationException
+	 *             If any coin in the range has no cash code.
+	 * @throws OverloadException
+	 *             If the coins do not all fit in the unit.
+	 */
+	@Override
+	public void acceptAll(Coin[] coins, int offset, int length) throws DisabledException, OverloadException {
+		if(isDisabled())
+			throw new DisabledException();
+
+		CoinSlot.checkBatch(coins, offset, length);
+
+		for(int i = offset; i < offset + length; i++)
+			if(coins[i].getCode() < 0)
+				throw new SimulationException(new IllegalArgumentException("Cannot store " + coins[i]));
+
+		if(length > storage.length - nextIndex)
+			throw new OverloadException();
+
+		if(length == 0)
+			return;
+
+		int first = nextIndex;
+
+		for(int i = offset; i < offset + length; i++)
+			storage[nextIndex++] = coins[i].getCode();
+
+		notifyCoinsStored(first, length);
+
+		if(nextIndex == storage.length) {
+			if(length > 1)
+				notifyCoinsAdded(length - 1);
+
+			notifyCoinsFull();
+		}
+		else
+			notifyCoinsAdded(length);
+	}
+
 	@Override
 	public boolean hasSpace() {
 		return nextIndex < storage.length;
 	}
 
+	@Override
+	public int spaceAvailable() {
+		return storage.length - nextIndex;
+	}
+
+	private void notifyCoinsStored(int offset, int length) {
+		for(CoinStorageUnitListener l : listeners)
+			l.coinsStored(this, storage, offset, length);
+	}
+
 	private void notifyCoinsLoaded() {
 		for(CoinStorageUnitListener l : listeners)
 			l.coinsLoaded(this);
@@ -152,6 +267,11 @@ public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitListener> imp
 			l.coinsFull(this);
 	}
 
+	private void notifyCoinsAdded(int count) {
+		for(CoinStorageUnitListener l : listeners)
+			l.coinsAdded(this, count);
+	}
+
 	private void notifyCoinAdded() {
 		for(CoinStorageUnitListener l : listeners)
 			l.coinAdded(this);
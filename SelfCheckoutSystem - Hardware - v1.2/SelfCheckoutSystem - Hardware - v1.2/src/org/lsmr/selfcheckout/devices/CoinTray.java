@@ -9,8 +9,9 @@ import org.lsmr.selfcheckout.devices.listeners.CoinTrayListener;
 /**
  * Simulates the tray where dispensed coins go for the user to collect them.
  */
-public class CoinTray extends AbstractDevice<CoinTrayListener> implements Acceptor<Coin> {
+public class CoinTray extends AbstractDevice<CoinTrayListener> implements BulkAcceptor<Coin> {
 	private Coin[] coins;
+	private Coin[] spare; // the buffer handed out by the last collectAll, recycled by the next
 	private int nextIndex = 0;
 
 	/**
@@ -46,21 +47,93 @@ public class CoinTray extends AbstractDevice<CoinTrayListener> implements Accept
 
 		if(nextIndex < coins.length) {
 			coins[nextIndex++] = coin;
+			notifyCoinsStored(nextIndex - 1, 1);
 			notifyCoinAdded();
 		}
 		else
 			throw new OverloadException("The tray has overflowed.");
 	}
 
+	/**
+	 * Causes a range of coins to be added to the tray at once. A single
+	 * "coinsAdded" event is announced to listeners. If the coins do not all fit,
+	 * none are added.
+	 * 
+	 * @param coins
+	 *            The array holding the coins to add.
+	 * @param offset
+	 *            The index of the first coin to add.
+	 * @param length
+	 *            The number of coins to add.
+	 * @throws SimulationException
+	 *             If coins is null, or any coin in the range is null.
+	 * @throws OverloadException
+	 *             If the tray would overflow.
+	 */
+	@Override
+	public void acceptAll(Coin[] coins, int offset, int length) throws OverloadException {
+		CoinSlot.checkBatch(coins, offset, length);
+
+		if(length > this.coins.length - nextIndex)
+			throw new OverloadException("The tray has overflowed.");
+
+		if(length == 0)
+			return;
+
+		System.arraycopy(coins, offset, this.coins, nextIndex, length);
+		nextIndex += length;
+		notifyCoinsStored(nextIndex - length, length);
+		notifyCoinsAdded(length);
+	}
+
+	/**
+	 * Removes the coins from the tray, as the user collecting them. Causes a
+	 * "coinsCollected" event to be announced.
+	 * 
+	 * @return A list of the coins collected, as long as the capacity of the tray,
+	 *             with null in the positions that were empty. Will never be null.
+	 *             See {@link #collectAll()} for a list of just the coins.
+	 */
 	public List<Coin> collectCoins() {
 		List<Coin> result = Arrays.asList(coins);
 
 		coins = new Coin[coins.length];
 		nextIndex = 0;
+		notifyCoinsCollected();
 
 		return result;
 	}
 
+	/**
+	 * Removes the coins from the tray without copying them. Causes a
+	 * "coinsCollected" event to be announced.
+	 * <p>
+	 * The result is a read-only view of exactly the coins in the tray, backed by
+	 * the tray's buffer, with a tally per denomination computed while collecting.
+	 * Coins without a cash code (such as unrecognized coins) are tallied as
+	 * unencoded. The tray continues with a second buffer and recycles this one on
+	 * the following collection, so the view is only valid until then.
+	 * </p>
+	 * 
+	 * @return The coins collected. May be empty. Will never be null.
+	 */
+	public UnloadedCash<Coin> collectAll() {
+		UnloadedCash<Coin> collected = UnloadedCash.ofObjects(coins, nextIndex, Coin::getCode);
+		Coin[] recycled = spare;
+
+		if(recycled == null)
+			recycled = new Coin[coins.length];
+		else
+			Arrays.fill(recycled, null);
+
+		spare = coins;
+		coins = recycled;
+		nextIndex = 0;
+		notifyCoinsCollected();
+
+		return collected;
+	}
+
 	/**
 	 * Returns whether this coin receptacle has enough space to accept at least one
 	 * more coin: always true. Causes no events.
@@ -70,6 +143,26 @@ public class CoinTray extends AbstractDevice<CoinTrayListener> implements Accept
 		return nextIndex < coins.length;
 	}
 
+	@Override
+	public int spaceAvailable() {
+		return coins.length - nextIndex;
+	}
+
+	private void notifyCoinsStored(int offset, int length) {
+		for(CoinTrayListener l : listeners)
+			l.coinsStored(this, coins, offset, length);
+	}
+
+	private void notifyCoinsCollected() {
+		for(CoinTrayListener l : listeners)
+			l.coinsCollected(this);
+	}
+
+	private void notifyCoinsAdded(int count) {
+		for(CoinTrayListener l : listeners)
+			l.coinsAdded(this, count);
+	}
+
 	private void notifyCoinAdded() {
 		for(CoinTrayListener l : listeners)
 			l.coinAdded(this);
@@ -1,6 +1,7 @@
 package org.lsmr.selfcheckout.devices;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Currency;
 import java.util.HashMap;
@@ -10,26 +11,71 @@ import java.util.Map;
 import java.util.Random;
 
 import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.Money;
 import org.lsmr.selfcheckout.devices.listeners.CoinValidatorListener;
 
 /**
  * Represents a device for optically and/or physically validating coins. Coins
  * deemed valid are moved to storage; coins deemed invalid are ejected.
+ * <p>
+ * When storage is full, a valid coin overflows to the sink connected for its
+ * denomination (see {@link #connectOverflow(BigDecimal, UnidirectionalChannel)}),
+ * typically a dispenser that recycles it as change; failing that, it is
+ * returned to the customer through the rejection sink. Storage only keeps coins
+ * of the validator's own currency: a valid coin of a further currency (see
+ * {@link #addDenominations(Currency, List)}) is returned too. Each routing
+ * decision is counted (see {@link #getRouteCount(Route)}).
+ * </p>
  */
-public final class CoinValidator extends AbstractDevice<CoinValidatorListener> implements Acceptor<Coin> {
+public final class CoinValidator extends AbstractDevice<CoinValidatorListener> implements BulkAcceptor<Coin> {
+	/**
+	 * Where the validator sends a coin.
+	 */
+	public enum Route {
+		/**
+		 * A valid coin, sent to storage.
+		 */
+		STORAGE,
+		/**
+		 * A valid coin, sent to the overflow sink for its denomination because
+		 * storage is full.
+		 */
+		OVERFLOW,
+		/**
+		 * A valid coin, returned through the rejection sink because neither storage
+		 * nor its overflow sink has space.
+		 */
+		RETURNED,
+		/**
+		 * A valid coin of a currency other than this validator's, returned through
+		 * the rejection sink because it can't be kept with the rest.
+		 */
+		FOREIGN,
+		/**
+		 * An invalid coin, sent to the rejection sink.
+		 */
+		REJECTED
+	}
+
 	public final Currency currency;
-	private List<BigDecimal> denominations;
+	private final DenominationTable table = new DenominationTable();
 	private UnidirectionalChannel<Coin> rejectionSink, storageSink;
+	private long[] overflowCodes = new long[0];
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private UnidirectionalChannel<Coin>[] overflowSinks = new UnidirectionalChannel[0];
+	private final long[] routeCounts = new long[Route.values().length];
 
 	/**
 	 * Creates a coin validator that recognizes coins of the specified denominations
-	 * (i.e., values) and currency.
+	 * (i.e., values) and currency. Further currencies can be recognized by calling
+	 * {@link #addDenominations(Currency, List)}.
 	 * 
 	 * @param currency
 	 *            The kind of currency to accept.
 	 * @param denominations
 	 *            An array of the valid coin denominations (like $0.05, $0.10, etc.)
-	 *            to accept. Each value must be &gt;0 and unique in this array.
+	 *            to accept. Each value must be &gt;0, a whole number of minor units
+	 *            of the currency, and unique in this array.
 	 * @throws SimulationException
 	 *             If either argument is null.
 	 * @throws SimulationException
@@ -37,22 +83,62 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorListener> i
 	 * @throws SimulationException
 	 *             If any value in the denominations array is non-positive.
 	 * @throws SimulationException
+	 *             If any value in the denominations array is not a whole number of
+	 *             minor units.
+	 * @throws SimulationException
 	 *             If any value in the denominations array is non-unique.
 	 */
 	public CoinValidator(Currency currency, List<BigDecimal> denominations) {
 		if(currency == null)
 			throw new SimulationException(new NullPointerException("currency is null"));
 
+		this.currency = currency;
+		addDenominations(currency, denominations);
+	}
+
+	/**
+	 * Adds a further currency, and its coin denominations, to those recognized by
+	 * this validator. Valid coins of the currency are returned rather than kept.
+	 * Causes no events.
+	 * 
+	 * @param currency
+	 *            The additional kind of currency to accept.
+	 * @param denominations
+	 *            An array of the valid coin denominations (like $0.05, $0.10, etc.)
+	 *            to accept. Each value must be &gt;0, a whole number of minor units
+	 *            of the currency, and unique in this array.
+	 * @throws SimulationException
+	 *             If either argument is null.
+	 * @throws SimulationException
+	 *             If the currency is already recognized.
+	 * @throws SimulationException
+	 *             If the denominations array does not contain at least one value.
+	 * @throws SimulationException
+	 *             If any value in the denominations array is non-positive.
+	 * @throws SimulationException
+	 *             If any value in the denominations array is not a whole number of
+	 *             minor units.
+	 * @throws SimulationException
+	 *             If any value in the denominations array is non-unique.
+	 */
+	public void addDenominations(Currency currency, List<BigDecimal> denominations) {
+		if(currency == null)
+			throw new SimulationException(new NullPointerException("currency is null"));
+
 		if(denominations == null)
 			throw new SimulationException(new NullPointerException("denominations is null"));
 
 		if(denominations.size() < 1)
 			throw new SimulationException(new IllegalArgumentException("There must be at least one denomination."));
 
-		this.currency = currency;
+		if(table.contains(currency))
+			throw new SimulationException(new IllegalArgumentException(currency + " is already recognized."));
+
 		Collections.sort(denominations);
 
-		HashSet<BigDecimal> checked = new HashSet<>();
+		HashSet<Long> checked = new HashSet<>();
+		long[] values = new long[denominations.size()];
+		int i = 0;
 
 		for(BigDecimal denomination : denominations) {
 			if(denomination == null)
@@ -62,14 +148,31 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorListener> i
 				throw new SimulationException(
 					new IllegalArgumentException("Non-positive denomination detected: " + denomination + "."));
 
-			if(checked.contains(denomination))
+			long value = Money.toMinorUnitsExact(denomination, currency);
+
+			if(value < 0)
+				throw new SimulationException(new IllegalArgumentException(
+					"Denomination " + denomination + " is not a whole number of minor units of " + currency + "."));
+
+			if(checked.contains(value))
 				throw new SimulationException(new IllegalArgumentException(
 					"Each denomination must be unique, but " + denomination + " is repeated."));
 
-			checked.add(denomination);
+			checked.add(value);
+			values[i++] = value;
 		}
 
-		this.denominations = denominations;
+		table.add(currency, values);
+	}
+
+	/**
+	 * Gets the currencies recognized by this validator, starting with the one it
+	 * was created with.
+	 * 
+	 * @return The currencies. Will never be null or empty.
+	 */
+	public Currency[] getCurrencies() {
+		return table.currencies();
 	}
 
 	/**
@@ -107,29 +210,105 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorListener> i
 		this.storageSink = storageSink;
 	}
 
+	/**
+	 * Connects a channel to which valid coins of the indicated denomination, in
+	 * this validator's currency, are routed when storage is full. Any channel
+	 * already connected for the denomination is replaced. Causes no events.
+	 * 
+	 * @param denomination
+	 *            The denomination of the coins to route. Must be one recognized by
+	 *            this validator.
+	 * @param overflowSink
+	 *            The channel to which the coins are routed. Can be null, which
+	 *            disconnects any existing channel for the denomination.
+	 * @throws SimulationException
+	 *             If the denomination is null.
+	 * @throws SimulationException
+	 *             If the denomination is not recognized.
+	 * @throws SimulationException
+	 *             If the channel is the rejection or storage sink.
+	 */
+	public void connectOverflow(BigDecimal denomination, UnidirectionalChannel<Coin> overflowSink) {
+		if(denomination == null)
+			throw new SimulationException(new NullPointerException("denomination is null"));
+
+		long value = Money.toMinorUnitsExact(denomination, currency);
+
+		if(value < 0 || !table.contains(currency, value))
+			throw new SimulationException(
+				new IllegalArgumentException("Denomination " + denomination + " is not recognized."));
+
+		if(overflowSink != null && (overflowSink == rejectionSink || overflowSink == storageSink))
+			throw new SimulationException(new IllegalArgumentException("Each channel must be unique."));
+
+		long code = Money.encode(currency, value);
+		int i = overflowIndex(code);
+
+		if(i < 0) {
+			if(overflowSink == null)
+				return;
+
+			i = overflowCodes.length;
+			overflowCodes = Arrays.copyOf(overflowCodes, i + 1);
+			overflowSinks = Arrays.copyOf(overflowSinks, i + 1);
+			overflowCodes[i] = code;
+		}
+
+		overflowSinks[i] = overflowSink;
+	}
+
+	private int overflowIndex(long code) {
+		for(int i = 0; i < overflowCodes.length; i++)
+			if(overflowCodes[i] == code)
+				return i;
+
+		return -1;
+	}
+
+	private UnidirectionalChannel<Coin> overflowSinkFor(Coin coin) {
+		int i = overflowIndex(coin.getCode());
+		return i < 0 ? null : overflowSinks[i];
+	}
+
+	/**
+	 * Gets the number of coins this validator has sent along the indicated route.
+	 * 
+	 * @param route
+	 *            The route.
+	 * @return The number of coins.
+	 * @throws SimulationException
+	 *             If the route is null.
+	 */
+	public long getRouteCount(Route route) {
+		if(route == null)
+			throw new SimulationException(new NullPointerException("route is null"));
+
+		return routeCounts[route.ordinal()];
+	}
+
 	private final Random pseudoRandomNumberGenerator = new Random();
 	private static final int PROBABILITY_OF_FALSE_REJECTION = 1; /* out of 100 */
 
 	private boolean isValid(Coin coin) {
-		if(currency.equals(coin.getCurrency()))
-			for(BigDecimal denomination : denominations)
-				if(denomination.equals(coin.getValue()))
-					return pseudoRandomNumberGenerator.nextInt(100) >= PROBABILITY_OF_FALSE_REJECTION;
+		if(table.contains(coin.getCurrency(), coin.getValueInMinorUnits()))
+			return pseudoRandomNumberGenerator.nextInt(100) >= PROBABILITY_OF_FALSE_REJECTION;
 
 		return false;
 	}
 
 	/**
 	 * Tells the coin validator that the indicated coin is being inserted. If the
-	 * coin is valid, a "validCoinDetected" event is announced to its listeners;
-	 * otherwise, an "invalidCoinDetected" event is announced to its listeners.
+	 * coin is valid and there is space to keep it, a "validCoinDetected" event is
+	 * announced to its listeners; otherwise, an "invalidCoinDetected" event is
+	 * announced to its listeners.
 	 * <p>
-	 * If there is space in the machine to store a valid coin, it is passed to the
-	 * sink channel corresponding to the denomination of the coin.
+	 * A valid coin is passed to storage if there is space there, or else to the
+	 * overflow sink for its denomination if there is space there.
 	 * </p>
 	 * <p>
-	 * If there is no space in the machine to store it or the coin is invalid, the
-	 * coin is ejected to the source.
+	 * If there is no space in the machine to keep it, the coin is of a currency
+	 * other than this validator's, or the coin is invalid, the coin is ejected to
+	 * the rejection sink.
 	 * </p>
 	 * 
 	 * @param coin
@@ -139,7 +318,8 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorListener> i
 	 * @throws SimulationException
 	 *             If the coin is null.
 	 * @throws SimulationException
-	 *             If the coin cannot be delivered.
+	 *             If the coin cannot be delivered, because even the rejection sink
+	 *             is full.
 	 */
 	public void accept(Coin coin) throws DisabledException {
 		if(isDisabled())
@@ -148,31 +328,186 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorListener> i
 		if(coin == null)
 			throw new SimulationException(new NullPointerException("coin is null"));
 
-		if(isValid(coin)) {
-			notifyValidCoinDetected(coin);
+		Route route;
+		UnidirectionalChannel<Coin> sink;
+
+		boolean valid = isValid(coin);
+
+		if(valid && coin.getCurrency() != currency) {
+			route = Route.FOREIGN;
+			sink = rejectionSink;
+		}
+		else if(valid) {
+			UnidirectionalChannel<Coin> overflowSink = overflowSinkFor(coin);
 
 			if(storageSink.hasSpace()) {
-				try {
-					storageSink.deliver(coin);
-				}
-				catch(OverloadException e) {
-					// Should never happen
-					throw new SimulationException(e);
-				}
+				route = Route.STORAGE;
+				sink = storageSink;
+			}
+			else if(overflowSink != null && overflowSink.hasSpace()) {
+				route = Route.OVERFLOW;
+				sink = overflowSink;
+			}
+			else {
+				route = Route.RETURNED;
+				sink = rejectionSink;
 			}
-			else
-				throw new SimulationException(new OverloadException("Coin storage is full."));
 		}
 		else {
+			route = Route.REJECTED;
+			sink = rejectionSink;
+		}
+
+		if(!sink.hasSpace())
+			throw new SimulationException(new OverloadException("Coin storage and the coin tray are full."));
+
+		routeCounts[route.ordinal()]++;
+
+		if(route == Route.STORAGE || route == Route.OVERFLOW)
+			notifyValidCoinDetected(coin);
+		else
 			notifyInvalidCoinDetected(coin);
 
-			try {
-				rejectionSink.deliver(coin);
+		try {
+			sink.deliver(coin);
+		}
+		catch(OverloadException e) {
+			// Should never happen
+			throw new SimulationException(e);
+		}
+	}
+
+	/**
+	 * Tells the coin validator that a range of coins is being inserted at once.
+	 * Every coin is validated and routed first, as for {@link #accept(Coin)};
+	 * then the coins are passed to each sink together. A single "coinsValidated"
+	 * event is announced to its listeners, summarizing the batch; valid coins
+	 * returned for lack of space, or for their currency, are counted as returned. If the rejection sink
+	 * lacks space for every coin to be returned, nothing is announced, counted or
+	 * delivered.
+	 * 
+	 * @param coins
+	 *            The array holding the coins to be added.
+	 * @param offset
+	 *            The index of the first coin to add.
+	 * @param length
+	 *            The number of coins to add.
+	 * @throws DisabledException
+	 *             if the coin validator is currently disabled.
+	 * @throws SimulationException
+	 *             If coins is null, or any coin in the range is null.
+	 * @throws SimulationException
+	 *             If the coins cannot be delivered, including when the rejection
+	 *             sink lacks space for the coins to be returned.
+	 */
+	@Override
+	public void acceptAll(Coin[] coins, int offset, int length) throws DisabledException {
+		if(isDisabled())
+			throw new DisabledException();
+
+		CoinSlot.checkBatch(coins, offset, length);
+
+		if(length == 0)
+			return;
+
+		Coin[] accepted = new Coin[length];
+		Coin[] returned = new Coin[length];
+		int acceptedCount = 0, storedCount = 0, returnedCount = 0;
+		int space = storageSink.spaceAvailable();
+		int rejectionSpace = rejectionSink.spaceAvailable();
+		int[] routes = new int[routeCounts.length];
+		long acceptedValue = 0;
+
+		int[] overflowSpace = new int[overflowCodes.length];
+		int[] overflowCounts = new int[overflowCodes.length];
+		int[] overflowIndices = new int[length];
+		Arrays.fill(overflowSpace, -1);
+
+		for(int i = offset; i < offset + length; i++) {
+			Coin coin = coins[i];
+
+			if(!isValid(coin)) {
+				returned[returnedCount++] = coin;
+				routes[Route.REJECTED.ordinal()]++;
+				continue;
+			}
+
+			if(coin.getCurrency() != currency) {
+				returned[returnedCount++] = coin;
+				routes[Route.FOREIGN.ordinal()]++;
+				continue;
+			}
+
+			int o = -1;
+
+			if(storedCount >= space) {
+				o = overflowIndex(coin.getCode());
+
+				if(o >= 0 && overflowSpace[o] < 0)
+					overflowSpace[o] = overflowSinks[o] == null ? 0 : overflowSinks[o].spaceAvailable();
+
+				if(o < 0 || overflowCounts[o] >= overflowSpace[o]) {
+					returned[returnedCount++] = coin;
+					routes[Route.RETURNED.ordinal()]++;
+					continue;
+				}
+			}
+
+			if(o < 0) {
+				storedCount++;
+				routes[Route.STORAGE.ordinal()]++;
 			}
-			catch(OverloadException e) {
-				// Should never happen
-				throw new SimulationException(e);
+			else {
+				overflowCounts[o]++;
+				routes[Route.OVERFLOW.ordinal()]++;
 			}
+
+			accepted[acceptedCount] = coin;
+			overflowIndices[acceptedCount++] = o;
+			acceptedValue = Money.add(acceptedValue, coin.getValueInMinorUnits());
+		}
+
+		// The batch is all or nothing: coins that can't be returned mean none are taken
+		if(returnedCount > rejectionSpace)
+			throw new SimulationException(new OverloadException(
+				"The rejection sink can't take the " + returnedCount + " coins to be returned."));
+
+		for(int r = 0; r < routes.length; r++)
+			routeCounts[r] += routes[r];
+
+		// Order the accepted coins by sink: the stored ones first, then one range for
+		// each overflow sink
+		Coin[] routed = new Coin[acceptedCount];
+		int[] overflowStarts = new int[overflowCodes.length];
+		int next = 0;
+
+		for(int i = 0; i < acceptedCount; i++)
+			if(overflowIndices[i] < 0)
+				routed[next++] = accepted[i];
+
+		for(int o = 0; o < overflowCounts.length; o++) {
+			overflowStarts[o] = next;
+
+			for(int i = 0; i < acceptedCount && overflowCounts[o] > 0; i++)
+				if(overflowIndices[i] == o)
+					routed[next++] = accepted[i];
+		}
+
+		notifyCoinsValidated(Arrays.asList(routed), acceptedValue, returnedCount);
+
+		try {
+			if(storedCount > 0)
+				storageSink.deliverAll(routed, 0, storedCount);
+
+			for(int o = 0; o < overflowCounts.length; o++)
+				if(overflowCounts[o] > 0)
+					overflowSinks[o].deliverAll(routed, overflowStarts[o], overflowCounts[o]);
+
+			if(returnedCount > 0)
+				rejectionSink.deliverAll(returned, 0, returnedCount);
+		}
+		catch(OverloadException e) {
+			throw new SimulationException(e);
 		}
 	}
 
@@ -181,11 +516,21 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorListener> i
 		return true; // Since we cannot know yet where a coin will route, assume that it is OK.
 	}
 
+	@Override
+	public int spaceAvailable() {
+		return Integer.MAX_VALUE; // As for hasSpace, overflow is routed to the rejection sink.
+	}
+
 	private void notifyValidCoinDetected(Coin coin) {
 		for(CoinValidatorListener listener : listeners)
 			listener.validCoinDetected(this, coin.getValue());
 	}
 
+	private void notifyCoinsValidated(List<Coin> accepted, long acceptedValue, int returned) {
+		for(CoinValidatorListener listener : listeners)
+			listener.coinsValidated(this, accepted, acceptedValue, returned);
+	}
+
 	private void notifyInvalidCoinDetected(Coin coin) {
 		for(CoinValidatorListener listener : listeners)
 			listener.invalidCoinDetected(this);
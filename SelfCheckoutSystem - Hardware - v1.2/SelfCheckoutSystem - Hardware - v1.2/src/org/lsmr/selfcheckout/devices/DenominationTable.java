@@ -0,0 +1,113 @@
+package org.lsmr.selfcheckout.devices;
+
+import java.util.Arrays;
+import java.util.Currency;
+
+/**
+ * A precomputed lookup table of the denominations accepted by a validator, for
+ * one or more currencies. Denominations are keyed by their unscaled value (minor
+ * units for coins, face value for banknotes), so that, e.g., 0.1 and 0.10 are
+ * the same denomination.
+ * <p>
+ * Lookups do not allocate. For each currency, denominations up to
+ * {@link #MAXIMUM_DENSE_VALUE} are held in a table indexed directly by value;
+ * larger values fall back to a binary search.
+ * </p>
+ * <p>
+ * Currencies are compared by identity, which is safe because
+ * {@link Currency#getInstance(String)} never creates more than one instance per
+ * currency.
+ * </p>
+ */
+final class DenominationTable {
+	static final int MAXIMUM_DENSE_VALUE = 1 << 16;
+
+	private Currency[] currencies = new Currency[0];
+	private boolean[][] dense = new boolean[0][];
+	private long[][] sparse = new long[0][];
+
+	/**
+	 * Adds a currency and its denominations to the table.
+	 *
+	 * @param currency
+	 *            The currency to accept. Must not already be in the table.
+	 * @param values
+	 *            The unscaled denominations. Each must be positive.
+	 */
+	void add(Currency currency, long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+
+		int n = currencies.length;
+		currencies = Arrays.copyOf(currencies, n + 1);
+		dense = Arrays.copyOf(dense, n + 1);
+		sparse = Arrays.copyOf(sparse, n + 1);
+
+		currencies[n] = currency;
+		sparse[n] = sorted;
+
+		long largest = sorted[sorted.length - 1];
+		boolean[] table = new boolean[(int) Math.min(largest, MAXIMUM_DENSE_VALUE) + 1];
+
+		for(long value : sorted)
+			if(value < table.length)
+				table[(int) value] = true;
+
+		dense[n] = table;
+	}
+
+	/**
+	 * Tests whether the table contains the indicated currency.
+	 *
+	 * @param currency
+	 *            The currency to look for.
+	 * @return true if the currency is accepted; otherwise, false.
+	 */
+	boolean contains(Currency currency) {
+		return indexOf(currency) >= 0;
+	}
+
+	/**
+	 * Tests whether the indicated denomination is accepted in the indicated
+	 * currency.
+	 *
+	 * @param currency
+	 *            The currency of the denomination.
+	 * @param value
+	 *            The unscaled denomination. Negative values are never accepted.
+	 * @return true if the denomination is accepted; otherwise, false.
+	 */
+	boolean contains(Currency currency, long value) {
+		int i = indexOf(currency);
+
+		if(i < 0 || value < 0)
+			return false;
+
+		boolean[] table = dense[i];
+
+		if(value < table.length)
+			return table[(int) value];
+
+		if(table.length <= MAXIMUM_DENSE_VALUE)
+			return false;
+
+		return Arrays.binarySearch(sparse[i], value) >= 0;
+	}
+
+	/**
+	 * Gets the currencies in the table, in the order they were added.
+	 *
+	 * @return A copy of the currencies.
+	 */
+	Currency[] currencies() {
+		return currencies.clone();
+	}
+
+	private int indexOf(Currency currency) {
+		for(int i = 0; i < currencies.length; i++)
+			if(currencies[i] == currency)
+				return i;
+
+		return -1;
+	}
+}
@@ -21,4 +21,28 @@ public interface FromStorageEmitter<T> {
 	 *             If the receiving device is already full.
 	 */
 	public void emit() throws DisabledException, EmptyException, OverloadException;
+
+	/**
+	 * Instructs the device to emit several things. The default implementation
+	 * emits them one at a time; devices that can move a whole range of things at
+	 * once should override it.
+	 * 
+	 * @param count
+	 *            The number of things to emit. Must be &ge;0.
+	 * @throws DisabledException
+	 *             If the device is disabled.
+	 * @throws EmptyException
+	 *             If the device runs out of things to emit.
+	 * @throws OverloadException
+	 *             If the receiving device becomes full.
+	 * @throws SimulationException
+	 *             If count is negative.
+	 */
+	public default void emit(int count) throws DisabledException, EmptyException, OverloadException {
+		if(count < 0)
+			throw new SimulationException(new IllegalArgumentException("count must be non-negative: " + count));
+
+		for(int i = 0; i < count; i++)
+			emit();
+	}
 }
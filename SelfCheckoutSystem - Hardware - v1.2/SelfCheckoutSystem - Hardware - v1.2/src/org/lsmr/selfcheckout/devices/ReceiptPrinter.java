@@ -18,6 +18,9 @@ public class ReceiptPrinter extends AbstractDevice<ReceiptPrinterListener> {
 	private int linesOfPaperRemaining = 0;
 	private StringBuilder sb = new StringBuilder();
 	private int charactersOnCurrentLine = 0;
+	// the ink and paper left at the last cut, plus any added since
+	private int inkAtCut = 0;
+	private int paperAtCut = 0;
 
 	/**
 	 * Represents the maximum number of characters that can fit on one line of the
@@ -73,13 +76,176 @@ public class ReceiptPrinter extends AbstractDevice<ReceiptPrinterListener> {
 			notifyOutOfPaper();
 	}
 
+	/**
+	 * Prints a sequence of characters to the receipt, exactly as if each were
+	 * printed in turn by {@link #print(char)}, but checking and debiting ink and
+	 * paper for the whole sequence at once. Should a character fail to print,
+	 * every character before it is printed, and the same exception is thrown as
+	 * {@link #print(char)} would have thrown for it. Listeners are told that the
+	 * printer is out of ink or out of paper once per call, rather than once per
+	 * character, after the characters are printed.
+	 * 
+	 * @param text
+	 *            The characters to print.
+	 * @throws SimulationException
+	 *             If text is null.
+	 * @throws SimulationException
+	 *             If there is no ink or no paper in the printer.
+	 * @throws SimulationException
+	 *             If a character would spill off the end of the line.
+	 */
+	public void print(CharSequence text) {
+		if(text == null)
+			throw new SimulationException(new NullPointerException("text is null"));
+
+		int length = text.length();
+		int ink = charactersOfInkRemaining, paper = linesOfPaperRemaining, column = charactersOnCurrentLine;
+		boolean isOutOfInk = false, isOutOfPaper = false;
+		String failure = null;
+		int run = 0; // the start of the characters not yet appended
+		int i = 0;
+
+		sb.ensureCapacity(sb.length() + length);
+
+		for(; i < length; i++) {
+			char c = text.charAt(i);
+
+			if(c == '\n') {
+				--paper;
+				column = 0;
+			}
+			else if(c != ' ' && isIgnored(c)) {
+				sb.append(text, run, i);
+				run = i + 1;
+				continue;
+			}
+			else if(column == CHARACTERS_PER_LINE) {
+				failure = "The line is too long. Add a newline";
+				break;
+			}
+			else if(paper == 0) {
+				failure = "There is no paper in the printer.";
+				break;
+			}
+			else {
+				column++;
+
+				if(c != ' ') {
+					if(ink == 0) {
+						failure = "There is no ink in the printer";
+						break;
+					}
+
+					ink--;
+				}
+			}
+
+			isOutOfInk |= ink == 0;
+			isOutOfPaper |= paper == 0;
+		}
+
+		sb.append(text, run, i);
+		charactersOfInkRemaining = ink;
+		linesOfPaperRemaining = paper;
+		charactersOnCurrentLine = column;
+
+		if(isOutOfInk)
+			notifyOutOfInk();
+
+		if(isOutOfPaper)
+			notifyOutOfPaper();
+
+		if(failure != null)
+			throw new SimulationException(failure);
+	}
+
+	/**
+	 * Prints a line to the receipt, followed by a newline. Unlike
+	 * {@link #print(CharSequence)}, the whole line is checked before any of it is
+	 * printed, so either it is printed completely or nothing is.
+	 * 
+	 * @param line
+	 *            The characters to print. Whitespace characters other than ' '
+	 *            are ignored, as by {@link #print(char)}.
+	 * @throws SimulationException
+	 *             If line is null or contains a newline.
+	 * @throws SimulationException
+	 *             If there is not enough ink or paper in the printer for the
+	 *             line.
+	 * @throws SimulationException
+	 *             If the line would spill off the end of the current line.
+	 */
+	public void printLine(CharSequence line) {
+		if(line == null)
+			throw new SimulationException(new NullPointerException("line is null"));
+
+		int length = line.length();
+		int columns = 0, ink = 0;
+
+		for(int i = 0; i < length; i++) {
+			char c = line.charAt(i);
+
+			if(c == '\n')
+				throw new SimulationException(new IllegalArgumentException("line contains a newline"));
+
+			if(c == ' ')
+				columns++;
+			else if(!isIgnored(c)) {
+				columns++;
+				ink++;
+			}
+		}
+
+		if(charactersOnCurrentLine + columns > CHARACTERS_PER_LINE)
+			throw new SimulationException("The line is too long. Add a newline");
+
+		if(linesOfPaperRemaining <= 0)
+			throw new SimulationException("There is no paper in the printer.");
+
+		if(charactersOfInkRemaining < ink)
+			throw new SimulationException("There is no ink in the printer");
+
+		if(columns == length)
+			sb.append(line);
+		else
+			for(int i = 0; i < length; i++) {
+				char c = line.charAt(i);
+
+				if(c == ' ' || !isIgnored(c))
+					sb.append(c);
+			}
+
+		sb.append('\n');
+		charactersOfInkRemaining -= ink;
+		linesOfPaperRemaining--;
+		charactersOnCurrentLine = 0;
+
+		if(charactersOfInkRemaining == 0)
+			notifyOutOfInk();
+
+		if(linesOfPaperRemaining == 0)
+			notifyOutOfPaper();
+	}
+
+	// Whether a character other than '\n' and ' ' is skipped rather than printed
+	private static boolean isIgnored(char c) {
+		return (c <= ' ' || c >= '\u0080') && Character.isWhitespace(c);
+	}
+
 	/**
 	 * The receipt is finished printing, so cut it so that the customer can easily
 	 * remove it. Failure to cut the paper means that the receipt will not be
-	 * retrievable by the customer.
+	 * retrievable by the customer. Listeners are told how much ink and paper the
+	 * receipt took, worked out from the gauges, so printing costs nothing more.
 	 */
 	public void cutPaper() {
 		lastReceipt = sb.toString();
+
+		int ink = inkAtCut - charactersOfInkRemaining;
+		int lines = paperAtCut - linesOfPaperRemaining;
+		inkAtCut = charactersOfInkRemaining;
+		paperAtCut = linesOfPaperRemaining;
+		notifyPaperCut(ink, lines);
 	}
 
 	private String lastReceipt = null;
@@ -122,6 +288,7 @@ public class ReceiptPrinter extends AbstractDevice<ReceiptPrinterListener> {
 
 		if(quantity > 0) {
 			charactersOfInkRemaining += quantity;
+			inkAtCut += quantity;
 			notifyInkAdded();
 		}
 	}
@@ -146,10 +313,30 @@ public class ReceiptPrinter extends AbstractDevice<ReceiptPrinterListener> {
 
 		if(units > 0) {
 			linesOfPaperRemaining += units;
+			paperAtCut += units;
 			notifyPaperAdded();
 		}
 	}
 
+	/**
+	 * Reads the printer's ink gauge. Simulates the printer reporting its supplies.
+	 * 
+	 * @return The quantity of characters-worth of ink remaining.
+	 */
+	public int getInkRemaining() {
+		return charactersOfInkRemaining;
+	}
+
+	/**
+	 * Reads the printer's paper gauge. Simulates the printer reporting its
+	 * supplies.
+	 * 
+	 * @return The quantity of lines-worth of paper remaining.
+	 */
+	public int getPaperRemaining() {
+		return linesOfPaperRemaining;
+	}
+
 	private void notifyOutOfInk() {
 		for(ReceiptPrinterListener l : listeners)
 			l.outOfInk(this);
@@ -169,4 +356,9 @@ public class ReceiptPrinter extends AbstractDevice<ReceiptPrinterListener> {
 		for(ReceiptPrinterListener l : listeners)
 			l.paperAdded(this);
 	}
+
+	private void notifyPaperCut(int ink, int lines) {
+		for(ReceiptPrinterListener l : listeners)
+			l.paperCut(this, ink, lines);
+	}
 }
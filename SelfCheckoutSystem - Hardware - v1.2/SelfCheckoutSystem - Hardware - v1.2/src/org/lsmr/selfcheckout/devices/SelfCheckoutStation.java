@@ -3,6 +3,7 @@ package org.lsmr.selfcheckout.devices;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Currency;
 import java.util.HashMap;
 import java.util.List;
@@ -12,6 +13,7 @@ import javax.sound.sampled.AudioSystem;
 
 import org.lsmr.selfcheckout.Banknote;
 import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.Money;
 
 /**
  * Simulates the overall self-checkout station.
@@ -32,7 +34,8 @@ import org.lsmr.selfcheckout.Coin;
  * In addition, these units of hardware are accessible to personnel with a key
  * to unlock the front of the station:
  * <li>one banknote storage unit, with configurable capacity;</li>
- * <li>one coin storage unit, with configurable capacity.</li>
+ * <li>one coin storage unit, with configurable capacity; and,</li>
+ * <li>one coin dispenser for each coin denomination.</li>
  * </ul>
  * </p>
  * <p>
@@ -54,6 +57,11 @@ import org.lsmr.selfcheckout.Coin;
  * tray for any rejected coins either because the coins are invalid or because
  * even the overflow storage unit is full (this is a one-directional chain of
  * devices);
+ * <li>when the coin storage unit is full, the coin validator routes each valid
+ * coin to the coin dispenser for its denomination instead, and only returns it
+ * to the coin tray if that dispenser is full too;</li>
+ * <li>each coin dispenser is connected to the coin tray, to dispense
+ * change;</li>
  * <li>the banknote input slot is connected to the banknote validator (this is a
  * <b>two</b>-directional chain of devices as an entered banknotes that are
  * rejected by the validator can be returned to the customer);</li>
@@ -91,6 +99,8 @@ public class SelfCheckoutStation {
 	public final List<BigDecimal> coinDenominations;
 	public final CoinTray coinTray;
 	public static final int COIN_TRAY_CAPACITY = 20;
+	public final Map<Long, CoinDispenser> coinDispensers; // keyed by denomination in minor units
+	public static final int COIN_DISPENSER_CAPACITY = 200;
 
 	/**
 	 * Creates a self-checkout station.
@@ -149,12 +159,21 @@ public class SelfCheckoutStation {
 		coinStorage = new CoinStorageUnit(COIN_STORAGE_CAPACITY);
 		coinTray = new CoinTray(COIN_TRAY_CAPACITY);
 
+		Map<Long, CoinDispenser> dispensers = new HashMap<>();
+		for(BigDecimal denomination : coinDenominations)
+			dispensers.put(Money.toMinorUnitsExact(denomination, currency), new CoinDispenser(COIN_DISPENSER_CAPACITY));
+		coinDispensers = Collections.unmodifiableMap(dispensers);
+
 		// Hook up everything.
 		interconnect(banknoteInput, banknoteValidator);
 		interconnect(banknoteValidator, banknoteStorage);
 
 		interconnect(coinSlot, coinValidator);
 		interconnect(coinValidator, coinTray, coinStorage);
+
+		for(BigDecimal denomination : coinDenominations)
+			interconnect(coinValidator, denomination,
+				coinDispensers.get(Money.toMinorUnitsExact(denomination, currency)), coinTray);
 	}
 
 	private BidirectionalChannel<Banknote> validatorSource;
@@ -180,4 +199,10 @@ public class SelfCheckoutStation {
 
 		validator.connect(rejectChannel, overflowChannel);
 	}
+
+	private void interconnect(CoinValidator validator, BigDecimal denomination, CoinDispenser dispenser,
+		CoinTray tray) {
+		validator.connectOverflow(denomination, new UnidirectionalChannel<Coin>(dispenser));
+		dispenser.connect(new UnidirectionalChannel<Coin>(tray));
+	}
 }
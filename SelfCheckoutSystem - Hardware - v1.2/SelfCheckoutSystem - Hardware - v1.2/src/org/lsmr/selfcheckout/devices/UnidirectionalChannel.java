@@ -38,6 +38,44 @@ public class UnidirectionalChannel<T> {
 		sink.accept(thing);
 	}
 
+	/**
+	 * Moves a range of things to the sink, in order. If the sink is a
+	 * {@link BulkAcceptor}, the whole range is handed over at once; otherwise, the
+	 * things are delivered one at a time. This method should be called by the
+	 * source device, and not by an external application.
+	 * 
+	 * @param things
+	 *            The array holding the things to transport via the channel.
+	 * @param offset
+	 *            The index of the first thing to transport.
+	 * @param length
+	 *            The number of things to transport.
+	 * @throws OverloadException
+	 *             If the sink has no space for the things.
+	 * @throws DisabledException
+	 *             If the sink is currently disabled.
+	 */
+	public void deliverAll(T[] things, int offset, int length) throws OverloadException, DisabledException {
+		if(sink instanceof BulkAcceptor)
+			((BulkAcceptor<T>)sink).acceptAll(things, offset, length);
+		else
+			for(int i = offset; i < offset + length; i++)
+				sink.accept(things[i]);
+	}
+
+	/**
+	 * Returns how many more things the sink can take. Sinks that are not
+	 * {@link BulkAcceptor}s can only promise space for one more thing at a time.
+	 * 
+	 * @return The number of things that the channel can accept.
+	 */
+	public int spaceAvailable() {
+		if(sink instanceof BulkAcceptor)
+			return ((BulkAcceptor<T>)sink).spaceAvailable();
+
+		return sink.hasSpace() ? 1 : 0;
+	}
+
 	/**
 	 * Returns whether the sink has space for at least one more thing.
 	 * 
@@ -0,0 +1,86 @@
+package org.lsmr.selfcheckout.devices;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+import org.lsmr.selfcheckout.CashTally;
+
+/**
+ * The coins or banknotes removed from a device in one unload, together with a
+ * tally of them per denomination.
+ * <p>
+ * This is a read-only view of exactly the filled portion of the device's
+ * buffer, not a copy. Devices recycle their buffers, so a view is only
+ * guaranteed to stay valid until the next unload of the same device; callers
+ * that need the contents for longer should copy them (e.g., into an
+ * {@link java.util.ArrayList}).
+ * </p>
+ *
+ * @param <T>
+ *            The type of the things unloaded.
+ */
+public final class UnloadedCash<T> extends AbstractList<T> implements RandomAccess {
+	private final T[] things;
+	private final long[] codes;
+	private final LongFunction<T> decoder;
+	private final int size;
+	private final CashTally tally;
+
+	private UnloadedCash(T[] things, long[] codes, LongFunction<T> decoder, int size, CashTally tally) {
+		this.things = things;
+		this.codes = codes;
+		this.decoder = decoder;
+		this.size = size;
+		this.tally = tally;
+	}
+
+	/**
+	 * Creates a view of things held as objects, tallying them by their cash
+	 * codes.
+	 */
+	static <T> UnloadedCash<T> ofObjects(T[] things, int size, ToLongFunction<T> coder) {
+		CashTally tally = new CashTally();
+
+		for(int i = 0; i < size; i++)
+			tally.add(coder.applyAsLong(things[i]));
+
+		return new UnloadedCash<>(things, null, null, size, tally);
+	}
+
+	/**
+	 * Creates a view of things held as cash codes, decoding each on access.
+	 */
+	static <T> UnloadedCash<T> ofCodes(long[] codes, int size, LongFunction<T> decoder) {
+		CashTally tally = new CashTally();
+
+		for(int i = 0; i < size; i++)
+			tally.add(codes[i]);
+
+		return new UnloadedCash<>(null, codes, decoder, size, tally);
+	}
+
+	/**
+	 * Gets the per-denomination tally of the things unloaded, computed during the
+	 * unload.
+	 *
+	 * @return The tally. Will never be null.
+	 */
+	public CashTally getTally() {
+		return tally;
+	}
+
+	@Override
+	public T get(int index) {
+		if(index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("index " + index + " with " + size + " unloaded");
+
+		return things != null ? things[index] : decoder.apply(codes[index]);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
@@ -40,4 +40,23 @@ public interface BanknoteStorageUnitListener extends AbstractDeviceListener {
 	 *            The storage unit where the event occurred.
 	 */
 	void banknotesUnloaded(BanknoteStorageUnit unit);
+
+	/**
+	 * Announces which banknotes have just been put into the indicated storage
+	 * unit, whether by being accepted or by being loaded. It is announced before
+	 * the corresponding "banknoteAdded", "banknotesFull" or "banknotesLoaded"
+	 * event. The default implementation ignores it.
+	 * 
+	 * @param unit
+	 *            The storage unit where the event occurred.
+	 * @param codes
+	 *            The unit's own buffer of cash codes (see
+	 *            {@link Banknote#getCode()}). Listeners must not modify it or keep
+	 *            it.
+	 * @param offset
+	 *            The index of the first banknote just stored.
+	 * @param length
+	 *            The number of banknotes just stored.
+	 */
+	default void banknotesStored(BanknoteStorageUnit unit, long[] codes, int offset, int length) {}
 }
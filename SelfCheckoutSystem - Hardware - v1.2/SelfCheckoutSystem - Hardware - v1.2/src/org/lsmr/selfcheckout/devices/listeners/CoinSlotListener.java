@@ -14,4 +14,18 @@ public interface CoinSlotListener extends AbstractDeviceListener {
 	 *             The device on which the event occurred.
 	 */
 	void coinInserted(CoinSlot slot);
+
+	/**
+	 * An event announcing that a batch of coins has been inserted at once. The
+	 * default implementation announces each coin individually.
+	 * 
+	 * @param slot
+	 *             The device on which the event occurred.
+	 * @param count
+	 *             The number of coins inserted.
+	 */
+	default void coinsInserted(CoinSlot slot, int count) {
+		for(int i = 0; i < count; i++)
+			coinInserted(slot);
+	}
 }
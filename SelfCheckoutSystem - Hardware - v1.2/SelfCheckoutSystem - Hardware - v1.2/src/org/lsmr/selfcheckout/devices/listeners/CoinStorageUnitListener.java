@@ -23,6 +23,21 @@ public interface CoinStorageUnitListener extends AbstractDeviceListener {
 	 */
 	void coinAdded(CoinStorageUnit unit);
 
+	/**
+	 * Announces that a batch of coins has been added to the indicated storage
+	 * unit at once, without filling it. The default implementation announces each
+	 * coin individually.
+	 * 
+	 * @param unit
+	 *            The storage unit where the event occurred.
+	 * @param count
+	 *            The number of coins added.
+	 */
+	default void coinsAdded(CoinStorageUnit unit, int count) {
+		for(int i = 0; i < count; i++)
+			coinAdded(unit);
+	}
+
 	/**
 	 * Announces that the indicated storage unit has been loaded with coins.
 	 * Used to simulate direct, physical loading of the unit.
@@ -40,4 +55,22 @@ public interface CoinStorageUnitListener extends AbstractDeviceListener {
 	 *            The storage unit where the event occurred.
 	 */
 	void coinsUnloaded(CoinStorageUnit unit);
+
+	/**
+	 * Announces which coins have just been put into the indicated storage unit,
+	 * whether by being accepted or by being loaded. It is announced before the
+	 * corresponding "coinAdded", "coinsAdded", "coinsFull" or "coinsLoaded" event.
+	 * The default implementation ignores it.
+	 * 
+	 * @param unit
+	 *            The storage unit where the event occurred.
+	 * @param codes
+	 *            The unit's own buffer of cash codes (see {@link Coin#getCode()}).
+	 *            Listeners must not modify it or keep it.
+	 * @param offset
+	 *            The index of the first coin just stored.
+	 * @param length
+	 *            The number of coins just stored.
+	 */
+	default void coinsStored(CoinStorageUnit unit, long[] codes, int offset, int length) {}
 }
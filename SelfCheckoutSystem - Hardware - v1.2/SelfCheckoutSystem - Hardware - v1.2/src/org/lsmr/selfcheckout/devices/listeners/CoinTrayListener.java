@@ -15,4 +15,44 @@ public interface CoinTrayListener extends AbstractDeviceListener {
 	 *            The tray where the event occurred.
 	 */
 	void coinAdded(CoinTray tray);
+
+	/**
+	 * Announces that a batch of coins has been added to the indicated tray at
+	 * once. The default implementation announces each coin individually.
+	 * 
+	 * @param tray
+	 *            The tray where the event occurred.
+	 * @param count
+	 *            The number of coins added.
+	 */
+	default void coinsAdded(CoinTray tray, int count) {
+		for(int i = 0; i < count; i++)
+			coinAdded(tray);
+	}
+
+	/**
+	 * Announces which coins have just been added to the indicated tray. It is
+	 * announced before the corresponding "coinAdded" or "coinsAdded" event. The
+	 * default implementation ignores it.
+	 * 
+	 * @param tray
+	 *            The tray where the event occurred.
+	 * @param coins
+	 *            The tray's own buffer of coins. Listeners must not modify it or
+	 *            keep it.
+	 * @param offset
+	 *            The index of the first coin just added.
+	 * @param length
+	 *            The number of coins just added.
+	 */
+	default void coinsStored(CoinTray tray, Coin[] coins, int offset, int length) {}
+
+	/**
+	 * Announces that the user has collected all the coins from the indicated
+	 * tray. The default implementation ignores it.
+	 * 
+	 * @param tray
+	 *            The tray where the event occurred.
+	 */
+	default void coinsCollected(CoinTray tray) {}
 }
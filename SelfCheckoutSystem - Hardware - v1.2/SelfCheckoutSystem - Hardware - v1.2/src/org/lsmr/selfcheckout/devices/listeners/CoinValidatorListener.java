@@ -1,6 +1,7 @@
 package org.lsmr.selfcheckout.devices.listeners;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import org.lsmr.selfcheckout.Banknote;
 import org.lsmr.selfcheckout.Coin;
@@ -29,4 +30,30 @@ public interface CoinValidatorListener extends AbstractDeviceListener {
 	 *            The device on which the event occurred.
 	 */
 	void invalidCoinDetected(CoinValidator validator);
+
+	/**
+	 * An event summarizing a batch of coins validated at once. The default
+	 * implementation announces each accepted coin, and then each returned coin,
+	 * individually.
+	 * 
+	 * @param validator
+	 *            The device on which the event occurred.
+	 * @param accepted
+	 *            The coins deemed valid and routed to storage, in the order they
+	 *            were inserted.
+	 * @param acceptedValue
+	 *            The total value of the accepted coins in the validator's own
+	 *            currency, in minor units. Accepted coins of other currencies are
+	 *            not included.
+	 * @param returned
+	 *            The number of coins routed to the tray, either because they were
+	 *            deemed invalid or because storage was full.
+	 */
+	default void coinsValidated(CoinValidator validator, List<Coin> accepted, long acceptedValue, int returned) {
+		for(Coin coin : accepted)
+			validCoinDetected(validator, coin.getValue());
+
+		for(int i = 0; i < returned; i++)
+			invalidCoinDetected(validator);
+	}
 }
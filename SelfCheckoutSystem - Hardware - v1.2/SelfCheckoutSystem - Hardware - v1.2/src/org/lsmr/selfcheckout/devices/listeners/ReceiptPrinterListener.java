@@ -37,4 +37,17 @@ public interface ReceiptPrinterListener extends AbstractDeviceListener {
 	 *            The device from which the event emanated.
 	 */
 	void inkAdded(ReceiptPrinter printer);
+
+	/**
+	 * Announces that the indicated printer has cut a receipt, and how much ink and
+	 * paper printing it took. The default implementation ignores it.
+	 * 
+	 * @param printer
+	 *            The device from which the event emanated.
+	 * @param ink
+	 *            The characters-worth of ink used since the last cut.
+	 * @param lines
+	 *            The lines-worth of paper used since the last cut.
+	 */
+	default void paperCut(ReceiptPrinter printer, int ink, int lines) {}
 }
@@ -1,11 +1,28 @@
 package org.lsmr.selfcheckout.external;
 
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Currency;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
 
+import org.lsmr.selfcheckout.Money;
 import org.lsmr.selfcheckout.devices.SimulationException;
 
 /**
@@ -15,12 +32,61 @@ import org.lsmr.selfcheckout.devices.SimulationException;
  * This class uses a transactional model that is simpler than the real thing: to
  * debit a purchase, a hold is first placed on the amount and then the
  * transaction is posted. It does not quite work like that in the real world.
+ * </p>
+ * <p>
+ * An issuer is safe to share between threads (e.g., all the stations of a
+ * store). Cards are found through a concurrent map, and each card's record is
+ * locked only while it is being read or changed, so operations on different
+ * cards never wait for one another.
+ * </p>
+ * <p>
+ * Balances and holds are kept as whole numbers of minor units (e.g., cents),
+ * and each card keeps a running total of its outstanding holds, so authorizing,
+ * releasing and posting take constant time however many holds a card has.
+ * Amounts with more decimal places than the issuer's currency are rounded
+ * half-up.
+ * </p>
+ * <p>
+ * A hold can be given a time to live, after which it is released if it has
+ * been neither posted nor released, so that abandoned payments don't tie up
+ * credit forever. Expiry is driven by calling {@link #expireHolds()}
+ * periodically; holds are kept on a timing wheel, so each call only touches
+ * the holds that are due.
+ * </p>
+ * <p>
+ * An issuer can optionally be made durable, keeping a write-ahead log of every
+ * change in a directory and compact snapshots of its whole state, so that it
+ * picks up where it left off when it is created again on the same directory.
+ * Each change is on disk before the call that made it returns.
+ * </p>
+ * <p>
+ * Authorization attempts can be limited per card and per station (see
+ * {@link #setVelocityLimits(VelocityLimiter, VelocityLimiter)}). The limits are
+ * checked before the card is even looked up, so rapid repeated attempts are
+ * turned away without ever contending for the card's lock.
+ * </p>
  */
 public class CardIssuer {
 	private String name;
+	private final int scale;
+	private final LongSupplier clock;
+
+	private static final long EXPIRY_TICK = 100; // in milliseconds
+	private final TimingWheel<CardRecord> expiries;
+	private final LongAdder expiredCount = new LongAdder();
+	private final LongAdder releasedCount = new LongAdder();
+	private final LongAdder settledCount = new LongAdder();
+
+	private static final int CHECKPOINT_INTERVAL = 100_000; // log records between snapshots
+	private final Ledger ledger; // null unless durable
+	private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+	private volatile VelocityLimiter cardLimiter, stationLimiter; // null unless limited
+	private final LongAdder throttledCount = new LongAdder();
 
 	/**
-	 * Create a card provider.
+	 * Create a card provider, whose amounts are in a currency with two decimal
+	 * places (e.g., dollars and cents).
 	 * 
 	 * @param name
 	 *            The company's name.
@@ -28,33 +94,141 @@ public class CardIssuer {
 	 *             If name is null.
 	 */
 	public CardIssuer(String name) {
+		this(name, 2, System::currentTimeMillis, null);
+	}
+
+	/**
+	 * Create a card provider, whose amounts are in the indicated currency.
+	 * 
+	 * @param name
+	 *            The company's name.
+	 * @param currency
+	 *            The currency of the amounts on its cards.
+	 * @throws SimulationException
+	 *             If either argument is null.
+	 */
+	public CardIssuer(String name, Currency currency) {
+		this(name, Money.scale(currency), System::currentTimeMillis, null);
+	}
+
+	/**
+	 * Create a card provider, whose amounts are in the indicated currency and
+	 * whose holds expire by the indicated clock.
+	 * 
+	 * @param name
+	 *            The company's name.
+	 * @param currency
+	 *            The currency of the amounts on its cards.
+	 * @param clock
+	 *            The source of the current time, in milliseconds.
+	 * @throws SimulationException
+	 *             If any argument is null.
+	 */
+	public CardIssuer(String name, Currency currency, LongSupplier clock) {
+		this(name, Money.scale(currency), clock, null);
+	}
+
+	/**
+	 * Create a durable card provider, whose state is kept in the indicated
+	 * directory. If the directory already holds the state of an earlier issuer,
+	 * it is recovered, up to the last change that was on disk. Once a change
+	 * cannot be written, the issuer takes no more: every later change throws.
+	 * 
+	 * @param name
+	 *            The company's name.
+	 * @param currency
+	 *            The currency of the amounts on its cards.
+	 * @param clock
+	 *            The source of the current time, in milliseconds.
+	 * @param directory
+	 *            The directory to keep the state in. It is created if need be.
+	 * @throws SimulationException
+	 *             If any argument is null.
+	 * @throws SimulationException
+	 *             If the state cannot be read or written.
+	 */
+	public CardIssuer(String name, Currency currency, LongSupplier clock, File directory) {
+		this(name, Money.scale(currency), clock, directory);
+	}
+
+	private CardIssuer(String name, int scale, LongSupplier clock, File directory) {
 		if(name == null)
 			throw new SimulationException(new NullPointerException("name is null"));
 
+		if(clock == null)
+			throw new SimulationException(new NullPointerException("clock is null"));
+
 		this.name = name;
+		this.scale = scale;
+		this.clock = clock;
+		this.expiries = new TimingWheel<>(EXPIRY_TICK, clock.getAsLong());
+
+		for(int i = 0; i < HOLD_SHARDS; i++)
+			holdSequences[i] = new AtomicInteger();
+
+		if(directory != null) {
+			ledger = new Ledger(directory, CHECKPOINT_INTERVAL);
+			ledger.recover(this::readSnapshot, this::replay);
+		}
+		else
+			ledger = null;
+	}
+
+	private long toMinorUnits(BigDecimal amount) {
+		if(amount == null)
+			throw new SimulationException(new NullPointerException("amount is null"));
+
+		try {
+			return amount.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+		}
+		catch(ArithmeticException e) {
+			throw new SimulationException(e);
+		}
 	}
 
 	public boolean block(String cardNumber) {
-		CardRecord cr = database.get(cardNumber);
+		CardRecord cr = find(cardNumber);
 
 		if(cr == null)
 			return false;
 
-		synchronized(cr) {
-			cr.isBlocked = true;
+		long sequence = 0;
+		lockForChange();
+
+		try {
+			synchronized(cr) {
+				cr.isBlocked = true;
+
+				if(ledger != null)
+					sequence = ledger.append(Ledger.BLOCK, cr.number, 0, 0, 0);
+			}
+		}
+		finally {
+			unlockForChange(sequence);
 		}
 
 		return true;
 	}
 
 	public boolean unblock(String cardNumber) {
-		CardRecord cr = database.get(cardNumber);
+		CardRecord cr = find(cardNumber);
 
 		if(cr == null)
 			return false;
 
-		synchronized(cr) {
-			cr.isBlocked = false;
+		long sequence = 0;
+		lockForChange();
+
+		try {
+			synchronized(cr) {
+				cr.isBlocked = false;
+
+				if(ledger != null)
+					sequence = ledger.append(Ledger.UNBLOCK, cr.number, 0, 0, 0);
+			}
+		}
+		finally {
+			unlockForChange(sequence);
 		}
 
 		return true;
@@ -66,20 +240,107 @@ public class CardIssuer {
 		String cardholder;
 		Calendar expiry;
 		String ccv;
-		BigDecimal available;
-		Map<Integer, BigDecimal> holds = new HashMap<>();
+		long available; // in minor units
+		final int id = nextRecordId.getAndIncrement() & Integer.MAX_VALUE;
+		final int shard = id & (HOLD_SHARDS - 1);
+		final HoldTable holds = new HoldTable();
+		HoldTable deadlines; // of the holds that expire, created when first needed
+		long held = 0; // the sum of holds, in minor units
+
+		void hold(int holdNumber, long amount, long deadline) {
+			holds.put(holdNumber, amount);
+			held += amount;
+
+			if(deadline > 0) {
+				if(deadlines == null)
+					deadlines = new HoldTable();
+
+				deadlines.put(holdNumber, deadline);
+				scheduleExpiry(this, holdNumber, deadline);
+			}
+		}
+
+		long release(int holdNumber) {
+			long amount = holds.remove(holdNumber);
+
+			if(amount != HoldTable.ABSENT) {
+				held -= amount;
+
+				if(deadlines != null)
+					deadlines.remove(holdNumber);
+			}
+
+			return amount;
+		}
+	}
+
+	private void scheduleExpiry(CardRecord cr, int holdNumber, long deadline) {
+		synchronized(expiries) {
+			expiries.schedule(cr, holdNumber, deadline);
+		}
+	}
+
+	// Hold numbers are allocated from one of several sequences, chosen by the
+	// card, so that threads working on different cards rarely contend; the low
+	// bits of a hold number name its sequence, so numbers never collide
+	private static final int HOLD_SHARDS = 16;
+	private static final int HOLD_SHARD_BITS = 4;
+	private final AtomicInteger nextRecordId = new AtomicInteger();
+	private final AtomicInteger[] holdSequences = new AtomicInteger[HOLD_SHARDS];
+
+	private int nextHoldNumber(CardRecord cr) {
+		int holdNumber;
+
+		// A sequence only wraps after 2^27 holds, by which time the few numbers
+		// still outstanding are simply skipped
+		do
+			holdNumber = (holdSequences[cr.shard].getAndIncrement() << HOLD_SHARD_BITS | cr.shard) & Integer.MAX_VALUE;
+		while(cr.holds.containsKey(holdNumber));
+
+		return holdNumber;
+	}
+
+	// Cards whose numbers can be encoded (see encode) are keyed by their codes;
+	// the rare others are keyed by their numbers
+	private final ConcurrentHashMap<Long, CardRecord> database = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, CardRecord> unencodedDatabase = new ConcurrentHashMap<>();
+
+	/**
+	 * Encodes a card number of up to 18 decimal digits as a long, by reading it
+	 * with a leading 1 so that leading zeros are kept (e.g., "0042" becomes
+	 * 10042). Distinct numbers always have distinct codes.
+	 * 
+	 * @return The code, or -1 if the number is not made of 1 to 18 decimal
+	 *             digits.
+	 */
+	static long encode(String number) {
+		int length = number.length();
+
+		if(length < 1 || length > 18)
+			return -1;
 
-		synchronized BigDecimal holdsTotal() {
-			BigDecimal total = BigDecimal.ZERO;
+		long code = 1;
 
-			for(BigDecimal hold : holds.values())
-				total = total.add(hold);
+		for(int i = 0; i < length; i++) {
+			char c = number.charAt(i);
 
-			return total;
+			if(c < '0' || c > '9')
+				return -1;
+
+			code = code * 10 + (c - '0');
 		}
+
+		return code;
 	}
 
-	private HashMap<String, CardRecord> database = new HashMap<>();
+	private CardRecord find(String number) {
+		if(number == null)
+			return null;
+
+		long code = encode(number);
+
+		return code >= 0 ? database.get(code) : unencodedDatabase.get(number);
+	}
 
 	private boolean isValidCardNumber(String number) {
 		if(number == null)
@@ -164,20 +425,38 @@ public class CardIssuer {
 		if(!isValidDate(expiry))
 			throw new SimulationException(new IllegalArgumentException("The expiry date is not valid"));
 
-		if(database.containsKey(number))
-			throw new SimulationException("The number " + number + " is already in use.");
-
 		CardRecord cr = new CardRecord();
 		cr.number = number;
 		cr.cardholder = cardholder;
 		cr.expiry = expiry;
 		cr.ccv = ccv;
-		cr.available = amount;
+		cr.available = toMinorUnits(amount);
+
+		long sequence = 0;
+		lockForChange();
+
+		try {
+			// Locked before it is published, so that no change to the card can be
+			// logged before the card itself
+			synchronized(cr) {
+				if(!publish(cr))
+					throw new SimulationException("The number " + number + " is already in use.");
 
-		database.put(number, cr);
+				if(ledger != null)
+					sequence = ledger.appendCard(number, cardholder, expiry.getTimeInMillis(), ccv, cr.available);
+			}
+		}
+		finally {
+			unlockForChange(sequence);
+		}
 	}
 
-	private static final ThreadLocalRandom random = ThreadLocalRandom.current();
+	private boolean publish(CardRecord cr) {
+		long code = encode(cr.number);
+		CardRecord existing = code >= 0 ? database.putIfAbsent(code, cr) : unencodedDatabase.putIfAbsent(cr.number, cr);
+
+		return existing == null;
+	}
 
 	/**
 	 * Authorizes a hold on the indicated amount for the card with the indicated
@@ -189,32 +468,148 @@ public class CardIssuer {
 	 * @param amount
 	 *            The amount to hold.
 	 * @return -1 if the hold failed; otherwise, a non-negative integer representing
-	 *             a code to reference the hold.
+	 *             a code to reference the hold. Codes are allocated in sequence,
+	 *             and are never shared by two outstanding holds on the same card.
+	 * @throws SimulationException
+	 *             If amount is null.
 	 */
 	public int authorizeHold(String cardNumber, BigDecimal amount) {
-		CardRecord cr = database.get(cardNumber);
+		return authorize(cardNumber, amount, 0);
+	}
+
+	/**
+	 * Authorizes a hold on the indicated amount for the card with the indicated
+	 * number, which expires after the indicated time. If successful, the hold is
+	 * kept until released explicitly, the transaction is completed, or it
+	 * expires, whichever comes first.
+	 * 
+	 * @param cardNumber
+	 *            The number of the card on which to place a hold.
+	 * @param amount
+	 *            The amount to hold.
+	 * @param timeToLive
+	 *            How long the hold lasts, in milliseconds. Must be positive. It
+	 *            is released by the first call to {@link #expireHolds()} after
+	 *            that time, give or take a tenth of a second.
+	 * @return -1 if the hold failed; otherwise, a non-negative integer representing
+	 *             a code to reference the hold.
+	 * @throws SimulationException
+	 *             If amount is null.
+	 * @throws SimulationException
+	 *             If timeToLive is not positive.
+	 */
+	public int authorizeHold(String cardNumber, BigDecimal amount, long timeToLive) {
+		if(timeToLive <= 0)
+			throw new SimulationException(new IllegalArgumentException("timeToLive must be positive: " + timeToLive));
+
+		return authorize(cardNumber, amount, timeToLive);
+	}
+
+	/**
+	 * Authorizes a hold on the indicated amount for the card with the indicated
+	 * number, on behalf of the indicated station, which counts against both the
+	 * card's and the station's velocity limits.
+	 * 
+	 * @param cardNumber
+	 *            The number of the card on which to place a hold.
+	 * @param amount
+	 *            The amount to hold.
+	 * @param timeToLive
+	 *            How long the hold lasts, in milliseconds, or 0 if it lasts until
+	 *            it is released or the transaction is completed.
+	 * @param station
+	 *            The identity of the station asking for the hold.
+	 * @return -1 if the hold failed, including because either limit was reached;
+	 *             otherwise, a non-negative integer representing a code to
+	 *             reference the hold.
+	 * @throws SimulationException
+	 *             If amount or station is null.
+	 * @throws SimulationException
+	 *             If timeToLive is negative.
+	 */
+	public int authorizeHold(String cardNumber, BigDecimal amount, long timeToLive, String station) {
+		if(timeToLive < 0)
+			throw new SimulationException(new IllegalArgumentException("timeToLive must not be negative: " + timeToLive));
+
+		if(station == null)
+			throw new SimulationException(new NullPointerException("station is null"));
+
+		VelocityLimiter limiter = stationLimiter;
+
+		if(limiter != null && !limiter.tryAcquire(station)) {
+			throttledCount.increment();
+			return -1;
+		}
+
+		return authorize(cardNumber, amount, timeToLive);
+	}
+
+	/**
+	 * Limits how often holds may be authorized. Attempts beyond either limit are
+	 * declined without looking at the card, and counted (see
+	 * {@link #getThrottledCount()}).
+	 * 
+	 * @param perCard
+	 *            The limit per card number, or null for none. Applies to every
+	 *            attempt, including on numbers of no known card.
+	 * @param perStation
+	 *            The limit per station, or null for none. Applies only to
+	 *            attempts made through
+	 *            {@link #authorizeHold(String, BigDecimal, long, String)}.
+	 */
+	public void setVelocityLimits(VelocityLimiter perCard, VelocityLimiter perStation) {
+		cardLimiter = perCard;
+		stationLimiter = perStation;
+	}
+
+	/**
+	 * Gets the number of authorization attempts declined for exceeding a velocity
+	 * limit.
+	 * 
+	 * @return The number of attempts throttled.
+	 */
+	public long getThrottledCount() {
+		return throttledCount.sum();
+	}
+
+	private int authorize(String cardNumber, BigDecimal amount, long timeToLive) {
+		long minorUnits = toMinorUnits(amount);
+		VelocityLimiter limiter = cardLimiter;
+
+		if(limiter != null && cardNumber != null && !limiter.tryAcquire(cardNumber)) {
+			throttledCount.increment();
+			return -1;
+		}
+
+		CardRecord cr = find(cardNumber);
 
 		if(cr == null)
 			return -1;
 
-		synchronized(cr) {
-			if(cr.isBlocked)
-				return -1;
-				
-			if(cr.available.subtract(cr.holdsTotal()).compareTo(amount) >= 0) {
-				Integer holdNumber;
-
-				while(true) {
-					holdNumber = random.nextInt(0, Integer.MAX_VALUE);
-					if(!cr.holds.containsKey(holdNumber))
-						break;
-				}
+		long sequence = 0;
+		lockForChange();
+
+		try {
+			synchronized(cr) {
+				if(cr.isBlocked)
+					return -1;
 
-				cr.holds.put(holdNumber, amount);
+				if(cr.available - cr.held >= minorUnits) {
+					int holdNumber = nextHoldNumber(cr);
+					long deadline = timeToLive > 0 ? clock.getAsLong() + timeToLive : 0;
 
-				return holdNumber;
+					cr.hold(holdNumber, minorUnits, deadline);
+
+					if(ledger != null)
+						sequence = ledger.append(Ledger.HOLD, cr.number, holdNumber, minorUnits, deadline);
+
+					return holdNumber;
+				}
 			}
 		}
+		finally {
+			unlockForChange(sequence);
+		}
 
 		return -1;
 	}
@@ -223,48 +618,527 @@ public class CardIssuer {
 		if(holdNumber < 0)
 			return false;
 
-		CardRecord cr = database.get(cardNumber);
+		CardRecord cr = find(cardNumber);
 
 		if(cr == null)
 			return false;
 
-		synchronized(cr) {
-			if(cr.isBlocked)
-				return false;
+		long sequence = 0;
+		lockForChange();
 
-			cr.holds.remove(holdNumber);
+		try {
+			synchronized(cr) {
+				if(cr.isBlocked)
+					return false;
+
+				if(cr.release(holdNumber) != HoldTable.ABSENT) {
+					releasedCount.increment();
+
+					if(ledger != null)
+						sequence = ledger.append(Ledger.RELEASE, cr.number, holdNumber, 0, 0);
+				}
+			}
+		}
+		finally {
+			unlockForChange(sequence);
 		}
 
 		return true;
 	}
 
+	private static final class DueHolds implements ObjIntConsumer<CardRecord> {
+		CardRecord[] records = new CardRecord[16];
+		int[] holdNumbers = new int[16];
+		int size = 0;
+
+		@Override
+		public void accept(CardRecord cr, int holdNumber) {
+			if(size == records.length) {
+				records = Arrays.copyOf(records, size * 2);
+				holdNumbers = Arrays.copyOf(holdNumbers, size * 2);
+			}
+
+			records[size] = cr;
+			holdNumbers[size++] = holdNumber;
+		}
+	}
+
+	/**
+	 * Gets the number of holds that have expired.
+	 * 
+	 * @return The number of holds released by {@link #expireHolds()}.
+	 */
+	public long getExpiredHoldCount() {
+		return expiredCount.sum();
+	}
+
+	/**
+	 * Gets the number of holds that have been released explicitly.
+	 * 
+	 * @return The number of holds released by
+	 *             {@link #releaseHold(String, int)}.
+	 */
+	public long getReleasedHoldCount() {
+		return releasedCount.sum();
+	}
+
+	/**
+	 * Gets the number of holds that have been settled, i.e., whose transactions
+	 * have been posted.
+	 * 
+	 * @return The number of transactions posted, one at a time or in batches,
+	 *             since this issuer was created.
+	 */
+	public long getSettledHoldCount() {
+		return settledCount.sum();
+	}
+
+	/**
+	 * Gets the share of the holds closed by expiring or by settling that
+	 * expired; a high ratio means many payments are being abandoned.
+	 * 
+	 * @return The ratio, from 0 to 1, or 0 if no hold has expired or settled.
+	 */
+	public double getExpiredRatio() {
+		long expired = expiredCount.sum(), settled = settledCount.sum();
+
+		return expired + settled == 0 ? 0 : (double)expired / (expired + settled);
+	}
+
+	/**
+	 * Releases every hold whose time to live has passed. Holds that have already
+	 * been posted or released are skipped. Holds on blocked cards expire too.
+	 * 
+	 * @return The number of holds released.
+	 */
+	public int expireHolds() {
+		DueHolds due = new DueHolds();
+
+		synchronized(expiries) {
+			expiries.advance(clock.getAsLong(), due);
+		}
+
+		// The records are locked only after the wheel is released, as holds are
+		// scheduled on the wheel while their record is locked
+		int expired = 0;
+		long sequence = 0;
+		lockForChange();
+
+		try {
+			for(int i = 0; i < due.size; i++) {
+				CardRecord cr = due.records[i];
+
+				synchronized(cr) {
+					if(cr.release(due.holdNumbers[i]) != HoldTable.ABSENT) {
+						expired++;
+
+						if(ledger != null)
+							sequence = ledger.append(Ledger.RELEASE, cr.number, due.holdNumbers[i], 0, 0);
+					}
+				}
+			}
+		}
+		finally {
+			unlockForChange(sequence);
+		}
+
+		expiredCount.add(expired);
+
+		return expired;
+	}
+
 	public boolean postTransaction(String cardNumber, int holdNumber, BigDecimal actualAmount) {
 		if(holdNumber < 0)
 			return false;
 
-		CardRecord cr = database.get(cardNumber);
+		long minorUnits = toMinorUnits(actualAmount);
+
+		CardRecord cr = find(cardNumber);
 
 		if(cr == null)
 			return false;
 
-		synchronized(cr) {
-			if(cr.isBlocked)
-				return false;
-			
-			BigDecimal heldAmount = cr.holds.get(holdNumber);
-
-			if(heldAmount == null)
-				return false;
-			
-			if(heldAmount.compareTo(actualAmount) >= 0) {
-				cr.available = cr.available.subtract(actualAmount);
-				cr.holds.remove(holdNumber);
+		long sequence = 0;
+		lockForChange();
+
+		try {
+			synchronized(cr) {
+				sequence = logPost(cr, holdNumber, minorUnits);
+				if(!post(cr, holdNumber, minorUnits))
+					return false;
+
+				settledCount.increment();
 				return true;
 			}
-			else {
-				cr.holds.remove(holdNumber);
-				return false;
+		}
+		finally {
+			unlockForChange(sequence);
+		}
+	}
+
+	// The caller must hold the record's lock; logs the post only if it will
+	// change the card
+	private long logPost(CardRecord cr, int holdNumber, long minorUnits) {
+		if(ledger == null || cr.isBlocked || !cr.holds.containsKey(holdNumber))
+			return 0;
+
+		return ledger.append(Ledger.POST, cr.number, holdNumber, minorUnits, 0);
+	}
+
+	// The caller must hold the record's lock
+	private boolean post(CardRecord cr, int holdNumber, long minorUnits) {
+		if(cr.isBlocked || holdNumber < 0)
+			return false;
+
+		long heldAmount = cr.release(holdNumber);
+
+		if(heldAmount == HoldTable.ABSENT)
+			return false;
+
+		if(heldAmount >= minorUnits) {
+			cr.available -= minorUnits;
+			return true;
+		}
+		else
+			return false;
+	}
+
+	/**
+	 * Posts a batch of transactions, as at the end of the day. Each transaction i
+	 * is posted against hold holdNumbers[i] on card cardNumbers[i] for
+	 * actualAmounts[i], exactly as by
+	 * {@link #postTransaction(String, int, BigDecimal)}. The transactions are
+	 * grouped by card, each card's record is locked once for all of its
+	 * transactions (which are posted in their order in the batch), and the
+	 * groups are spread over the common fork-join pool.
+	 * 
+	 * @param cardNumbers
+	 *            The card number of each transaction.
+	 * @param holdNumbers
+	 *            The hold number of each transaction.
+	 * @param actualAmounts
+	 *            The amount of each transaction.
+	 * @return A bitmap with bit i set if transaction i was posted.
+	 * @throws SimulationException
+	 *             If any array is null, or the arrays differ in length.
+	 * @throws SimulationException
+	 *             If any amount is null.
+	 */
+	public BitSet settle(String[] cardNumbers, int[] holdNumbers, BigDecimal[] actualAmounts) {
+		if(cardNumbers == null || holdNumbers == null || actualAmounts == null)
+			throw new SimulationException(new NullPointerException("No argument may be null."));
+
+		int n = cardNumbers.length;
+
+		if(holdNumbers.length != n || actualAmounts.length != n)
+			throw new SimulationException(new IllegalArgumentException("The arrays must have the same length."));
+
+		// Find every card and convert every amount once, then sort the
+		// transactions by card (and by position within each card)
+		CardRecord[] records = new CardRecord[n];
+		long[] amounts = new long[n];
+
+		IntStream.range(0, n).parallel().forEach(i -> {
+			amounts[i] = toMinorUnits(actualAmounts[i]);
+			records[i] = find(cardNumbers[i]);
+		});
+
+		long[] order = new long[n];
+		int found = 0;
+
+		for(int i = 0; i < n; i++)
+			if(records[i] != null)
+				order[found++] = (long)records[i].id << 32 | i;
+
+		order = Arrays.copyOf(order, found);
+		Arrays.parallelSort(order);
+
+		AtomicLongArray posted = new AtomicLongArray((n + 63) >>> 6);
+		AtomicLong sequence = new AtomicLong();
+		lockForChange();
+
+		try {
+			ForkJoinPool.commonPool()
+				.invoke(new Settlement(order, 0, found, records, holdNumbers, amounts, posted, sequence));
+		}
+		finally {
+			// The whole batch is committed together
+			unlockForChange(sequence.get());
+		}
+
+		long[] words = new long[posted.length()];
+
+		for(int i = 0; i < words.length; i++)
+			words[i] = posted.get(i);
+
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * Posts a range of a sorted batch, splitting it between cards until it is
+	 * small.
+	 */
+	private final class Settlement extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private static final int THRESHOLD = 4096;
+
+		private final long[] order;
+		private final int from, to;
+		private final CardRecord[] records;
+		private final int[] holdNumbers;
+		private final long[] amounts;
+		private final AtomicLongArray posted;
+		private final AtomicLong sequence;
+
+		Settlement(long[] order, int from, int to, CardRecord[] records, int[] holdNumbers, long[] amounts,
+			AtomicLongArray posted, AtomicLong sequence) {
+			this.order = order;
+			this.from = from;
+			this.to = to;
+			this.records = records;
+			this.holdNumbers = holdNumbers;
+			this.amounts = amounts;
+			this.posted = posted;
+			this.sequence = sequence;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > THRESHOLD) {
+				// Split at a change of card, so that each card is locked by one task
+				int middle = (from + to) >>> 1;
+				int card = (int)(order[middle] >>> 32);
+
+				while(middle > from && (int)(order[middle - 1] >>> 32) == card)
+					middle--;
+
+				if(middle == from) {
+					middle = (from + to) >>> 1;
+
+					while(middle < to && (int)(order[middle] >>> 32) == card)
+						middle++;
+				}
+
+				if(middle > from && middle < to) {
+					invokeAll(new Settlement(order, from, middle, records, holdNumbers, amounts, posted, sequence),
+						new Settlement(order, middle, to, records, holdNumbers, amounts, posted, sequence));
+					return;
+				}
+			}
+
+			for(int start = from, end; start < to; start = end) {
+				CardRecord cr = records[(int)order[start]];
+				end = start + 1;
+
+				while(end < to && records[(int)order[end]] == cr)
+					end++;
+
+				synchronized(cr) {
+					for(int k = start; k < end; k++) {
+						int i = (int)order[k];
+						long logged = logPost(cr, holdNumbers[i], amounts[i]);
+
+						if(logged > 0)
+							sequence.accumulateAndGet(logged, Math::max);
+
+						if(post(cr, holdNumbers[i], amounts[i])) {
+							settledCount.increment();
+							set(i);
+						}
+					}
+				}
 			}
 		}
+
+		private void set(int i) {
+			int word = i >>> 6;
+			long bit = 1L << i;
+			long current;
+
+			do
+				current = posted.get(word);
+			while(!posted.compareAndSet(word, current, current | bit));
+		}
+	}
+
+	// Changes are made under the read lock, so that a checkpoint (under the
+	// write lock) sees no change half made; none is made once the ledger failed
+	private void lockForChange() {
+		if(ledger == null)
+			return;
+
+		checkpointLock.readLock().lock();
+
+		try {
+			ledger.checkUsable();
+		}
+		catch(SimulationException e) {
+			checkpointLock.readLock().unlock();
+			throw e;
+		}
+	}
+
+	// Waits until the change with the indicated sequence number, if any, is on
+	// disk, and takes a checkpoint if one is due
+	private void unlockForChange(long sequence) {
+		if(ledger == null)
+			return;
+
+		checkpointLock.readLock().unlock();
+
+		if(sequence > 0) {
+			ledger.sync(sequence);
+
+			if(ledger.isCheckpointDue())
+				checkpoint(true);
+		}
+	}
+
+	/**
+	 * Writes a snapshot of every card and hold and starts a new, empty log, so
+	 * that recovery only needs to replay what changes after this. Changes wait
+	 * until the snapshot is written. Durable issuers do this by themselves every
+	 * 100,000 changes; others ignore it.
+	 * 
+	 * @throws SimulationException
+	 *             If the snapshot cannot be written.
+	 */
+	public void checkpoint() {
+		if(ledger != null)
+			checkpoint(false);
+	}
+
+	private void checkpoint(boolean onlyIfDue) {
+		checkpointLock.writeLock().lock();
+
+		try {
+			// Another thread may have taken it while this one waited
+			if(!onlyIfDue || ledger.isCheckpointDue())
+				ledger.checkpoint(this::writeSnapshot);
+		}
+		finally {
+			checkpointLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes out any changes not yet on disk and closes the log. A durable issuer
+	 * must not be used after it is closed; others ignore this.
+	 * 
+	 * @throws SimulationException
+	 *             If the log cannot be written.
+	 */
+	public void close() {
+		if(ledger == null)
+			return;
+
+		checkpointLock.writeLock().lock();
+
+		try {
+			ledger.close();
+		}
+		finally {
+			checkpointLock.writeLock().unlock();
+		}
+	}
+
+	private void writeSnapshot(DataOutputStream out) throws IOException {
+		out.writeInt(database.size() + unencodedDatabase.size());
+
+		for(CardRecord cr : database.values())
+			writeCard(cr, out);
+
+		for(CardRecord cr : unencodedDatabase.values())
+			writeCard(cr, out);
+	}
+
+	private static void writeCard(CardRecord cr, DataOutputStream out) throws IOException {
+		out.writeUTF(cr.number);
+		out.writeUTF(cr.cardholder);
+		out.writeLong(cr.expiry.getTimeInMillis());
+		out.writeUTF(cr.ccv);
+		out.writeLong(cr.available);
+		out.writeBoolean(cr.isBlocked);
+		out.writeInt(cr.holds.size());
+
+		cr.holds.forEach((holdNumber, amount) -> {
+			out.writeInt(holdNumber);
+			out.writeLong(amount);
+			out.writeLong(cr.deadlines == null ? 0 : Math.max(0, cr.deadlines.get(holdNumber)));
+		});
+	}
+
+	private void readSnapshot(DataInput in) throws IOException {
+		for(int cards = in.readInt(); cards > 0; cards--) {
+			CardRecord cr = readCard(in);
+			cr.isBlocked = in.readBoolean();
+
+			for(int holds = in.readInt(); holds > 0; holds--)
+				recoverHold(cr, in.readInt(), in.readLong(), in.readLong());
+		}
+	}
+
+	private CardRecord readCard(DataInput in) throws IOException {
+		CardRecord cr = new CardRecord();
+		cr.number = in.readUTF();
+		cr.cardholder = in.readUTF();
+		cr.expiry = Calendar.getInstance();
+		cr.expiry.setTimeInMillis(in.readLong());
+		cr.ccv = in.readUTF();
+		cr.available = in.readLong();
+
+		if(!publish(cr))
+			throw new IOException("The number " + cr.number + " is recorded twice.");
+
+		return cr;
+	}
+
+	private void recoverHold(CardRecord cr, int holdNumber, long amount, long deadline) {
+		cr.hold(holdNumber, amount, deadline);
+
+		// New hold numbers from the same sequence must come after this one
+		AtomicInteger sequence = holdSequences[holdNumber & (HOLD_SHARDS - 1)];
+		int next = (holdNumber >>> HOLD_SHARD_BITS) + 1;
+		sequence.accumulateAndGet(next, Math::max);
+	}
+
+	// Replays a log record; the changes it records were all checked when they
+	// were first made
+	private void replay(DataInput in) throws IOException {
+		byte op = in.readByte();
+
+		if(op == Ledger.ADD_CARD) {
+			readCard(in);
+			return;
+		}
+
+		String number = in.readUTF();
+		int holdNumber = in.readInt();
+		long amount = in.readLong();
+		long deadline = in.readLong();
+		CardRecord cr = find(number);
+
+		if(cr == null)
+			throw new IOException("The log changes the unknown card " + number + ".");
+
+		switch(op) {
+		case Ledger.HOLD:
+			recoverHold(cr, holdNumber, amount, deadline);
+			break;
+		case Ledger.RELEASE:
+			cr.release(holdNumber);
+			break;
+		case Ledger.POST:
+			post(cr, holdNumber, amount);
+			break;
+		case Ledger.BLOCK:
+			cr.isBlocked = true;
+			break;
+		case Ledger.UNBLOCK:
+			cr.isBlocked = false;
+			break;
+		default:
+			throw new IOException("Unknown log record " + op + ".");
+		}
 	}
 }
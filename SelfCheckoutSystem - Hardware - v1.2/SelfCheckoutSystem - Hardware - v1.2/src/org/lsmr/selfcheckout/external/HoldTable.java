@@ -0,0 +1,142 @@
+package org.lsmr.selfcheckout.external;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The outstanding holds on one card: a map from non-negative hold numbers to
+ * amounts in minor units, held in primitive arrays with open addressing so that
+ * neither keys nor values are boxed. Not thread-safe; callers lock the card's
+ * record.
+ */
+final class HoldTable {
+	/**
+	 * Returned by {@link #get(int)} and {@link #remove(int)} when there is no such
+	 * hold.
+	 */
+	static final long ABSENT = Long.MIN_VALUE;
+
+	private static final int EMPTY = -1;
+
+	private int[] keys = newKeys(8);
+	private long[] values = new long[8];
+	private int size = 0;
+
+	private static int[] newKeys(int capacity) {
+		int[] keys = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		return keys;
+	}
+
+	private static int home(int key, int mask) {
+		int h = key * 0x9E3779B9;
+		return (h ^ h >>> 16) & mask;
+	}
+
+	private int indexOf(int key) {
+		int mask = keys.length - 1;
+		int i = home(key, mask);
+
+		while(keys[i] != EMPTY && keys[i] != key)
+			i = (i + 1) & mask;
+
+		return i;
+	}
+
+	/**
+	 * Visits a hold.
+	 */
+	interface Visitor {
+		void visit(int key, long value) throws IOException;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean containsKey(int key) {
+		return keys[indexOf(key)] == key;
+	}
+
+	long get(int key) {
+		int i = indexOf(key);
+		return keys[i] == key ? values[i] : ABSENT;
+	}
+
+	/**
+	 * Adds a hold, replacing any with the same number.
+	 */
+	void put(int key, long value) {
+		int i = indexOf(key);
+
+		if(keys[i] != key) {
+			if((size + 1) * 4 > keys.length * 3) {
+				grow();
+				i = indexOf(key);
+			}
+
+			keys[i] = key;
+			size++;
+		}
+
+		values[i] = value;
+	}
+
+	/**
+	 * Removes a hold.
+	 *
+	 * @return The amount of the hold, or {@link #ABSENT} if there was no such hold.
+	 */
+	long remove(int key) {
+		int mask = keys.length - 1;
+		int i = indexOf(key);
+
+		if(keys[i] != key)
+			return ABSENT;
+
+		long value = values[i];
+		size--;
+
+		// Shift later entries of the same probe run back into the gap, so that no
+		// tombstones are needed
+		int gap = i;
+
+		for(int j = (gap + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+			int home = home(keys[j], mask);
+
+			if(((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+
+		keys[gap] = EMPTY;
+
+		return value;
+	}
+
+	/**
+	 * Visits every hold, in no particular order.
+	 */
+	void forEach(Visitor visitor) throws IOException {
+		for(int i = 0; i < keys.length; i++)
+			if(keys[i] != EMPTY)
+				visitor.visit(keys[i], values[i]);
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		long[] oldValues = values;
+
+		keys = newKeys(oldKeys.length * 2);
+		values = new long[oldKeys.length * 2];
+
+		for(int i = 0; i < oldKeys.length; i++)
+			if(oldKeys[i] != EMPTY) {
+				int j = indexOf(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+	}
+}
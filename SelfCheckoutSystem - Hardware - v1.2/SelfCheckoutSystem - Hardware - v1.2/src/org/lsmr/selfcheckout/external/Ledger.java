@@ -0,0 +1,427 @@
+package org.lsmr.selfcheckout.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import org.lsmr.selfcheckout.devices.SimulationException;
+
+/**
+ * The durable record of a card issuer's state: a write-ahead log of every
+ * change since the last snapshot, and that snapshot.
+ * <p>
+ * Changes are appended to an in-memory buffer; {@link #sync(long)} makes them
+ * durable with group commit, so that one thread writes and forces everything
+ * appended so far while the threads that appended it meanwhile wait for that
+ * one write. Each record is framed with its length and a CRC-32, so a record
+ * torn by a crash is detected and dropped on recovery.
+ * </p>
+ * <p>
+ * A write that fails leaves the log in doubt: part of the batch may be on disk,
+ * while the changes it records are already made in memory. So the first
+ * failure fails the ledger, and every later append or sync throws; recovery
+ * from the directory then drops whatever was torn.
+ * </p>
+ * <p>
+ * Logs are numbered by generation. A checkpoint starts the next generation's
+ * log, then writes a snapshot naming that generation and atomically renames it
+ * into place, and only then deletes the old log; recovery reads the snapshot
+ * and replays only its generation's log, so a crash at any point neither loses
+ * nor repeats a change.
+ * </p>
+ */
+final class Ledger {
+	static final byte ADD_CARD = 1;
+	static final byte HOLD = 2;
+	static final byte RELEASE = 3;
+	static final byte POST = 4;
+	static final byte BLOCK = 5;
+	static final byte UNBLOCK = 6;
+
+	private static final int SNAPSHOT_MAGIC = 0x4C454447;
+	private static final byte[] FRAME = new byte[8];
+
+	/**
+	 * Reads a snapshot or a log record, applying it to the issuer's state.
+	 */
+	interface Reader {
+		void read(DataInput in) throws IOException;
+	}
+
+	/**
+	 * Writes the issuer's state into a snapshot.
+	 */
+	interface Writer {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	/**
+	 * A byte buffer whose contents can be patched and written out without
+	 * copying.
+	 */
+	private static final class Buffer extends ByteArrayOutputStream {
+		Buffer() {
+			super(1 << 16);
+		}
+
+		byte[] array() {
+			return buf;
+		}
+
+		void putInt(int at, int value) {
+			buf[at] = (byte)(value >>> 24);
+			buf[at + 1] = (byte)(value >>> 16);
+			buf[at + 2] = (byte)(value >>> 8);
+			buf[at + 3] = (byte)value;
+		}
+	}
+
+	private final File directory;
+	private final int checkpointInterval;
+	private long generation = 0;
+	private FileOutputStream log;
+
+	private Buffer pending = new Buffer(), committing = new Buffer();
+	private final DataOutputStream out;
+	private final CRC32 crc = new CRC32();
+	private long appended = 0; // the sequence number of the last record appended
+	private long durable = 0; // the sequence number of the last record forced to disk
+	private boolean isCommitting = false;
+	private boolean hasFailed = false;
+	private long sinceCheckpoint = 0;
+
+	/**
+	 * Creates a ledger kept in the indicated directory, which is created if need
+	 * be. Call {@link #recover(Reader, Reader)} before appending.
+	 *
+	 * @param checkpointInterval
+	 *            After how many records a checkpoint is due.
+	 */
+	Ledger(File directory, int checkpointInterval) {
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new SimulationException(new IOException("Cannot create " + directory));
+
+		this.directory = directory;
+		this.checkpointInterval = checkpointInterval;
+		// Always writes into whichever buffer is pending at the time
+		this.out = new DataOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+				pending.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				pending.write(b, off, len);
+			}
+		});
+	}
+
+	private File logFile(long generation) {
+		return new File(directory, "log." + generation);
+	}
+
+	private File snapshotFile() {
+		return new File(directory, "snapshot");
+	}
+
+	/**
+	 * Reads the snapshot, if any, and then every intact record of its log, and
+	 * opens the log for appending after the last intact record.
+	 */
+	void recover(Reader snapshotReader, Reader recordReader) {
+		try {
+			File snapshot = snapshotFile();
+
+			if(snapshot.exists())
+				try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)))) {
+					if(in.readInt() != SNAPSHOT_MAGIC)
+						throw new IOException(snapshot + " is not a snapshot");
+
+					generation = in.readLong();
+					snapshotReader.read(in);
+				}
+
+			File file = logFile(generation);
+			long intact = 0;
+
+			if(file.exists())
+				try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+					byte[] payload = new byte[256];
+
+					while(true) {
+						int length, checksum;
+
+						try {
+							length = in.readInt();
+							checksum = in.readInt();
+
+							if(length < 0)
+								break;
+
+							if(payload.length < length)
+								payload = new byte[Math.max(length, payload.length * 2)];
+
+							in.readFully(payload, 0, length);
+						}
+						catch(EOFException e) {
+							break; // torn by a crash while it was being written
+						}
+
+						crc.reset();
+						crc.update(payload, 0, length);
+
+						if((int)crc.getValue() != checksum)
+							break;
+
+						recordReader.read(new DataInputStream(new ByteArrayInputStream(payload, 0, length)));
+						intact += 8 + length;
+						sinceCheckpoint++;
+					}
+				}
+
+			// Drop any torn tail, and any log a crashed checkpoint left behind
+			try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(intact);
+			}
+
+			File[] stray = directory.listFiles((dir, name) -> (name.startsWith("log.") && !name.equals(file.getName()))
+				|| name.equals("snapshot.tmp"));
+
+			if(stray != null)
+				for(File f : stray)
+					f.delete();
+
+			log = new FileOutputStream(file, true);
+		}
+		catch(IOException e) {
+			throw new SimulationException(e);
+		}
+	}
+
+	/**
+	 * Checks that no write to the log has failed.
+	 *
+	 * @throws SimulationException
+	 *             If one has, so that the ledger can take no more changes.
+	 */
+	synchronized void checkUsable() {
+		if(hasFailed)
+			throw new SimulationException(
+				new IllegalStateException("A write to the ledger failed, so it can take no more changes."));
+	}
+
+	// Leaves room for the length and checksum, filled in by end
+	private int begin() {
+		checkUsable();
+		int start = pending.size();
+		pending.write(FRAME, 0, FRAME.length);
+		return start;
+	}
+
+	private long end(int start) {
+		int length = pending.size() - start - FRAME.length;
+		crc.reset();
+		crc.update(pending.array(), start + FRAME.length, length);
+		pending.putInt(start, length);
+		pending.putInt(start + 4, (int)crc.getValue());
+		sinceCheckpoint++;
+		return ++appended;
+	}
+
+	/**
+	 * Appends a change to a hold or a card.
+	 *
+	 * @return The sequence number of the record, to pass to {@link #sync(long)}.
+	 */
+	synchronized long append(byte op, String number, int holdNumber, long amount, long deadline) {
+		int start = begin();
+
+		try {
+			out.writeByte(op);
+			out.writeUTF(number);
+			out.writeInt(holdNumber);
+			out.writeLong(amount);
+			out.writeLong(deadline);
+		}
+		catch(IOException e) {
+			throw new SimulationException(e); // Should never happen, as nothing is written to disk
+		}
+
+		return end(start);
+	}
+
+	/**
+	 * Appends a new card.
+	 *
+	 * @return The sequence number of the record, to pass to {@link #sync(long)}.
+	 */
+	synchronized long appendCard(String number, String cardholder, long expiry, String ccv, long available) {
+		int start = begin();
+
+		try {
+			out.writeByte(ADD_CARD);
+			out.writeUTF(number);
+			out.writeUTF(cardholder);
+			out.writeLong(expiry);
+			out.writeUTF(ccv);
+			out.writeLong(available);
+		}
+		catch(IOException e) {
+			throw new SimulationException(e); // Should never happen, as nothing is written to disk
+		}
+
+		return end(start);
+	}
+
+	/**
+	 * Waits until the indicated record, and every record before it, is on disk,
+	 * writing them if no other thread is already doing so.
+	 *
+	 * @throws SimulationException
+	 *             If the write fails, or an earlier one did.
+	 */
+	void sync(long sequence) {
+		Buffer batch;
+		long target;
+		boolean written = false;
+
+		synchronized(this) {
+			while(durable < sequence && isCommitting)
+				waitUninterruptibly();
+
+			if(durable >= sequence)
+				return;
+
+			checkUsable();
+			isCommitting = true;
+			batch = pending;
+			pending = committing;
+			committing = batch;
+			target = appended;
+		}
+
+		try {
+			batch.writeTo(log);
+			log.getChannel().force(false);
+			written = true;
+		}
+		catch(IOException e) {
+			throw new SimulationException(e);
+		}
+		finally {
+			batch.reset();
+
+			synchronized(this) {
+				if(written)
+					durable = target;
+				else
+					hasFailed = true;
+
+				isCommitting = false;
+				notifyAll();
+			}
+		}
+	}
+
+	private void waitUninterruptibly() {
+		try {
+			wait();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private synchronized long lastAppended() {
+		return appended;
+	}
+
+	/**
+	 * Determines whether enough records have been appended since the last
+	 * checkpoint that another is due.
+	 */
+	synchronized boolean isCheckpointDue() {
+		return sinceCheckpoint >= checkpointInterval;
+	}
+
+	/**
+	 * Writes a snapshot and starts a new log. The caller must ensure nothing is
+	 * appended meanwhile.
+	 */
+	void checkpoint(Writer writer) {
+		sync(lastAppended());
+
+		try {
+			long next = generation + 1;
+			FileOutputStream nextLog = new FileOutputStream(logFile(next), false);
+			File temporary = new File(directory, "snapshot.tmp");
+
+			try(FileOutputStream file = new FileOutputStream(temporary)) {
+				DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+				snapshot.writeInt(SNAPSHOT_MAGIC);
+				snapshot.writeLong(next);
+				writer.write(snapshot);
+				snapshot.flush();
+				file.getChannel().force(true);
+			}
+
+			Files.move(temporary.toPath(), snapshotFile().toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+			forceDirectory();
+
+			log.close();
+			logFile(generation).delete();
+			log = nextLog;
+			generation = next;
+
+			synchronized(this) {
+				sinceCheckpoint = 0;
+			}
+		}
+		catch(IOException e) {
+			throw new SimulationException(e);
+		}
+	}
+
+	private void forceDirectory() {
+		// Not every platform can open a directory to force it; the rename is
+		// still atomic there
+		try(FileChannel channel = FileChannel.open(directory.toPath())) {
+			channel.force(true);
+		}
+		catch(IOException e) {}
+	}
+
+	/**
+	 * Writes out everything appended and closes the log, even if that fails.
+	 */
+	void close() {
+		try {
+			sync(lastAppended());
+		}
+		finally {
+			try {
+				log.close();
+			}
+			catch(IOException e) {
+				throw new SimulationException(e);
+			}
+		}
+	}
+}
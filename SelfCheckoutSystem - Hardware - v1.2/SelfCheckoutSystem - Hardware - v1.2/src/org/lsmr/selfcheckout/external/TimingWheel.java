@@ -0,0 +1,155 @@
+package org.lsmr.selfcheckout.external;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A hierarchical timing wheel: schedules items to expire at deadlines, and
+ * expires them as time advances, in O(1) amortized time per item however many
+ * are scheduled.
+ * <p>
+ * Time is counted in ticks of a fixed length. Level 0 has a slot for each of
+ * the next 64 ticks, level 1 a slot for each of the next 64 spans of 64 ticks,
+ * and so on for 4 levels; as time reaches a higher-level slot, its items are
+ * cascaded down to the levels below. Items are expired at the first tick at or
+ * after their deadline, so up to one tick late. Items further away than the
+ * wheel spans are parked in its last slot and cascaded again until they are
+ * in range.
+ * </p>
+ * <p>
+ * Not thread-safe; callers synchronize on the wheel.
+ * </p>
+ *
+ * @param <T>
+ *            The type of the items scheduled. Each item is scheduled with an
+ *            int key, passed back with it when it expires.
+ */
+final class TimingWheel<T> {
+	private static final int LEVELS = 4;
+	private static final int BITS = 6;
+	private static final int SLOTS = 1 << BITS;
+	private static final int MASK = SLOTS - 1;
+	private static final long SPAN = 1L << (BITS * LEVELS); // in ticks
+
+	private static final class Entry<T> {
+		final long deadline; // in ticks
+		final T item;
+		final int key;
+		Entry<T> next;
+
+		Entry(long deadline, T item, int key) {
+			this.deadline = deadline;
+			this.item = item;
+			this.key = key;
+		}
+	}
+
+	private final long tick; // in milliseconds
+	private final long origin; // in milliseconds
+	private long current = 0; // the last tick expired, in ticks since the origin
+	private int size = 0;
+
+	@SuppressWarnings({"rawtypes", "unchecked"}) // generic arrays can't be created
+	private final Entry<T>[][] slots = new Entry[LEVELS][SLOTS];
+
+	/**
+	 * Creates a wheel.
+	 *
+	 * @param tick
+	 *            The length of a tick, in milliseconds. Must be positive.
+	 * @param now
+	 *            The current time, in milliseconds.
+	 */
+	TimingWheel(long tick, long now) {
+		this.tick = tick;
+		this.origin = now;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Schedules an item to expire at a deadline. A deadline already past expires
+	 * at the next advance.
+	 */
+	void schedule(T item, int key, long deadline) {
+		long ticks = deadline <= origin ? 0 : ceilDiv(deadline - origin, tick);
+		insert(new Entry<>(Math.max(ticks, current + 1), item, key));
+		size++;
+	}
+
+	private static long ceilDiv(long a, long b) {
+		return (a + b - 1) / b;
+	}
+
+	private void insert(Entry<T> entry) {
+		long delta = entry.deadline - current;
+		long at = delta < SPAN ? entry.deadline : current + SPAN - 1;
+		int level = 0;
+
+		while(level < LEVELS - 1 && (at - current) >= 1L << (BITS * (level + 1)))
+			level++;
+
+		int slot = (int)(at >>> (BITS * level)) & MASK;
+		entry.next = slots[level][slot];
+		slots[level][slot] = entry;
+	}
+
+	/**
+	 * Advances the wheel to the indicated time, passing each item whose deadline
+	 * has been reached to the consumer.
+	 */
+	void advance(long now, ObjIntConsumer<T> expired) {
+		long target = now <= origin ? 0 : (now - origin) / tick;
+
+		if(size == 0) {
+			current = Math.max(current, target);
+			return;
+		}
+
+		while(current < target) {
+			current++;
+
+			// Cascade the higher-level slots that this tick enters, highest first
+			int level = 1;
+
+			while(level < LEVELS && (current & ((1L << (BITS * level)) - 1)) == 0)
+				level++;
+
+			for(int l = level - 1; l >= 1; l--)
+				cascade(l, (int)(current >>> (BITS * l)) & MASK);
+
+			Entry<T> entry = slots[0][(int)current & MASK];
+			slots[0][(int)current & MASK] = null;
+
+			while(entry != null) {
+				Entry<T> next = entry.next;
+
+				if(entry.deadline <= current) {
+					size--;
+					expired.accept(entry.item, entry.key);
+				}
+				else
+					insert(entry);
+
+				entry = next;
+			}
+
+			if(size == 0) {
+				current = target;
+				return;
+			}
+		}
+	}
+
+	private void cascade(int level, int slot) {
+		Entry<T> entry = slots[level][slot];
+		slots[level][slot] = null;
+
+		while(entry != null) {
+			Entry<T> next = entry.next;
+			insert(entry);
+			entry = next;
+		}
+	}
+}
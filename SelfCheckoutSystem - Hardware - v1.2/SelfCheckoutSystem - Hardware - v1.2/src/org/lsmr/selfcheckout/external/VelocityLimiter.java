@@ -0,0 +1,251 @@
+package org.lsmr.selfcheckout.external;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.lsmr.selfcheckout.devices.SimulationException;
+
+/**
+ * Limits how often something may happen per key (e.g., authorization attempts
+ * per card number, or per station), within a sliding window of time.
+ * <p>
+ * Each key counts its attempts in the current fixed window and remembers the
+ * count of the previous one; the count over the sliding window is estimated by
+ * weighting the previous count by how much of the previous window the sliding
+ * window still covers. Both counts and the window they belong to are packed
+ * into a single long per key, updated by compare-and-set, so a check takes
+ * constant time and never locks.
+ * </p>
+ * <p>
+ * Keys are kept in a table of fixed capacity, so memory does not grow with the
+ * number of keys ever seen. A key that has made no attempt for two windows is
+ * idle, and its slot is reused by the next new key that needs it. Should every
+ * slot a new key could use be busy, its attempt is allowed untracked rather
+ * than refused, and counted (see {@link #getUntrackedCount()}).
+ * </p>
+ */
+public class VelocityLimiter {
+	private static final int PROBES = 16; // slots a key may be placed in
+	private static final int COUNT_BITS = 16;
+	private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+	private static final long RECLAIMING = -1; // the state of a slot changing keys
+
+	private final int limit;
+	private final long window; // in milliseconds
+	private final LongSupplier clock;
+
+	private final AtomicReferenceArray<String> keys;
+	// window index (32 bits) | previous count (16 bits) | current count (16 bits)
+	private final AtomicLongArray states;
+	private final int mask;
+
+	private final LongAdder refusedCount = new LongAdder();
+	private final LongAdder untrackedCount = new LongAdder();
+
+	/**
+	 * Creates a limiter.
+	 *
+	 * @param limit
+	 *            How many attempts each key may make within any window. Must be
+	 *            between 1 and 65,535.
+	 * @param window
+	 *            The length of the window, in milliseconds. Must be positive.
+	 * @param capacity
+	 *            How many keys can be tracked at once. Rounded up to a power of
+	 *            two. Must be positive.
+	 * @param clock
+	 *            The source of the current time, in milliseconds.
+	 * @throws SimulationException
+	 *             If limit, window or capacity is out of range.
+	 * @throws SimulationException
+	 *             If clock is null.
+	 */
+	public VelocityLimiter(int limit, long window, int capacity, LongSupplier clock) {
+		if(limit < 1 || limit > COUNT_MASK)
+			throw new SimulationException(new IllegalArgumentException("limit must be between 1 and 65535: " + limit));
+
+		if(window <= 0)
+			throw new SimulationException(new IllegalArgumentException("window must be positive: " + window));
+
+		if(capacity <= 0 || capacity > 1 << 30)
+			throw new SimulationException(new IllegalArgumentException("capacity is out of range: " + capacity));
+
+		if(clock == null)
+			throw new SimulationException(new NullPointerException("clock is null"));
+
+		this.limit = limit;
+		this.window = window;
+		this.clock = clock;
+
+		int size = Math.max(PROBES, Integer.highestOneBit(capacity - 1) << 1);
+		keys = new AtomicReferenceArray<>(size);
+		states = new AtomicLongArray(size);
+		mask = size - 1;
+	}
+
+	private static long pack(long windowIndex, long previous, long current) {
+		return windowIndex << 32 | previous << COUNT_BITS | current;
+	}
+
+	// The state as of the indicated window, which is no earlier than the state's
+	private static long rollTo(long state, int windowIndex) {
+		int stateWindow = (int)(state >>> 32);
+		long current = state & COUNT_MASK;
+
+		if(stateWindow == windowIndex)
+			return state;
+
+		if(stateWindow + 1 == windowIndex)
+			return pack(windowIndex & 0xFFFFFFFFL, current, 0);
+
+		return pack(windowIndex & 0xFFFFFFFFL, 0, 0);
+	}
+
+	private static boolean isIdle(long state, int windowIndex) {
+		return state != RECLAIMING && windowIndex - (int)(state >>> 32) > 1;
+	}
+
+	private static int home(String key, int mask) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return (h ^ h >>> 16) & mask;
+	}
+
+	/**
+	 * Records an attempt for the indicated key, if it is within the limit.
+	 *
+	 * @param key
+	 *            The key making the attempt.
+	 * @return true if the attempt is allowed; false if the key has already made
+	 *         as many attempts as allowed within the window.
+	 * @throws SimulationException
+	 *             If key is null.
+	 */
+	public boolean tryAcquire(String key) {
+		if(key == null)
+			throw new SimulationException(new NullPointerException("key is null"));
+
+		long now = clock.getAsLong();
+		int windowIndex = (int)Math.floorDiv(now, window);
+		// How much of the previous window the sliding window still covers, in
+		// 1/65,536ths
+		long overlap = ((window - Math.floorMod(now, window)) << 16) / window;
+
+		while(true) {
+			int slot = find(key, windowIndex);
+
+			if(slot < 0) {
+				untrackedCount.increment();
+				return true;
+			}
+
+			long state = states.get(slot);
+
+			// The slot was reclaimed for another key since it was found
+			if(state == RECLAIMING || !key.equals(keys.get(slot)))
+				continue;
+
+			long rolled = rollTo(state, windowIndex);
+			long previous = rolled >>> COUNT_BITS & COUNT_MASK, current = rolled & COUNT_MASK;
+
+			if(current + (previous * overlap >>> 16) >= limit) {
+				if(rolled == state || states.compareAndSet(slot, state, rolled)) {
+					refusedCount.increment();
+					return false;
+				}
+
+				continue;
+			}
+
+			if(states.compareAndSet(slot, state, rolled + 1))
+				return true;
+		}
+	}
+
+	/**
+	 * Finds the slot of the indicated key, placing it in a free or idle slot if
+	 * it has none.
+	 *
+	 * @return The slot, or -1 if every slot the key could be placed in is busy.
+	 */
+	private int find(String key, int windowIndex) {
+		int start = home(key, mask);
+
+		for(int i = 0; i < PROBES; i++) {
+			int slot = (start + i) & mask;
+			String k = keys.get(slot);
+
+			if(k == null)
+				break;
+
+			if(k.equals(key))
+				return slot;
+		}
+
+		for(int i = 0; i < PROBES; i++) {
+			int slot = (start + i) & mask;
+			String k = keys.get(slot);
+
+			// A free slot's state is zero, which is an empty window long past
+			if(k == null) {
+				if(keys.compareAndSet(slot, null, key))
+					return slot;
+
+				k = keys.get(slot);
+			}
+
+			if(k.equals(key))
+				return slot; // placed by another thread meanwhile
+
+			long state = states.get(slot);
+
+			// Claim the state first, so that a thread still counting for the old
+			// key fails its compare-and-set and looks again
+			if(isIdle(state, windowIndex) && states.compareAndSet(slot, state, RECLAIMING)) {
+				keys.set(slot, key);
+				states.set(slot, pack(windowIndex & 0xFFFFFFFFL, 0, 0));
+				return slot;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Gets the number of attempts refused.
+	 *
+	 * @return The number of calls to {@link #tryAcquire(String)} that returned
+	 *         false.
+	 */
+	public long getRefusedCount() {
+		return refusedCount.sum();
+	}
+
+	/**
+	 * Gets the number of attempts allowed without being tracked, because the
+	 * table was too full to track their keys.
+	 *
+	 * @return The number of untracked attempts.
+	 */
+	public long getUntrackedCount() {
+		return untrackedCount.sum();
+	}
+
+	/**
+	 * Gets the number of keys currently tracked, i.e., that have made an attempt
+	 * within the last two windows. Takes time in proportion to the capacity.
+	 *
+	 * @return The number of keys tracked.
+	 */
+	public int getTrackedCount() {
+		int windowIndex = (int)Math.floorDiv(clock.getAsLong(), window);
+		int tracked = 0;
+
+		for(int slot = 0; slot <= mask; slot++)
+			if(keys.get(slot) != null && !isIdle(states.get(slot), windowIndex))
+				tracked++;
+
+		return tracked;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * 	Class:			CardAuthorizationClientTest.java
+ * 	Description:	JUnit testing class for CardAuthorizationClient.java
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.external.CardIssuer;
+
+public class CardAuthorizationClientTest {
+
+	private static final String NUMBER = "4500123412341234";
+	private CardIssuer issuer;
+	private CardAuthorizationClient client;
+
+	@Before
+	public void setup() {
+		issuer = new CardIssuer("Bank");
+		Calendar expiry = Calendar.getInstance();
+		expiry.add(Calendar.YEAR, 1);
+		issuer.addCardData(NUMBER, "Jane Doe", expiry, "123", new BigDecimal("1000.00"));
+	}
+
+	@After
+	public void teardown() {
+		if(client != null)
+			client.shutdown();
+	}
+
+	/**
+	 * Many requests are in flight at once, so they take about one round trip in total rather
+	 * than one each, and their latencies are reported
+	 */
+	@Test
+	public void testPipelinedRequests() throws Exception {
+		client = new CardAuthorizationClient(issuer, 50, 10, 5000);
+
+		long start = System.nanoTime();
+		List<CompletableFuture<Boolean>> payments = new ArrayList<>();
+		for(int i = 0; i < 500; i++)
+			payments.add(client.authorizeHold(NUMBER, BigDecimal.ONE)
+				.thenCompose(hold -> client.postTransaction(NUMBER, hold, BigDecimal.ONE)));
+		for(CompletableFuture<Boolean> payment : payments)
+			assertTrue(payment.get());
+		double elapsed = (System.nanoTime() - start) / 1e6;
+
+		// 1000 sequential round trips would take at least 50 seconds
+		assertTrue(elapsed < 10_000);
+		assertEquals(1000, client.getCompletedCount());
+		assertEquals(0, client.getTimedOutCount());
+
+		double p50 = client.getLatencyPercentile(50), p99 = client.getLatencyPercentile(99),
+			p999 = client.getLatencyPercentile(99.9);
+		assertTrue(p50 >= 50);
+		assertTrue(p50 <= p99 && p99 <= p999);
+
+		// the whole limit was spent
+		assertEquals(Integer.valueOf(-1), client.authorizeHold(NUMBER, new BigDecimal("500.01")).get());
+	}
+
+	/**
+	 * A request the issuer doesn't answer in time fails, and a hold it places afterwards is
+	 * released rather than left tying up the card
+	 */
+	@Test
+	public void testDeadline() throws Exception {
+		CountDownLatch answer = new CountDownLatch(1), released = new CountDownLatch(1);
+		CardIssuer slow = new CardIssuer("Bank") {
+			@Override
+			public int authorizeHold(String cardNumber, BigDecimal amount, long timeToLive) {
+				try {
+					answer.await();
+				}
+				catch(InterruptedException e) {
+					throw new SimulationException("Interrupted");
+				}
+				return super.authorizeHold(cardNumber, amount, timeToLive);
+			}
+
+			@Override
+			public boolean releaseHold(String cardNumber, int holdNumber) {
+				boolean result = super.releaseHold(cardNumber, holdNumber);
+				released.countDown();
+				return result;
+			}
+		};
+		Calendar expiry = Calendar.getInstance();
+		expiry.add(Calendar.YEAR, 1);
+		slow.addCardData(NUMBER, "Jane Doe", expiry, "123", new BigDecimal("1000.00"));
+		client = new CardAuthorizationClient(slow, 0, 0, 20);
+
+		try {
+			client.authorizeHold(NUMBER, new BigDecimal("1000.00")).get();
+			fail("Should time out");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		assertEquals(1, client.getTimedOutCount());
+
+		// the issuer answers late, and the hold it placed is released
+		answer.countDown();
+		assertTrue(released.await(5, TimeUnit.SECONDS));
+		assertEquals(1, slow.getReleasedHoldCount());
+		assertTrue(slow.authorizeHold(NUMBER, new BigDecimal("1000.00")) >= 0);
+	}
+
+	@Test
+	public void testOnErrorIfInvalid() {
+		try {
+			new CardAuthorizationClient(null, 0, 0, 1);
+			fail("Should throw SimulationException if the issuer is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			new CardAuthorizationClient(issuer, -1, 0, 1);
+			fail("Should throw SimulationException if the latency is negative");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			new CardAuthorizationClient(issuer, 0, 0, 0);
+			fail("Should throw SimulationException if the deadline isn't positive");
+		} catch (SimulationException e) {/*expected*/}
+
+		client = new CardAuthorizationClient(issuer, 0, 0, 1000);
+		assertEquals(0, client.getLatencyPercentile(99), 0);
+
+		try {
+			client.getLatencyPercentile(101);
+			fail("Should throw SimulationException if the percentile is over 100");
+		} catch (SimulationException e) {/*expected*/}
+	}
+}
@@ -0,0 +1,620 @@
+/*
+ * 	Class:			CardIssuerTest.java
+ * 	Description:	JUnit testing class for the CardIssuer stand-in that card payments are authorized against
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.external.CardIssuer;
+import org.lsmr.selfcheckout.external.VelocityLimiter;
+
+public class CardIssuerTest {
+
+	private static final String NUMBER = "4500123412341234";
+	private CardIssuer issuer;
+	private File directory;	// of a durable issuer's ledger, if the test made one
+
+	@Before
+	public void setup() {
+		issuer = new CardIssuer("Bank");
+		issuer.addCardData(NUMBER, "Jane Doe", nextYear(), "123", new BigDecimal("100.00"));
+	}
+
+	@After
+	public void teardown() throws IOException {
+		if(directory == null)
+			return;
+
+		try(Stream<Path> files = Files.walk(directory.toPath())) {
+			for(Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new))
+				Files.delete(file);
+		}
+	}
+
+	private static Calendar nextYear() {
+		Calendar expiry = Calendar.getInstance();
+		expiry.add(Calendar.YEAR, 1);
+		return expiry;
+	}
+
+	/**
+	 * A card with 10,000 outstanding holds still authorizes, releases and posts against the
+	 * exact available balance
+	 */
+	@Test
+	public void testManyOutstandingHolds() {
+		int[] holds = new int[10_000];
+		for(int i = 0; i < holds.length; i++) {
+			holds[i] = issuer.authorizeHold(NUMBER, new BigDecimal("0.01"));
+			assertTrue(holds[i] >= 0);
+		}
+
+		// the whole limit is held, to the cent
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("0.01")));
+
+		assertTrue(issuer.releaseHold(NUMBER, holds[0]));
+		assertTrue(issuer.authorizeHold(NUMBER, new BigDecimal("0.01")) >= 0);
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("0.01")));
+
+		// posting less than was held frees the rest of the hold
+		for(int i = 1; i <= 100; i++)
+			assertTrue(issuer.postTransaction(NUMBER, holds[i], BigDecimal.ZERO));
+		assertTrue(issuer.authorizeHold(NUMBER, new BigDecimal("1.00")) >= 0);
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("0.01")));
+	}
+
+	/**
+	 * Hold numbers are allocated without collisions, even from many threads at once, and
+	 * holds removed from the middle of a card's table don't hide the others
+	 */
+	@Test
+	public void testHoldNumbersFromManyThreads() throws Exception {
+		final String[] numbers = new String[8];
+		final int[][] holds = new int[numbers.length][2000];
+		for(int i = 0; i < numbers.length; i++) {
+			numbers[i] = "45001234000" + i;
+			issuer.addCardData(numbers[i], "Jane Doe", nextYear(), "123", new BigDecimal("1000000.00"));
+		}
+
+		Thread[] threads = new Thread[numbers.length];
+		for(int t = 0; t < threads.length; t++) {
+			final int card = t;
+			threads[t] = new Thread(() -> {
+				for(int i = 0; i < holds[card].length; i++)
+					holds[card][i] = issuer.authorizeHold(numbers[card], BigDecimal.ONE);
+			});
+			threads[t].start();
+		}
+		for(Thread thread : threads)
+			thread.join();
+
+		HashSet<Integer> seen = new HashSet<>();
+		for(int[] card : holds)
+			for(int hold : card) {
+				assertTrue(hold >= 0);
+				assertTrue(seen.add(hold));
+			}
+
+		// release every other hold, then the rest must all still be found
+		for(int i = 0; i < holds[0].length; i += 2)
+			assertTrue(issuer.postTransaction(numbers[0], holds[0][i], BigDecimal.ONE));
+		for(int i = 1; i < holds[0].length; i += 2)
+			assertTrue(issuer.postTransaction(numbers[0], holds[0][i], BigDecimal.ONE));
+		for(int i = 0; i < holds[0].length; i++)
+			assertFalse(issuer.postTransaction(numbers[0], holds[0][i], BigDecimal.ONE));
+	}
+
+	/**
+	 * Posting spends the balance, and a hold can only be posted once
+	 */
+	@Test
+	public void testPostTransaction() {
+		int hold = issuer.authorizeHold(NUMBER, new BigDecimal("60.00"));
+		assertTrue(hold >= 0);
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("40.01")));
+
+		assertTrue(issuer.postTransaction(NUMBER, hold, new BigDecimal("59.99")));
+		assertFalse(issuer.postTransaction(NUMBER, hold, new BigDecimal("59.99")));
+
+		assertTrue(issuer.authorizeHold(NUMBER, new BigDecimal("40.01")) >= 0);
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("0.01")));
+	}
+
+	/**
+	 * Posting more than was held fails, but still releases the hold
+	 */
+	@Test
+	public void testPostMoreThanHeld() {
+		int hold = issuer.authorizeHold(NUMBER, new BigDecimal("100.00"));
+		assertFalse(issuer.postTransaction(NUMBER, hold, new BigDecimal("100.01")));
+		assertTrue(issuer.authorizeHold(NUMBER, new BigDecimal("100.00")) >= 0);
+	}
+
+	/**
+	 * Card numbers with leading zeros, or too long to encode, are still told apart
+	 */
+	@Test
+	public void testCardNumbers() {
+		issuer.addCardData("0045", "John Doe", nextYear(), "123", new BigDecimal("1.00"));
+		issuer.addCardData("45", "John Doe", nextYear(), "123", new BigDecimal("2.00"));
+		issuer.addCardData("4500123412341234567", "John Doe", nextYear(), "123", new BigDecimal("3.00"));
+
+		assertEquals(-1, issuer.authorizeHold("0045", new BigDecimal("1.01")));
+		assertTrue(issuer.authorizeHold("45", new BigDecimal("2.00")) >= 0);
+		assertTrue(issuer.authorizeHold("4500123412341234567", new BigDecimal("3.00")) >= 0);
+		assertEquals(-1, issuer.authorizeHold("045", new BigDecimal("0.01")));
+	}
+
+	/**
+	 * Numbers that read the same as integers, whether through leading zeros, a sign, or a length
+	 * past what encodes, are different cards
+	 */
+	@Test
+	public void testCardNumberCollisions() {
+		String[] numbers = {"7", "07", "007", "000000000000000007", "0000000000000000007", "+7", "-7", "70"};
+		for(int i = 0; i < numbers.length; i++)
+			issuer.addCardData(numbers[i], "John Doe", nextYear(), "123", new BigDecimal(i + 1));
+
+		// each card holds exactly its own limit
+		for(int i = 0; i < numbers.length; i++) {
+			assertEquals(numbers[i], -1, issuer.authorizeHold(numbers[i], new BigDecimal(i + 1).add(new BigDecimal("0.01"))));
+			assertTrue(numbers[i], issuer.authorizeHold(numbers[i], new BigDecimal(i + 1)) >= 0);
+		}
+
+		for(String number : numbers) {
+			try {
+				issuer.addCardData(number, "John Doe", nextYear(), "123", BigDecimal.ONE);
+				fail("Should throw SimulationException if the number " + number + " is already in use");
+			} catch (SimulationException e) {/*expected*/}
+		}
+		assertEquals(-1, issuer.authorizeHold("0007", new BigDecimal("0.01")));
+	}
+
+	/**
+	 * The longest numbers: 18 digits is the most that encodes, 19 still fit a long and are kept by
+	 * number, and more than that aren't card numbers
+	 */
+	@Test
+	public void testLongestCardNumbers() {
+		String longest = "999999999999999999", unencoded = "9223372036854775807", zeros = "000000000000000000";
+		issuer.addCardData(longest, "John Doe", nextYear(), "123", new BigDecimal("1.00"));
+		issuer.addCardData(unencoded, "John Doe", nextYear(), "123", new BigDecimal("2.00"));
+		issuer.addCardData(zeros, "John Doe", nextYear(), "123", new BigDecimal("3.00"));
+		issuer.addCardData("0", "John Doe", nextYear(), "123", new BigDecimal("4.00"));
+
+		assertEquals(-1, issuer.authorizeHold(longest, new BigDecimal("1.01")));
+		assertTrue(issuer.authorizeHold(unencoded, new BigDecimal("2.00")) >= 0);
+		assertTrue(issuer.authorizeHold(zeros, new BigDecimal("3.00")) >= 0);
+		assertTrue(issuer.authorizeHold("0", new BigDecimal("4.00")) >= 0);
+		assertEquals(-1, issuer.authorizeHold("00", new BigDecimal("0.01")));
+
+		try {
+			issuer.addCardData("92233720368547758070", "John Doe", nextYear(), "123", BigDecimal.ONE);
+			fail("Should throw SimulationException if the number has 20 digits");
+		} catch (SimulationException e) {/*expected*/}
+		assertEquals(-1, issuer.authorizeHold("92233720368547758070", new BigDecimal("0.01")));
+	}
+
+	/**
+	 * Cards added while other threads place holds are found as soon as they are added, the same
+	 * number is only ever added once, and holds raced onto one card never exceed its limit
+	 */
+	@Test
+	public void testConcurrentAddAndHold() throws Exception {
+		final int threads = 8, cards = 500;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger added = new AtomicInteger(), shared = new AtomicInteger(), failures = new AtomicInteger();
+
+		Thread[] workers = new Thread[threads];
+		for(int t = 0; t < threads; t++) {
+			final int worker = t;
+			workers[t] = new Thread(() -> {
+				try {
+					start.await();
+					for(int i = 0; i < cards; i++) {
+						// a card of this thread's own, held on as soon as it's added
+						String own = String.format("46%02d%012d", worker, i);
+						issuer.addCardData(own, "John Doe", nextYear(), "123", new BigDecimal("5.00"));
+						if(issuer.authorizeHold(own, new BigDecimal("5.00")) < 0 || issuer.authorizeHold(own, new BigDecimal("0.01")) >= 0)
+							failures.incrementAndGet();
+
+						// a card every thread tries to add
+						try {
+							issuer.addCardData(String.format("47%014d", i), "John Doe", nextYear(), "123", new BigDecimal("5.00"));
+							added.incrementAndGet();
+						} catch (SimulationException e) {/*another thread added it*/}
+
+						// and the same card every thread holds on at once
+						if(issuer.authorizeHold(NUMBER, new BigDecimal("0.10")) >= 0)
+							shared.incrementAndGet();
+					}
+				}
+				catch(Throwable e) {
+					failures.incrementAndGet();
+				}
+			});
+			workers[t].start();
+		}
+		start.countDown();
+		for(Thread worker : workers)
+			worker.join();
+
+		assertEquals(0, failures.get());
+		assertEquals(cards, added.get());
+		assertEquals(1000, shared.get());
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("0.01")));
+		for(int i = 0; i < cards; i++)
+			assertTrue(issuer.authorizeHold(String.format("47%014d", i), new BigDecimal("5.00")) >= 0);
+	}
+
+	/**
+	 * A settlement batch posts each transaction as postTransaction would, reporting which ones
+	 * went through
+	 */
+	@Test
+	public void testSettle() {
+		issuer.addCardData("0045", "John Doe", nextYear(), "123", new BigDecimal("10.00"));
+		int a = issuer.authorizeHold(NUMBER, new BigDecimal("30.00"));
+		int b = issuer.authorizeHold("0045", new BigDecimal("5.00"));
+		int c = issuer.authorizeHold(NUMBER, new BigDecimal("20.00"));
+		int d = issuer.authorizeHold("0045", new BigDecimal("5.00"));
+
+		BitSet posted = issuer.settle(
+			new String[] {NUMBER, "0045", NUMBER, "0000", "0045", NUMBER, "0045"},
+			new int[] {a, b, c, a, d, a, -1},
+			new BigDecimal[] {new BigDecimal("29.99"), new BigDecimal("5.00"), new BigDecimal("20.01"),
+					BigDecimal.ONE, new BigDecimal("4.00"), BigDecimal.ONE, BigDecimal.ONE});
+
+		// a hold over its amount, an unknown card, a hold already posted and a bad hold all fail
+		assertTrue(posted.length() <= 7);
+		assertTrue(posted.get(0));
+		assertTrue(posted.get(1));
+		assertFalse(posted.get(2));
+		assertFalse(posted.get(3));
+		assertTrue(posted.get(4));
+		assertFalse(posted.get(5));
+		assertFalse(posted.get(6));
+
+		// 100.00 - 29.99 and 10.00 - 9.00 are left
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("70.02")));
+		assertTrue(issuer.authorizeHold(NUMBER, new BigDecimal("70.01")) >= 0);
+		assertEquals(-1, issuer.authorizeHold("0045", new BigDecimal("1.01")));
+		assertTrue(issuer.authorizeHold("0045", new BigDecimal("1.00")) >= 0);
+	}
+
+	/**
+	 * A nightly batch of a million holds over many cards settles in one call
+	 */
+	@Test
+	public void testSettleMillionHolds() {
+		int cards = 1000, perCard = 1000, n = cards * perCard;
+		String[] numbers = new String[n];
+		int[] holds = new int[n];
+		BigDecimal[] amounts = new BigDecimal[n];
+		BigDecimal amount = new BigDecimal("0.05");
+
+		for(int card = 0; card < cards; card++)
+			issuer.addCardData("6011" + (100000 + card), "Jane Doe", nextYear(), "123", new BigDecimal("100.00"));
+
+		// interleave the cards, as transactions would arrive over a day
+		for(int i = 0; i < n; i++) {
+			numbers[i] = "6011" + (100000 + i % cards);
+			holds[i] = issuer.authorizeHold(numbers[i], amount);
+			amounts[i] = amount;
+		}
+
+		// one card is blocked before the batch runs
+		issuer.block("6011100007");
+
+		long start = System.nanoTime();
+		BitSet posted = issuer.settle(numbers, holds, amounts);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		assertEquals(n - perCard, posted.cardinality());
+		assertFalse(posted.get(7));
+		assertTrue(posted.get(8));
+		assertTrue("Settling took " + seconds + " s", seconds < 30);
+
+		// every other card is now spent to 50.00
+		assertEquals(-1, issuer.authorizeHold("6011100008", new BigDecimal("50.01")));
+		assertTrue(issuer.authorizeHold("6011100008", new BigDecimal("50.00")) >= 0);
+	}
+
+	/**
+	 * Holds with a time to live are released once it passes, unless they were settled or
+	 * released first, and the outcomes are counted
+	 */
+	@Test
+	public void testHoldExpiry() {
+		final long[] now = {1_000_000};
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), () -> now[0]);
+		issuer.addCardData(NUMBER, "Jane Doe", nextYear(), "123", new BigDecimal("100.00"));
+
+		int abandoned = issuer.authorizeHold(NUMBER, new BigDecimal("40.00"), 60_000);
+		int paid = issuer.authorizeHold(NUMBER, new BigDecimal("30.00"), 60_000);
+		int cancelled = issuer.authorizeHold(NUMBER, new BigDecimal("20.00"), 60_000);
+		int later = issuer.authorizeHold(NUMBER, new BigDecimal("10.00"), 3_600_000);
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("0.01")));
+
+		assertTrue(issuer.postTransaction(NUMBER, paid, new BigDecimal("30.00")));
+		assertTrue(issuer.releaseHold(NUMBER, cancelled));
+
+		// not yet
+		now[0] += 59_000;
+		assertEquals(0, issuer.expireHolds());
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("20.01")));
+
+		now[0] += 1_200;
+		assertEquals(1, issuer.expireHolds());
+		assertEquals(0, issuer.expireHolds());
+		assertFalse(issuer.postTransaction(NUMBER, abandoned, new BigDecimal("40.00")));
+
+		// an hour on, across the higher levels of the wheel
+		now[0] += 3_600_000;
+		assertEquals(1, issuer.expireHolds());
+		assertFalse(issuer.postTransaction(NUMBER, later, BigDecimal.ONE));
+		assertTrue(issuer.authorizeHold(NUMBER, new BigDecimal("70.00")) >= 0);
+
+		assertEquals(2, issuer.getExpiredHoldCount());
+		assertEquals(1, issuer.getSettledHoldCount());
+		assertEquals(1, issuer.getReleasedHoldCount());
+		assertEquals(2 / 3.0, issuer.getExpiredRatio(), 1e-9);
+	}
+
+	/**
+	 * Many holds with spread out lifetimes each expire once, at the right time
+	 */
+	@Test
+	public void testManyHoldsExpire() {
+		final long[] now = {0};
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), () -> now[0]);
+		issuer.addCardData(NUMBER, "Jane Doe", nextYear(), "123", new BigDecimal("1000000.00"));
+
+		int n = 20_000;
+		for(int i = 0; i < n; i++)
+			assertTrue(issuer.authorizeHold(NUMBER, BigDecimal.ONE, 1 + i * 997L % 10_000_000) >= 0);
+
+		int expired = 0;
+		for(int step = 1; step <= 100; step++) {
+			now[0] = step * 100_000L;
+			expired += issuer.expireHolds();
+
+			// every hold whose lifetime has passed by more than a tick is gone
+			int due = 0;
+			for(int i = 0; i < n; i++)
+				if(1 + i * 997L % 10_000_000 + 100 <= now[0])
+					due++;
+			assertTrue(expired >= due);
+		}
+		assertEquals(n, expired);
+		assertEquals(n, issuer.getExpiredHoldCount());
+	}
+
+	/**
+	 * A durable issuer comes back with every card, hold, posting and block it had, whether it
+	 * recovers from the log alone or from a snapshot and the log since
+	 */
+	@Test
+	public void testDurableRecovery() throws Exception {
+		directory = Files.createTempDirectory("ledger").toFile();
+		final long[] now = {0};
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), () -> now[0], directory);
+		issuer.addCardData(NUMBER, "Jane Doe", nextYear(), "123", new BigDecimal("100.00"));
+		issuer.addCardData("4500999999999999", "John Doe", nextYear(), "456", new BigDecimal("50.00"));
+
+		int paid = issuer.authorizeHold(NUMBER, new BigDecimal("30.00"));
+		int open = issuer.authorizeHold(NUMBER, new BigDecimal("20.00"));
+		int expiring = issuer.authorizeHold(NUMBER, new BigDecimal("10.00"), 60_000);
+		int cancelled = issuer.authorizeHold(NUMBER, new BigDecimal("5.00"));
+		assertTrue(issuer.postTransaction(NUMBER, paid, new BigDecimal("25.00")));
+		assertTrue(issuer.releaseHold(NUMBER, cancelled));
+		assertTrue(issuer.block("4500999999999999"));
+		issuer.close();
+
+		// from the log alone: $75.00 left, $30.00 of it held
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), () -> now[0], directory);
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("45.01")));
+		assertEquals(-1, issuer.authorizeHold("4500999999999999", BigDecimal.ONE));
+		assertFalse(issuer.postTransaction(NUMBER, cancelled, BigDecimal.ONE));
+		int next = issuer.authorizeHold(NUMBER, new BigDecimal("45.00"));
+		assertTrue(next >= 0);
+		assertTrue(next != open);
+		assertTrue(issuer.releaseHold(NUMBER, next));
+
+		issuer.checkpoint();
+		assertTrue(issuer.unblock("4500999999999999"));
+		assertTrue(issuer.postTransaction(NUMBER, open, new BigDecimal("20.00")));
+		issuer.close();
+
+		// from the snapshot and the log since: $55.00 left, $10.00 of it held until it expires
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), () -> now[0], directory);
+		assertTrue(issuer.authorizeHold("4500999999999999", new BigDecimal("50.00")) >= 0);
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("45.01")));
+		now[0] += 60_100;
+		assertEquals(1, issuer.expireHolds());
+		assertFalse(issuer.postTransaction(NUMBER, expiring, BigDecimal.ONE));
+		assertTrue(issuer.authorizeHold(NUMBER, new BigDecimal("55.00")) >= 0);
+		issuer.close();
+	}
+
+	/**
+	 * A record torn by a crash while it was being written is dropped, and everything before it
+	 * is kept
+	 */
+	@Test
+	public void testTornLogTail() throws Exception {
+		directory = Files.createTempDirectory("ledger").toFile();
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), System::currentTimeMillis, directory);
+		issuer.addCardData(NUMBER, "Jane Doe", nextYear(), "123", new BigDecimal("100.00"));
+		assertTrue(issuer.authorizeHold(NUMBER, new BigDecimal("60.00")) >= 0);
+		issuer.close();
+
+		try(FileOutputStream log = new FileOutputStream(new File(directory, "log.0"), true)) {
+			log.write(new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 2, 0});
+		}
+
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), System::currentTimeMillis, directory);
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("40.01")));
+		assertTrue(issuer.authorizeHold(NUMBER, new BigDecimal("40.00")) >= 0);
+		issuer.close();
+
+		// what was appended after the torn record survives too
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), System::currentTimeMillis, directory);
+		assertEquals(-1, issuer.authorizeHold(NUMBER, new BigDecimal("0.01")));
+		issuer.close();
+	}
+
+	/**
+	 * Once a write to the log fails, the issuer takes no more changes: they throw without being
+	 * made, so nothing is reported done that may not be on disk, and recovery keeps what was
+	 */
+	@Test
+	public void testFailedWriteStopsChanges() throws Exception {
+		directory = Files.createTempDirectory("ledger").toFile();
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), System::currentTimeMillis, directory);
+		issuer.addCardData(NUMBER, "Jane Doe", nextYear(), "123", new BigDecimal("100.00"));
+		int hold = issuer.authorizeHold(NUMBER, new BigDecimal("10.00"));
+		assertTrue(hold >= 0);
+
+		// forcing the log from an interrupted thread fails, and closes the log's channel
+		Thread.currentThread().interrupt();
+
+		try {
+			issuer.authorizeHold(NUMBER, new BigDecimal("20.00"));
+			fail("Should throw SimulationException if the log can't be written");
+		} catch (SimulationException e) {/*expected*/} finally {
+			Thread.interrupted();
+		}
+
+		try {
+			issuer.releaseHold(NUMBER, hold);
+			fail("Should throw SimulationException if an earlier write failed");
+		} catch (SimulationException e) {/*expected*/}
+
+		assertEquals(0, issuer.getReleasedHoldCount());
+
+		try {
+			issuer.close();
+			fail("Should throw SimulationException if an earlier write failed");
+		} catch (SimulationException e) {/*expected*/}
+
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), System::currentTimeMillis, directory);
+		assertTrue(issuer.releaseHold(NUMBER, hold));
+		assertEquals(1, issuer.getReleasedHoldCount());
+		issuer.close();
+	}
+
+	/**
+	 * Many threads changing a durable issuer at once share their writes to disk, take
+	 * checkpoints along the way, and lose nothing
+	 */
+	@Test
+	public void testDurableThroughput() throws Exception {
+		directory = Files.createTempDirectory("ledger").toFile();
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), System::currentTimeMillis, directory);
+		issuer.addCardData(NUMBER, "Jane Doe", nextYear(), "123", new BigDecimal("1000000.00"));
+
+		int threads = 8, each = 7_000;
+		Thread[] workers = new Thread[threads];
+		for(int t = 0; t < threads; t++) {
+			workers[t] = new Thread(() -> {
+				for(int i = 0; i < each; i++) {
+					int hold = issuer.authorizeHold(NUMBER, new BigDecimal("1.00"));
+					issuer.postTransaction(NUMBER, hold, new BigDecimal("0.50"));
+				}
+			});
+			workers[t].start();
+		}
+		for(Thread worker : workers)
+			worker.join();
+		issuer.close();
+		assertTrue(new File(directory, "snapshot").exists());
+
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), System::currentTimeMillis, directory);
+		assertEquals(0, issuer.getSettledHoldCount());
+		BigDecimal left = new BigDecimal("1000000.00").subtract(new BigDecimal("0.50").multiply(new BigDecimal(threads * each)));
+		assertEquals(-1, issuer.authorizeHold(NUMBER, left.add(new BigDecimal("0.01"))));
+		assertTrue(issuer.authorizeHold(NUMBER, left) >= 0);
+		issuer.close();
+	}
+
+	/**
+	 * Rapid repeated attempts on a card or from a station are declined before the card is
+	 * looked at, and counted
+	 */
+	@Test
+	public void testVelocityLimits() {
+		final long[] now = {0};
+		issuer = new CardIssuer("Bank", Currency.getInstance(Locale.CANADA), () -> now[0]);
+		issuer.addCardData(NUMBER, "Jane Doe", nextYear(), "123", new BigDecimal("100.00"));
+		issuer.addCardData("4500999999999999", "John Doe", nextYear(), "456", new BigDecimal("100.00"));
+		issuer.setVelocityLimits(new VelocityLimiter(2, 60_000, 1024, () -> now[0]),
+			new VelocityLimiter(3, 60_000, 64, () -> now[0]));
+
+		assertTrue(issuer.authorizeHold(NUMBER, BigDecimal.ONE) >= 0);
+		assertTrue(issuer.authorizeHold(NUMBER, BigDecimal.ONE, 0, "Lane 1") >= 0);
+		assertEquals(-1, issuer.authorizeHold(NUMBER, BigDecimal.ONE, 0, "Lane 2"));
+
+		// the station's limit counts attempts on every card
+		assertTrue(issuer.authorizeHold("4500999999999999", BigDecimal.ONE, 0, "Lane 2") >= 0);
+		assertTrue(issuer.authorizeHold("4500999999999999", BigDecimal.ONE, 0, "Lane 2") >= 0);
+		assertEquals(-1, issuer.authorizeHold("4500999999999999", BigDecimal.ONE, 0, "Lane 2"));
+		assertEquals(2, issuer.getThrottledCount());
+
+		// unknown numbers are throttled too, so they can't be tried in bulk
+		issuer.authorizeHold("4500000000000000", BigDecimal.ONE);
+		issuer.authorizeHold("4500000000000000", BigDecimal.ONE);
+		assertEquals(-1, issuer.authorizeHold("4500000000000000", BigDecimal.ONE));
+		assertEquals(3, issuer.getThrottledCount());
+
+		now[0] += 120_000;
+		assertTrue(issuer.authorizeHold(NUMBER, BigDecimal.ONE, 0, "Lane 2") >= 0);
+
+		issuer.setVelocityLimits(null, null);
+		for(int i = 0; i < 10; i++)
+			assertTrue(issuer.authorizeHold(NUMBER, BigDecimal.ONE) >= 0);
+	}
+
+	@Test
+	public void testOnErrorIfInvalid() {
+		try {
+			issuer.addCardData(NUMBER, "Jane Doe", nextYear(), "123", BigDecimal.ONE);
+			fail("Should throw SimulationException if the number is already in use");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			issuer.authorizeHold(NUMBER, null);
+			fail("Should throw SimulationException if the amount is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			issuer.authorizeHold(NUMBER, BigDecimal.ONE, 0);
+			fail("Should throw SimulationException if the time to live isn't positive");
+		} catch (SimulationException e) {/*expected*/}
+
+		assertEquals(-1, issuer.authorizeHold("0000", BigDecimal.ONE));
+		assertTrue(issuer.block(NUMBER));
+		assertEquals(-1, issuer.authorizeHold(NUMBER, BigDecimal.ONE));
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * 	Class:			CashForecasterTest.java
+ * 	Description:	JUnit testing class for CashForecaster.java
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.Banknote;
+import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.devices.BanknoteDispenser;
+import org.lsmr.selfcheckout.devices.BanknoteSlot;
+import org.lsmr.selfcheckout.devices.CoinDispenser;
+import org.lsmr.selfcheckout.devices.CoinTray;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.devices.UnidirectionalChannel;
+
+public class CashForecasterTest {
+
+	private Currency currency;
+	private SelfCheckoutStation station;
+	private CashForecaster forecaster;
+	private long[] now;
+	private Coin quarter, loonie;
+
+	@Before
+	public void setup() {
+		currency = Currency.getInstance(Locale.CANADA);
+		int[] banknoteDenominations = {5, 10, 20, 50};
+		BigDecimal[] coinDenominations = {new BigDecimal("0.05"), new BigDecimal("0.10"), new BigDecimal("0.25"),
+				new BigDecimal("1.00"), new BigDecimal("2.00")};
+		station = new SelfCheckoutStation(currency, banknoteDenominations, coinDenominations, 1000, 1);
+
+		// a 10 second window on a clock the test controls
+		now = new long[] {0};
+		forecaster = new CashForecaster(10_000, () -> now[0]);
+		forecaster.watch("Lane 1", station);
+
+		quarter = Coin.valueOf(new BigDecimal("0.25"), currency);
+		loonie = Coin.valueOf(new BigDecimal("1.00"), currency);
+	}
+
+	/**
+	 * Steady flows are estimated, projected, and ranked soonest first
+	 */
+	@Test
+	public void testRankedForecasts() throws Exception {
+		CoinDispenser loonies = new CoinDispenser(200);
+		loonies.connect(new UnidirectionalChannel<Coin>(new CoinTray(1000)));
+		Coin[] load = new Coin[200];
+		Arrays.fill(load, loonie);
+		loonies.load(load);
+		forecaster.watch("Lane 1 loonies", loonies);
+
+		// for a minute, a quarter is paid in and two loonies are paid out every second
+		for(int second = 1; second <= 60; second++) {
+			now[0] = second * 1000L;
+			station.coinStorage.accept(quarter);
+			loonies.emit(2);
+		}
+
+		// read halfway between events, where the decaying rates are closest to their average
+		now[0] += 500;
+		assertEquals(1.0, forecaster.getInflowRate(quarter.getCode()), 0.05);
+		assertEquals(2.0, forecaster.getOutflowRate(loonie.getCode()), 0.05);
+
+		assertEquals(60, station.coinStorage.getCoinCount());
+		assertEquals((1000 - 60) / 1.0, forecaster.getSecondsToFull(station.coinStorage), 50);
+		assertEquals(80 / 2.0, forecaster.getSecondsToEmpty(loonies), 2);
+		assertEquals(Double.POSITIVE_INFINITY, forecaster.getSecondsToEmpty(station.coinStorage), 0);
+		assertEquals(Double.POSITIVE_INFINITY, forecaster.getSecondsToFull(station.banknoteStorage), 0);
+
+		List<CashForecaster.Forecast> ranked = forecaster.rank();
+		assertEquals(2, ranked.size());
+		assertEquals(CashForecaster.Action.REFILL, ranked.get(0).getAction());
+		assertSame(loonies, ranked.get(0).getDevice());
+		assertEquals("Lane 1 loonies", ranked.get(0).getName());
+		assertEquals(CashForecaster.Action.PICKUP, ranked.get(1).getAction());
+		assertSame(station.coinStorage, ranked.get(1).getDevice());
+	}
+
+	/**
+	 * A coin is counted once, by where it lands: coins that overflow the full storage unit flow
+	 * into the station's dispenser of their denomination, and loading isn't counted at all
+	 */
+	@Test
+	public void testCountedOnceBySink() throws Exception {
+		Coin[] full = new Coin[station.coinStorage.getCapacity()];
+		Arrays.fill(full, loonie);
+		station.coinStorage.load(full);
+		assertEquals(0, forecaster.getInflowRate(loonie.getCode()), 0);
+
+		CoinDispenser quarters = station.coinDispensers.get(25L);
+		Coin[] coins = new Coin[20];
+		Arrays.fill(coins, quarter);
+		station.coinSlot.acceptAll(coins);
+
+		// all at one instant, over a 10 second window; the validator may falsely reject a few
+		int delivered = quarters.size();
+		assertTrue(delivered > 0);
+		assertEquals(delivered / 10.0, forecaster.getInflowRate(quarter.getCode()), 1e-9);
+		assertEquals(Double.POSITIVE_INFINITY, forecaster.getSecondsToFull(station.coinStorage), 0);
+		assertEquals((quarters.getCapacity() - delivered) / (delivered / 10.0), forecaster.getSecondsToFull(quarters), 1e-6);
+		assertEquals(CashForecaster.Action.PICKUP, forecaster.rank().get(0).getAction());
+		assertSame(quarters, forecaster.rank().get(0).getDevice());
+	}
+
+	/**
+	 * Rates fade once the flow stops, pushing the projection out
+	 */
+	@Test
+	public void testRatesDecay() throws Exception {
+		for(int second = 1; second <= 60; second++) {
+			now[0] = second * 1000L;
+			station.coinValidator.accept(quarter);
+		}
+
+		double soon = forecaster.getSecondsToFull(station.coinStorage);
+		double rate = forecaster.getInflowRate(quarter.getCode());
+
+		// one window later, the rate has fallen by a factor of e
+		now[0] += 10_000;
+		assertEquals(rate / Math.E, forecaster.getInflowRate(quarter.getCode()), 1e-9);
+		assertTrue(forecaster.getSecondsToFull(station.coinStorage) > soon * 2);
+	}
+
+	/**
+	 * The banknote that empties a dispenser is still counted as flowing out
+	 */
+	@Test
+	public void testBanknoteDispenserEmptied() throws Exception {
+		BanknoteSlot output = new BanknoteSlot(true);
+		BanknoteDispenser fives = new BanknoteDispenser(5);
+		fives.connect(new UnidirectionalChannel<Banknote>(output));
+		fives.load(Banknote.valueOf(5, currency), Banknote.valueOf(5, currency));
+		forecaster.watch("Lane 1 fives", fives);
+
+		fives.emit();
+		output.removeDanglingBanknote();
+		fives.emit();
+		output.removeDanglingBanknote();
+
+		// two banknotes at once, over a 10 second window
+		assertEquals(0.2, forecaster.getOutflowRate(Banknote.valueOf(5, currency).getCode()), 1e-9);
+		assertEquals(0, forecaster.getSecondsToEmpty(fives), 0);
+		assertEquals(CashForecaster.Action.REFILL, forecaster.rank().get(0).getAction());
+	}
+
+	@Test
+	public void testOnErrorIfInvalid() {
+		try {
+			new CashForecaster(0);
+			fail("Should throw SimulationException if the window isn't positive");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			forecaster.watch("Lane 1 again", station);
+			fail("Should throw SimulationException if a station is watched twice");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			forecaster.getSecondsToEmpty(new CoinDispenser(1));
+			fail("Should throw SimulationException if the device isn't watched");
+		} catch (SimulationException e) {/*expected*/}
+	}
+}
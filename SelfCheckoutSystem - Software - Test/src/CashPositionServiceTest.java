@@ -0,0 +1,205 @@
+/*
+ * 	Class:			CashPositionServiceTest.java
+ * 	Description:	JUnit testing class for CashPositionService.java
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.Banknote;
+import org.lsmr.selfcheckout.CashTally;
+import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.devices.BanknoteDispenser;
+import org.lsmr.selfcheckout.devices.BanknoteSlot;
+import org.lsmr.selfcheckout.devices.CoinDispenser;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.devices.UnidirectionalChannel;
+import org.lsmr.selfcheckout.devices.UnloadedCash;
+
+public class CashPositionServiceTest {
+
+	private Currency currency;
+	private SelfCheckoutStation station;
+	private CashPositionService service;
+	private Coin quarter, loonie, invalid;
+
+	@Before
+	public void setup() {
+		currency = Currency.getInstance(Locale.CANADA);
+		int[] banknoteDenominations = {5, 10, 20, 50};
+		BigDecimal[] coinDenominations = {new BigDecimal("0.05"), new BigDecimal("0.10"), new BigDecimal("0.25"),
+				new BigDecimal("1.00"), new BigDecimal("2.00")};
+		station = new SelfCheckoutStation(currency, banknoteDenominations, coinDenominations, 1000, 1);
+
+		service = new CashPositionService(currency);
+		service.watch(station);
+
+		quarter = Coin.valueOf(new BigDecimal("0.25"), currency);
+		loonie = Coin.valueOf(new BigDecimal("1.00"), currency);
+		invalid = new Coin(new BigDecimal("0.03"), currency);
+	}
+
+	/**
+	 * Coins inserted at the slot are counted where they end up, storage or tray
+	 */
+	@Test
+	public void testCoinsFollowedToStorageAndTray() throws Exception {
+		station.coinSlot.acceptAll(quarter, quarter, loonie, invalid);
+		station.coinSlot.accept(quarter);
+
+		// the validator may falsely reject a coin, so compare against what the devices really hold
+		long trayValue = service.getValue(station.coinTray);
+		UnloadedCash<Coin> tray = station.coinTray.collectAll();
+		assertEquals(tray.getTally().getValue(currency), trayValue);
+		assertTrue(trayValue >= 3);
+		assertEquals(0, service.getValue(station.coinTray));
+
+		int quarters = service.getCount(station.coinStorage, quarter.getCode());
+		int loonies = service.getCount(station.coinStorage, loonie.getCode());
+		assertEquals(25 * quarters + 100 * loonies, service.getValue(station.coinStorage));
+		assertEquals(service.getValue(), service.getValue(station.coinStorage));
+
+		UnloadedCash<Coin> stored = station.coinStorage.unloadAll();
+		assertEquals(quarters, stored.getTally().getCountOf(quarter.getCode()));
+		assertEquals(loonies, stored.getTally().getCountOf(loonie.getCode()));
+		assertEquals(0, service.getValue());
+		assertEquals(0, service.getCount(quarter.getCode()));
+	}
+
+	/**
+	 * The tray is counted until the customer collects the coins
+	 */
+	@Test
+	public void testTrayCountedUntilCollected() throws Exception {
+		station.coinTray.accept(invalid);
+		station.coinTray.accept(quarter);
+
+		assertEquals(1, service.getCount(station.coinTray, quarter.getCode()));
+		assertEquals(1, service.getCount(station.coinTray, invalid.getCode()));
+		assertEquals(28, service.getValue(station.coinTray));
+
+		station.coinTray.collectCoins();
+		assertEquals(0, service.getValue(station.coinTray));
+		assertEquals(0, service.getCount(quarter.getCode()));
+	}
+
+	/**
+	 * Loading and unloading storage units directly is counted too
+	 */
+	@Test
+	public void testStorageLoadAndUnload() throws Exception {
+		station.banknoteStorage.load(Banknote.valueOf(20, currency), Banknote.valueOf(5, currency));
+		station.coinStorage.load(loonie, loonie);
+
+		assertEquals(2700, service.getValue());
+		assertEquals(2500, service.getValue(station.banknoteStorage));
+		assertEquals(2, service.getCount(loonie.getCode()));
+
+		station.banknoteStorage.unload();
+		assertEquals(200, service.getValue());
+	}
+
+	/**
+	 * Dispensers are counted as they are loaded, emit and are unloaded, including a banknote
+	 * dispenser whose last banknote is only announced as it becoming empty
+	 */
+	@Test
+	public void testDispensers() throws Exception {
+		CoinDispenser coins = new CoinDispenser(100);
+		coins.connect(new UnidirectionalChannel<Coin>(station.coinTray));
+		service.watch(coins);
+
+		BanknoteSlot output = new BanknoteSlot(true);
+		BanknoteDispenser banknotes = new BanknoteDispenser(10);
+		banknotes.connect(new UnidirectionalChannel<Banknote>(output));
+		service.watch(banknotes);
+
+		Coin[] load = new Coin[40];
+		Arrays.fill(load, quarter);
+		coins.load(load);
+		banknotes.load(Banknote.valueOf(10, currency), Banknote.valueOf(10, currency));
+		assertEquals(40 * 25 + 2000, service.getValue());
+
+		coins.emit(10);
+		assertEquals(30 * 25, service.getValue(coins));
+		assertEquals(10 * 25, service.getValue(station.coinTray));
+		assertEquals(40, service.getCount(quarter.getCode()));
+
+		banknotes.emit();
+		output.removeDanglingBanknote();
+		banknotes.emit();
+		output.removeDanglingBanknote();
+		assertEquals(0, service.getValue(banknotes));
+
+		coins.unload();
+		assertEquals(10, service.getCount(quarter.getCode()));
+		assertEquals(10 * 25, service.getValue());
+	}
+
+	/**
+	 * A storm of events keeps the counters in step with what the devices really hold
+	 */
+	@Test
+	public void testEventStorm() throws Exception {
+		CoinDispenser dispenser = new CoinDispenser(SelfCheckoutStation.COIN_TRAY_CAPACITY);
+		dispenser.connect(new UnidirectionalChannel<Coin>(station.coinTray));
+		service.watch(dispenser);
+
+		Coin[] batch = new Coin[SelfCheckoutStation.COIN_STORAGE_CAPACITY / 4];
+		for(int i = 0; i < batch.length; i++)
+			batch[i] = i % 2 == 0 ? quarter : loonie;
+
+		Coin[] refill = new Coin[SelfCheckoutStation.COIN_TRAY_CAPACITY];
+		Arrays.fill(refill, loonie);
+
+		long expected = 0;
+		for(int round = 0; round < 2000; round++) {
+			station.coinStorage.load(batch);
+			dispenser.load(refill);
+			dispenser.emit(refill.length);
+			station.coinTray.collectAll();
+
+			if(round % 4 == 3) {
+				expected = 0;
+				station.coinStorage.unloadAll();
+			}
+			else
+				expected += (batch.length / 2) * 125;
+
+			assertEquals(expected, service.getValue());
+		}
+
+		CashTally snapshot = service.snapshot();
+		assertEquals(station.coinStorage.getCoinCount(), snapshot.getTotalCount());
+		assertEquals(station.coinStorage.unloadAll().getTally().getValue(currency), snapshot.getValue(currency));
+	}
+
+	/**
+	 * Devices can only be watched once, and reads are only answered for watched devices
+	 */
+	@Test
+	public void testOnErrorIfInvalid() {
+		try {
+			new CashPositionService(null);
+			fail("Should throw SimulationException if the currency is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			service.watch(station.coinTray);
+			fail("Should throw SimulationException if a device is watched twice");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			service.getValue(new CoinDispenser(1));
+			fail("Should throw SimulationException if the device isn't watched");
+		} catch (SimulationException e) {/*expected*/}
+	}
+}
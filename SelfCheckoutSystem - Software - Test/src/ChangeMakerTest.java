@@ -0,0 +1,467 @@
+/*
+ * 	Class:			ChangeMakerTest.java
+ * 	Description:	JUnit testing class for ChangeMaker.java
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.Banknote;
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.devices.BanknoteDispenser;
+import org.lsmr.selfcheckout.devices.BanknoteSlot;
+import org.lsmr.selfcheckout.devices.CoinDispenser;
+import org.lsmr.selfcheckout.devices.CoinTray;
+import org.lsmr.selfcheckout.devices.DisabledException;
+import org.lsmr.selfcheckout.devices.EmptyException;
+import org.lsmr.selfcheckout.devices.OverloadException;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.devices.UnidirectionalChannel;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+public class ChangeMakerTest {
+
+	private Currency currency;
+	private Map<BigDecimal, CoinDispenser> coinDispensers;
+	private Map<Integer, BanknoteDispenser> banknoteDispensers;
+	private CoinTray tray;
+	private BanknoteSlot slot;
+
+	@Before
+	public void setup() {
+		currency = Currency.getInstance(Locale.CANADA);
+		coinDispensers = new LinkedHashMap<>();
+		banknoteDispensers = new LinkedHashMap<>();
+		tray = new CoinTray(200);
+		slot = new BanknoteSlot(true);
+	}
+
+	/**
+	 * The common case is answered from the precomputed table with the fewest pieces
+	 */
+	@Test
+	public void testFewestPieces() throws OverloadException {
+		addCoins("0.05", 10);
+		addCoins("0.10", 10);
+		addCoins("0.25", 10);
+		addCoins("1.00", 10);
+		addCoins("2.00", 10);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+
+		// 3.40 = 2.00 + 1.00 + 0.25 + 0.10 + 0.05
+		int[] counts = changeMaker.solve(340, changeMaker.inventory());
+		assertArrayEquals(new int[] {1, 1, 1, 1, 1}, counts);
+	}
+
+	/**
+	 * Denominations where the greedy choice isn't optimal still produce the fewest pieces
+	 */
+	@Test
+	public void testNonGreedyDenominations() throws OverloadException {
+		addCoins("0.01", 10);
+		addCoins("0.03", 10);
+		addCoins("0.04", 10);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+
+		// greedy would give 4 + 1 + 1; optimal is 3 + 3
+		assertArrayEquals(new int[] {0, 2, 0}, changeMaker.solve(6, changeMaker.inventory()));
+	}
+
+	/**
+	 * When a dispenser runs low, the payout is built from what is actually in the dispensers
+	 */
+	@Test
+	public void testLimitedInventory() throws OverloadException {
+		addCoins("0.05", 10);
+		addCoins("0.10", 10);
+		addCoins("0.25", 1);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+
+		// 0.50 would be 2 quarters, but only one is left
+		int[] counts = changeMaker.solve(50, changeMaker.inventory());
+		assertArrayEquals(new int[] {1, 2, 1}, counts);
+	}
+
+	/**
+	 * Amounts that can't be paid exactly are refused
+	 */
+	@Test
+	public void testImpossibleAmounts() throws OverloadException {
+		addCoins("0.05", 2);
+		addCoins("0.25", 1);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+
+		assertNull(changeMaker.solve(6, changeMaker.inventory()));
+		assertNull(changeMaker.solve(45, changeMaker.inventory()));
+		assertArrayEquals(new int[] {0, 0}, changeMaker.solve(0, changeMaker.inventory()));
+	}
+
+	/**
+	 * Amounts larger than the precomputed table are still solved
+	 */
+	@Test
+	public void testLargeAmount() throws OverloadException {
+		addCoins("0.05", 100);
+		addCoins("0.25", 100);
+		addBanknotes(5, 100);
+		addBanknotes(20, 100);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+
+		// 1565.30 = 78 x 20 + 1 x 5 + 1 x 0.25 + 1 x 0.05
+		int[] counts = changeMaker.solve(156530, changeMaker.inventory());
+		assertArrayEquals(new int[] {78, 1, 1, 1}, counts);
+	}
+
+	/**
+	 * Dispensing emits the solved pieces from each dispenser into the tray
+	 */
+	@Test
+	public void testDispense() throws Exception {
+		addCoins("0.10", 5);
+		addCoins("0.25", 5);
+		addCoins("1.00", 5);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+
+		assertTrue(changeMaker.dispense(145));
+
+		assertEquals(3, coinDispensers.get(new BigDecimal("0.10")).size());
+		assertEquals(4, coinDispensers.get(new BigDecimal("0.25")).size());
+		assertEquals(4, coinDispensers.get(new BigDecimal("1.00")).size());
+
+		BigDecimal collected = BigDecimal.ZERO;
+		for(Coin coin : tray.collectCoins())
+			if(coin != null)
+				collected = collected.add(coin.getValue());
+		assertEquals(0, collected.compareTo(new BigDecimal("1.45")));
+
+		// nothing is emitted when the amount can't be made
+		assertFalse(changeMaker.dispense(5));
+		assertEquals(3, coinDispensers.get(new BigDecimal("0.10")).size());
+	}
+
+	/**
+	 * Dispensers keep paying out in order after being refilled past the end of their buffer
+	 */
+	@Test
+	public void testDispenseAfterRefill() throws Exception {
+		addCoins("0.25", 200);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+		CoinDispenser quarters = coinDispensers.get(new BigDecimal("0.25"));
+
+		assertTrue(changeMaker.dispense(2500));
+		assertEquals(100, quarters.size());
+		tray.collectCoins();
+
+		Coin[] refill = new Coin[100];
+		Arrays.fill(refill, Coin.valueOf(new BigDecimal("0.25"), currency));
+		quarters.load(refill);
+		assertEquals(200, quarters.size());
+
+		assertTrue(changeMaker.dispense(5000));
+		assertEquals(0, quarters.size());
+
+		int collected = 0;
+		for(Coin coin : tray.collectCoins())
+			if(coin != null)
+				collected++;
+		assertEquals(200, collected);
+		assertTrue(quarters.unload().isEmpty());
+	}
+
+	/**
+	 * Banknotes go out through the slot one at a time, the next as soon as the customer takes the
+	 * last, and aren't paid out twice while they wait
+	 */
+	@Test
+	public void testDispenseBanknotesThroughSlot() throws Exception {
+		addBanknotes(5, 5);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+		BanknoteDispenser fives = banknoteDispensers.get(5);
+
+		assertTrue(changeMaker.dispense(1000));
+		assertEquals(4, fives.size());
+		assertEquals(1, changeMaker.getPendingBanknotes());
+		assertArrayEquals(new int[] {3}, changeMaker.inventory());
+
+		// the slot is still full, so nothing more goes out
+		assertEquals(1, changeMaker.releaseBanknotes());
+		assertEquals(4, fives.size());
+
+		assertEquals(5000, changeMaker.getPendingValue() * 10);
+
+		// taking the banknote releases the next
+		assertEquals(5, slot.removeDanglingBanknote().getValue());
+		assertEquals(3, fives.size());
+		assertEquals(0, changeMaker.getPendingBanknotes());
+		assertEquals(0, changeMaker.releaseBanknotes());
+		assertEquals(5, slot.removeDanglingBanknote().getValue());
+		assertNull(slot.removeDanglingBanknote());
+
+		// only the banknotes left over can be paid out
+		assertFalse(changeMaker.dispense(2000));
+		assertTrue(changeMaker.dispense(1500));
+		assertEquals(2, changeMaker.getPendingBanknotes());
+	}
+
+	/**
+	 * A payout of coins and banknotes puts the coins in the tray at once and the banknotes through
+	 * the slot largest first
+	 */
+	@Test
+	public void testDispenseCoinsAndBanknotes() throws Exception {
+		addCoins("0.25", 10);
+		addBanknotes(5, 5);
+		addBanknotes(20, 5);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+
+		// 45.50 = 2 x 20 + 1 x 5 + 2 x 0.25
+		assertTrue(changeMaker.dispense(4550));
+		assertEquals(2, changeMaker.getPendingBanknotes());
+		assertEquals(8, coinDispensers.get(new BigDecimal("0.25")).size());
+
+		int[] taken = new int[3];
+		for(int i = 0; i < 3; i++)
+			taken[i] = slot.removeDanglingBanknote().getValue();
+		assertArrayEquals(new int[] {20, 20, 5}, taken);
+		assertTrue(slot.hasSpace());
+		assertEquals(0, changeMaker.getPendingBanknotes());
+		assertEquals(3, banknoteDispensers.get(20).size());
+		assertEquals(4, banknoteDispensers.get(5).size());
+
+		int collected = 0;
+		for(Coin coin : tray.collectCoins())
+			if(coin != null)
+				collected++;
+		assertEquals(2, collected);
+	}
+
+	/**
+	 * A payout with more coins than the tray has room for fails before any coin or banknote is
+	 * emitted
+	 */
+	@Test
+	public void testTrayTooFull() throws Exception {
+		tray = new CoinTray(3);
+		addCoins("0.10", 5);
+		addCoins("0.25", 5);
+		addBanknotes(5, 5);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+
+		// 5.70 = 1 x 5 + 2 x 0.25 + 2 x 0.10, one coin too many
+		try {
+			changeMaker.dispense(570);
+			fail("Expected OverloadException");
+		}
+		catch(OverloadException e) { /* expected */ }
+
+		assertEquals(5, coinDispensers.get(new BigDecimal("0.10")).size());
+		assertEquals(5, coinDispensers.get(new BigDecimal("0.25")).size());
+		assertEquals(5, banknoteDispensers.get(5).size());
+		assertEquals(0, changeMaker.getPendingBanknotes());
+		assertTrue(slot.hasSpace());
+
+		// three coins fit
+		assertTrue(changeMaker.dispense(560));
+		assertEquals(4, banknoteDispensers.get(5).size());
+	}
+
+	/**
+	 * A disabled dispenser stops the payout before anything is emitted
+	 */
+	@Test
+	public void testDisabledDispenser() throws Exception {
+		addCoins("0.10", 5);
+		addCoins("0.25", 5);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+		coinDispensers.get(new BigDecimal("0.10")).disable();
+
+		try {
+			changeMaker.dispense(35);
+			fail("Expected DisabledException");
+		}
+		catch(DisabledException e) { /* expected */ }
+
+		assertEquals(5, coinDispensers.get(new BigDecimal("0.25")).size());
+	}
+
+	/**
+	 * CustomerPayment pays the change owed through the change maker
+	 */
+	@Test
+	public void testCustomerPaymentDispensesChange() throws Exception {
+		BigDecimal[] coinDenominations = {BigDecimal.valueOf(0.05), BigDecimal.valueOf(0.25), BigDecimal.valueOf(1.00)};
+		SelfCheckoutStation station = new SelfCheckoutStation(currency, new int[] {5, 10}, coinDenominations, 1000, 1);
+		addCoins("0.05", 10);
+		addCoins("0.25", 10);
+		addCoins("1.00", 10);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+
+		ArrayList<BarcodedProduct> products = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Cheese sticks", BigDecimal.valueOf(2.95))
+		}));
+		CustomerPayment payment = new CustomerPayment(products, station);
+
+		while(payment.getTotalInMinorUnits() > 0) {
+			payment.PayBanknote(new Banknote(5, currency));
+			station.banknoteInput.removeDanglingBanknote();
+		}
+
+		assertEquals(205, payment.getChangeInMinorUnits());
+		assertTrue(payment.dispenseChange(changeMaker));
+		assertEquals(0, payment.getChangeInMinorUnits());
+		assertEquals(8, coinDispensers.get(new BigDecimal("1.00")).size());
+		assertEquals(9, coinDispensers.get(new BigDecimal("0.05")).size());
+	}
+
+	/**
+	 * Change paid in banknotes is still owed until the last banknote has gone out through the slot
+	 */
+	@Test
+	public void testCustomerPaymentOwesWaitingBanknotes() throws Exception {
+		SelfCheckoutStation station = new SelfCheckoutStation(currency, new int[] {5, 10, 20}, new BigDecimal[] {BigDecimal.ONE}, 1000, 1);
+		addBanknotes(5, 5);
+		ChangeMaker changeMaker = new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+
+		ArrayList<BarcodedProduct> products = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Cheese sticks", BigDecimal.valueOf(5.00))
+		}));
+		CustomerPayment payment = new CustomerPayment(products, station);
+
+		while(payment.getTotalInMinorUnits() > 0) {
+			payment.PayBanknote(new Banknote(20, currency));
+			station.banknoteInput.removeDanglingBanknote();
+		}
+
+		// 15.00 = 3 x 5, of which the slot takes one at a time
+		assertEquals(1500, payment.getChangeInMinorUnits());
+		assertTrue(payment.dispenseChange(changeMaker));
+		assertEquals(1000, payment.getChangeInMinorUnits());
+
+		slot.removeDanglingBanknote();
+		assertEquals(500, payment.getChangeInMinorUnits());
+		slot.removeDanglingBanknote();
+		assertEquals(0, payment.getChangeInMinorUnits());
+		assertEquals(5, slot.removeDanglingBanknote().getValue());
+		assertEquals(2, banknoteDispensers.get(5).size());
+	}
+
+	/**
+	 * The change maker of a station pays out of the station's own coin dispensers into its tray,
+	 * and the station's software has one
+	 */
+	@Test
+	public void testStationChangeMaker() throws Exception {
+		BigDecimal[] coinDenominations = {BigDecimal.valueOf(0.05), BigDecimal.valueOf(0.25), BigDecimal.valueOf(2.00)};
+		SelfCheckoutStation station = new SelfCheckoutStation(currency, new int[] {5, 10}, coinDenominations, 1000, 1);
+		station.coinDispensers.get(200L).load(new Coin(new BigDecimal("2.00"), currency));
+		station.coinDispensers.get(5L).load(new Coin(new BigDecimal("0.05"), currency), new Coin(new BigDecimal("0.05"), currency));
+		ChangeMaker changeMaker = new ChangeMaker(station);
+		assertEquals(currency, changeMaker.getCurrency());
+		assertArrayEquals(new long[] {200, 25, 5}, changeMaker.getDenominations());
+
+		ArrayList<BarcodedProduct> products = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Cheese sticks", BigDecimal.valueOf(2.95))
+		}));
+		CustomerPayment payment = new CustomerPayment(products, station);
+
+		while(payment.getTotalInMinorUnits() > 0) {
+			payment.PayBanknote(new Banknote(5, currency));
+			station.banknoteInput.removeDanglingBanknote();
+		}
+
+		// 2.05 = 1 x 2.00 + 1 x 0.05
+		assertTrue(payment.dispenseChange(changeMaker));
+		assertEquals(0, payment.getChangeInMinorUnits());
+		assertEquals(2, station.coinTray.collectAll().size());
+		assertEquals(1, station.coinDispensers.get(5L).size());
+
+		assertNotNull(new SoftwareMain().changeMaker);
+	}
+
+	/**
+	 * Invalid configurations are rejected
+	 */
+	@Test
+	public void testOnErrorIfInvalid() throws OverloadException {
+		try {
+			new ChangeMaker(null, coinDispensers, banknoteDispensers, slot);
+			fail("Should throw SimulationException if currency is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			new ChangeMaker(currency, coinDispensers, banknoteDispensers, slot);
+			fail("Should throw SimulationException if there are no dispensers");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			new ChangeMaker(null);
+			fail("Should throw SimulationException if station is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			addBanknotes(5, 1);
+			new ChangeMaker(currency, coinDispensers, banknoteDispensers, null);
+			fail("Should throw SimulationException if the banknotes have no output");
+		} catch (SimulationException e) {/*expected*/}
+		banknoteDispensers.clear();
+
+		try {
+			Map<BigDecimal, CoinDispenser> coins = new HashMap<>();
+			coins.put(new BigDecimal("0.001"), new CoinDispenser(10));
+			new ChangeMaker(currency, coins, banknoteDispensers, slot);
+			fail("Should throw SimulationException if a denomination is a fraction of a cent");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			Map<BigDecimal, CoinDispenser> coins = new HashMap<>();
+			coins.put(new BigDecimal("1.00"), new CoinDispenser(10));
+			coins.put(new BigDecimal("1"), new CoinDispenser(10));
+			new ChangeMaker(currency, coins, banknoteDispensers, slot);
+			fail("Should throw SimulationException if a denomination is repeated");
+		} catch (SimulationException e) {/*expected*/}
+	}
+
+	/**
+	 * Helper method that creates a coin dispenser connected to the tray and loads it with coins
+	 */
+	private void addCoins(String value, int count) throws OverloadException {
+		BigDecimal denomination = new BigDecimal(value);
+		CoinDispenser dispenser = new CoinDispenser(200);
+		dispenser.connect(new UnidirectionalChannel<Coin>(tray));
+
+		Coin[] coins = new Coin[count];
+		for(int i = 0; i < count; i++)
+			coins[i] = new Coin(denomination, currency);
+		dispenser.load(coins);
+
+		coinDispensers.put(denomination, dispenser);
+	}
+
+	/**
+	 * Helper method that creates a banknote dispenser connected to the slot and loads it with banknotes
+	 */
+	private void addBanknotes(int value, int count) throws OverloadException {
+		BanknoteDispenser dispenser = new BanknoteDispenser(200);
+		dispenser.connect(new UnidirectionalChannel<Banknote>(slot));
+
+		Banknote[] banknotes = new Banknote[count];
+		for(int i = 0; i < count; i++)
+			banknotes[i] = new Banknote(value, currency);
+		dispenser.load(banknotes);
+
+		banknoteDispensers.put(value, dispenser);
+	}
+}
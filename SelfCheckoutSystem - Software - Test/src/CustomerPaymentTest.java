@@ -10,8 +10,11 @@ import static org.junit.Assert.*;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Currency;
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -25,9 +28,12 @@ import org.lsmr.selfcheckout.devices.Acceptor;
 import org.lsmr.selfcheckout.devices.BanknoteDispenser;
 import org.lsmr.selfcheckout.devices.BanknoteSlot;
 import org.lsmr.selfcheckout.devices.BanknoteStorageUnit;
+import org.lsmr.selfcheckout.devices.CoinDispenser;
 import org.lsmr.selfcheckout.devices.CoinStorageUnit;
 import org.lsmr.selfcheckout.devices.CoinTray;
+import org.lsmr.selfcheckout.devices.CoinValidator;
 import org.lsmr.selfcheckout.devices.DisabledException;
+import org.lsmr.selfcheckout.devices.OverloadException;
 import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
 import org.lsmr.selfcheckout.devices.SimulationException;
 import org.lsmr.selfcheckout.devices.UnidirectionalChannel;
@@ -39,6 +45,7 @@ import org.lsmr.selfcheckout.devices.listeners.CoinSlotListener;
 import org.lsmr.selfcheckout.devices.listeners.CoinStorageUnitListener;
 import org.lsmr.selfcheckout.devices.listeners.CoinTrayListener;
 import org.lsmr.selfcheckout.devices.listeners.CoinValidatorListener;
+import org.lsmr.selfcheckout.external.CardIssuer;
 import org.lsmr.selfcheckout.products.BarcodedProduct;
 import org.lsmr.selfcheckout.products.Product;
 
@@ -67,12 +74,12 @@ public class CustomerPaymentTest {
 	}
 	
 	/**
-	 * Verifies that the coin storage can become full - this implies that the coin listener is
-	 * working as intended
+	 * Verifies that once the coin storage is full, coins go on into the dispenser of their
+	 * denomination and are still credited, until the total is paid and the next coin throws
 	 * @throws DisabledException
 	 */
 	@Test
-	public void testMaxCoinStorage() throws DisabledException{
+	public void testCoinStorageOverflowsToDispenser() throws DisabledException{
 		int maxLoop = 10000;
 		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
 				newProduct("01234", 1100.0)
@@ -83,11 +90,18 @@ public class CustomerPaymentTest {
 		for(int i = 0; i < maxLoop; i++) {
 			try {
 				payment.PayCoin(new Coin(BigDecimal.valueOf(1.00), getCurrency()));
+				
+				// the customer takes back any coin rejected, so the tray never fills
+				station.coinTray.collectCoins();
+			}
+			catch(SimulationException e) {
+				assertEquals(SelfCheckoutStation.COIN_STORAGE_CAPACITY, station.coinStorage.getCoinCount());
+				assertTrue(station.coinDispensers.get(100L).size() > 0);
+				return;
 			}
-			catch(SimulationException e) { return; }
 		}
 		
-		fail("Coin storage should be full and throw SimulationException");
+		fail("Paying past the total should throw SimulationException");
 	}
 	
 	/**
@@ -210,6 +224,418 @@ public class CustomerPaymentTest {
 		assertEquals(15.2+5.0+1.5+100, payment.getTotal(), 0.001);
 	}
 	
+	/**
+	 * Checks that totals are kept exactly in minor units, even for prices that cannot be
+	 * represented exactly in binary floating-point
+	 */
+	@Test
+	public void testTotalIsExactInMinorUnits() {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99)),
+				new BarcodedProduct(new Barcode("01234"), "Cheese sticks", BigDecimal.valueOf(2.95)),
+				newProduct("01234", 15.2)
+		}));
+		
+		CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+		
+		assertEquals(1099 + 295 + 1520, payment.getTotalInMinorUnits());
+	}
+	
+	/**
+	 * Checks that paying off a total with coins leaves no stray fraction of a cent, and
+	 * that overpayment is recorded exactly as change
+	 * @throws DisabledException
+	 */
+	@Test
+	public void testExactChangeAfterPayment() throws DisabledException {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99)),
+				new BarcodedProduct(new Barcode("01234"), "Cheese sticks", BigDecimal.valueOf(2.95))
+		}));
+		
+		CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+		
+		// the validator may falsely reject a coin, so keep paying until the total is covered
+		while(payment.getTotalInMinorUnits() > 0)
+			payment.PayCoin(new Coin(BigDecimal.valueOf(0.10), getCurrency()));
+		
+		assertEquals(0, payment.getTotalInMinorUnits());
+		assertEquals(6, payment.getChangeInMinorUnits());
+		assertEquals(0.0, payment.getTotal(), 0.0);
+	}
+	
+	@Test
+	public void testBulkCoinPayment() throws DisabledException {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99)),
+				new BarcodedProduct(new Barcode("01234"), "Cheese sticks", BigDecimal.valueOf(2.95))
+		}));
+		
+		CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+		
+		final int[] trayed = {0};
+		station.coinTray.register(new CoinTrayListener() {
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void coinAdded(CoinTray tray) {
+				trayed[0]++;
+			}
+		});
+		
+		Coin[] coins = new Coin[62];
+		for(int i = 0; i < 60; i++)
+			coins[i] = Coin.valueOf(BigDecimal.valueOf(0.25), getCurrency());
+		coins[60] = new Coin(BigDecimal.valueOf(0.03), getCurrency());
+		coins[61] = new Coin(BigDecimal.valueOf(0.03), getCurrency());
+		
+		payment.PayCoins(coins);
+		
+		// the validator may falsely reject a few quarters, but the invalid coins are never stored
+		int stored = station.coinStorage.getCoinCount();
+		assertTrue(stored <= 60);
+		assertEquals(62 - stored, trayed[0]);
+		assertEquals(Math.max(0, 1394 - 25 * stored), payment.getTotalInMinorUnits());
+		assertEquals(Math.max(0, 25 * stored - 1394), payment.getChangeInMinorUnits());
+	}
+	
+	@Test
+	public void testBulkCoinPaymentReturnsOverflow() throws DisabledException, OverloadException {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99))
+		}));
+		
+		CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+		
+		Coin quarter = Coin.valueOf(BigDecimal.valueOf(0.25), getCurrency());
+		Coin[] full = new Coin[SelfCheckoutStation.COIN_STORAGE_CAPACITY - 5];
+		Arrays.fill(full, quarter);
+		station.coinStorage.load(full);
+		
+		// with the quarter dispenser full as well, there is nowhere else to keep the overflow
+		Coin[] dispenserFull = new Coin[SelfCheckoutStation.COIN_DISPENSER_CAPACITY];
+		Arrays.fill(dispenserFull, quarter);
+		station.coinDispensers.get(25L).load(dispenserFull);
+		
+		Coin[] coins = new Coin[10];
+		Arrays.fill(coins, quarter);
+		payment.PayCoins(coins);
+		
+		// only the coins that fit in storage are credited, the rest come back in the tray
+		int stored = station.coinStorage.getCoinCount() - full.length;
+		assertTrue(stored <= 5);
+		assertEquals(1099 - 25 * stored, payment.getTotalInMinorUnits());
+		int returned = 0;
+		for(Coin coin : station.coinTray.collectCoins())
+			if(coin != null)
+				returned++;
+		assertEquals(10 - stored, returned);
+	}
+	
+	/**
+	 * Once the coin storage is full, coins are recycled into the dispenser for their denomination
+	 * and still credited, and only come back in the tray once that dispenser is full too
+	 * @throws DisabledException
+	 * @throws OverloadException
+	 */
+	@Test
+	public void testCoinOverflowToDispenser() throws DisabledException, OverloadException {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99))
+		}));
+		
+		CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+		
+		Coin loonie = Coin.valueOf(BigDecimal.valueOf(1.00), getCurrency());
+		Coin[] full = new Coin[SelfCheckoutStation.COIN_STORAGE_CAPACITY];
+		Arrays.fill(full, loonie);
+		station.coinStorage.load(full);
+		
+		CoinDispenser loonies = station.coinDispensers.get(100L);
+		Coin[] almostFull = new Coin[SelfCheckoutStation.COIN_DISPENSER_CAPACITY - 3];
+		Arrays.fill(almostFull, loonie);
+		loonies.load(almostFull);
+		
+		// the validator may falsely reject a loonie now and then, which is also returned
+		for(int i = 0; i < 5; i++)
+			payment.PayCoin(loonie);
+		
+		long kept = station.coinValidator.getRouteCount(CoinValidator.Route.OVERFLOW);
+		assertTrue(kept <= 3);
+		assertEquals(kept, loonies.size() - almostFull.length);
+		assertEquals(0, station.coinValidator.getRouteCount(CoinValidator.Route.STORAGE));
+		assertEquals(5 - kept, station.coinValidator.getRouteCount(CoinValidator.Route.RETURNED)
+				+ station.coinValidator.getRouteCount(CoinValidator.Route.REJECTED));
+		assertEquals(1099 - 100 * kept, payment.getTotalInMinorUnits());
+		
+		int returned = 0;
+		for(Coin coin : station.coinTray.collectCoins())
+			if(coin != null)
+				returned++;
+		assertEquals(5 - kept, returned);
+	}
+	
+	/**
+	 * A batch of coins overflowing the coin storage is split between storage and the dispensers
+	 * @throws DisabledException
+	 * @throws OverloadException
+	 */
+	@Test
+	public void testBulkCoinOverflowToDispensers() throws DisabledException, OverloadException {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99))
+		}));
+		
+		CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+		
+		Coin quarter = Coin.valueOf(BigDecimal.valueOf(0.25), getCurrency());
+		Coin dime = Coin.valueOf(BigDecimal.valueOf(0.10), getCurrency());
+		Coin[] full = new Coin[SelfCheckoutStation.COIN_STORAGE_CAPACITY - 4];
+		Arrays.fill(full, dime);
+		station.coinStorage.load(full);
+		
+		Coin[] coins = new Coin[20];
+		for(int i = 0; i < coins.length; i++)
+			coins[i] = i % 2 == 0 ? quarter : dime;
+		payment.PayCoins(coins);
+		
+		CoinValidator validator = station.coinValidator;
+		long stored = validator.getRouteCount(CoinValidator.Route.STORAGE);
+		long overflowed = validator.getRouteCount(CoinValidator.Route.OVERFLOW);
+		int quarters = station.coinDispensers.get(25L).size();
+		int dimes = station.coinDispensers.get(10L).size();
+		
+		// every valid coin is kept, the first ones in storage and the rest in the dispensers
+		assertTrue(stored <= 4);
+		assertEquals(stored, station.coinStorage.getCoinCount() - full.length);
+		assertEquals(overflowed, quarters + dimes);
+		assertEquals(0, validator.getRouteCount(CoinValidator.Route.RETURNED));
+		assertEquals(20, stored + overflowed + validator.getRouteCount(CoinValidator.Route.REJECTED));
+		assertTrue(stored + overflowed >= 16);
+	}
+	
+	/**
+	 * Paying by card authorizes and posts the whole total, unless the issuer declines it
+	 */
+	@Test
+	public void testCardPayment() {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99))
+		}));
+		
+		CardIssuer issuer = new CardIssuer("Bank", getCurrency());
+		Calendar expiry = Calendar.getInstance();
+		expiry.add(Calendar.YEAR, 1);
+		issuer.addCardData("4500123412341234", "Jane Doe", expiry, "123", BigDecimal.valueOf(20));
+		CardAuthorizationClient client = new CardAuthorizationClient(issuer, 5, 5, 5000);
+		
+		try {
+			CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+			assertTrue(payment.PayCard("4500123412341234", client));
+			assertEquals(0, payment.getTotalInMinorUnits());
+			assertEquals(0, payment.getChangeInMinorUnits());
+			
+			// only 9.01 is left on the card
+			payment = new CustomerPayment(scannedProducts, station);
+			assertFalse(payment.PayCard("4500123412341234", client));
+			assertEquals(1099, payment.getTotalInMinorUnits());
+			assertFalse(payment.PayCard("0000", client));
+		}
+		finally {
+			client.shutdown();
+		}
+	}
+	
+	/**
+	 * A card payment the issuer doesn't answer in time fails without paying anything
+	 */
+	@Test
+	public void testCardPaymentTimeout() {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99))
+		}));
+		
+		CardIssuer issuer = new CardIssuer("Bank", getCurrency());
+		Calendar expiry = Calendar.getInstance();
+		expiry.add(Calendar.YEAR, 1);
+		issuer.addCardData("4500123412341234", "Jane Doe", expiry, "123", BigDecimal.valueOf(20));
+		CardAuthorizationClient client = new CardAuthorizationClient(issuer, 100, 0, 10);
+		
+		CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+		try {
+			payment.PayCard("4500123412341234", client);
+			fail("Should throw SimulationException if the issuer doesn't answer in time");
+		}
+		catch(SimulationException e) {/*expected*/}
+		finally {
+			client.shutdown();
+		}
+		assertEquals(1099, payment.getTotalInMinorUnits());
+	}
+	
+	/**
+	 * A card post the issuer declines or fails releases its hold, so the card isn't left tied up
+	 */
+	@Test
+	public void testCardPostFailureReleasesHold() {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99))
+		}));
+		
+		ScriptedIssuer issuer = new ScriptedIssuer(BigDecimal.valueOf(20));
+		CardAuthorizationClient client = new CardAuthorizationClient(issuer, 0, 0, 5000);
+		
+		try {
+			issuer.post = ScriptedIssuer.DECLINE;
+			CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+			assertFalse(payment.PayCard(ScriptedIssuer.CARD, client));
+			assertEquals(1099, payment.getTotalInMinorUnits());
+			assertEquals(1, issuer.getReleasedHoldCount());
+			
+			issuer.post = ScriptedIssuer.FAIL;
+			try {
+				payment.PayCard(ScriptedIssuer.CARD, client);
+				fail("Should throw SimulationException if the issuer fails the post");
+			} catch (SimulationException e) {/*expected*/}
+			assertEquals(1099, payment.getTotalInMinorUnits());
+			assertEquals(2, issuer.getReleasedHoldCount());
+			
+			// the whole limit is free again
+			assertEquals(0, issuer.getSettledHoldCount());
+			assertTrue(issuer.authorizeHold(ScriptedIssuer.CARD, BigDecimal.valueOf(20)) >= 0);
+		}
+		finally {
+			client.shutdown();
+		}
+	}
+	
+	/**
+	 * A card post the issuer answers after the deadline is waited for rather than guessed at: a
+	 * late post pays the total and charges the card once, and a late failure releases the hold
+	 */
+	@Test
+	public void testCardPostAnsweredLate() throws Exception {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99))
+		}));
+		
+		ScriptedIssuer issuer = new ScriptedIssuer(BigDecimal.valueOf(30));
+		CardAuthorizationClient client = new CardAuthorizationClient(issuer, 0, 0, 200);
+		
+		try {
+			issuer.gate = new CountDownLatch(1);
+			Thread answer = answerAfterTimeout(client, issuer.gate, 1);
+			CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+			assertTrue(payment.PayCard(ScriptedIssuer.CARD, client));
+			answer.join();
+			assertEquals(1, client.getTimedOutCount());
+			assertEquals(0, payment.getTotalInMinorUnits());
+			assertEquals(1, issuer.getSettledHoldCount());
+			assertEquals(0, issuer.getReleasedHoldCount());
+			
+			// charged once: only 19.01 is left
+			assertEquals(-1, issuer.authorizeHold(ScriptedIssuer.CARD, BigDecimal.valueOf(19.02)));
+			
+			issuer.gate = new CountDownLatch(1);
+			issuer.post = ScriptedIssuer.FAIL;
+			answer = answerAfterTimeout(client, issuer.gate, 2);
+			payment = new CustomerPayment(scannedProducts, station);
+			try {
+				payment.PayCard(ScriptedIssuer.CARD, client);
+				fail("Should throw SimulationException if the issuer fails the post late");
+			} catch (SimulationException e) {/*expected*/}
+			answer.join();
+			assertEquals(1099, payment.getTotalInMinorUnits());
+			assertEquals(1, issuer.getReleasedHoldCount());
+			assertTrue(issuer.authorizeHold(ScriptedIssuer.CARD, BigDecimal.valueOf(19.01)) >= 0);
+		}
+		finally {
+			client.shutdown();
+		}
+	}
+	
+	/**
+	 * A card post the issuer doesn't answer even after a further deadline leaves its outcome
+	 * unknown: the payment fails without waiting any longer and the total is still owed, while
+	 * the hold is left for the issuer to expire, as the post may yet land
+	 */
+	@Test
+	public void testCardPostOutcomeUnknown() throws Exception {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99))
+		}));
+		
+		ScriptedIssuer issuer = new ScriptedIssuer(BigDecimal.valueOf(30));
+		CardAuthorizationClient client = new CardAuthorizationClient(issuer, 0, 0, 50);
+		issuer.gate = new CountDownLatch(1);
+		
+		try {
+			CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+			try {
+				payment.PayCard(ScriptedIssuer.CARD, client);
+				fail("Should throw SimulationException if the issuer doesn't answer the post");
+			} catch (SimulationException e) {/*expected*/}
+			assertEquals(1, client.getTimedOutCount());
+			assertEquals(1099, payment.getTotalInMinorUnits());
+			assertEquals(0, issuer.getSettledHoldCount());
+			assertEquals(0, issuer.getReleasedHoldCount());
+			
+			// the hold still ties up 10.99 of the card's 30.00
+			assertEquals(-1, issuer.authorizeHold(ScriptedIssuer.CARD, BigDecimal.valueOf(19.02)));
+		}
+		finally {
+			issuer.gate.countDown();
+			client.shutdown();
+		}
+	}
+	
+	// lets the issuer answer once the client has given up waiting for it
+	private static Thread answerAfterTimeout(CardAuthorizationClient client, CountDownLatch gate, long timedOut) {
+		Thread thread = new Thread(() -> {
+			while(client.getTimedOutCount() < timedOut)
+				LockSupport.parkNanos(1_000_000);
+			gate.countDown();
+		});
+		thread.start();
+		return thread;
+	}
+	
+	@Test (expected = SimulationException.class)
+	public void testBulkCoinPaymentNull() throws DisabledException {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99))
+		}));
+		
+		CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+		payment.PayCoins(new Coin[] { Coin.valueOf(BigDecimal.valueOf(0.25), getCurrency()), null });
+	}
+	
+	@Test
+	public void testBulkCoinPaymentTrayOverfilled() throws DisabledException {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				new BarcodedProduct(new Barcode("01234"), "Chicken nuggets", BigDecimal.valueOf(10.99))
+		}));
+		
+		CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+		
+		// one more invalid coin than the tray holds, so the batch can't be returned
+		Coin[] coins = new Coin[SelfCheckoutStation.COIN_TRAY_CAPACITY + 6];
+		for(int i = 0; i < coins.length; i++)
+			coins[i] = i < 5 ? Coin.valueOf(BigDecimal.valueOf(0.25), getCurrency()) : new Coin(BigDecimal.valueOf(0.03), getCurrency());
+		
+		try {
+			payment.PayCoins(coins);
+			fail("Should throw SimulationException if the tray can't take the returned coins");
+		} catch (SimulationException e) {/*expected*/}
+		
+		// nothing of the batch was taken, counted or credited
+		assertEquals(0, station.coinStorage.getCoinCount());
+		assertEquals(1099, payment.getTotalInMinorUnits());
+		for(CoinValidator.Route route : CoinValidator.Route.values())
+			assertEquals(0, station.coinValidator.getRouteCount(route));
+		for(Coin coin : station.coinTray.collectCoins())
+			assertNull(coin);
+	}
+	
 	/**
 	 * Tests if a coin payment properly deducts the total cost
 	 * @throws DisabledException
@@ -226,6 +652,56 @@ public class CustomerPaymentTest {
 		assertEquals(15.2-1.0, payment.getTotal(), 0.0001);
 	}
 
+	/**
+	 * Coins are recognized by value regardless of how many decimal places the value was
+	 * written with (0.1 and 0.10 are the same coin)
+	 * @throws DisabledException
+	 */
+	@Test
+	public void testCoinValueScaleIgnored() throws DisabledException {
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				newProduct("01234", 15.2)
+		}));
+		
+		CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+		
+		// the validator may falsely reject a coin, so retry a few times
+		for(int i = 0; i < 10 && payment.getTotalInMinorUnits() == 1520; i++)
+			payment.PayCoin(new Coin(new BigDecimal("0.10"), getCurrency()));
+		
+		assertEquals(1510, payment.getTotalInMinorUnits());
+	}
+	
+	/**
+	 * Coins of a second currency recognized by the validator are returned to the coin tray,
+	 * neither stored nor credited against a total in the station's currency
+	 * @throws DisabledException
+	 */
+	@Test
+	public void testSecondCurrencyNotCredited() throws DisabledException {
+		CoinReceiverListenerStub storageListener = new CoinReceiverListenerStub();
+		station.coinStorage.register(storageListener);
+		station.coinValidator.addDenominations(Currency.getInstance(Locale.US), new ArrayList<>(Arrays.asList(new BigDecimal[] {
+				new BigDecimal("0.25")
+		})));
+		
+		ArrayList<BarcodedProduct> scannedProducts = new ArrayList<>(Arrays.asList(new BarcodedProduct[] {
+				newProduct("01234", 15.2)
+		}));
+		CustomerPayment payment = new CustomerPayment(scannedProducts, station);
+		
+		// the validator may falsely reject a coin, so retry a few times
+		for(int i = 0; i < 10 && station.coinValidator.getRouteCount(CoinValidator.Route.FOREIGN) == 0; i++)
+			payment.PayCoin(new Coin(new BigDecimal("0.25"), Currency.getInstance(Locale.US)));
+		
+		assertEquals(1, station.coinValidator.getRouteCount(CoinValidator.Route.FOREIGN));
+		assertEquals(0, storageListener.count);
+		assertEquals(1520, payment.getTotalInMinorUnits());
+		
+		for(Coin coin : station.coinTray.collectAll())
+			assertEquals(Currency.getInstance(Locale.US), coin.getCurrency());
+	}
+	
 	/**
 	 * Tests if a banknote payment properly deducts the total cost
 	 * @throws DisabledException
@@ -517,5 +993,42 @@ public class CustomerPaymentTest {
 		}
 		
 	}
+	
+	/**
+	 * Card issuer whose posts can be declined or failed, and held back until a gate opens
+	 */
+	private static class ScriptedIssuer extends CardIssuer {
+		static final String CARD = "4500123412341234";
+		static final int POST = 0, DECLINE = 1, FAIL = 2;
+		
+		volatile int post = POST;
+		volatile CountDownLatch gate;	// posts wait for it to open, if set
+		
+		ScriptedIssuer(BigDecimal limit) {
+			super("Bank", Currency.getInstance(Locale.CANADA));
+			Calendar expiry = Calendar.getInstance();
+			expiry.add(Calendar.YEAR, 1);
+			addCardData(CARD, "Jane Doe", expiry, "123", limit);
+		}
+		
+		@Override
+		public boolean postTransaction(String cardNumber, int holdNumber, BigDecimal actualAmount) {
+			CountDownLatch gate = this.gate;
+			if(gate != null) {
+				try {
+					gate.await();
+				}
+				catch(InterruptedException e) {
+					throw new SimulationException("Interrupted");
+				}
+			}
+			
+			if(post == FAIL)
+				throw new SimulationException("The issuer is down");
+			if(post == DECLINE)
+				return false;
+			return super.postTransaction(cardNumber, holdNumber, actualAmount);
+		}
+	}
 
 }
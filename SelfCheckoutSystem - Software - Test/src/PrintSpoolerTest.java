@@ -0,0 +1,233 @@
+/*
+ * 	Class:			PrintSpoolerTest.java
+ * 	Description:	JUnit testing class for PrintSpooler.java
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.devices.ReceiptPrinter;
+import org.lsmr.selfcheckout.devices.SimulationException;
+
+public class PrintSpoolerTest {
+
+	private ReceiptPrinter printer;
+	private PrintSpooler spooler;
+
+	@Before
+	public void setup() {
+		printer = new ReceiptPrinter();
+	}
+
+	@After
+	public void teardown() {
+		if(spooler != null)
+			spooler.shutdown();
+	}
+
+	private static String receipt(int number, int lines) {
+		StringBuilder receipt = new StringBuilder();
+		for(int i = 0; i < lines; i++)
+			receipt.append("Receipt ").append(number).append(" line ").append(i).append('\n');
+		return receipt.toString();
+	}
+
+	/**
+	 * Submitting returns at once, and every receipt comes out whole and in order, however many
+	 * are printed before anyone takes one
+	 */
+	@Test
+	public void testReceiptsPrintInBackground() throws Exception {
+		printer.addInk(ReceiptPrinter.MAXIMUM_INK);
+		printer.addPaper(ReceiptPrinter.MAXIMUM_PAPER);
+		spooler = new PrintSpooler(printer, 100);
+
+		for(int i = 0; i < 50; i++)
+			assertTrue(spooler.submit(receipt(i, 10)));
+		assertTrue(spooler.awaitIdle(10_000));
+
+		for(int i = 0; i < 50; i++)
+			assertEquals(receipt(i, 10), spooler.removeReceipt());
+		assertNull(spooler.removeReceipt());
+		assertEquals(50, spooler.getPrintedCount());
+		assertEquals(0, spooler.getQueueDepth());
+		assertTrue(spooler.getPrintLatencyPercentile(50) <= spooler.getPrintLatencyPercentile(99));
+	}
+
+	/**
+	 * Running out of paper pauses printing at the line that didn't fit, and adding paper picks it
+	 * up again without losing or repeating a line
+	 */
+	@Test
+	public void testPausesUntilPaperAdded() throws Exception {
+		printer.addInk(ReceiptPrinter.MAXIMUM_INK);
+		printer.addPaper(15);
+		spooler = new PrintSpooler(printer, 10);
+
+		assertTrue(spooler.submit(receipt(1, 10)));
+		assertTrue(spooler.submit(receipt(2, 10)));
+		assertFalse(spooler.awaitIdle(300));
+		assertTrue(spooler.isPaused());
+		assertEquals(1, spooler.getPrintedCount());
+
+		spooler.addPaper(5);
+		assertTrue(spooler.awaitIdle(5_000));
+		assertFalse(spooler.isPaused());
+		assertEquals(receipt(1, 10), spooler.removeReceipt());
+		assertEquals(receipt(2, 10), spooler.removeReceipt());
+		assertEquals(1, spooler.getPauseCount());
+	}
+
+	/**
+	 * Running out of ink pauses printing too, until ink is added
+	 */
+	@Test
+	public void testPausesUntilInkAdded() throws Exception {
+		printer.addInk(20);
+		printer.addPaper(ReceiptPrinter.MAXIMUM_PAPER);
+		spooler = new PrintSpooler(printer, 10);
+
+		assertTrue(spooler.submit(receipt(1, 5)));
+		assertFalse(spooler.awaitIdle(300));
+		assertTrue(spooler.isPaused());
+
+		spooler.addInk(1000);
+		assertTrue(spooler.awaitIdle(5_000));
+		assertEquals(receipt(1, 5), spooler.removeReceipt());
+	}
+
+	/**
+	 * The queue is bounded: once it's full, receipts are turned away rather than blocking the
+	 * session
+	 */
+	@Test
+	public void testBoundedQueue() throws Exception {
+		printer.addInk(ReceiptPrinter.MAXIMUM_INK);
+		spooler = new PrintSpooler(printer, 3);
+
+		// no paper, so the first receipt is stuck printing and the rest wait
+		assertTrue(spooler.submit(receipt(0, 2)));
+		for(int i = 0; i < 500 && !spooler.isPaused(); i++)
+			Thread.sleep(10);
+		assertTrue(spooler.isPaused());
+
+		for(int i = 1; i <= 3; i++)
+			assertTrue(spooler.submit(receipt(i, 2)));
+		assertFalse(spooler.submit(receipt(4, 2)));
+		assertEquals(3, spooler.getQueueDepth());
+
+		spooler.addPaper(100);
+		assertTrue(spooler.awaitIdle(5_000));
+		assertEquals(4, spooler.getPrintedCount());
+	}
+
+	/**
+	 * Paper added from another thread while receipts print lands in turn with the lines printed,
+	 * so every receipt comes out whole and no paper goes missing
+	 */
+	@Test
+	public void testRefillWhilePrinting() throws Exception {
+		printer.addInk(ReceiptPrinter.MAXIMUM_INK);
+		spooler = new PrintSpooler(printer, 50);
+		for(int i = 0; i < 50; i++)
+			assertTrue(spooler.submit(receipt(i, 10)));
+
+		Thread attendant = new Thread(() -> {
+			for(int i = 0; i < 100; i++)
+				spooler.addPaper(5);
+		});
+		attendant.start();
+		attendant.join();
+		assertTrue(spooler.awaitIdle(10_000));
+
+		for(int i = 0; i < 50; i++)
+			assertEquals(receipt(i, 10), spooler.removeReceipt());
+		assertEquals(0, printer.getPaperRemaining());
+	}
+
+	/**
+	 * Only the most recent printed receipts are kept, should nobody take them
+	 */
+	@Test
+	public void testUncollectedReceiptsDropped() throws Exception {
+		printer.addInk(ReceiptPrinter.MAXIMUM_INK);
+		printer.addPaper(ReceiptPrinter.MAXIMUM_PAPER);
+		spooler = new PrintSpooler(printer, 100);
+
+		for(int i = 0; i < 100; i++)
+			assertTrue(spooler.submit(receipt(i, 1)));
+		assertTrue(spooler.awaitIdle(10_000));
+
+		assertEquals(36, spooler.getDroppedCount());
+		for(int i = 36; i < 100; i++)
+			assertEquals(receipt(i, 1), spooler.removeReceipt());
+		assertNull(spooler.removeReceipt());
+	}
+
+	/**
+	 * A fault that stops the spooler fails the receipt printing and those queued behind it,
+	 * rather than leaving them to wait forever
+	 */
+	@Test
+	public void testFaultFailsQueuedReceipts() throws Exception {
+		CountDownLatch jammed = new CountDownLatch(1);
+		printer = new ReceiptPrinter() {
+			@Override
+			public void cutPaper() {
+				try {
+					jammed.await();
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new IllegalStateException("The cutter jammed");
+			}
+		};
+		printer.addInk(ReceiptPrinter.MAXIMUM_INK);
+		printer.addPaper(ReceiptPrinter.MAXIMUM_PAPER);
+		spooler = new PrintSpooler(printer, 10);
+
+		for(int i = 0; i < 3; i++)
+			assertTrue(spooler.submit(receipt(i, 2)));
+		jammed.countDown();
+
+		try {
+			spooler.awaitIdle(5_000);
+			fail("Should throw SimulationException if the spooler failed");
+		} catch (SimulationException e) {/*expected*/}
+		assertEquals(3, spooler.getFailedCount());
+		assertEquals(0, spooler.getPrintedCount());
+
+		try {
+			spooler.submit(receipt(3, 2));
+			fail("Should throw SimulationException if the spooler failed");
+		} catch (SimulationException e) {/*expected*/}
+	}
+
+	@Test
+	public void testOnErrorIfInvalid() {
+		try {
+			new PrintSpooler(null, 1);
+			fail("Should throw SimulationException if the printer is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			new PrintSpooler(printer, 0);
+			fail("Should throw SimulationException if the capacity isn't positive");
+		} catch (SimulationException e) {/*expected*/}
+
+		spooler = new PrintSpooler(printer, 1);
+		StringBuilder tooLong = new StringBuilder();
+		for(int i = 0; i <= ReceiptPrinter.CHARACTERS_PER_LINE; i++)
+			tooLong.append('x');
+		try {
+			spooler.submit(tooLong);
+			fail("Should throw SimulationException if a line is too long to print");
+		} catch (SimulationException e) {/*expected*/}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * 	Class:			PrinterConsumablesTest.java
+ * 	Description:	JUnit testing class for PrinterConsumables.java
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.devices.ReceiptPrinter;
+import org.lsmr.selfcheckout.devices.SimulationException;
+
+public class PrinterConsumablesTest {
+
+	private ReceiptPrinter printer;
+	private PrinterConsumables consumables;
+	private PrintSpooler spooler;
+
+	@Before
+	public void setup() {
+		printer = new ReceiptPrinter();
+	}
+
+	@After
+	public void teardown() {
+		if(spooler != null)
+			spooler.shutdown();
+	}
+
+	// lines of "Line n" (5 characters of ink each, the digit included)
+	private static String receipt(int lines) {
+		StringBuilder receipt = new StringBuilder();
+		for(int i = 0; i < lines; i++)
+			receipt.append("Line ").append(i % 10).append('\n');
+		return receipt.toString();
+	}
+
+	/**
+	 * Averages are learned from the receipts printed, a warning is given once as the paper falls
+	 * below the horizon, and refilling the paper clears it
+	 */
+	@Test
+	public void testWarnsBeforeRunningOut() throws Exception {
+		printer.addInk(ReceiptPrinter.MAXIMUM_INK);
+		printer.addPaper(100);
+		consumables = new PrinterConsumables(printer, 5);
+		List<PrinterConsumables.Supply> warnings = new ArrayList<PrinterConsumables.Supply>();
+		consumables.setWarningHandler(supply -> {
+			synchronized(warnings) {
+				warnings.add(supply);
+			}
+		});
+		spooler = new PrintSpooler(printer, 10, consumables);
+		assertEquals(Double.POSITIVE_INFINITY, consumables.getReceiptsLeft(), 0);
+
+		for(int i = 0; i < 5; i++)
+			assertTrue(spooler.submit(receipt(10)));
+		assertTrue(spooler.awaitIdle(5_000));
+		assertEquals(10, consumables.getAverageLinesPerReceipt(), 1e-9);
+		assertEquals(50, consumables.getAverageInkPerReceipt(), 1e-9);
+		assertEquals(5, consumables.getReceiptsLeft(), 1e-9);
+		assertFalse(consumables.isLow(PrinterConsumables.Supply.PAPER));
+		assertTrue(warnings.isEmpty());
+
+		// 40 lines left won't print the next 5 receipts
+		assertTrue(spooler.submit(receipt(10)));
+		assertTrue(spooler.submit(receipt(10)));
+		assertTrue(spooler.awaitIdle(5_000));
+		assertTrue(consumables.isLow(PrinterConsumables.Supply.PAPER));
+		assertFalse(consumables.isLow(PrinterConsumables.Supply.INK));
+		synchronized(warnings) {
+			assertEquals(1, warnings.size());
+			assertEquals(PrinterConsumables.Supply.PAPER, warnings.get(0));
+		}
+
+		spooler.addPaper(500);
+		assertFalse(consumables.isLow(PrinterConsumables.Supply.PAPER));
+		assertEquals(1, consumables.getWarningCount());
+	}
+
+	/**
+	 * A receipt the printer can't finish, after the receipts queued ahead of it, is refused rather
+	 * than started, and nothing of it is printed
+	 */
+	@Test
+	public void testRefusesReceiptThatCantFinish() throws Exception {
+		printer.addInk(ReceiptPrinter.MAXIMUM_INK);
+		printer.addPaper(15);
+		consumables = new PrinterConsumables(printer, 1);
+		spooler = new PrintSpooler(printer, 10, consumables);
+
+		assertTrue(spooler.submit(receipt(10)));
+		try {
+			spooler.submit(receipt(10));
+			fail("Should throw SimulationException if the printer can't finish the receipt");
+		} catch (SimulationException e) {/*expected*/}
+		assertTrue(spooler.awaitIdle(5_000));
+		assertEquals(1, spooler.getPrintedCount());
+		assertEquals(5, printer.getPaperRemaining());
+		assertFalse(spooler.isPaused());
+
+		spooler.addPaper(5);
+		assertTrue(spooler.submit(receipt(10)));
+		assertTrue(spooler.awaitIdle(5_000));
+		assertEquals(receipt(10), spooler.removeReceipt());
+		assertEquals(receipt(10), spooler.removeReceipt());
+		assertEquals(0, printer.getPaperRemaining());
+		assertEquals(0, spooler.getRefusedCount());
+	}
+
+	/**
+	 * Receipts printed on the printer directly, without a spooler, are learned from all the same
+	 */
+	@Test
+	public void testLearnsFromDirectPrints() {
+		printer.addInk(ReceiptPrinter.MAXIMUM_INK);
+		printer.addPaper(100);
+		consumables = new PrinterConsumables(printer, 5);
+
+		for(int i = 0; i < 3; i++) {
+			printer.print(receipt(10));
+			printer.cutPaper();
+			printer.removeReceipt();
+		}
+		assertEquals(10, consumables.getAverageLinesPerReceipt(), 1e-9);
+		assertEquals(50, consumables.getAverageInkPerReceipt(), 1e-9);
+		assertEquals(7, consumables.getReceiptsLeft(), 1e-9);
+
+		// a cut with nothing printed isn't a receipt
+		printer.cutPaper();
+		assertEquals(10, consumables.getAverageLinesPerReceipt(), 1e-9);
+	}
+
+	/**
+	 * Whether a receipt can be finished counts only the characters that take ink, and a last line
+	 * without a newline
+	 */
+	@Test
+	public void testCanFinish() {
+		consumables = new PrinterConsumables(printer, 1);
+		printer.addInk(13);
+		printer.addPaper(2);
+
+		assertTrue(consumables.canFinish("TOTAL  5.90\nCASH"));
+		assertFalse(consumables.canFinish("TOTAL  5.90\nCASH  10"));
+		assertFalse(consumables.canFinish("A\nB\nC"));
+		assertTrue(consumables.canFinish(""));
+		assertTrue(PrinterConsumables.canFinish(printer, "A\nB"));
+		assertFalse(PrinterConsumables.canFinish(printer, "A\nB\n\n"));
+	}
+
+	@Test
+	public void testOnErrorIfInvalid() {
+		try {
+			new PrinterConsumables(null, 1);
+			fail("Should throw SimulationException if the printer is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			new PrinterConsumables(printer, 0);
+			fail("Should throw SimulationException if the horizon isn't positive");
+		} catch (SimulationException e) {/*expected*/}
+
+		consumables = new PrinterConsumables(printer, 1);
+		try {
+			consumables.canFinish(null);
+			fail("Should throw SimulationException if the receipt is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		spooler = new PrintSpooler(printer, 1, consumables);
+		try {
+			spooler.submit(receipt(ReceiptPrinter.MAXIMUM_PAPER + 1));
+			fail("Should throw SimulationException if the receipt needs more paper than the printer holds");
+		} catch (SimulationException e) {/*expected*/}
+	}
+}
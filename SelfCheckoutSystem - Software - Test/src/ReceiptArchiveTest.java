@@ -0,0 +1,274 @@
+/*
+ * 	Class:			ReceiptArchiveTest.java
+ * 	Description:	JUnit testing class for ReceiptArchive.java
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+public class ReceiptArchiveTest {
+
+	private static final BarcodedProduct CHEESE = new BarcodedProduct(new Barcode("012345"), "Cheese sticks", BigDecimal.valueOf(2.95));
+	private static final BarcodedProduct NUGGETS = new BarcodedProduct(new Barcode("012346"), "Chicken nuggets", BigDecimal.valueOf(10.99));
+	private static final BarcodedProduct MILK = new BarcodedProduct(new Barcode("9780201633610"), "Milk 2L", BigDecimal.valueOf(4.49));
+
+	private static final long DAY = 24L * 60 * 60 * 1000;
+
+	private Currency currency;
+	private File directory;
+
+	@Before
+	public void setup() throws Exception {
+		currency = Currency.getInstance(Locale.CANADA);
+		directory = Files.createTempDirectory("receipts").toFile();
+	}
+
+	@After
+	public void teardown() throws IOException {
+		try(Stream<Path> files = Files.walk(directory.toPath())) {
+			for(Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new))
+				Files.delete(file);
+		}
+	}
+
+	/**
+	 * A stored receipt reads back with its products counted, and its tenders, station and time
+	 */
+	@Test
+	public void testStoreAndGet() {
+		ReceiptArchive archive = new ReceiptArchive(directory, currency);
+		long id = archive.store("station-1", 1000, Arrays.asList(NUGGETS, MILK, NUGGETS),
+			Arrays.asList(new CustomerPayment.Tender("CASH", 2000), new CustomerPayment.Tender("CARD", 647)));
+
+		ReceiptArchive.Receipt receipt = archive.get(id);
+		assertEquals(id, receipt.getId());
+		assertEquals("station-1", receipt.getStation());
+		assertEquals(1000, receipt.getTimestamp());
+
+		assertEquals(2, receipt.getLines().size());
+		ReceiptArchive.Line line = receipt.getLines().get(0);
+		assertEquals(NUGGETS.getBarcode(), line.getBarcode());
+		assertEquals("Chicken nuggets", line.getDescription());
+		assertEquals(2, line.getQuantity());
+		assertEquals(1099, line.getUnitPriceInMinorUnits());
+		assertEquals(MILK.getBarcode(), receipt.getLines().get(1).getBarcode());
+
+		assertEquals(2, receipt.getTenders().size());
+		assertEquals("CARD", receipt.getTenders().get(1).getMethod());
+		assertEquals(647, receipt.getTenders().get(1).getAmountInMinorUnits());
+
+		assertNull(archive.get(id + 1));
+		assertNull(archive.get(0));
+		archive.close();
+	}
+
+	/**
+	 * Receipts are found again by time range and by the products on them, and are still found
+	 * after the archive is reopened
+	 */
+	@Test
+	public void testIndexesSurviveReopen() {
+		ReceiptArchive archive = new ReceiptArchive(directory, currency);
+		List<CustomerPayment.Tender> cash = Arrays.asList(new CustomerPayment.Tender("CASH", 5000));
+		long first = archive.store("station-1", 3 * DAY, Arrays.asList(CHEESE), cash);
+		long second = archive.store("station-2", 1 * DAY, Arrays.asList(NUGGETS, CHEESE), cash);
+		long third = archive.store("station-1", 2 * DAY, Arrays.asList(MILK), cash);
+
+		assertArrayEquals(new long[] {second, third, first}, archive.findByTime(0, 4 * DAY));
+		assertArrayEquals(new long[] {second, third}, archive.findByTime(DAY, 3 * DAY));
+		assertArrayEquals(new long[] {first, second}, archive.findByBarcode(CHEESE.getBarcode(), 0, 4 * DAY));
+		assertArrayEquals(new long[] {first}, archive.findByBarcode(CHEESE.getBarcode(), 2 * DAY, 4 * DAY));
+		assertEquals(0, archive.findByBarcode(new Barcode("1"), 0, 4 * DAY).length);
+		archive.close();
+
+		archive = new ReceiptArchive(directory, currency);
+		assertEquals(3, archive.getCount());
+		assertArrayEquals(new long[] {second, third, first}, archive.findByTime(0, 4 * DAY));
+		assertArrayEquals(new long[] {first, second}, archive.findByBarcode(CHEESE.getBarcode(), 0, 4 * DAY));
+		assertEquals("station-2", archive.get(second).getStation());
+
+		// IDs carry on from where they left off
+		assertEquals(4, archive.store("station-3", 5 * DAY, Arrays.asList(MILK), cash));
+		archive.close();
+	}
+
+	/**
+	 * A stored receipt is only in memory until it is flushed: a crash before then loses it, and
+	 * one after keeps it
+	 */
+	@Test
+	public void testDurabilityWindow() {
+		ReceiptArchive archive = new ReceiptArchive(directory, currency);
+		List<CustomerPayment.Tender> cash = Arrays.asList(new CustomerPayment.Tender("CASH", 500));
+		long id = archive.store("station-1", 1000, Arrays.asList(CHEESE), cash);
+		assertEquals(CHEESE.getBarcode(), archive.get(id).getLines().get(0).getBarcode());
+		assertEquals(1, archive.getCount());
+		assertEquals(0, archive.getDurableCount());
+
+		// reopened without closing, as after a crash
+		ReceiptArchive crashed = new ReceiptArchive(directory, currency);
+		assertEquals(0, crashed.getCount());
+		assertNull(crashed.get(id));
+
+		archive.flush();
+		assertEquals(1, archive.getDurableCount());
+		archive.store("station-1", 2000, Arrays.asList(NUGGETS), cash);
+		assertEquals(1, archive.getDurableCount());
+
+		crashed = new ReceiptArchive(directory, currency);
+		assertEquals(1, crashed.getCount());
+		assertEquals(1, crashed.getDurableCount());
+		assertEquals(CHEESE.getBarcode(), crashed.get(id).getLines().get(0).getBarcode());
+		crashed.close();
+		archive.close();
+	}
+
+	/**
+	 * A receipt that can't be encoded, as a description is too long, is refused and leaves nothing
+	 * behind: the receipts around it read back, before and after the archive is reopened
+	 */
+	@Test
+	public void testUnencodableReceiptRefused() {
+		ReceiptArchive archive = new ReceiptArchive(directory, currency);
+		List<CustomerPayment.Tender> cash = Arrays.asList(new CustomerPayment.Tender("CASH", 500));
+		char[] description = new char[70_000];
+		Arrays.fill(description, 'x');
+		BarcodedProduct huge = new BarcodedProduct(new Barcode("1"), new String(description), BigDecimal.ONE);
+
+		long first = archive.store("station-1", 1000, Arrays.asList(CHEESE), cash);
+		try {
+			archive.store("station-1", 2000, Arrays.asList(huge), cash);
+			fail("Should throw SimulationException if the receipt can't be encoded");
+		} catch (SimulationException e) {/*expected*/}
+		long second = archive.store("station-1", 3000, Arrays.asList(NUGGETS), cash);
+
+		assertEquals(first + 1, second);
+		assertEquals(2, archive.getCount());
+		assertEquals(NUGGETS.getBarcode(), archive.get(second).getLines().get(0).getBarcode());
+		archive.close();
+
+		archive = new ReceiptArchive(directory, currency);
+		assertEquals(2, archive.getCount());
+		assertEquals(CHEESE.getBarcode(), archive.get(first).getLines().get(0).getBarcode());
+		assertEquals(NUGGETS.getBarcode(), archive.get(second).getLines().get(0).getBarcode());
+		archive.close();
+	}
+
+	/**
+	 * A block left half written by a crash is dropped, and the receipts before it are kept
+	 */
+	@Test
+	public void testTornBlock() throws Exception {
+		ReceiptArchive archive = new ReceiptArchive(directory, currency);
+		List<CustomerPayment.Tender> cash = Arrays.asList(new CustomerPayment.Tender("CASH", 500));
+		archive.store("station-1", 1000, Arrays.asList(CHEESE), cash);
+		archive.flush();
+		archive.store("station-1", 2000, Arrays.asList(NUGGETS), cash);
+		archive.close();
+
+		File segment = new File(directory, "receipts.0");
+		try(RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.setLength(file.length() - 3);
+		}
+
+		archive = new ReceiptArchive(directory, currency);
+		assertEquals(1, archive.getCount());
+		assertEquals(CHEESE.getBarcode(), archive.get(1).getLines().get(0).getBarcode());
+		archive.close();
+	}
+
+	/**
+	 * A month of receipts from a busy store: lookups by time and by barcode over the month find
+	 * every receipt they should, and the segments take a fraction of the raw receipts' size
+	 */
+	@Test
+	public void testMonthOfReceipts() {
+		int products = 2000, receipts = 100_000;
+		BarcodedProduct[] catalogue = new BarcodedProduct[products];
+		for(int i = 0; i < products; i++)
+			catalogue[i] = new BarcodedProduct(new Barcode(String.valueOf(100000 + i)), "Product number " + i,
+				BigDecimal.valueOf(100 + i, 2));
+
+		Random random = new Random(42);
+		ReceiptArchive archive = new ReceiptArchive(directory, currency);
+		for(int i = 0; i < receipts; i++) {
+			List<BarcodedProduct> cart = new ArrayList<BarcodedProduct>();
+			int size = 1 + random.nextInt(12);
+			for(int j = 0; j < size; j++)
+				cart.add(catalogue[random.nextInt(products)]);
+			archive.store("station-" + random.nextInt(8), (long)i * 30 * DAY / receipts, cart,
+				Arrays.asList(new CustomerPayment.Tender("CARD", 1000 + random.nextInt(10000))));
+		}
+		archive.flush();
+
+		long[] week = archive.findByTime(7 * DAY, 14 * DAY);
+		assertEquals(receipts / 30 * 7, week.length, receipts / 1000);
+
+		long[] found = archive.findByBarcode(catalogue[17].getBarcode(), 0, 30 * DAY);
+		assertTrue(found.length > 0);
+		for(long id : found) {
+			boolean contains = false;
+			for(ReceiptArchive.Line line : archive.get(id).getLines())
+				contains |= line.getBarcode().equals(catalogue[17].getBarcode());
+			assertTrue(contains);
+		}
+
+		// an encoded receipt here takes about 200 bytes before compression
+		long bytes = 0;
+		for(File file : directory.listFiles())
+			bytes += file.length();
+		assertTrue(bytes < receipts * 100L);
+		archive.close();
+
+		ReceiptArchive reopened = new ReceiptArchive(directory, currency);
+		assertArrayEquals(found, reopened.findByBarcode(catalogue[17].getBarcode(), 0, 30 * DAY));
+		reopened.close();
+	}
+
+	@Test
+	public void testOnErrorIfInvalid() {
+		try {
+			new ReceiptArchive(null, currency);
+			fail("Should throw SimulationException if the directory is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			new ReceiptArchive(directory, null);
+			fail("Should throw SimulationException if the currency is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		ReceiptArchive archive = new ReceiptArchive(directory, currency);
+		try {
+			archive.store("station-1", 0, null, new ArrayList<CustomerPayment.Tender>());
+			fail("Should throw SimulationException if the cart is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			archive.findByBarcode(null, 0, 1);
+			fail("Should throw SimulationException if the barcode is null");
+		} catch (SimulationException e) {/*expected*/}
+		archive.close();
+	}
+}
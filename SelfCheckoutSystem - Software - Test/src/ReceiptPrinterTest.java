@@ -0,0 +1,210 @@
+/*
+ * 	Class:			ReceiptPrinterTest.java
+ * 	Description:	JUnit testing class for printing whole lines and receipts on the ReceiptPrinter
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.ReceiptPrinter;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.devices.listeners.AbstractDeviceListener;
+import org.lsmr.selfcheckout.devices.listeners.ReceiptPrinterListener;
+
+public class ReceiptPrinterTest {
+
+	private ReceiptPrinter printer;
+	private int outOfInk, outOfPaper;
+	private int[] cut;	// the ink and lines reported at the last cut
+
+	@Before
+	public void setup() {
+		printer = new ReceiptPrinter();
+		outOfInk = 0;
+		outOfPaper = 0;
+		printer.register(new ReceiptPrinterListener() {
+			@Override
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			@Override
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			@Override
+			public void outOfPaper(ReceiptPrinter printer) { outOfPaper++; }
+			@Override
+			public void outOfInk(ReceiptPrinter printer) { outOfInk++; }
+			@Override
+			public void paperAdded(ReceiptPrinter printer) {}
+			@Override
+			public void inkAdded(ReceiptPrinter printer) {}
+			@Override
+			public void paperCut(ReceiptPrinter printer, int ink, int lines) { cut = new int[] {ink, lines}; }
+		});
+	}
+
+	private String receipt(ReceiptPrinter printer) {
+		printer.cutPaper();
+		return printer.removeReceipt();
+	}
+
+	/**
+	 * A whole receipt printed at once comes out the same as printed a character at a time,
+	 * ignoring the same whitespace
+	 */
+	@Test
+	public void testBulkMatchesSingleCharacters() {
+		String text = "Milk 2%\t\t$4.99\nBread      $2.50\r\n\nTotal      $7.49\n";
+		ReceiptPrinter single = new ReceiptPrinter();
+		single.addInk(1000);
+		single.addPaper(10);
+		for(char c : text.toCharArray())
+			single.print(c);
+
+		printer.addInk(1000);
+		printer.addPaper(10);
+		printer.print(text);
+		String expected = receipt(single);
+		assertEquals("Milk 2%$4.99\nBread      $2.50\n\nTotal      $7.49\n", expected);
+		assertEquals(expected, receipt(printer));
+	}
+
+	/**
+	 * printLine adds the newline, and fills a receipt line to the last column
+	 */
+	@Test
+	public void testPrintLine() {
+		printer.addInk(1000);
+		printer.addPaper(10);
+		StringBuilder full = new StringBuilder();
+		for(int i = 0; i < ReceiptPrinter.CHARACTERS_PER_LINE; i++)
+			full.append('=');
+
+		printer.printLine("Receipt");
+		printer.printLine(full);
+		printer.print("Thank ");
+		printer.printLine("you");
+		assertEquals("Receipt\n" + full + "\nThank you\n", receipt(printer));
+	}
+
+	/**
+	 * A line that doesn't fit, or that there isn't ink for, isn't printed at all
+	 */
+	@Test
+	public void testPrintLineIsAllOrNothing() {
+		printer.addInk(10);
+		printer.addPaper(10);
+		printer.print("Total ");
+
+		try {
+			printer.printLine("$1,000,000.00");
+			fail("Should throw SimulationException if there isn't enough ink for the line");
+		} catch (SimulationException e) {/*expected*/}
+
+		StringBuilder tooLong = new StringBuilder();
+		for(int i = 0; i < ReceiptPrinter.CHARACTERS_PER_LINE - 5; i++)
+			tooLong.append(' ');
+		try {
+			printer.printLine(tooLong);
+			fail("Should throw SimulationException if the line would spill off the end");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			printer.printLine("a\nb");
+			fail("Should throw SimulationException if the line contains a newline");
+		} catch (SimulationException e) {/*expected*/}
+
+		printer.printLine("$1.00");
+		assertEquals("Total $1.00\n", receipt(printer));
+	}
+
+	/**
+	 * Running out part way prints everything up to that point, fails on the same character as
+	 * printing one at a time would, and tells listeners once
+	 */
+	@Test
+	public void testRunningOut() {
+		printer.addInk(5);
+		printer.addPaper(10);
+
+		try {
+			printer.print("abc de fgh");
+			fail("Should throw SimulationException once the ink runs out");
+		} catch (SimulationException e) {/*expected*/}
+		assertEquals(1, outOfInk);
+		assertEquals("abc de ", receipt(printer));
+
+		setup();
+		printer.addInk(100);
+		printer.addPaper(2);
+		printer.printLine("one");
+		assertEquals(0, outOfPaper);
+		printer.printLine("two");
+		assertEquals(1, outOfPaper);
+
+		setup();
+		printer.addInk(100);
+		printer.addPaper(2);
+		try {
+			printer.print("one\ntwo\nthree");
+			fail("Should throw SimulationException once the paper runs out");
+		} catch (SimulationException e) {/*expected*/}
+		assertEquals(1, outOfPaper);
+		assertEquals("one\ntwo\n", receipt(printer));
+
+		try {
+			printer.printLine("four");
+			fail("Should throw SimulationException if there is no paper");
+		} catch (SimulationException e) {/*expected*/}
+	}
+
+	/**
+	 * Cutting a receipt reports the ink and paper it took, however it was printed and whatever was
+	 * added meanwhile
+	 */
+	@Test
+	public void testCutReportsUsage() {
+		printer.addInk(100);
+		printer.addPaper(10);
+		printer.print("AB C\n");
+		printer.printLine("DE");
+		printer.addPaper(5);
+		printer.print('F');
+		printer.print('\n');
+		printer.cutPaper();
+		assertArrayEquals(new int[] {6, 3}, cut);
+
+		printer.addInk(50);
+		printer.cutPaper();
+		assertArrayEquals(new int[] {0, 0}, cut);
+	}
+
+	/**
+	 * A long receipt comes out the same in bulk as a character at a time
+	 */
+	@Test
+	public void testLongReceipt() {
+		String line = "Item description goes here          2 @ $3.99      $7.98";
+		int lines = ReceiptPrinter.MAXIMUM_PAPER;
+		int ink = lines * line.replace(" ", "").length();
+
+		ReceiptPrinter printer = new ReceiptPrinter();
+		printer.addInk(ink);
+		printer.addPaper(lines);
+		for(int i = 0; i < lines; i++) {
+			for(int j = 0; j < line.length(); j++)
+				printer.print(line.charAt(j));
+			printer.print('\n');
+		}
+		String single = receipt(printer);
+
+		printer.addInk(ink);
+		printer.addPaper(lines);
+		for(int i = 0; i < lines; i++)
+			printer.printLine(line);
+		String bulk = receipt(printer);
+
+		assertEquals(single, bulk);
+		assertEquals(lines, bulk.split("\n").length);
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * 	Class:			ReceiptRendererTest.java
+ * 	Description:	JUnit testing class for ReceiptRenderer.java
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Currency;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.devices.ReceiptPrinter;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.external.CardIssuer;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+public class ReceiptRendererTest {
+
+	private static final BarcodedProduct CHEESE = new BarcodedProduct(new Barcode("012345"), "Cheese sticks", BigDecimal.valueOf(2.95));
+	private static final BarcodedProduct NUGGETS = new BarcodedProduct(new Barcode("012346"), "Chicken nuggets", BigDecimal.valueOf(10.99));
+
+	private Currency currency;
+	private ReceiptRenderer renderer;
+
+	@Before
+	public void setup() {
+		currency = Currency.getInstance(Locale.CANADA);
+		renderer = new ReceiptRenderer(currency);
+	}
+
+	private static String pad(String left, String right) {
+		StringBuilder line = new StringBuilder(left);
+		while(line.length() + right.length() < ReceiptPrinter.CHARACTERS_PER_LINE)
+			line.append(' ');
+		return line.append(right).append('\n').toString();
+	}
+
+	/**
+	 * Repeated products are counted on one line, and the total, tenders and change follow
+	 */
+	@Test
+	public void testLayout() {
+		List<BarcodedProduct> cart = Arrays.asList(NUGGETS, CHEESE, NUGGETS, NUGGETS);
+		List<CustomerPayment.Tender> tenders = Arrays.asList(new CustomerPayment.Tender("CASH", 4000));
+
+		StringBuilder out = new StringBuilder();
+		renderer.render(cart, tenders, out);
+
+		char[] rule = new char[ReceiptPrinter.CHARACTERS_PER_LINE];
+		Arrays.fill(rule, '-');
+		String expected = pad("Chicken nuggets", "3 @ 10.99        32.97")
+			+ pad("Cheese sticks", "2.95")
+			+ new String(rule) + "\n"
+			+ pad("TOTAL", "35.92")
+			+ pad("CASH", "40.00")
+			+ pad("CHANGE", "4.08");
+		assertEquals(expected, out.toString());
+
+		// the renderer is reused for the next receipt
+		out.setLength(0);
+		renderer.render(Arrays.asList(CHEESE), new ArrayList<CustomerPayment.Tender>(), out);
+		assertTrue(out.toString().startsWith(pad("Cheese sticks", "2.95")));
+		assertFalse(out.toString().contains("CHANGE"));
+	}
+
+	/**
+	 * A description too long for the line is cut off, leaving room for the amounts
+	 */
+	@Test
+	public void testLongDescription() {
+		StringBuilder description = new StringBuilder();
+		for(int i = 0; i < 100; i++)
+			description.append('x');
+		BarcodedProduct product = new BarcodedProduct(new Barcode("0999"), description.toString(), BigDecimal.valueOf(1234567.5));
+
+		StringBuilder out = new StringBuilder();
+		renderer.render(Arrays.asList(product, product), new ArrayList<CustomerPayment.Tender>(), out);
+		String first = out.substring(0, out.indexOf("\n"));
+		assertEquals(ReceiptPrinter.CHARACTERS_PER_LINE, first.length());
+		assertTrue(first.endsWith(" 2 @ 1234567.50   2469135.00"));
+		assertTrue(first.startsWith("xxxxx"));
+	}
+
+	/**
+	 * A line whose amount overflows is refused rather than printed wrapped around
+	 */
+	@Test
+	public void testLineOverflowRefused() {
+		BarcodedProduct product = new BarcodedProduct(new Barcode("0998"), "Gold bar", new BigDecimal("1000000000000000"));
+		List<BarcodedProduct> cart = new ArrayList<BarcodedProduct>();
+		for(int i = 0; i < 100; i++)
+			cart.add(product);
+
+		StringBuilder out = new StringBuilder();
+		try {
+			renderer.render(cart, new ArrayList<CustomerPayment.Tender>(), out);
+			fail();
+		} catch (SimulationException e) {/*expected*/}
+	}
+
+	/**
+	 * Printing straight to the printer gives the same receipt as rendering it as text
+	 */
+	@Test
+	public void testPrintToPrinter() {
+		List<BarcodedProduct> cart = Arrays.asList(CHEESE, NUGGETS, CHEESE);
+		List<CustomerPayment.Tender> tenders = Arrays.asList(new CustomerPayment.Tender("CARD", 1689));
+		ReceiptPrinter printer = new ReceiptPrinter();
+		printer.addInk(10_000);
+		printer.addPaper(100);
+
+		renderer.render(cart, tenders, printer);
+		printer.cutPaper();
+
+		StringBuilder out = new StringBuilder();
+		renderer.render(cart, tenders, out);
+		assertEquals(out.toString(), printer.removeReceipt());
+	}
+
+	/**
+	 * A customer who paid by card gets a receipt from the station's printer
+	 */
+	@Test
+	public void testPrintReceiptAfterPayment() {
+		int[] banknoteDenominations = {5, 10, 20, 50, 100};
+		BigDecimal[] coinDenominations = {BigDecimal.valueOf(0.05), BigDecimal.valueOf(0.10), BigDecimal.valueOf(0.25),
+			BigDecimal.valueOf(1.00), BigDecimal.valueOf(2.00)};
+		SelfCheckoutStation station = new SelfCheckoutStation(currency, banknoteDenominations, coinDenominations, 25000, 15);
+		station.printer.addInk(10_000);
+		station.printer.addPaper(100);
+
+		CardIssuer issuer = new CardIssuer("Bank", currency);
+		Calendar expiry = Calendar.getInstance();
+		expiry.add(Calendar.YEAR, 1);
+		issuer.addCardData("4500123412341234", "Jane Doe", expiry, "123", BigDecimal.valueOf(100));
+		CardAuthorizationClient client = new CardAuthorizationClient(issuer, 0, 0, 5000);
+
+		try {
+			CustomerPayment payment = new CustomerPayment(new ArrayList<BarcodedProduct>(Arrays.asList(CHEESE, CHEESE)), station);
+			assertTrue(payment.PayCard("4500123412341234", client));
+			payment.printReceipt(renderer);
+		}
+		finally {
+			client.shutdown();
+		}
+
+		String receipt = station.printer.removeReceipt();
+		assertTrue(receipt.startsWith(pad("Cheese sticks", "2 @ 2.95         5.90")));
+		assertTrue(receipt.endsWith(pad("TOTAL", "5.90") + pad("CARD", "5.90")));
+	}
+
+	/**
+	 * A receipt the station's printer doesn't have the paper to finish isn't started
+	 */
+	@Test
+	public void testPrintReceiptRefusedIfShort() {
+		int[] banknoteDenominations = {5, 10, 20, 50, 100};
+		BigDecimal[] coinDenominations = {BigDecimal.valueOf(0.05), BigDecimal.valueOf(0.10), BigDecimal.valueOf(0.25),
+			BigDecimal.valueOf(1.00), BigDecimal.valueOf(2.00)};
+		SelfCheckoutStation station = new SelfCheckoutStation(currency, banknoteDenominations, coinDenominations, 25000, 15);
+		station.printer.addInk(10_000);
+		station.printer.addPaper(2);
+
+		CustomerPayment payment = new CustomerPayment(new ArrayList<BarcodedProduct>(Arrays.asList(CHEESE, NUGGETS)), station);
+		try {
+			payment.printReceipt(renderer);
+			fail("Should throw SimulationException if the printer can't finish the receipt");
+		} catch (SimulationException e) {/*expected*/}
+		assertEquals(2, station.printer.getPaperRemaining());
+		assertEquals(10_000, station.printer.getInkRemaining());
+		assertNull(station.printer.removeReceipt());
+	}
+
+	@Test
+	public void testOnErrorIfInvalid() {
+		try {
+			new ReceiptRenderer(null);
+			fail("Should throw SimulationException if the currency is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			renderer.render(null, new ArrayList<CustomerPayment.Tender>(), new StringBuilder());
+			fail("Should throw SimulationException if the cart is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			renderer.render(new ArrayList<BarcodedProduct>(), new ArrayList<CustomerPayment.Tender>(), (ReceiptPrinter)null);
+			fail("Should throw SimulationException if the printer is null");
+		} catch (SimulationException e) {/*expected*/}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * 	Class:			StationHostTest.java
+ * 	Description:	JUnit testing class for StationHost.java
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.BarcodedItem;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.external.CardIssuer;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+public class StationHostTest {
+
+	private static final String CARD = "4500123412341234";
+
+	private Currency currency;
+	private Map<Barcode, BarcodedProduct> catalog;
+	private List<BarcodedItem> basket;
+	private CardIssuer issuer;
+	private CardAuthorizationClient client;
+
+	@Before
+	public void setup() {
+		currency = Currency.getInstance(Locale.CANADA);
+
+		catalog = new HashMap<Barcode, BarcodedProduct>();
+		catalog.put(new Barcode("012345"), new BarcodedProduct(new Barcode("012345"), "Cheese sticks", BigDecimal.valueOf(2.95)));
+		catalog.put(new Barcode("012346"), new BarcodedProduct(new Barcode("012346"), "Chicken nuggets", BigDecimal.valueOf(10.99)));
+		basket = Arrays.asList(new BarcodedItem(new Barcode("012345"), 500), new BarcodedItem(new Barcode("012346"), 2000));
+
+		issuer = new CardIssuer("Bank", currency);
+		Calendar expiry = Calendar.getInstance();
+		expiry.add(Calendar.YEAR, 1);
+		issuer.addCardData(CARD, "Jane Doe", expiry, "123", BigDecimal.valueOf(1_000_000_000));
+		client = new CardAuthorizationClient(issuer, 0, 0, 5000);
+	}
+
+	@After
+	public void teardown() {
+		client.shutdown();
+	}
+
+	/**
+	 * Each lane has its own devices and cart, and one lane can serve customer after customer
+	 */
+	@Test
+	public void testStationsAreIsolated() throws Exception {
+		StationHost host = new StationHost(currency, catalog);
+		host.addStations(2);
+
+		SoftwareMain first = host.getController(0), second = host.getController(1);
+		assertTrue(first.getStation() != second.getStation());
+
+		for(int i = 0; i < 3; i++)
+			assertTrue(host.runSession(0, basket, CARD, client));
+		assertEquals(3, host.getSessionCount());
+		assertEquals(0, first.customerScanItem.getScannedItems().size());
+		assertEquals(0, first.getStation().baggingArea.getCurrentWeight(), 0);
+
+		// scanning on one lane leaves the other's cart alone
+		first.ScanMain(basket.get(0));
+		first.ScanMain(basket.get(0));
+		assertTrue(first.customerScanItem.getScannedItems().size() > 0);
+		assertEquals(0, second.customerScanItem.getScannedItems().size());
+	}
+
+	/**
+	 * The lanes share one catalog, which none of them can change, and a change to the map the
+	 * host was given doesn't reach it
+	 */
+	@Test
+	public void testCatalogIsSharedAndReadOnly() {
+		StationHost host = new StationHost(currency, catalog);
+		host.addStations(2);
+
+		try {
+			host.getController(0).populateDatabase(new ArrayList<BarcodedProduct>());
+			fail("Should throw SimulationException if a lane changes the shared catalog");
+		} catch (SimulationException e) {/*expected*/}
+
+		catalog.clear();
+		assertEquals(2, host.getCatalog().size());
+		assertTrue(host.runSession(1, basket, CARD, client));
+	}
+
+	/**
+	 * Every lane gets through its sessions, on a pool of as many threads as processors, as the
+	 * number of lanes grows, and each lane takes a bounded amount of memory
+	 */
+	@Test
+	public void testScaling() {
+		StationHost host = new StationHost(currency, catalog);
+		int threads = Runtime.getRuntime().availableProcessors();
+		int added = 0;
+
+		for(int stations : new int[] {1, 10, 100, 400}) {
+			host.addStations(stations - added);
+			added = stations;
+
+			long before = host.getSessionCount();
+			assertTrue(host.drive(20, threads, basket, CARD, client) > 0);
+			assertEquals(before + 20 * stations, host.getSessionCount());
+			assertEquals(stations, host.getStationCount());
+
+			// about 30 KB a lane, whatever the number of lanes
+			long bytes = host.getBytesPerStation();
+			assertTrue(bytes > 0);
+			assertTrue(bytes < 256 * 1024);
+		}
+	}
+
+	/**
+	 * 1000 lanes run 10 sessions each, every session waiting on the card's issuer. On a pool of 16
+	 * threads no more than 16 sessions are ever in progress at once, while with a thread per
+	 * session many more lanes wait on the issuer together
+	 */
+	@Test
+	public void testThreadPerSessionOverlapsWaits() {
+		StationHost host = new StationHost(currency, catalog);
+		host.addStations(1000);
+		CardAuthorizationClient network = new CardAuthorizationClient(issuer, 5, 0, 30_000);	// 5 ms to the issuer
+
+		try {
+			host.drive(10, 16, basket, CARD, network);
+			assertEquals(10_000, host.getSessionCount());
+			assertTrue(host.getPeakConcurrentSessions() <= 16);
+
+			host.driveThreadPerSession(10, basket, CARD, network);
+			assertEquals(20_000, host.getSessionCount());
+			assertTrue(host.getPeakConcurrentSessions() > 16);
+			assertTrue(host.getPeakConcurrentSessions() <= 1000);
+		}
+		finally {
+			network.shutdown();
+		}
+	}
+
+	@Test
+	public void testOnErrorIfInvalid() {
+		try {
+			new StationHost(null, catalog);
+			fail("Should throw SimulationException if the currency is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			new StationHost(currency, null);
+			fail("Should throw SimulationException if the catalog is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		StationHost host = new StationHost(currency, catalog);
+		try {
+			host.addStations(0);
+			fail("Should throw SimulationException if no stations are added");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			host.runSession(0, basket, CARD, client);
+			fail("Should throw SimulationException if there is no such station");
+		} catch (SimulationException e) {/*expected*/}
+
+		host.addStations(1);
+		try {
+			host.driveThreadPerSession(1, Arrays.asList(new BarcodedItem(new Barcode("999"), 100)), CARD, client);
+			fail("Should throw SimulationException if a session fails");
+		} catch (SimulationException e) {/*expected*/}
+		assertEquals(0, host.getController(0).customerScanItem.getScannedItems().size());
+	}
+}
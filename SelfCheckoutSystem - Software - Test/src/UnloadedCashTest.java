@@ -0,0 +1,184 @@
+/*
+ * 	Class:			UnloadedCashTest.java
+ * 	Description:	JUnit testing class for unloading the cash storage units and the coin tray in
+ * 					bulk, and the tallies that come with it
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lsmr.selfcheckout.Banknote;
+import org.lsmr.selfcheckout.CashTally;
+import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.Money;
+import org.lsmr.selfcheckout.devices.BanknoteStorageUnit;
+import org.lsmr.selfcheckout.devices.CoinStorageUnit;
+import org.lsmr.selfcheckout.devices.CoinTray;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.devices.UnloadedCash;
+
+public class UnloadedCashTest {
+
+	private Currency currency;
+	private Coin quarter, loonie;
+
+	@Before
+	public void setup() {
+		currency = Currency.getInstance(Locale.CANADA);
+		quarter = Coin.valueOf(BigDecimal.valueOf(0.25), currency);
+		loonie = Coin.valueOf(BigDecimal.valueOf(1.00), currency);
+	}
+
+	/**
+	 * Unloading the coin storage gives exactly the coins stored, and a tally that adds up to them
+	 */
+	@Test
+	public void testCoinStorageTotals() throws Exception {
+		CoinStorageUnit storage = new CoinStorageUnit(100);
+		storage.load(quarter, quarter, loonie, quarter);
+
+		UnloadedCash<Coin> coins = storage.unloadAll();
+		assertEquals(4, coins.size());
+		assertEquals(loonie, coins.get(2));
+		assertEquals(0, storage.getCoinCount());
+
+		CashTally tally = coins.getTally();
+		assertEquals(2, tally.size());
+		assertEquals(3, tally.getCountOf(quarter.getCode()));
+		assertEquals(1, tally.getCountOf(loonie.getCode()));
+		assertEquals(4, tally.getTotalCount());
+		assertEquals(175, tally.getValue(currency));
+
+		assertTrue(storage.unloadAll().isEmpty());
+	}
+
+	/**
+	 * Unloading the banknote storage gives exactly the banknotes stored and their total
+	 */
+	@Test
+	public void testBanknoteStorageTotals() throws Exception {
+		BanknoteStorageUnit storage = new BanknoteStorageUnit(100);
+		storage.load(new Banknote(20, currency), new Banknote(5, currency), new Banknote(20, currency));
+
+		UnloadedCash<Banknote> banknotes = storage.unloadAll();
+		assertEquals(3, banknotes.size());
+		assertEquals(5, banknotes.get(1).getValue());
+		assertEquals(2, banknotes.getTally().getCountOf(new Banknote(20, currency).getCode()));
+		assertEquals(4500, banknotes.getTally().getValue(currency));
+		assertEquals(0, banknotes.getTally().getValue(Currency.getInstance(Locale.US)));
+	}
+
+	/**
+	 * Collecting the tray counts coins without a cash code apart from the rest
+	 */
+	@Test
+	public void testCoinTrayTotals() throws Exception {
+		CoinTray tray = new CoinTray(10);
+		Coin odd = new Coin(BigDecimal.valueOf(0.003), currency);
+		tray.acceptAll(new Coin[] {quarter, odd, loonie, loonie}, 0, 4);
+
+		UnloadedCash<Coin> coins = tray.collectAll();
+		assertEquals(4, coins.size());
+		assertSame(odd, coins.get(1));
+		assertEquals(1, coins.getTally().getUnencodedCount());
+		assertEquals(4, coins.getTally().getTotalCount());
+		assertEquals(225, coins.getTally().getValue(currency));
+		assertEquals(10, tray.spaceAvailable());
+	}
+
+	/**
+	 * Each unload hands back the buffer recycled from the one before last: the previous view stays
+	 * whole until the next unload, and the new cash doesn't leak into it
+	 */
+	@Test
+	public void testRecycledBuffers() throws Exception {
+		CoinStorageUnit storage = new CoinStorageUnit(10);
+		CoinTray tray = new CoinTray(10);
+
+		for(int round = 1; round <= 5; round++) {
+			Coin coin = round % 2 == 0 ? quarter : loonie;
+			Coin[] coins = new Coin[round];
+			for(int i = 0; i < round; i++)
+				coins[i] = coin;
+
+			storage.load(coins);
+			tray.acceptAll(coins, 0, round);
+
+			UnloadedCash<Coin> stored = storage.unloadAll();
+			UnloadedCash<Coin> collected = tray.collectAll();
+
+			// loading the next round goes into the other buffer
+			storage.load(quarter, quarter, quarter, quarter, quarter, quarter);
+			tray.acceptAll(new Coin[] {quarter, quarter, quarter, quarter, quarter, quarter}, 0, 6);
+
+			assertEquals(round, stored.size());
+			assertEquals(round, collected.size());
+			for(int i = 0; i < round; i++) {
+				assertEquals(coin, stored.get(i));
+				assertEquals(coin, collected.get(i));
+			}
+			assertEquals(round, stored.getTally().getCountOf(coin.getCode()));
+
+			// a copy outlives the buffer it was taken from
+			List<Coin> kept = new ArrayList<Coin>(stored);
+			assertEquals(6, storage.unloadAll().size());
+			assertEquals(6, tray.collectAll().size());
+			assertEquals(round, kept.size());
+		}
+	}
+
+	/**
+	 * A tally grows past its first few denominations and keeps their order
+	 */
+	@Test
+	public void testTallyGrows() {
+		CashTally tally = new CashTally();
+		for(int cents = 1; cents <= 20; cents++)
+			tally.add(Money.encode(currency, cents), cents);
+		tally.add(Money.encode(currency, 1));
+		tally.add(-1, 3);
+
+		assertEquals(20, tally.size());
+		assertEquals(Money.encode(currency, 12), tally.getCode(11));
+		assertEquals(2, tally.getCount(0));
+		assertEquals(20, tally.getCountOf(Money.encode(currency, 20)));
+		assertEquals(3, tally.getUnencodedCount());
+		assertEquals(210 + 1 + 3, tally.getTotalCount());
+		assertEquals(2870 + 1, tally.getValue(currency));
+	}
+
+	@Test
+	public void testOnErrorIfInvalid() throws Exception {
+		CashTally tally = new CashTally();
+		try {
+			tally.add(Money.encode(currency, 5), 0);
+			fail("Should throw SimulationException if the count isn't positive");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			tally.getCode(0);
+			fail("Should throw IndexOutOfBoundsException if there is no such denomination");
+		} catch (IndexOutOfBoundsException e) {/*expected*/}
+
+		CoinStorageUnit storage = new CoinStorageUnit(10);
+		storage.load(quarter);
+		UnloadedCash<Coin> coins = storage.unloadAll();
+		try {
+			coins.get(1);
+			fail("Should throw IndexOutOfBoundsException past the coins unloaded");
+		} catch (IndexOutOfBoundsException e) {/*expected*/}
+
+		try {
+			coins.add(quarter);
+			fail("Should throw UnsupportedOperationException if the view is changed");
+		} catch (UnsupportedOperationException e) {/*expected*/}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * 	Class:			VelocityLimiterTest.java
+ * 	Description:	JUnit testing class for the VelocityLimiter that throttles card authorization attempts
+ * 	Date:			10/19/2026
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.external.VelocityLimiter;
+
+public class VelocityLimiterTest {
+
+	/**
+	 * A key is refused once it reaches the limit, and allowed again as the window slides past
+	 * its earlier attempts
+	 */
+	@Test
+	public void testSlidingWindow() {
+		final long[] now = {10_000};
+		VelocityLimiter limiter = new VelocityLimiter(3, 1000, 64, () -> now[0]);
+
+		for(int i = 0; i < 3; i++)
+			assertTrue(limiter.tryAcquire("card"));
+		assertFalse(limiter.tryAcquire("card"));
+
+		// other keys are counted separately
+		assertTrue(limiter.tryAcquire("other"));
+
+		// half way into the next window, half of the previous one still counts
+		now[0] += 1500;
+		assertTrue(limiter.tryAcquire("card"));
+		assertTrue(limiter.tryAcquire("card"));
+		assertFalse(limiter.tryAcquire("card"));
+
+		// two windows on, nothing earlier counts
+		now[0] += 2000;
+		for(int i = 0; i < 3; i++)
+			assertTrue(limiter.tryAcquire("card"));
+		assertFalse(limiter.tryAcquire("card"));
+		assertEquals(3, limiter.getRefusedCount());
+	}
+
+	/**
+	 * Many threads hitting one key are allowed exactly the limit between them
+	 */
+	@Test
+	public void testConcurrentAttempts() throws Exception {
+		VelocityLimiter limiter = new VelocityLimiter(1000, 60_000, 64, () -> 0);
+		AtomicInteger allowed = new AtomicInteger();
+
+		Thread[] threads = new Thread[8];
+		for(int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for(int i = 0; i < 1000; i++)
+					if(limiter.tryAcquire("card"))
+						allowed.incrementAndGet();
+			});
+			threads[t].start();
+		}
+		for(Thread thread : threads)
+			thread.join();
+
+		assertEquals(1000, allowed.get());
+		assertEquals(7000, limiter.getRefusedCount());
+	}
+
+	/**
+	 * Memory stays fixed however many keys are seen: idle keys give up their slots to new ones,
+	 * and when every slot is busy, new keys are allowed untracked
+	 */
+	@Test
+	public void testIdleEviction() {
+		final long[] now = {0};
+		VelocityLimiter limiter = new VelocityLimiter(1, 1000, 1024, () -> now[0]);
+
+		for(int round = 0; round < 100; round++) {
+			for(int i = 0; i < 500; i++)
+				assertTrue(limiter.tryAcquire("card " + round + " " + i));
+			assertTrue(limiter.getTrackedCount() <= 1024);
+			now[0] += 2000;
+		}
+		assertEquals(0, limiter.getTrackedCount());
+
+		for(int i = 0; i < 100_000; i++)
+			limiter.tryAcquire("card " + i);
+		assertTrue(limiter.getTrackedCount() <= 1024);
+		assertTrue(limiter.getUntrackedCount() > 0);
+	}
+
+	@Test
+	public void testOnErrorIfInvalid() {
+		try {
+			new VelocityLimiter(0, 1000, 64, () -> 0);
+			fail("Should throw SimulationException if the limit isn't positive");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			new VelocityLimiter(1, 0, 64, () -> 0);
+			fail("Should throw SimulationException if the window isn't positive");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			new VelocityLimiter(1, 1000, 64, null);
+			fail("Should throw SimulationException if the clock is null");
+		} catch (SimulationException e) {/*expected*/}
+
+		try {
+			new VelocityLimiter(1, 1000, 64, () -> 0).tryAcquire(null);
+			fail("Should throw SimulationException if the key is null");
+		} catch (SimulationException e) {/*expected*/}
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ * 	Class:			CardAuthorizationClient.java
+ * 	Description:	Non-blocking client for a card issuer. Requests return futures, any number can
+ * 					be in flight at once, and each one fails if the issuer doesn't answer by its
+ * 					deadline. Runs against a local CardIssuer stand-in with simulated network latency.
+ * 	Date:			10/19/2026
+ */
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.external.CardIssuer;
+
+public class CardAuthorizationClient {
+
+	private static final int LATENCY_SAMPLES = 1 << 16;	// the latencies of the most recent requests are kept
+
+	// holds expire by themselves, as card networks' do, so that one whose payment's outcome is
+	// never learned doesn't tie up the card for good
+	private static final long HOLD_TIME_TO_LIVE = 7L * 24 * 60 * 60 * 1000;	// a week, in milliseconds
+
+	private final CardIssuer issuer;
+	private final long latency;		// in milliseconds
+	private final long jitter;		// in milliseconds
+	private final long deadline;	// in milliseconds
+	private final ScheduledThreadPoolExecutor scheduler;
+	private final Random random = new Random();
+
+	private final long[] latencies = new long[LATENCY_SAMPLES];	// in nanoseconds
+	private long completed = 0;
+	private long timedOut = 0;
+
+
+	/**
+	 * Constructor for class and initializes variables
+	 *
+	 * @param issuer The card issuer stand-in that requests are answered by
+	 * @param latency How long the issuer takes to answer each request, in milliseconds
+	 * @param jitter Up to how much longer the issuer may randomly take, in milliseconds
+	 * @param deadline How long to wait for each answer before failing the request, in milliseconds
+	 */
+	public CardAuthorizationClient(CardIssuer issuer, long latency, long jitter, long deadline) {
+		if(issuer == null)
+			throw new SimulationException("Card issuer is null");
+		if(latency < 0 || jitter < 0)
+			throw new SimulationException("Latency and jitter can't be negative");
+		if(deadline <= 0)
+			throw new SimulationException("Deadline must be positive");
+
+		this.issuer = issuer;
+		this.latency = latency;
+		this.jitter = jitter;
+		this.deadline = deadline;
+
+		scheduler = new ScheduledThreadPoolExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+			Thread thread = new Thread(r, "card-authorization");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);	// answered requests don't leave their deadlines queued
+	}
+
+	/**
+	 * Asks the issuer to place a hold on a card
+	 *
+	 * @param cardNumber Number of the card to place the hold on
+	 * @param amount Amount to hold
+	 * @return Future of the hold number, or -1 if the issuer declined the hold. The hold expires
+	 * after a week unless it is posted or released first. Fails with a TimeoutException if the
+	 * issuer doesn't answer in time, in which case any hold the issuer places afterwards is
+	 * released again
+	 */
+	public CompletableFuture<Integer> authorizeHold(String cardNumber, BigDecimal amount) {
+		Request<Integer> hold = send(() -> issuer.authorizeHold(cardNumber, amount, HOLD_TIME_TO_LIVE));
+
+		// the issuer may still answer after the deadline, and nobody would ever post that hold
+		hold.whenComplete((holdNumber, e) -> {
+			if(e instanceof TimeoutException)
+				hold.answer.thenAccept(late -> {
+					if(late >= 0)
+						issuer.releaseHold(cardNumber, late);
+				});
+		});
+
+		return hold;
+	}
+
+	/**
+	 * Asks the issuer to release a hold on a card
+	 *
+	 * @param cardNumber Number of the card the hold is on
+	 * @param holdNumber Hold number returned when the hold was authorized
+	 * @return Future of whether the issuer released the hold
+	 */
+	public CompletableFuture<Boolean> releaseHold(String cardNumber, int holdNumber) {
+		return send(() -> issuer.releaseHold(cardNumber, holdNumber));
+	}
+
+	/**
+	 * Asks the issuer to post a transaction against a hold on a card
+	 *
+	 * @param cardNumber Number of the card the hold is on
+	 * @param holdNumber Hold number returned when the hold was authorized
+	 * @param amount Amount of the transaction, no more than the hold
+	 * @return Future of whether the issuer posted the transaction
+	 */
+	public CompletableFuture<Boolean> postTransaction(String cardNumber, int holdNumber, BigDecimal amount) {
+		return send(() -> issuer.postTransaction(cardNumber, holdNumber, amount));
+	}
+
+	/**
+	 * Getter for the issuer's own answer to a request, however late it comes. A request that
+	 * missed its deadline may still have been carried out, and this tells what the issuer did
+	 *
+	 * @param request A future returned by this client
+	 * @return Future of the issuer's answer
+	 */
+	public <T> CompletableFuture<T> getAnswer(CompletableFuture<T> request) {
+		if(!(request instanceof Request))
+			throw new SimulationException("Not a request to the card issuer");
+
+		return ((Request<T>)request).answer;
+	}
+
+	/**
+	 * A request in flight. Completes with the issuer's answer, or with a TimeoutException at its
+	 * deadline, whichever claims it first; an answer arriving after the deadline still completes
+	 * answer
+	 */
+	private static final class Request<T> extends CompletableFuture<T> {
+		private final CompletableFuture<T> answer = new CompletableFuture<>();
+		private final AtomicBoolean claimed = new AtomicBoolean();
+
+		// claimed before completing, so the counters are up to date when callers see the outcome
+		boolean claim() {
+			return claimed.compareAndSet(false, true);
+		}
+	}
+
+	private <T> Request<T> send(Supplier<T> call) {
+		Request<T> request = new Request<>();
+		long sent = System.nanoTime();
+		long delay = latency + (jitter > 0 ? (long)(random.nextDouble() * jitter) : 0);
+
+		scheduler.schedule(() -> {
+			try {
+				T result = call.get();
+				request.answer.complete(result);
+
+				if(request.claim()) {
+					record(System.nanoTime() - sent);
+					request.complete(result);
+				}
+			}
+			catch(RuntimeException e) {
+				request.answer.completeExceptionally(e);
+
+				if(request.claim())
+					request.completeExceptionally(e);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+
+		ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+			if(request.claim()) {
+				synchronized(this) {
+					timedOut++;
+				}
+				request.completeExceptionally(new TimeoutException("No answer from the card issuer within " + deadline + " ms"));
+			}
+		}, deadline, TimeUnit.MILLISECONDS);
+		request.whenComplete((result, e) -> timeout.cancel(false));
+
+		return request;
+	}
+
+	private synchronized void record(long nanos) {
+		latencies[(int)(completed++ & (LATENCY_SAMPLES - 1))] = nanos;
+	}
+
+	/**
+	 * Getter for the latency below which the indicated share of recent requests were answered
+	 *
+	 * @param percentile Share of requests, from 0 to 100 (e.g. 99.9 for the p999)
+	 * @return The latency, in milliseconds, or 0 if no request has been answered yet
+	 */
+	public double getLatencyPercentile(double percentile) {
+		if(percentile < 0 || percentile > 100)
+			throw new SimulationException("Percentile must be between 0 and 100");
+
+		long[] sorted;
+
+		synchronized(this) {
+			sorted = Arrays.copyOf(latencies, (int)Math.min(completed, LATENCY_SAMPLES));
+		}
+
+		if(sorted.length == 0)
+			return 0;
+
+		Arrays.sort(sorted);
+		int rank = (int)Math.ceil(percentile / 100 * sorted.length) - 1;
+
+		return sorted[Math.max(0, rank)] / 1e6;
+	}
+
+	/**
+	 * Getter for how long each answer is waited for
+	 * @return deadline, in milliseconds
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Getter for the number of requests answered in time
+	 * @return completed requests
+	 */
+	public synchronized long getCompletedCount() {
+		return completed;
+	}
+
+	/**
+	 * Getter for the number of requests that missed their deadline
+	 * @return timed out requests
+	 */
+	public synchronized long getTimedOutCount() {
+		return timedOut;
+	}
+
+	/**
+	 * Stops the client. Requests still in flight are abandoned
+	 */
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+}
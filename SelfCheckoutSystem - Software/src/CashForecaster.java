@@ -0,0 +1,496 @@
+/*
+ * 	Class:			CashForecaster.java
+ * 	Description:	Streams the coin and banknote flows of a fleet of stations into decaying rate
+ * 					estimates, and projects when each storage unit will fill and each dispenser
+ * 					will run dry, as a ranked list of pickups and refills.
+ * 	Date:			10/19/2026
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.lsmr.selfcheckout.Banknote;
+import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.Money;
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.BanknoteDispenser;
+import org.lsmr.selfcheckout.devices.BanknoteStorageUnit;
+import org.lsmr.selfcheckout.devices.CoinDispenser;
+import org.lsmr.selfcheckout.devices.CoinStorageUnit;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.devices.listeners.AbstractDeviceListener;
+import org.lsmr.selfcheckout.devices.listeners.BanknoteDispenserListener;
+import org.lsmr.selfcheckout.devices.listeners.BanknoteStorageUnitListener;
+import org.lsmr.selfcheckout.devices.listeners.CoinDispenserListener;
+import org.lsmr.selfcheckout.devices.listeners.CoinStorageUnitListener;
+
+public class CashForecaster {
+
+	/**
+	 * What needs doing to a device before it stops the lane
+	 */
+	public enum Action {
+		PICKUP,	// empty it before it fills up
+		REFILL	// refill it before it runs out
+	}
+
+	/**
+	 * One projected pickup or refill
+	 */
+	public static final class Forecast {
+		private final String name;
+		private final AbstractDevice<?> device;
+		private final Action action;
+		private final double secondsLeft;
+
+		Forecast(String name, AbstractDevice<?> device, Action action, double secondsLeft) {
+			this.name = name;
+			this.device = device;
+			this.action = action;
+			this.secondsLeft = secondsLeft;
+		}
+
+		/**
+		 * Getter for the name the device was watched under
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Getter for the device
+		 */
+		public AbstractDevice<?> getDevice() {
+			return device;
+		}
+
+		/**
+		 * Getter for the action needed
+		 */
+		public Action getAction() {
+			return action;
+		}
+
+		/**
+		 * Getter for the projected time until the device is full (pickup) or empty (refill)
+		 * @return seconds, 0 if it already is
+		 */
+		public double getSecondsLeft() {
+			return secondsLeft;
+		}
+
+		@Override
+		public String toString() {
+			return action + " " + name + " in " + Math.round(secondsLeft) + "s";
+		}
+	}
+
+	/**
+	 * A rate of events per millisecond that decays exponentially with the given time constant, so
+	 * that each event is folded in with a constant amount of work and no history is kept
+	 */
+	private static final class Rate {
+		private double rate = 0;
+		private long last;
+
+		Rate(long now) {
+			last = now;
+		}
+
+		void record(long now, int count, double tau) {
+			rate = at(now, tau) + count / tau;
+			last = Math.max(last, now);
+		}
+
+		double at(long now, double tau) {
+			return now <= last ? rate : rate * Math.exp(-(now - last) / tau);
+		}
+	}
+
+	/**
+	 * A device whose level is forecast, with the flows into and out of it
+	 */
+	private static final class Reservoir {
+		final String name;
+		final AbstractDevice<?> device;
+		final Rate inflow, outflow;
+
+		Reservoir(String name, AbstractDevice<?> device, long now) {
+			this.name = name;
+			this.device = device;
+			inflow = new Rate(now);
+			outflow = new Rate(now);
+		}
+
+		int level() {
+			if(device instanceof CoinDispenser)
+				return ((CoinDispenser)device).size();
+			if(device instanceof BanknoteDispenser)
+				return ((BanknoteDispenser)device).size();
+			if(device instanceof CoinStorageUnit)
+				return ((CoinStorageUnit)device).getCoinCount();
+			return ((BanknoteStorageUnit)device).getBanknoteCount();
+		}
+
+		int capacity() {
+			if(device instanceof CoinDispenser)
+				return ((CoinDispenser)device).getCapacity();
+			if(device instanceof BanknoteDispenser)
+				return ((BanknoteDispenser)device).getCapacity();
+			if(device instanceof CoinStorageUnit)
+				return ((CoinStorageUnit)device).getCapacity();
+			return ((BanknoteStorageUnit)device).getCapacity();
+		}
+	}
+
+	//Global variables
+	private final double tau;				// time constant of the rates, in milliseconds
+	private final LongSupplier clock;		// milliseconds
+	private final IdentityHashMap<AbstractDevice<?>, Reservoir> reservoirs = new IdentityHashMap<>();
+
+	// per denomination flows across the whole fleet, keyed by cash code
+	private long[] codes = new long[0];
+	private Rate[] inflows = new Rate[0];
+	private Rate[] outflows = new Rate[0];
+
+
+	/**
+	 * Constructor for class and initializes variables
+	 *
+	 * @param window How far back the rates mostly look, in milliseconds. Flows older than
+	 * this count for less than 37% (1/e) of recent ones
+	 */
+	public CashForecaster(long window) {
+		this(window, System::currentTimeMillis);
+	}
+
+	/**
+	 * Constructor with an explicit clock, for simulations and tests
+	 *
+	 * @param window How far back the rates mostly look, in milliseconds
+	 * @param clock Source of the current time, in milliseconds
+	 */
+	CashForecaster(long window, LongSupplier clock) {
+		if(window <= 0)
+			throw new SimulationException("Window must be positive");
+		if(clock == null)
+			throw new SimulationException("Clock is null");
+
+		this.tau = window;
+		this.clock = clock;
+	}
+
+	/**
+	 * Watches the coin and banknote storage units of a station, and its coin dispensers. Each
+	 * coin or banknote is counted once, by the device it ends up in: a coin that overflows
+	 * storage into a dispenser is an inflow to the dispenser only. Loading by an attendant is
+	 * not counted
+	 *
+	 * @param name Name of the station, used to label its devices in forecasts
+	 * @param station The station to watch
+	 */
+	public void watch(String name, SelfCheckoutStation station) {
+		if(name == null)
+			throw new SimulationException("Name is null");
+		if(station == null)
+			throw new SimulationException("Station is null");
+
+		final Reservoir coins = addReservoir(name + " coin storage", station.coinStorage);
+		final Reservoir banknotes = addReservoir(name + " banknote storage", station.banknoteStorage);
+
+		// the codes are announced as they are stored, and counted once the unit says whether
+		// they were added by a customer or loaded by an attendant
+		station.coinStorage.register(new CoinStorageUnitListener() {
+			private long[] codes;
+			private int offset, length;
+
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void coinsStored(CoinStorageUnit unit, long[] codes, int offset, int length) {
+				this.codes = codes;
+				this.offset = offset;
+				this.length = length;
+			}
+			public void coinAdded(CoinStorageUnit unit) {
+				added();
+			}
+			public void coinsAdded(CoinStorageUnit unit, int count) {
+				added();
+			}
+			public void coinsFull(CoinStorageUnit unit) {
+				added();
+			}
+			public void coinsLoaded(CoinStorageUnit unit) {
+				length = 0;
+			}
+			public void coinsUnloaded(CoinStorageUnit unit) {}
+
+			private void added() {
+				inflow(coins, codes, offset, length);
+				length = 0;
+			}
+		});
+
+		station.banknoteStorage.register(new BanknoteStorageUnitListener() {
+			private long[] codes;
+			private int offset, length;
+
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void banknotesStored(BanknoteStorageUnit unit, long[] codes, int offset, int length) {
+				this.codes = codes;
+				this.offset = offset;
+				this.length = length;
+			}
+			public void banknoteAdded(BanknoteStorageUnit unit) {
+				added();
+			}
+			public void banknotesFull(BanknoteStorageUnit unit) {
+				added();
+			}
+			public void banknotesLoaded(BanknoteStorageUnit unit) {
+				length = 0;
+			}
+			public void banknotesUnloaded(BanknoteStorageUnit unit) {}
+
+			private void added() {
+				inflow(banknotes, codes, offset, length);
+				length = 0;
+			}
+		});
+
+		for(Map.Entry<Long, CoinDispenser> entry : station.coinDispensers.entrySet())
+			watch(name + " " + Money.toString(entry.getKey(), station.coinValidator.currency) + " coin dispenser",
+					entry.getValue());
+	}
+
+	/**
+	 * Watches a coin dispenser. Coins it emits are its outflow, and coins routed into it are
+	 * its inflow; loading and unloading by an attendant are not part of either
+	 *
+	 * @param name Name of the dispenser, used to label it in forecasts
+	 * @param dispenser The dispenser to watch
+	 */
+	public void watch(String name, CoinDispenser dispenser) {
+		if(name == null)
+			throw new SimulationException("Name is null");
+
+		final Reservoir reservoir = addReservoir(name, dispenser);
+
+		dispenser.register(new CoinDispenserListener() {
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void coinsFull(CoinDispenser dispenser) {}
+			public void coinsEmpty(CoinDispenser dispenser) {}
+			public void coinAdded(CoinDispenser dispenser, Coin coin) {
+				inflow(reservoir, coin.getCode(), 1);
+			}
+			public void coinRemoved(CoinDispenser dispenser, Coin coin) {
+				outflow(reservoir, coin.getCode(), 1);
+			}
+			public void coinsLoaded(CoinDispenser dispenser, Coin... coins) {}
+			public void coinsUnloaded(CoinDispenser dispenser, Coin... coins) {}
+		});
+	}
+
+	/**
+	 * Watches a banknote dispenser. Banknotes it emits are its outflow
+	 *
+	 * @param name Name of the dispenser, used to label it in forecasts
+	 * @param dispenser The dispenser to watch
+	 */
+	public void watch(String name, BanknoteDispenser dispenser) {
+		if(name == null)
+			throw new SimulationException("Name is null");
+
+		final Reservoir reservoir = addReservoir(name, dispenser);
+
+		dispenser.register(new BanknoteDispenserListener() {
+			// the denomination of the last banknote isn't announced, so it is the one last seen
+			private long last = -1;
+
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void banknotesFull(BanknoteDispenser dispenser) {}
+			// the banknote that empties the dispenser is announced by this event instead of banknoteRemoved
+			public void banknotesEmpty(BanknoteDispenser dispenser) {
+				outflow(reservoir, last, 1);
+			}
+			public void banknoteAdded(BanknoteDispenser dispenser, Banknote banknote) {
+				inflow(reservoir, banknote.getCode(), 1);
+			}
+			public void banknoteRemoved(BanknoteDispenser dispenser, Banknote banknote) {
+				last = banknote.getCode();
+				outflow(reservoir, last, 1);
+			}
+			public void banknotesLoaded(BanknoteDispenser dispenser, Banknote... banknotes) {
+				if(banknotes.length > 0)
+					last = banknotes[0].getCode();
+			}
+			public void banknotesUnloaded(BanknoteDispenser dispenser, Banknote... banknotes) {}
+		});
+	}
+
+	/**
+	 * Getter for the current rate at which a denomination flows into the watched devices
+	 * @param code The cash code of the denomination
+	 * @return coins or banknotes per second
+	 */
+	public synchronized double getInflowRate(long code) {
+		int i = indexOf(code);
+		return i < 0 ? 0 : inflows[i].at(clock.getAsLong(), tau) * 1000;
+	}
+
+	/**
+	 * Getter for the current rate at which a denomination flows out of the watched devices
+	 * @param code The cash code of the denomination
+	 * @return coins or banknotes per second
+	 */
+	public synchronized double getOutflowRate(long code) {
+		int i = indexOf(code);
+		return i < 0 ? 0 : outflows[i].at(clock.getAsLong(), tau) * 1000;
+	}
+
+	/**
+	 * Projects how long until a watched device is full, at the current rates
+	 * @param device The watched device
+	 * @return seconds, or infinity if it isn't filling
+	 */
+	public synchronized double getSecondsToFull(AbstractDevice<?> device) {
+		Reservoir reservoir = getReservoir(device);
+		double net = net(reservoir, clock.getAsLong());
+
+		if(net <= 0)
+			return Double.POSITIVE_INFINITY;
+
+		return (reservoir.capacity() - reservoir.level()) / net;
+	}
+
+	/**
+	 * Projects how long until a watched device is empty, at the current rates
+	 * @param device The watched device
+	 * @return seconds, or infinity if it isn't draining
+	 */
+	public synchronized double getSecondsToEmpty(AbstractDevice<?> device) {
+		Reservoir reservoir = getReservoir(device);
+		double net = net(reservoir, clock.getAsLong());
+
+		if(net >= 0)
+			return Double.POSITIVE_INFINITY;
+
+		return reservoir.level() / -net;
+	}
+
+	/**
+	 * Projects every watched device that is filling or draining, soonest first: storage
+	 * units and dispensers that will fill need a pickup, dispensers that will run out need
+	 * a refill
+	 *
+	 * @return ranked forecasts, may be empty
+	 */
+	public synchronized List<Forecast> rank() {
+		long now = clock.getAsLong();
+		List<Forecast> forecasts = new ArrayList<>();
+
+		for(Reservoir reservoir : reservoirs.values()) {
+			double net = net(reservoir, now);
+
+			if(net > 0)
+				forecasts.add(new Forecast(reservoir.name, reservoir.device, Action.PICKUP,
+						(reservoir.capacity() - reservoir.level()) / net));
+			else if(net < 0)
+				forecasts.add(new Forecast(reservoir.name, reservoir.device, Action.REFILL,
+						reservoir.level() / -net));
+		}
+
+		Collections.sort(forecasts, (a, b) -> Double.compare(a.secondsLeft, b.secondsLeft));
+		return forecasts;
+	}
+
+	// per second
+	private double net(Reservoir reservoir, long now) {
+		return (reservoir.inflow.at(now, tau) - reservoir.outflow.at(now, tau)) * 1000;
+	}
+
+	private synchronized Reservoir addReservoir(String name, AbstractDevice<?> device) {
+		if(device == null)
+			throw new SimulationException("Device is null");
+		if(reservoirs.containsKey(device))
+			throw new SimulationException("Device is already watched");
+
+		Reservoir reservoir = new Reservoir(name, device, clock.getAsLong());
+		reservoirs.put(device, reservoir);
+		return reservoir;
+	}
+
+	private Reservoir getReservoir(AbstractDevice<?> device) {
+		Reservoir reservoir = reservoirs.get(device);
+
+		if(reservoir == null)
+			throw new SimulationException("Device is not watched");
+
+		return reservoir;
+	}
+
+	private synchronized void inflow(Reservoir reservoir, long code, int count) {
+		long now = clock.getAsLong();
+		reservoir.inflow.record(now, count, tau);
+
+		if(code >= 0) {
+			int slot = slotOf(code, now);
+			inflows[slot].record(now, count, tau);
+		}
+	}
+
+	// counts each run of the same code at once
+	private synchronized void inflow(Reservoir reservoir, long[] codes, int offset, int length) {
+		int run;
+
+		for(int i = offset; i < offset + length; i += run) {
+			for(run = 1; i + run < offset + length && codes[i + run] == codes[i]; run++);
+			inflow(reservoir, codes[i], run);
+		}
+	}
+
+	private synchronized void outflow(Reservoir reservoir, long code, int count) {
+		long now = clock.getAsLong();
+		reservoir.outflow.record(now, count, tau);
+
+		if(code >= 0) {
+			int slot = slotOf(code, now);
+			outflows[slot].record(now, count, tau);
+		}
+	}
+
+	private int indexOf(long code) {
+		for(int i = 0; i < codes.length; i++)
+			if(codes[i] == code)
+				return i;
+
+		return -1;
+	}
+
+	private int slotOf(long code, long now) {
+		int i = indexOf(code);
+
+		if(i >= 0)
+			return i;
+
+		// a new denomination, which only happens a handful of times
+		i = codes.length;
+		codes = Arrays.copyOf(codes, i + 1);
+		inflows = Arrays.copyOf(inflows, i + 1);
+		outflows = Arrays.copyOf(outflows, i + 1);
+		codes[i] = code;
+		inflows[i] = new Rate(now);
+		outflows[i] = new Rate(now);
+
+		return i;
+	}
+}
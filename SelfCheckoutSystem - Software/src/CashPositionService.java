@@ -0,0 +1,428 @@
+/*
+ * 	Class:			CashPositionService.java
+ * 	Description:	Keeps a running count of the cash held in a station's storage units, coin tray
+ * 					and dispensers, so the cash position can be read without unloading anything.
+ * 	Date:			10/19/2026
+ */
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.IdentityHashMap;
+
+import org.lsmr.selfcheckout.Banknote;
+import org.lsmr.selfcheckout.CashTally;
+import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.Money;
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.BanknoteDispenser;
+import org.lsmr.selfcheckout.devices.BanknoteStorageUnit;
+import org.lsmr.selfcheckout.devices.CoinDispenser;
+import org.lsmr.selfcheckout.devices.CoinStorageUnit;
+import org.lsmr.selfcheckout.devices.CoinTray;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.devices.listeners.AbstractDeviceListener;
+import org.lsmr.selfcheckout.devices.listeners.BanknoteDispenserListener;
+import org.lsmr.selfcheckout.devices.listeners.BanknoteStorageUnitListener;
+import org.lsmr.selfcheckout.devices.listeners.CoinDispenserListener;
+import org.lsmr.selfcheckout.devices.listeners.CoinStorageUnitListener;
+import org.lsmr.selfcheckout.devices.listeners.CoinTrayListener;
+
+/**
+ * Subscribes to the events of cash devices and keeps, for each device and each denomination,
+ * how many coins or banknotes it holds. Every event is applied as it arrives with a constant
+ * amount of work, and every read is answered straight from the counters
+ *
+ * Denominations are identified by cash code (see Coin.getCode() and Banknote.getCode()).
+ * Values are kept in minor units of the service's currency; cash in any other currency
+ * is counted but not included in the values
+ */
+public class CashPositionService {
+
+	private final Currency currency;
+	private final int currencyIndex;
+
+	// denomination slots, found by open addressing on the cash code
+	private long[] slotCodes = new long[0];
+	private int[] table = new int[16];
+	private int slotCount = 0;
+
+	// locations, one per watched device
+	private final IdentityHashMap<AbstractDevice<?>, Integer> locations = new IdentityHashMap<>();
+	private int[][] counts = new int[0][]; // [location][slot]
+	private int[] unencoded = new int[0]; // per location, coins that have no cash code
+	private long[] values = new long[0]; // per location, in minor units
+
+	private int[] totals = new int[0]; // per slot, across all locations
+	private long value = 0;
+
+
+	/**
+	 * Constructor for class and initializes variables
+	 *
+	 * @param currency The currency that values are reported in
+	 */
+	public CashPositionService(Currency currency) {
+		if(currency == null)
+			throw new SimulationException("Currency is null");
+
+		this.currency = currency;
+		this.currencyIndex = Money.currencyIndex(currency);
+		Arrays.fill(table, -1);
+	}
+
+	/**
+	 * Watches the coin storage unit, banknote storage unit, coin tray and coin dispensers of a
+	 * station
+	 *
+	 * @param station The station to watch
+	 */
+	public void watch(SelfCheckoutStation station) {
+		if(station == null)
+			throw new SimulationException("Station is null");
+
+		watch(station.coinStorage);
+		watch(station.banknoteStorage);
+		watch(station.coinTray);
+
+		for(CoinDispenser dispenser : station.coinDispensers.values())
+			watch(dispenser);
+	}
+
+	/**
+	 * Watches a coin storage unit. Its current contents can't be seen, so it should be empty
+	 * when it is first watched
+	 *
+	 * @param unit The storage unit to watch
+	 */
+	public void watch(CoinStorageUnit unit) {
+		final int location = addLocation(unit);
+
+		unit.register(new CoinStorageUnitListener() {
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void coinsFull(CoinStorageUnit unit) {}
+			public void coinAdded(CoinStorageUnit unit) {}
+			public void coinsLoaded(CoinStorageUnit unit) {}
+			public void coinsUnloaded(CoinStorageUnit unit) {
+				clear(location);
+			}
+			public void coinsStored(CoinStorageUnit unit, long[] codes, int offset, int length) {
+				add(location, codes, offset, length);
+			}
+		});
+	}
+
+	/**
+	 * Watches a banknote storage unit. Its current contents can't be seen, so it should be
+	 * empty when it is first watched
+	 *
+	 * @param unit The storage unit to watch
+	 */
+	public void watch(BanknoteStorageUnit unit) {
+		final int location = addLocation(unit);
+
+		unit.register(new BanknoteStorageUnitListener() {
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void banknotesFull(BanknoteStorageUnit unit) {}
+			public void banknoteAdded(BanknoteStorageUnit unit) {}
+			public void banknotesLoaded(BanknoteStorageUnit unit) {}
+			public void banknotesUnloaded(BanknoteStorageUnit unit) {
+				clear(location);
+			}
+			public void banknotesStored(BanknoteStorageUnit unit, long[] codes, int offset, int length) {
+				add(location, codes, offset, length);
+			}
+		});
+	}
+
+	/**
+	 * Watches a coin tray. Its current contents can't be seen, so it should be empty when it
+	 * is first watched
+	 *
+	 * @param tray The coin tray to watch
+	 */
+	public void watch(CoinTray tray) {
+		final int location = addLocation(tray);
+
+		tray.register(new CoinTrayListener() {
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void coinAdded(CoinTray tray) {}
+			public void coinsStored(CoinTray tray, Coin[] coins, int offset, int length) {
+				synchronized(CashPositionService.this) {
+					for(int i = offset; i < offset + length; i++)
+						add(location, coins[i].getCode(), 1);
+				}
+			}
+			public void coinsCollected(CoinTray tray) {
+				clear(location);
+			}
+		});
+	}
+
+	/**
+	 * Watches a coin dispenser. Its current contents can't be seen, so it should be empty when
+	 * it is first watched
+	 *
+	 * @param dispenser The dispenser to watch
+	 */
+	public void watch(CoinDispenser dispenser) {
+		final int location = addLocation(dispenser);
+
+		dispenser.register(new CoinDispenserListener() {
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void coinsFull(CoinDispenser dispenser) {}
+			public void coinsEmpty(CoinDispenser dispenser) {}
+			public void coinAdded(CoinDispenser dispenser, Coin coin) {
+				add(location, coin.getCode(), 1);
+			}
+			public void coinRemoved(CoinDispenser dispenser, Coin coin) {
+				add(location, coin.getCode(), -1);
+			}
+			public void coinsLoaded(CoinDispenser dispenser, Coin... coins) {
+				synchronized(CashPositionService.this) {
+					for(Coin coin : coins)
+						add(location, coin.getCode(), 1);
+				}
+			}
+			public void coinsUnloaded(CoinDispenser dispenser, Coin... coins) {
+				clear(location);
+			}
+		});
+	}
+
+	/**
+	 * Watches a banknote dispenser. Its current contents can't be seen, so it should be empty
+	 * when it is first watched
+	 *
+	 * @param dispenser The dispenser to watch
+	 */
+	public void watch(BanknoteDispenser dispenser) {
+		final int location = addLocation(dispenser);
+
+		dispenser.register(new BanknoteDispenserListener() {
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void banknotesFull(BanknoteDispenser dispenser) {}
+			// the banknote that empties the dispenser is announced by this event instead of banknoteRemoved
+			public void banknotesEmpty(BanknoteDispenser dispenser) {
+				clear(location);
+			}
+			public void banknoteAdded(BanknoteDispenser dispenser, Banknote banknote) {
+				add(location, banknote.getCode(), 1);
+			}
+			public void banknoteRemoved(BanknoteDispenser dispenser, Banknote banknote) {
+				add(location, banknote.getCode(), -1);
+			}
+			public void banknotesLoaded(BanknoteDispenser dispenser, Banknote... banknotes) {
+				synchronized(CashPositionService.this) {
+					for(Banknote banknote : banknotes)
+						add(location, banknote.getCode(), 1);
+				}
+			}
+			public void banknotesUnloaded(BanknoteDispenser dispenser, Banknote... banknotes) {
+				clear(location);
+			}
+		});
+	}
+
+	/**
+	 * Getter for the number held of one denomination, across all watched devices
+	 * @param code The cash code of the denomination
+	 * @return the count
+	 */
+	public synchronized int getCount(long code) {
+		int slot = findSlot(code);
+		return slot < 0 ? 0 : totals[slot];
+	}
+
+	/**
+	 * Getter for the number of one denomination held by a watched device
+	 * @param device The watched device
+	 * @param code The cash code of the denomination
+	 * @return the count
+	 */
+	public synchronized int getCount(AbstractDevice<?> device, long code) {
+		int location = getLocation(device);
+		int slot = findSlot(code);
+		return slot < 0 ? 0 : counts[location][slot];
+	}
+
+	/**
+	 * Getter for the number of coins held by a watched device that have no cash code, such as
+	 * unrecognized coins in the tray
+	 * @param device The watched device
+	 * @return the count
+	 */
+	public synchronized int getUnencodedCount(AbstractDevice<?> device) {
+		return unencoded[getLocation(device)];
+	}
+
+	/**
+	 * Getter for the value held across all watched devices
+	 * @return value, in minor units of the currency
+	 */
+	public synchronized long getValue() {
+		return value;
+	}
+
+	/**
+	 * Getter for the value held by a watched device
+	 * @param device The watched device
+	 * @return value, in minor units of the currency
+	 */
+	public synchronized long getValue(AbstractDevice<?> device) {
+		return values[getLocation(device)];
+	}
+
+	/**
+	 * Getter for the currency that values are reported in
+	 * @return currency
+	 */
+	public Currency getCurrency() {
+		return currency;
+	}
+
+	/**
+	 * Copies the counts across all watched devices, for the store office
+	 * @return tally of each denomination held
+	 */
+	public synchronized CashTally snapshot() {
+		CashTally tally = new CashTally();
+
+		for(int slot = 0; slot < slotCount; slot++)
+			if(totals[slot] > 0)
+				tally.add(slotCodes[slot], totals[slot]);
+
+		for(int location = 0; location < unencoded.length; location++)
+			if(unencoded[location] > 0)
+				tally.add(-1, unencoded[location]);
+
+		return tally;
+	}
+
+	private synchronized int addLocation(AbstractDevice<?> device) {
+		if(device == null)
+			throw new SimulationException("Device is null");
+
+		if(locations.containsKey(device))
+			throw new SimulationException("Device is already watched");
+
+		int location = locations.size();
+		locations.put(device, location);
+
+		counts = Arrays.copyOf(counts, location + 1);
+		counts[location] = new int[slotCodes.length];
+		unencoded = Arrays.copyOf(unencoded, location + 1);
+		values = Arrays.copyOf(values, location + 1);
+
+		return location;
+	}
+
+	private int getLocation(AbstractDevice<?> device) {
+		Integer location = locations.get(device);
+
+		if(location == null)
+			throw new SimulationException("Device is not watched");
+
+		return location;
+	}
+
+	private synchronized void add(int location, long[] codes, int offset, int length) {
+		for(int i = offset; i < offset + length; i++)
+			add(location, codes[i], 1);
+	}
+
+	/**
+	 * Adds (or, with a negative count, removes) coins or banknotes of one denomination at one
+	 * location, keeping the per denomination totals and the values in step
+	 */
+	private synchronized void add(int location, long code, int count) {
+		if(code < 0) {
+			unencoded[location] += count;
+			return;
+		}
+
+		int slot = slotOf(code);
+		counts[location][slot] += count;
+		totals[slot] += count;
+
+		if(Money.currencyIndexOf(code) == currencyIndex) {
+			long amount = Money.minorUnitsOf(code) * count;
+			values[location] += amount;
+			value += amount;
+		}
+	}
+
+	/**
+	 * Forgets everything held at one location, e.g. when it has been unloaded
+	 */
+	private synchronized void clear(int location) {
+		int[] held = counts[location];
+
+		for(int slot = 0; slot < slotCount; slot++) {
+			totals[slot] -= held[slot];
+			held[slot] = 0;
+		}
+
+		value -= values[location];
+		values[location] = 0;
+		unencoded[location] = 0;
+	}
+
+	private int findSlot(long code) {
+		int mask = table.length - 1;
+
+		for(int i = hash(code) & mask; table[i] >= 0; i = (i + 1) & mask)
+			if(slotCodes[table[i]] == code)
+				return table[i];
+
+		return -1;
+	}
+
+	private int slotOf(long code) {
+		int slot = findSlot(code);
+
+		if(slot >= 0)
+			return slot;
+
+		// a new denomination, which only happens a handful of times
+		slot = slotCount++;
+		slotCodes = Arrays.copyOf(slotCodes, slotCount);
+		slotCodes[slot] = code;
+		totals = Arrays.copyOf(totals, slotCount);
+
+		for(int location = 0; location < counts.length; location++)
+			counts[location] = Arrays.copyOf(counts[location], slotCount);
+
+		if(slotCount * 2 > table.length) {
+			table = new int[table.length * 2];
+			Arrays.fill(table, -1);
+
+			for(int i = 0; i < slotCount; i++)
+				insert(i);
+		}
+		else
+			insert(slot);
+
+		return slot;
+	}
+
+	private void insert(int slot) {
+		int mask = table.length - 1;
+		int i = hash(slotCodes[slot]) & mask;
+
+		while(table[i] >= 0)
+			i = (i + 1) & mask;
+
+		table[i] = slot;
+	}
+
+	private static int hash(long code) {
+		long h = code * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,529 @@
+/*
+ * 	Class:			ChangeMaker.java
+ * 	Description:	Computes the fewest-pieces payout of change that the station's coin and banknote
+ * 					dispensers can actually satisfy, and drives the dispensers to emit it. Banknotes
+ * 					go out one at a time, each as the customer takes the last from the slot, as
+ * 					their output can only hold one.
+ * 	Date:			10/19/2026
+ */
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.lsmr.selfcheckout.Money;
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.BanknoteDispenser;
+import org.lsmr.selfcheckout.devices.BanknoteSlot;
+import org.lsmr.selfcheckout.devices.CoinDispenser;
+import org.lsmr.selfcheckout.devices.DisabledException;
+import org.lsmr.selfcheckout.devices.EmptyException;
+import org.lsmr.selfcheckout.devices.OverloadException;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.devices.listeners.AbstractDeviceListener;
+import org.lsmr.selfcheckout.devices.listeners.BanknoteSlotListener;
+
+public class ChangeMaker {
+
+	// Largest number of amounts (in multiples of the common divisor of the denominations)
+	// covered by the precomputed table and by the bounded fallback
+	static final int MAX_TABLE_STATES = 1 << 16;
+	static final int MAX_DP_STATES = 1 << 14;
+
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	//Global variables
+	private Currency currency;
+	private long[] denominations;		// in minor units, largest first
+	private CoinDispenser[] coinDispensers;
+	private BanknoteDispenser[] banknoteDispensers;
+	private long divisor;				// greatest common divisor of all denominations
+	private int[] pending;				// banknotes paid out but not yet emitted, by denomination
+
+	// Precomputed unbounded solutions: fewest pieces for each amount, and the denomination used last
+	private int[] tablePieces;
+	private byte[] tableLast;
+
+	// Scratch space for the bounded fallback, reused between solves
+	private int[] best = new int[0];
+	private long[] taken = new long[0];
+	private int[] itemDenomination = new int[0];
+	private int[] itemCount = new int[0];
+
+	/**
+	 * Constructor for the change maker of a station, which pays out change from the station's coin
+	 * dispensers into its coin tray
+	 *
+	 * @param station
+	 * 			The station whose dispensers pay out the change
+	 *
+	 * @throws SimulationException
+	 * 			If the station is null
+	 */
+	public ChangeMaker(SelfCheckoutStation station) {
+		this(currencyOf(station), coinDispensersOf(station), new HashMap<Integer, BanknoteDispenser>(), null);
+	}
+
+	private static Currency currencyOf(SelfCheckoutStation station) {
+		if(station == null)
+			throw new SimulationException("Station is null");
+
+		return station.coinValidator.currency;
+	}
+
+	// The station keys its dispensers by minor units
+	private static Map<BigDecimal, CoinDispenser> coinDispensersOf(SelfCheckoutStation station) {
+		Map<BigDecimal, CoinDispenser> dispensers = new HashMap<>();
+
+		for(Map.Entry<Long, CoinDispenser> entry : station.coinDispensers.entrySet())
+			dispensers.put(Money.toBigDecimal(entry.getKey(), station.coinValidator.currency), entry.getValue());
+
+		return dispensers;
+	}
+
+	/**
+	 * Constructor that indexes the given dispensers by denomination and precomputes the table of
+	 * fewest-pieces solutions for common amounts. The banknote dispensers emit into the given slot,
+	 * and the banknotes waiting to go out are released each time the customer takes one from it
+	 *
+	 * @param currency
+	 * 			The currency of the denominations
+	 *
+	 * @param coinDispensers
+	 * 			The coin dispensers of the station, keyed by coin denomination
+	 *
+	 * @param banknoteDispensers
+	 * 			The banknote dispensers of the station, keyed by banknote denomination
+	 *
+	 * @param banknoteOutput
+	 * 			The slot the banknote dispensers emit into; can be null if there are none
+	 *
+	 * @throws SimulationException
+	 * 			If any parameter, dispenser or denomination is null, other than a banknote output
+	 * 			that isn't needed
+	 * 			If there are no dispensers at all
+	 * 			If a denomination is non-positive or isn't a whole number of minor units
+	 * 			If two dispensers share a denomination
+	 */
+	ChangeMaker(Currency currency, Map<BigDecimal, CoinDispenser> coinDispensers, Map<Integer, BanknoteDispenser> banknoteDispensers,
+			BanknoteSlot banknoteOutput) {
+		if(currency == null)
+			throw new SimulationException("Currency is null");
+
+		if(coinDispensers == null)
+			throw new SimulationException("Coin dispensers are null");
+
+		if(banknoteDispensers == null)
+			throw new SimulationException("Banknote dispensers are null");
+
+		if(banknoteOutput == null && !banknoteDispensers.isEmpty())
+			throw new SimulationException("Banknote output is null");
+
+		int count = coinDispensers.size() + banknoteDispensers.size();
+
+		if(count == 0)
+			throw new SimulationException("There must be at least one dispenser");
+
+		if(count > Byte.MAX_VALUE)
+			throw new SimulationException("Too many denominations");
+
+		this.currency = currency;
+		this.denominations = new long[count];
+		this.coinDispensers = new CoinDispenser[count];
+		this.banknoteDispensers = new BanknoteDispenser[count];
+		this.pending = new int[count];
+
+		int index = 0;
+
+		for(Map.Entry<BigDecimal, CoinDispenser> entry : coinDispensers.entrySet()) {
+			if(entry.getKey() == null || entry.getValue() == null)
+				throw new SimulationException("Coin denomination or dispenser is null");
+
+			insert(index++, Money.toMinorUnitsExact(entry.getKey(), currency), entry.getValue(), null);
+		}
+
+		for(Map.Entry<Integer, BanknoteDispenser> entry : banknoteDispensers.entrySet()) {
+			if(entry.getKey() == null || entry.getValue() == null)
+				throw new SimulationException("Banknote denomination or dispenser is null");
+
+			insert(index++, Money.toMinorUnits(entry.getKey(), currency), null, entry.getValue());
+		}
+
+		divisor = denominations[0];
+		for(long denomination : denominations)
+			divisor = gcd(divisor, denomination);
+
+		precompute();
+
+		if(banknoteOutput != null)
+			banknoteOutput.register(new BanknoteSlotListener() {
+				public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+				public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+				public void banknoteInserted(BanknoteSlot slot) {}
+				public void banknoteEjected(BanknoteSlot slot) {}
+				public void banknoteRemoved(BanknoteSlot slot) {
+					try {
+						releaseBanknotes();
+					}
+					catch(DisabledException e) {
+						// the banknotes keep waiting until releaseBanknotes() is called again
+					}
+					catch(EmptyException | OverloadException e) {
+						throw new SimulationException(e);
+					}
+				}
+			});
+	}
+
+	/**
+	 * Inserts a denomination into the parallel arrays, keeping them ordered largest first
+	 */
+	private void insert(int size, long denomination, CoinDispenser coins, BanknoteDispenser banknotes) {
+		if(denomination <= 0)
+			throw new SimulationException("Invalid denomination for change: " + denomination);
+
+		int i = size;
+
+		while(i > 0 && denominations[i - 1] < denomination) {
+			denominations[i] = denominations[i - 1];
+			coinDispensers[i] = coinDispensers[i - 1];
+			banknoteDispensers[i] = banknoteDispensers[i - 1];
+			i--;
+		}
+
+		if(i > 0 && denominations[i - 1] == denomination)
+			throw new SimulationException("Denomination " + denomination + " has more than one dispenser");
+
+		denominations[i] = denomination;
+		coinDispensers[i] = coins;
+		banknoteDispensers[i] = banknotes;
+	}
+
+	private static long gcd(long a, long b) {
+		while(b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+	/**
+	 * Fills the table of fewest-pieces solutions, ignoring inventory, for every amount up to twice
+	 * the largest denomination. An unbounded solution that the inventory can satisfy is also optimal
+	 * for the inventory, so most solves are answered from this table
+	 */
+	private void precompute() {
+		int size = (int) Math.min(MAX_TABLE_STATES, 2 * denominations[0] / divisor + 1);
+
+		tablePieces = new int[size];
+		tableLast = new byte[size];
+
+		for(int amount = 1; amount < size; amount++) {
+			int pieces = UNREACHABLE;
+			byte last = -1;
+
+			for(int i = 0; i < denominations.length; i++) {
+				int step = (int) (denominations[i] / divisor);
+
+				if(step <= amount && tablePieces[amount - step] != UNREACHABLE && tablePieces[amount - step] + 1 < pieces) {
+					pieces = tablePieces[amount - step] + 1;
+					last = (byte) i;
+				}
+			}
+
+			tablePieces[amount] = pieces;
+			tableLast[amount] = last;
+		}
+	}
+
+	/**
+	 * Reads the current number of coins or banknotes held by each dispenser, less the banknotes
+	 * already paid out that are still waiting to be emitted
+	 *
+	 * @return The inventory, indexed the same way as getDenominations()
+	 */
+	public int[] inventory() {
+		int[] available = new int[denominations.length];
+
+		for(int i = 0; i < denominations.length; i++)
+			available[i] = coinDispensers[i] != null ? coinDispensers[i].size() : banknoteDispensers[i].size() - pending[i];
+
+		return available;
+	}
+
+	/**
+	 * Computes the fewest-pieces payout of the given amount that the given inventory can satisfy
+	 *
+	 * @param amount
+	 * 			The amount of change, in minor units
+	 *
+	 * @param available
+	 * 			The number of pieces available of each denomination, indexed the same way as getDenominations()
+	 *
+	 * @return int[] counts
+	 * 			The number of pieces to dispense of each denomination, or null if the amount
+	 * 			can't be paid out exactly from the inventory
+	 *
+	 * @throws SimulationException
+	 * 			If the amount is negative
+	 * 			If the inventory is null or of the wrong length
+	 */
+	public int[] solve(long amount, int[] available) {
+		if(amount < 0)
+			throw new SimulationException("Can't make negative change");
+
+		if(available == null || available.length != denominations.length)
+			throw new SimulationException("Inventory doesn't match the denominations");
+
+		int[] counts = new int[denominations.length];
+
+		if(amount % divisor != 0)
+			return null;
+
+		long target = amount / divisor;
+
+		if(target < tablePieces.length && tablePieces[(int) target] != UNREACHABLE) {
+			for(int remaining = (int) target; remaining > 0; ) {
+				int i = tableLast[remaining];
+				counts[i]++;
+				remaining -= denominations[i] / divisor;
+			}
+
+			if(fits(counts, available))
+				return counts;
+
+			Arrays.fill(counts, 0);
+		}
+
+		// Pay down amounts too large for the bounded fallback with the largest pieces first
+		for(int i = 0; i < denominations.length && target > MAX_DP_STATES; i++) {
+			long step = denominations[i] / divisor;
+			long needed = (target - MAX_DP_STATES + step - 1) / step;
+			int used = (int) Math.min(available[i], needed);
+
+			counts[i] = used;
+			target -= used * step;
+		}
+
+		if(target > MAX_DP_STATES)
+			return null;
+
+		return solveBounded((int) target, available, counts);
+	}
+
+	private static boolean fits(int[] counts, int[] available) {
+		for(int i = 0; i < counts.length; i++)
+			if(counts[i] > available[i])
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Bounded change-making: each denomination's remaining inventory is split into pieces of 1, 2, 4...
+	 * items, and a 0/1 knapsack minimizes the number of pieces for the exact target
+	 */
+	private int[] solveBounded(int target, int[] available, int[] counts) {
+		int items = 0;
+
+		for(int i = 0; i < denominations.length; i++) {
+			int remaining = available[i] - counts[i];
+			long step = denominations[i] / divisor;
+
+			// more pieces than could ever fit in the target are never useful
+			remaining = (int) Math.min(remaining, target / step);
+
+			for(int k = 1; remaining > 0; k <<= 1) {
+				int chunk = Math.min(k, remaining);
+
+				if(items == itemCount.length) {
+					itemCount = Arrays.copyOf(itemCount, Math.max(16, items * 2));
+					itemDenomination = Arrays.copyOf(itemDenomination, itemCount.length);
+				}
+
+				itemCount[items] = chunk;
+				itemDenomination[items] = i;
+				items++;
+				remaining -= chunk;
+			}
+		}
+
+		int words = (target >> 6) + 1;
+
+		if(best.length < target + 1)
+			best = new int[target + 1];
+
+		if(taken.length < items * words)
+			taken = new long[items * words];
+
+		Arrays.fill(best, 0, target + 1, UNREACHABLE);
+		Arrays.fill(taken, 0, items * words, 0L);
+		best[0] = 0;
+
+		for(int j = 0; j < items; j++) {
+			int value = (int) (itemCount[j] * (denominations[itemDenomination[j]] / divisor));
+			int pieces = itemCount[j];
+			int row = j * words;
+
+			for(int x = target; x >= value; x--) {
+				int previous = best[x - value];
+
+				if(previous != UNREACHABLE && previous + pieces < best[x]) {
+					best[x] = previous + pieces;
+					taken[row + (x >> 6)] |= 1L << x;
+				}
+			}
+		}
+
+		if(best[target] == UNREACHABLE)
+			return null;
+
+		for(int j = items - 1, x = target; j >= 0; j--) {
+			if((taken[j * words + (x >> 6)] & (1L << x)) != 0) {
+				counts[itemDenomination[j]] += itemCount[j];
+				x -= itemCount[j] * (denominations[itemDenomination[j]] / divisor);
+			}
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Pays out the given amount of change from the dispensers using the fewest pieces that the
+	 * current inventory allows, largest denominations first. Nothing is emitted if the amount
+	 * can't be paid out exactly. Coins are emitted at once; banknotes are emitted as far as their
+	 * output has room, and the rest as each is taken from the slot
+	 *
+	 * @param amount
+	 * 			The amount of change, in minor units
+	 *
+	 * @return boolean
+	 * 			True if the change was dispensed; false if the inventory can't make the amount
+	 *
+	 * @throws DisabledException
+	 * 			If a dispenser that is needed is disabled (checked before anything is emitted)
+	 *
+	 * @throws EmptyException
+	 * 			If a dispenser runs out while emitting (shouldn't happen)
+	 *
+	 * @throws OverloadException
+	 * 			If the coin output can't take all of the coins (checked before anything is emitted)
+	 */
+	public boolean dispense(long amount) throws DisabledException, EmptyException, OverloadException {
+		int[] counts = solve(amount, inventory());
+
+		if(counts == null)
+			return false;
+
+		for(int i = 0; i < counts.length; i++)
+			if(counts[i] > 0 && (coinDispensers[i] != null ? coinDispensers[i].isDisabled() : banknoteDispensers[i].isDisabled()))
+				throw new DisabledException();
+
+		// the coins go out together, so all of them must fit before any is emitted; the dispensers
+		// may share one output, so the smallest space is all that can be counted on
+		int coins = 0, space = Integer.MAX_VALUE;
+
+		for(int i = 0; i < counts.length; i++) {
+			if(counts[i] > 0 && coinDispensers[i] != null) {
+				coins += counts[i];
+				space = Math.min(space, coinDispensers[i].getOutputSpace());
+			}
+		}
+
+		if(coins > space)
+			throw new OverloadException("The coin output can't take " + coins + " coins");
+
+		for(int i = 0; i < counts.length; i++) {
+			if(counts[i] == 0)
+				continue;
+			
+			if(coinDispensers[i] != null)
+				coinDispensers[i].emit(counts[i]);
+			else
+				pending[i] += counts[i];
+		}
+
+		releaseBanknotes();
+		return true;
+	}
+
+	/**
+	 * Emits the banknotes paid out but still waiting, largest first, as far as their outputs have
+	 * room. A banknote slot holds one banknote until the customer takes it, so a payout of several
+	 * banknotes is finished by calling this each time one is taken, as the change maker does itself
+	 * for the slot it was given
+	 *
+	 * @return int
+	 * 			The number of banknotes still waiting to be emitted
+	 *
+	 * @throws DisabledException
+	 * 			If a dispenser with banknotes waiting is disabled
+	 *
+	 * @throws EmptyException
+	 * 			If a dispenser was emptied since the payout was made
+	 *
+	 * @throws OverloadException
+	 * 			If the output of a dispenser can't take any more (shouldn't happen)
+	 */
+	public int releaseBanknotes() throws DisabledException, EmptyException, OverloadException {
+		int waiting = 0;
+
+		for(int i = 0; i < denominations.length; i++) {
+			if(pending[i] == 0)
+				continue;
+
+			int count = Math.min(pending[i], banknoteDispensers[i].getOutputSpace());
+
+			if(count > 0) {
+				banknoteDispensers[i].emit(count);
+				pending[i] -= count;
+			}
+
+			waiting += pending[i];
+		}
+
+		return waiting;
+	}
+
+	/**
+	 * Getter for the number of banknotes paid out but still waiting to be emitted
+	 */
+	public int getPendingBanknotes() {
+		int waiting = 0;
+
+		for(int count : pending)
+			waiting += count;
+
+		return waiting;
+	}
+
+	/**
+	 * Getter for the value of the banknotes paid out but still waiting to be emitted, in minor units
+	 */
+	public long getPendingValue() {
+		long value = 0;
+
+		for(int i = 0; i < pending.length; i++)
+			value = Money.add(value, denominations[i] * pending[i]);
+
+		return value;
+	}
+
+	/**
+	 * Getter for the denominations, in minor units and largest first
+	 */
+	public long[] getDenominations() {
+		return denominations.clone();
+	}
+
+	/**
+	 * Getter for the currency of the denominations
+	 */
+	public Currency getCurrency() {
+		return currency;
+	}
+}
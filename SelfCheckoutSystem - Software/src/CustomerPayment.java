@@ -7,17 +7,27 @@
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.lsmr.selfcheckout.Banknote;
 import org.lsmr.selfcheckout.Barcode;
 import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.Money;
 import org.lsmr.selfcheckout.devices.AbstractDevice;
 import org.lsmr.selfcheckout.devices.BanknoteValidator;
 import org.lsmr.selfcheckout.devices.BarcodeScanner;
 import org.lsmr.selfcheckout.devices.CoinValidator;
 import org.lsmr.selfcheckout.devices.DisabledException;
 import org.lsmr.selfcheckout.devices.ElectronicScale;
+import org.lsmr.selfcheckout.devices.EmptyException;
+import org.lsmr.selfcheckout.devices.OverloadException;
 import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
 import org.lsmr.selfcheckout.devices.SimulationException;
 import org.lsmr.selfcheckout.devices.listeners.AbstractDeviceListener;
@@ -33,16 +43,51 @@ public class CustomerPayment {
 	//Listener flags, used by the system to record listener responses
 	private boolean coinPaid = false;
 	private boolean banknotePaid = false;
+	private long coinsPaidValue = 0; // value accepted from the last batch of coins, in minor units
 	
 	// used to indicate if the user attempted to pay. if so then they cannot scan more items
 	private boolean canScan = true;
 	
 	//Global variables
 	private ArrayList<BarcodedProduct> scannedItems;
-	private float total;
-	private float change;
 	private SelfCheckoutStation station;
 	
+	// amounts owed and owed back, in minor units of the station's currency (e.g. cents)
+	private Currency currency;
+	private long total;
+	private long change;
+	private ChangeMaker payingOut;	// paying out banknotes of the change that are still waiting, if any
+	private ArrayList<Tender> tenders = new ArrayList<Tender>();
+	
+	/**
+	 * A payment made towards the total, e.g. all the cash put in, or a card payment
+	 */
+	public static final class Tender {
+		private final String method;
+		private long amount;	// in minor units
+		
+		Tender(String method, long amount) {
+			this.method = method;
+			this.amount = amount;
+		}
+		
+		/**
+		 * Getter for how the payment was made
+		 * @return method, e.g. "CASH" or "CARD"
+		 */
+		public String getMethod() {
+			return method;
+		}
+		
+		/**
+		 * Getter for the amount paid
+		 * @return amount paid, in minor units of the currency (e.g. cents)
+		 */
+		public long getAmountInMinorUnits() {
+			return amount;
+		}
+	}
+	
 	
 	/**
 	 * Constructor for class and initializes variables
@@ -59,6 +104,7 @@ public class CustomerPayment {
 		}
 		this.scannedItems = scannedItems;
 		this.station = station;
+		this.currency = station.coinValidator.currency;
 		total();
 		
 		initListeners();
@@ -80,6 +126,10 @@ public class CustomerPayment {
 				if(validator.equals(station.coinValidator))
 					coinPaid = false;
 			}
+			public void coinsValidated(CoinValidator validator, List<Coin> accepted, long acceptedValue, int returned) {
+				if(validator.equals(station.coinValidator))
+					coinsPaidValue = acceptedValue;
+			}
 		});
 		
 		station.banknoteValidator.register(new BanknoteValidatorListener(){
@@ -98,20 +148,22 @@ public class CustomerPayment {
 
 	/**
 	 * Calculates the price total for all the scanned items in scannedItems by 
-	 * iterating through the whole list
+	 * iterating through the whole list. Each price is converted to minor units once,
+	 * so the total is exact
 	 */
 	public void total() {
 		total = 0;
 		int length = this.scannedItems.size();
 		for(int i = 0; i < length; i++) {
-			total += this.scannedItems.get(i).getPrice().floatValue();
+			total = Money.add(total, Money.toMinorUnits(this.scannedItems.get(i).getPrice(), currency));
 		}
 	}
 	
 	/**
 	 * Method for the customer to pay with a coin
-	 * Checks the capacity of the coin storage and attempt to accept coin
-	 * Only when there is space in the storage, update the total
+	 * Attempts to accept the coin; when the coin storage is full, the validator routes it to the
+	 * dispenser for its denomination instead, or returns it to the coin tray if that is full too
+	 * Only when the coin is kept by the station, update the total
 	 * 
 	 * @param coin Type Coin of the coin that is being used to pay with
 	 * @throws DisabledException occurs when the coin is null
@@ -128,21 +180,39 @@ public class CustomerPayment {
 			throw new SimulationException("Coin is null");
 		}
 		
-		int coinCount = station.coinStorage.getCoinCount();
-		
-		if(station.coinStorage.getCapacity() == coinCount)
-			throw new SimulationException("Cannot deliver coin, coin storage is full!");
-		
 		station.coinValidator.accept(coin);
 		
+		// the validator returns coins of any other currency it recognizes to the coin tray
 		if(coinPaid)
-			total -= coin.getValue().floatValue();
+			tender(CASH, coin.getValueInMinorUnits());
 		
-		if(total <= 0) {
-			change = Math.abs(total);
-			total = 0;
+	}
+	
+	/**
+	 * Method for the customer to pay with a whole batch of coins at once, e.g. emptied from a jar
+	 * into the hopper. The coins are validated together and the total is updated once with the
+	 * value of all the coins that were kept. Coins that are invalid, or that fit neither in the
+	 * coin storage nor in the dispenser for their denomination, are returned to the coin tray
+	 * 
+	 * @param coins Array of the coins being used to pay with
+	 * @throws DisabledException occurs when the coin slot or validator is disabled
+	 */
+	public void PayCoins(Coin[] coins) throws DisabledException{
+		canScan = false;
+		
+		coinsPaidValue = 0;
+		
+		if(total <= 0)
+			throw new SimulationException("Total amount owed is less than or equal to 0");
+		
+		if(coins == null) {
+			throw new SimulationException("Coins are null");
 		}
 		
+		station.coinSlot.acceptAll(coins);
+		
+		if(coinsPaidValue > 0)
+			tender(CASH, coinsPaidValue);
 	}
 	
 	/**
@@ -173,23 +243,253 @@ public class CustomerPayment {
 		station.banknoteValidator.accept(banknote);
 		
 		if(banknotePaid)
-			total -= banknote.getValue();
+			tender(CASH, Money.toMinorUnits(banknote.getValue(), currency));
+	}
+	
+	/**
+	 * Method for the customer to pay the whole total with a card. A hold for the total is
+	 * authorized through the client and then posted; requests to the issuer don't block the
+	 * client, but this waits for the answers, as the customer can't go on until they arrive.
+	 * A hold that isn't posted is released. A post that misses the deadline may still land, so
+	 * the issuer's late answer is waited for, for one more deadline, rather than guessed at. If
+	 * that doesn't come either, the outcome is unknown: the hold is left for the issuer to
+	 * expire, as the post may yet land, and this fails rather than wait any longer
+	 * 
+	 * @param cardNumber Number of the card being used to pay with
+	 * @param client The client used to reach the card's issuer
+	 * @return true if the payment went through and the total is paid, false if the issuer
+	 * declined it, in which case the total is still owed
+	 * @throws SimulationException occurs when the issuer doesn't answer the hold by the client's
+	 * deadline, fails the post, or doesn't answer the post in time to know its outcome, in which
+	 * case the total is still owed
+	 */
+	public boolean PayCard(String cardNumber, CardAuthorizationClient client) {
+		canScan = false;
+		
+		if(total <= 0)
+			throw new SimulationException("Total amount owed is less than or equal to 0");
+		
+		if(cardNumber == null)
+			throw new SimulationException("Card number is null");
+		
+		if(client == null)
+			throw new SimulationException("Card authorization client is null");
+		
+		BigDecimal amount = Money.toBigDecimal(total, currency);
+		int hold;
+		
+		try {
+			// a hold placed after the deadline is released by the client
+			hold = client.authorizeHold(cardNumber, amount).join();
+		}
+		catch(CompletionException e) {
+			throw cardPaymentFailed(e.getCause());
+		}
+		
+		if(hold < 0)
+			return false;
+		
+		CompletableFuture<Boolean> post = client.postTransaction(cardNumber, hold, amount);
+		boolean paid = false, unknown = false;
+		
+		try {
+			paid = post.join();
+		}
+		catch(CompletionException e) {
+			if(!(e.getCause() instanceof TimeoutException))
+				throw cardPaymentFailed(e.getCause());
+			
+			// rather than guess, and leave the customer to pay again and be charged twice
+			try {
+				paid = client.getAnswer(post).get(client.getDeadline(), TimeUnit.MILLISECONDS);
+			}
+			catch(ExecutionException late) {
+				throw cardPaymentFailed(late.getCause());
+			}
+			catch(TimeoutException | InterruptedException late) {
+				if(late instanceof InterruptedException)
+					Thread.currentThread().interrupt();
+				
+				unknown = true;
+				throw new SimulationException("Card payment outcome unknown: the issuer hasn't answered the post");
+			}
+		}
+		finally {
+			if(!paid && !unknown)
+				client.releaseHold(cardNumber, hold).exceptionally(e -> false).join();
+		}
+		
+		if(paid)
+			tender(CARD, Money.toMinorUnits(amount, currency));
+		
+		return paid;
+	}
+	
+	private static SimulationException cardPaymentFailed(Throwable cause) {
+		if(cause instanceof SimulationException)
+			return (SimulationException)cause;
+		
+		return new SimulationException("Card payment failed: " + cause.getMessage());
+	}
+	
+	private static final String CASH = "CASH";
+	private static final String CARD = "CARD";
+	
+	/**
+	 * Deducts an accepted payment from the total, and records it as a tender. Payments one
+	 * after another by the same method (e.g. coin after coin) are recorded as one tender.
+	 * Any amount paid beyond the total becomes change
+	 * 
+	 * @param method How the payment was made
+	 * @param amount The amount paid, in minor units
+	 */
+	private void tender(String method, long amount) {
+		Tender last = tenders.isEmpty() ? null : tenders.get(tenders.size() - 1);
+		if(last != null && last.method.equals(method))
+			last.amount = Money.add(last.amount, amount);
+		else
+			tenders.add(new Tender(method, amount));
+		
+		total = Money.subtract(total, amount);
 		
 		if(total <= 0) {
-			change = Math.abs(total);
+			change = -total;
 			total = 0;
 		}
 	}
 	
 	
+	/**
+	 * Method to pay the change owed to the customer out of the station's dispensers.
+	 * The change maker picks the fewest coins and banknotes that the dispensers can supply.
+	 * Banknotes go out one at a time as the customer takes them, so until the last has gone
+	 * out, the value of those still waiting is still owed
+	 * 
+	 * @param changeMaker The change maker connected to the station's dispensers
+	 * @return true if the change was paid out (or none was owed), false if the dispensers
+	 * can't make the amount, in which case the change is still owed
+	 * @throws DisabledException occurs when a dispenser that is needed is disabled
+	 * @throws EmptyException occurs when a dispenser runs out while emitting
+	 * @throws OverloadException occurs when the output of a dispenser is full
+	 */
+	public boolean dispenseChange(ChangeMaker changeMaker) throws DisabledException, EmptyException, OverloadException {
+		if(changeMaker == null)
+			throw new SimulationException("Change maker is null");
+		
+		if(!changeMaker.getCurrency().equals(currency))
+			throw new SimulationException("Change maker uses a different currency");
+		
+		if(change == 0)
+			return true;
+		
+		if(!changeMaker.dispense(change))
+			return false;
+		
+		change = 0;
+		payingOut = changeMaker;
+		return true;
+	}
+	
+	/**
+	 * Method to print the customer's receipt for the scanned items, the payments made and the
+	 * change, and cut it so the customer can take it. The receipt is laid out first, and only
+	 * printed if the printer has the ink and paper to finish it
+	 * 
+	 * @param renderer The renderer that lays out the receipt, in the station's currency
+	 * @throws SimulationException occurs when the printer doesn't have the ink and paper to
+	 * finish the receipt, in which case none of it is printed
+	 */
+	public void printReceipt(ReceiptRenderer renderer) {
+		if(renderer == null)
+			throw new SimulationException("Receipt renderer is null");
+		
+		StringBuilder receipt = new StringBuilder();
+		renderer.render(scannedItems, tenders, receipt);
+		
+		// a print spooler on the same printer waits its turn
+		synchronized(station.printer) {
+			if(!PrinterConsumables.canFinish(station.printer, receipt))
+				throw new SimulationException("The printer doesn't have the ink and paper to finish the receipt");
+			
+			station.printer.print(receipt);
+			station.printer.cutPaper();
+		}
+	}
+	
+	/**
+	 * Method to queue the customer's receipt on the station's print spooler, so the next
+	 * customer can start while it prints
+	 * 
+	 * @param renderer The renderer that lays out the receipt, in the station's currency
+	 * @param spooler The spooler printing on the station's printer
+	 * @return true if the receipt was queued, false if the spooler's queue is full
+	 * @throws SimulationException occurs when the spooler tracks the printer's supplies, and
+	 * the printer doesn't have the ink and paper to finish the receipt
+	 */
+	public boolean printReceipt(ReceiptRenderer renderer, PrintSpooler spooler) {
+		if(renderer == null)
+			throw new SimulationException("Receipt renderer is null");
+		
+		if(spooler == null)
+			throw new SimulationException("Print spooler is null");
+		
+		StringBuilder receipt = new StringBuilder();
+		renderer.render(scannedItems, tenders, receipt);
+		return spooler.submit(receipt);
+	}
+	
+	/**
+	 * Getter for the payments made towards the current total
+	 * @return tenders, in the order they were made
+	 */
+	public List<Tender> getTenders() {
+		return Collections.unmodifiableList(tenders);
+	}
+	
 	/**
 	 * Getter for the total
-	 * @return total, type float to access the total of this class
+	 * @return total, type float to access the total of this class. Converted from the exact
+	 * total in minor units, see getTotalInMinorUnits()
 	 */
 	public float getTotal() {
+		return Money.toBigDecimal(total, currency).floatValue();
+	}
+	
+	/**
+	 * Getter for the exact total
+	 * @return total still owed, in minor units of the currency (e.g. cents)
+	 */
+	public long getTotalInMinorUnits() {
 		return total;
 	}
 	
+	/**
+	 * Getter for the exact change
+	 * @return change owed back to the customer, in minor units of the currency (e.g. cents),
+	 * including banknotes paid out that are still waiting to go out
+	 */
+	public long getChangeInMinorUnits() {
+		if(payingOut == null)
+			return change;
+		
+		return Money.add(change, payingOut.getPendingValue());
+	}
+	
+	/**
+	 * Getter for the currency that totals and change are expressed in
+	 * @return currency accepted by the station
+	 */
+	public Currency getCurrency() {
+		return currency;
+	}
+	
+	/**
+	 * Method to let the next customer scan items, once the last one has paid
+	 */
+	public void newSession() {
+		canScan = true;
+	}
+	
 	/**
 	 * Method to update new scanned products and calculate the new total
 	 * @param scannedProducts ArrayList of barcoded products of scanned products
@@ -202,5 +502,7 @@ public class CustomerPayment {
 		scannedItems = scannedProducts;
 		total();
 		change = 0;
+		payingOut = null;
+		tenders.clear();
 	}
 }
@@ -0,0 +1,490 @@
+/*
+ * 	Class:			PrintSpooler.java
+ * 	Description:	Prints a station's receipts in the background, so the session that submitted one
+ * 					can end while it prints. Rendered receipts wait in a bounded queue; when the printer
+ * 					runs out of paper or ink, printing pauses at the line that didn't fit and picks up
+ * 					again once paper or ink is added. Printed receipts are kept, in order, until they
+ * 					are removed, rather than overwriting one another in the printer; only the most
+ * 					recent are kept, should nobody take them. Given a PrinterConsumables, a receipt
+ * 					the printer doesn't have the ink and paper to finish, after the receipts queued
+ * 					ahead of it, is refused rather than started, so a shortage never leaves half a
+ * 					receipt in the printer. Every use of the printer synchronizes on it, and
+ * 					paper and ink are added through the spooler, so printing and refilling can happen
+ * 					on different threads.
+ * 	Date:			10/19/2026
+ */
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.ReceiptPrinter;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.devices.listeners.AbstractDeviceListener;
+import org.lsmr.selfcheckout.devices.listeners.ReceiptPrinterListener;
+
+public class PrintSpooler {
+
+	private static final int LATENCY_SAMPLES = 1 << 12;	// the latencies of the most recent receipts are kept
+	private static final int UNCOLLECTED = 64;				// printed receipts kept until removed, the oldest dropped
+
+	private final ReceiptPrinter printer;
+	private final PrinterConsumables consumables;
+	private final ArrayBlockingQueue<Job> queue;
+	private final ArrayDeque<String> printed = new ArrayDeque<String>();
+	private final Thread worker;
+
+	// bumped whenever paper or ink is added, so a paused print knows when to try again
+	private long refills = 0;
+	private boolean paused = false;
+	private int outstanding = 0;	// receipts queued or printing
+	private volatile boolean running = true;
+	private Throwable failure = null;	// what stopped the worker, if it didn't shut down
+
+	private final long[] latencies = new long[LATENCY_SAMPLES];	// in nanoseconds
+	private long printedCount = 0;
+	private long pauseCount = 0;
+	private long refusedCount = 0;
+	// ink and paper the receipts queued or printing will take, with consumables tracked
+	private long queuedInk = 0;
+	private long queuedLines = 0;
+	private long droppedCount = 0;
+	private long failedCount = 0;
+
+	private static final class Job {
+		final String receipt;
+		final int ink;			// characters that take ink
+		final int lines;		// lines of paper
+		final long submitted;	// System.nanoTime()
+
+		Job(String receipt, int ink, int lines, long submitted) {
+			this.receipt = receipt;
+			this.ink = ink;
+			this.lines = lines;
+			this.submitted = submitted;
+		}
+	}
+
+
+	/**
+	 * Constructor for class, starts printing in the background. While the spooler runs, anything
+	 * else that uses the printer synchronizes on it, and adds paper and ink through the spooler
+	 *
+	 * @param printer The station's receipt printer
+	 * @param capacity How many receipts can wait to be printed at once
+	 */
+	public PrintSpooler(ReceiptPrinter printer, int capacity) {
+		this(printer, capacity, null);
+	}
+
+	/**
+	 * Constructor for class, starts printing in the background, refusing any receipt the printer
+	 * doesn't have the ink and paper to finish
+	 *
+	 * @param printer The station's receipt printer
+	 * @param capacity How many receipts can wait to be printed at once
+	 * @param consumables Tracks the printer's supplies. May be null, to start receipts whatever
+	 * is left and pause them for paper or ink
+	 */
+	public PrintSpooler(ReceiptPrinter printer, int capacity, PrinterConsumables consumables) {
+		if(printer == null)
+			throw new SimulationException("Printer is null");
+		if(capacity <= 0)
+			throw new SimulationException("Capacity must be positive");
+
+		this.printer = printer;
+		this.queue = new ArrayBlockingQueue<Job>(capacity);
+		this.consumables = consumables;
+
+		printer.register(new ReceiptPrinterListener() {
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void outOfPaper(ReceiptPrinter printer) {}
+			public void outOfInk(ReceiptPrinter printer) {}
+			public void paperAdded(ReceiptPrinter printer) {
+				refilled();
+			}
+			public void inkAdded(ReceiptPrinter printer) {
+				refilled();
+			}
+		});
+
+		worker = new Thread(this::run, "print-spooler");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Queues a rendered receipt to be printed and cut. Returns at once
+	 *
+	 * @param receipt The receipt, each line ending with a newline, e.g. from ReceiptRenderer. A
+	 * last line without one is ended all the same
+	 * @return true if the receipt was queued, false if the queue is full
+	 * @throws SimulationException if a line of the receipt is too long for the printer, or, with
+	 * consumables tracked, if the printer doesn't have the ink and paper to finish it after the
+	 * receipts queued ahead of it, or if the spooler has stopped
+	 */
+	public boolean submit(CharSequence receipt) {
+		if(receipt == null)
+			throw new SimulationException("Receipt is null");
+
+		String text = receipt.toString();
+		int column = 0, ink = 0, lines = 0;
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(c == '\n') {
+				column = 0;
+				lines++;
+			}
+			else if(c == ' ' || !Character.isWhitespace(c)) {
+				if(++column > ReceiptPrinter.CHARACTERS_PER_LINE)
+					throw new SimulationException("A line of the receipt is too long to print");
+				if(c != ' ')
+					ink++;
+			}
+		}
+		if(text.length() > 0 && text.charAt(text.length() - 1) != '\n')
+			lines++;
+
+		if(consumables != null && (ink > ReceiptPrinter.MAXIMUM_INK || lines > ReceiptPrinter.MAXIMUM_PAPER))
+			throw new SimulationException("The receipt is too long to print without refilling the printer");
+
+		Job job = new Job(text, ink, lines, System.nanoTime());
+		if(consumables == null)
+			return enqueue(job);
+
+		// the printer's gauges don't move while the receipts ahead are weighed against them
+		synchronized(printer) {
+			return enqueue(job);
+		}
+	}
+
+	private synchronized boolean enqueue(Job job) {
+		checkRunning();
+		if(consumables != null && !consumables.canFinish(queuedInk + job.ink, queuedLines + job.lines))
+			throw new SimulationException("The printer doesn't have the ink and paper to finish the receipt");
+		if(!queue.offer(job))
+			return false;
+
+		outstanding++;
+		queuedInk += job.ink;
+		queuedLines += job.lines;
+		return true;
+	}
+
+	private void checkRunning() {
+		if(failure != null)
+			throw new SimulationException("Spooler failed: " + failure);
+		if(!running)
+			throw new SimulationException("Spooler is shut down");
+	}
+
+	/**
+	 * Adds paper to the printer, in turn with the lines being printed on it, and resumes printing
+	 * if it was paused for paper
+	 *
+	 * @param units Lines of paper to add
+	 * @throws SimulationException if the printer can't take that much
+	 */
+	public void addPaper(int units) {
+		synchronized(printer) {
+			printer.addPaper(units);
+		}
+	}
+
+	/**
+	 * Adds ink to the printer, in turn with the lines being printed on it, and resumes printing if
+	 * it was paused for ink
+	 *
+	 * @param quantity Characters of ink to add
+	 * @throws SimulationException if the printer can't take that much
+	 */
+	public void addInk(int quantity) {
+		synchronized(printer) {
+			printer.addInk(quantity);
+		}
+	}
+
+	private synchronized void refilled() {
+		refills++;
+		notifyAll();
+	}
+
+	private void run() {
+		try {
+			while(running) {
+				Job job;
+				try {
+					job = queue.take();
+				}
+				catch(InterruptedException e) {
+					return;
+				}
+
+				try {
+					String receipt;
+
+					if(consumables != null) {
+						receipt = printWhole(job);
+						if(receipt == null)
+							continue;
+					}
+					else {
+						if(!print(job.receipt))
+							return;
+
+						synchronized(printer) {
+							printer.cutPaper();
+							receipt = printer.removeReceipt();
+						}
+					}
+
+					synchronized(this) {
+						if(printed.size() == UNCOLLECTED) {
+							printed.poll();
+							droppedCount++;
+						}
+						printed.add(receipt);
+						latencies[(int)(printedCount++ & (LATENCY_SAMPLES - 1))] = System.nanoTime() - job.submitted;
+					}
+				}
+				finally {
+					synchronized(this) {
+						outstanding--;
+						notifyAll();
+					}
+				}
+			}
+		}
+		catch(RuntimeException | Error e) {
+			fail(e);
+		}
+	}
+
+	// nothing is left to print the receipts still queued, so they fail rather than wait forever
+	private synchronized void fail(Throwable cause) {
+		failure = cause;
+		running = false;
+
+		int abandoned = queue.size();
+		queue.clear();
+		failedCount += abandoned + 1;	// and the one printing
+		outstanding -= abandoned;
+		notifyAll();
+	}
+
+	// prints and cuts a whole receipt while holding the printer, so nothing else prints in between or
+	// uses up the supplies it was checked against; null if it was refused for want of ink or paper,
+	// as something else printed on the printer after it was queued
+	private String printWhole(Job job) {
+		synchronized(printer) {
+			try {
+				if(!consumables.canFinish(job.ink, job.lines)) {
+					synchronized(this) {
+						refusedCount++;
+					}
+					return null;
+				}
+
+				int start = 0;
+				while(start < job.receipt.length()) {
+					int end = job.receipt.indexOf('\n', start);
+					if(end < 0)
+						end = job.receipt.length();
+					printer.printLine(job.receipt.subSequence(start, end));
+					start = end + 1;
+				}
+
+				printer.cutPaper();
+				return printer.removeReceipt();
+			}
+			finally {
+				synchronized(this) {
+					queuedInk -= job.ink;
+					queuedLines -= job.lines;
+				}
+			}
+		}
+	}
+
+	// prints a line at a time, waiting out any shortage of paper or ink; false if shut down meanwhile
+	private boolean print(String receipt) {
+		int start = 0;
+
+		while(start < receipt.length()) {
+			int end = receipt.indexOf('\n', start);
+			if(end < 0)
+				end = receipt.length();
+			CharSequence line = receipt.subSequence(start, end);
+
+			while(true) {
+				long seen;
+				synchronized(this) {
+					seen = refills;
+				}
+
+				try {
+					synchronized(printer) {
+						printer.printLine(line);
+					}
+					break;
+				}
+				catch(SimulationException e) {
+					// lines were checked when submitted, so only paper or ink can be short
+					if(!awaitRefill(seen))
+						return false;
+				}
+			}
+
+			start = end + 1;
+		}
+
+		return true;
+	}
+
+	private synchronized boolean awaitRefill(long seen) {
+		paused = true;
+		pauseCount++;
+
+		try {
+			while(refills == seen && running)
+				wait();
+		}
+		catch(InterruptedException e) {
+			return false;
+		}
+		finally {
+			paused = false;
+		}
+
+		return running;
+	}
+
+	/**
+	 * Takes the oldest printed receipt, as a customer would
+	 * @return the receipt, or null if none is waiting
+	 */
+	public synchronized String removeReceipt() {
+		return printed.poll();
+	}
+
+	/**
+	 * Waits until every queued receipt is printed
+	 *
+	 * @param timeout How long to wait at most, in milliseconds
+	 * @return true if nothing is left to print, false if the time ran out first
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws SimulationException if the spooler failed, and the receipts left will never print
+	 */
+	public synchronized boolean awaitIdle(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+
+		while(outstanding > 0) {
+			long left = deadline - System.currentTimeMillis();
+			if(left <= 0)
+				return false;
+			wait(left);
+		}
+
+		if(failure != null)
+			throw new SimulationException("Spooler failed: " + failure);
+
+		return true;
+	}
+
+	/**
+	 * Getter for the number of receipts waiting to be printed, not counting the one printing
+	 * @return queue depth
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Getter for whether printing is paused until paper or ink is added
+	 * @return true if paused
+	 */
+	public synchronized boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * Getter for the number of receipts printed
+	 * @return printed receipts
+	 */
+	public synchronized long getPrintedCount() {
+		return printedCount;
+	}
+
+	/**
+	 * Getter for the number of times printing paused for paper or ink
+	 * @return pauses
+	 */
+	public synchronized long getPauseCount() {
+		return pauseCount;
+	}
+
+	/**
+	 * Getter for the number of queued receipts refused before starting, as something else used
+	 * up the ink or paper to finish them
+	 * @return refused receipts
+	 */
+	public synchronized long getRefusedCount() {
+		return refusedCount;
+	}
+
+	/**
+	 * Getter for the number of printed receipts dropped, as more were printed than anyone took
+	 * @return dropped receipts
+	 */
+	public synchronized long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Getter for the number of receipts that will never print, as the spooler failed
+	 * @return failed receipts
+	 */
+	public synchronized long getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * Getter for the time from submitting a receipt to it being cut, below which the indicated
+	 * share of recent receipts were printed
+	 *
+	 * @param percentile Share of receipts, from 0 to 100 (e.g. 99 for the p99)
+	 * @return The latency, in milliseconds, or 0 if no receipt has been printed yet
+	 */
+	public double getPrintLatencyPercentile(double percentile) {
+		if(percentile < 0 || percentile > 100)
+			throw new SimulationException("Percentile must be between 0 and 100");
+
+		long[] sorted;
+
+		synchronized(this) {
+			sorted = Arrays.copyOf(latencies, (int)Math.min(printedCount, LATENCY_SAMPLES));
+		}
+
+		if(sorted.length == 0)
+			return 0;
+
+		Arrays.sort(sorted);
+		int rank = (int)Math.ceil(percentile / 100 * sorted.length) - 1;
+
+		return sorted[Math.max(0, rank)] / 1e6;
+	}
+
+	/**
+	 * Stops the spooler. Receipts still queued are abandoned, and one being printed is left as is
+	 */
+	public void shutdown() {
+		running = false;
+		worker.interrupt();
+
+		synchronized(this) {
+			notifyAll();
+		}
+	}
+}
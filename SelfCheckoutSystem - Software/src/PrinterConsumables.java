@@ -0,0 +1,230 @@
+/*
+ * 	Class:			PrinterConsumables.java
+ * 	Description:	Tracks a receipt printer's ink and paper against what its receipts actually use.
+ * 					The ink and lines of each receipt the printer cuts, whoever printed it, feed
+ * 					decaying averages, from which it warns when the printer won't last the next few
+ * 					receipts, while there is still time to refill it, and tells whether a receipt can
+ * 					be printed to the end before it is started. The printer reports what each receipt
+ * 					took when it is cut, so printing a character costs nothing more.
+ * 	Date:			10/19/2026
+ */
+
+import java.util.function.Consumer;
+
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.ReceiptPrinter;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.devices.listeners.AbstractDeviceListener;
+import org.lsmr.selfcheckout.devices.listeners.ReceiptPrinterListener;
+
+public class PrinterConsumables {
+
+	private static final double WEIGHT = 1.0 / 16;	// how much each receipt moves the averages
+
+	/**
+	 * What a printer can run short of
+	 */
+	public enum Supply {
+		INK,
+		PAPER
+	}
+
+	private final ReceiptPrinter printer;
+	private final int horizon;
+
+	private double averageInk = 0;		// characters of ink per receipt
+	private double averageLines = 0;	// lines of paper per receipt
+	private long receiptCount = 0;
+
+	// whether a warning has been given since the supply was last enough, so it is given once
+	private boolean inkLow = false;
+	private boolean paperLow = false;
+	private long warningCount = 0;
+	private Consumer<Supply> handler;
+
+
+	/**
+	 * Constructor for class, starts watching the printer's supplies
+	 *
+	 * @param printer The receipt printer
+	 * @param horizon How many receipts ahead to warn, e.g. 20 to warn once the ink or paper left
+	 * won't print 20 more average receipts
+	 */
+	public PrinterConsumables(ReceiptPrinter printer, int horizon) {
+		if(printer == null)
+			throw new SimulationException("Printer is null");
+		if(horizon <= 0)
+			throw new SimulationException("Horizon must be positive");
+
+		this.printer = printer;
+		this.horizon = horizon;
+
+		printer.register(new ReceiptPrinterListener() {
+			public void enabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void disabled(AbstractDevice<? extends AbstractDeviceListener> device) {}
+			public void outOfPaper(ReceiptPrinter printer) {}
+			public void outOfInk(ReceiptPrinter printer) {}
+			public void paperAdded(ReceiptPrinter printer) {
+				check();
+			}
+			public void inkAdded(ReceiptPrinter printer) {
+				check();
+			}
+			public void paperCut(ReceiptPrinter printer, int ink, int lines) {
+				if(ink > 0 || lines > 0)
+					learn(ink, lines);
+			}
+		});
+	}
+
+	/**
+	 * Sets what to call when a supply runs low. It is called once each time the supply falls
+	 * below the horizon, and again only after it has been refilled above it
+	 *
+	 * @param handler Called with the supply running low, or null for none
+	 */
+	public synchronized void setWarningHandler(Consumer<Supply> handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Tells whether a receipt can be printed to the end with the ink and paper left
+	 *
+	 * @param receipt The receipt, each line ending with a newline
+	 * @return true if there is enough of both
+	 */
+	public boolean canFinish(CharSequence receipt) {
+		return canFinish(printer, receipt);
+	}
+
+	/**
+	 * Tells whether a receipt can be printed to the end with the ink and paper left in a printer,
+	 * for printing on it directly. Synchronize on the printer until the receipt is printed, so
+	 * nothing else uses what is left first
+	 *
+	 * @param printer The receipt printer
+	 * @param receipt The receipt, each line ending with a newline
+	 * @return true if there is enough of both
+	 */
+	public static boolean canFinish(ReceiptPrinter printer, CharSequence receipt) {
+		if(printer == null)
+			throw new SimulationException("Printer is null");
+		if(receipt == null)
+			throw new SimulationException("Receipt is null");
+
+		int ink = 0, lines = 0;
+		for(int i = 0; i < receipt.length(); i++) {
+			char c = receipt.charAt(i);
+			if(c == '\n')
+				lines++;
+			else if(!Character.isWhitespace(c))
+				ink++;
+		}
+		if(receipt.length() > 0 && receipt.charAt(receipt.length() - 1) != '\n')
+			lines++;
+
+		return printer.getInkRemaining() >= ink && printer.getPaperRemaining() >= lines;
+	}
+
+	boolean canFinish(long ink, long lines) {
+		return printer.getInkRemaining() >= ink && printer.getPaperRemaining() >= lines;
+	}
+
+	// learns from a receipt that was cut, with the ink and paper it took
+	private void learn(int ink, int lines) {
+		synchronized(this) {
+			if(receiptCount++ == 0) {
+				averageInk = ink;
+				averageLines = lines;
+			}
+			else {
+				averageInk += (ink - averageInk) * WEIGHT;
+				averageLines += (lines - averageLines) * WEIGHT;
+			}
+		}
+
+		check();
+	}
+
+	// warns of each supply that has just fallen below the horizon
+	private void check() {
+		boolean warnInk, warnPaper;
+		Consumer<Supply> handler;
+
+		synchronized(this) {
+			if(receiptCount == 0)
+				return;
+
+			boolean ink = printer.getInkRemaining() < horizon * averageInk;
+			boolean paper = printer.getPaperRemaining() < horizon * averageLines;
+			warnInk = ink && !inkLow;
+			warnPaper = paper && !paperLow;
+			inkLow = ink;
+			paperLow = paper;
+
+			if(warnInk)
+				warningCount++;
+			if(warnPaper)
+				warningCount++;
+			handler = this.handler;
+		}
+
+		if(handler != null) {
+			if(warnInk)
+				handler.accept(Supply.INK);
+			if(warnPaper)
+				handler.accept(Supply.PAPER);
+		}
+	}
+
+	/**
+	 * Getter for how many more average receipts the ink and paper left will print
+	 * @return receipts left, or infinity if no receipt has been printed yet
+	 */
+	public synchronized double getReceiptsLeft() {
+		if(receiptCount == 0)
+			return Double.POSITIVE_INFINITY;
+
+		double ink = averageInk == 0 ? Double.POSITIVE_INFINITY : printer.getInkRemaining() / averageInk;
+		double paper = averageLines == 0 ? Double.POSITIVE_INFINITY : printer.getPaperRemaining() / averageLines;
+
+		return Math.min(ink, paper);
+	}
+
+	/**
+	 * Getter for whether a supply is below the horizon
+	 *
+	 * @param supply Ink or paper
+	 * @return true if it won't last the horizon's worth of receipts
+	 */
+	public synchronized boolean isLow(Supply supply) {
+		if(supply == null)
+			throw new SimulationException("Supply is null");
+
+		return supply == Supply.INK ? inkLow : paperLow;
+	}
+
+	/**
+	 * Getter for the average characters of ink per receipt
+	 * @return ink per receipt
+	 */
+	public synchronized double getAverageInkPerReceipt() {
+		return averageInk;
+	}
+
+	/**
+	 * Getter for the average lines of paper per receipt
+	 * @return lines per receipt
+	 */
+	public synchronized double getAverageLinesPerReceipt() {
+		return averageLines;
+	}
+
+	/**
+	 * Getter for the number of warnings given
+	 * @return warnings
+	 */
+	public synchronized long getWarningCount() {
+		return warningCount;
+	}
+}
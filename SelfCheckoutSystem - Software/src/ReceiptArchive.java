@@ -0,0 +1,670 @@
+/*
+ * 	Class:			ReceiptArchive.java
+ * 	Description:	Keeps a digital copy of every completed session's receipt, for customers who
+ * 					decline paper and for returns. Receipts are encoded in a compact binary form,
+ * 					gathered into blocks that are compressed together and appended to segment files,
+ * 					and found again through in-memory indexes by receipt ID, by time and by the
+ * 					barcodes they contain. The indexes are rebuilt from the segments when an archive
+ * 					is reopened. A stored receipt is only in memory until its block is written, so a
+ * 					crash loses the receipts stored since the last flush; callers that need one kept
+ * 					flush after storing it.
+ * 	Date:			10/19/2026
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.Money;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+public class ReceiptArchive {
+
+	private static final int BLOCK_SIZE = 1 << 16;		// receipts are compressed together until a block holds this many bytes
+	private static final long SEGMENT_SIZE = 1 << 24;	// a new segment file is started once one reaches this many bytes
+	private static final int BLOCK_HEADER = 12;			// uncompressed length, compressed length, CRC-32
+
+	/**
+	 * A line of an archived receipt: a product and how many of it were bought
+	 */
+	public static final class Line {
+		private final Barcode barcode;
+		private final String description;
+		private final int quantity;
+		private final long unitPrice;
+
+		Line(Barcode barcode, String description, int quantity, long unitPrice) {
+			this.barcode = barcode;
+			this.description = description;
+			this.quantity = quantity;
+			this.unitPrice = unitPrice;
+		}
+
+		public Barcode getBarcode() {
+			return barcode;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		/**
+		 * @return price of one, in minor units of the currency (e.g. cents)
+		 */
+		public long getUnitPriceInMinorUnits() {
+			return unitPrice;
+		}
+	}
+
+	/**
+	 * An archived receipt
+	 */
+	public static final class Receipt {
+		private final long id;
+		private final String station;
+		private final long timestamp;
+		private final List<Line> lines;
+		private final List<CustomerPayment.Tender> tenders;
+
+		Receipt(long id, String station, long timestamp, List<Line> lines, List<CustomerPayment.Tender> tenders) {
+			this.id = id;
+			this.station = station;
+			this.timestamp = timestamp;
+			this.lines = Collections.unmodifiableList(lines);
+			this.tenders = Collections.unmodifiableList(tenders);
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public String getStation() {
+			return station;
+		}
+
+		/**
+		 * @return when the session was completed, in milliseconds since the epoch
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public List<Line> getLines() {
+			return lines;
+		}
+
+		public List<CustomerPayment.Tender> getTenders() {
+			return tenders;
+		}
+	}
+
+	// the IDs of the receipts containing one barcode, in increasing order
+	private static final class Postings {
+		long[] ids = new long[4];
+		int size;
+
+		void add(long id) {
+			if(size == ids.length)
+				ids = Arrays.copyOf(ids, size * 2);
+			ids[size++] = id;
+		}
+	}
+
+	private final File directory;
+	private final Currency currency;
+
+	// by receipt ID - 1: where the receipt is (block number << 32 | offset in block), and when
+	private long[] locations = new long[1024];
+	private long[] timestamps = new long[1024];
+	private int count = 0;
+	private int durable = 0;	// receipts written to the segments, from the first
+
+	// by block number: segment << 40 | offset of the block in the segment
+	private long[] blocks = new long[64];
+	private int blockCount = 0;
+
+	// receipts sorted by time, as parallel arrays of timestamps and IDs
+	private long[] times = new long[1024];
+	private long[] timeIds = new long[1024];
+
+	private final HashMap<Barcode, Postings> byBarcode = new HashMap<Barcode, Postings>();
+
+	// the block being filled, not yet written
+	private final ByteArrayOutputStream open = new ByteArrayOutputStream(BLOCK_SIZE * 2);
+
+	// each receipt is encoded here first, so one that can't be encoded leaves nothing in the open block
+	private final ByteArrayOutputStream encoded = new ByteArrayOutputStream(1024);
+	private final DataOutputStream out = new DataOutputStream(encoded);
+
+	private int segment = 0;
+	private RandomAccessFile segmentFile;
+	private final Deflater deflater = new Deflater();
+	private final Inflater inflater = new Inflater();
+	private byte[] compressed = new byte[BLOCK_SIZE];
+
+	// the last block read, kept since lookups tend to hit receipts stored together
+	private int cachedBlock = -1;
+	private int cachedLength;
+	private byte[] cache = new byte[BLOCK_SIZE];
+
+	/**
+	 * Constructor for class, opens the archive in a directory, reading back any receipts already
+	 * in it
+	 *
+	 * @param directory Where the segment files are kept. Created if need be
+	 * @param currency The currency of the amounts on the receipts
+	 * @throws SimulationException if the directory can't be read or written
+	 */
+	public ReceiptArchive(File directory, Currency currency) {
+		if(directory == null)
+			throw new SimulationException("Directory is null");
+		if(currency == null)
+			throw new SimulationException("Currency is null");
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new SimulationException("Can't create " + directory);
+
+		this.directory = directory;
+		this.currency = currency;
+
+		try {
+			recover();
+		}
+		catch(IOException e) {
+			throw new SimulationException("Can't read the receipt archive: " + e.getMessage());
+		}
+	}
+
+	private File segmentFile(int n) {
+		return new File(directory, "receipts." + n);
+	}
+
+	/**
+	 * Archives a completed session's receipt. It can be found at once, but is only kept in memory
+	 * until its block is written, once the block is full or the archive is flushed or closed;
+	 * until then a crash loses it
+	 *
+	 * @param station The station the session was on
+	 * @param timestamp When the session was completed, in milliseconds since the epoch
+	 * @param cart The products scanned, with a product scanned several times repeated
+	 * @param tenders The payments made
+	 * @return The receipt's ID, by which it can be found again
+	 * @throws SimulationException if the receipt can't be written, e.g. because a description is
+	 * too long to encode, in which case nothing of it is archived
+	 */
+	public synchronized long store(String station, long timestamp, List<BarcodedProduct> cart, List<CustomerPayment.Tender> tenders) {
+		if(station == null)
+			throw new SimulationException("Station is null");
+		if(cart == null)
+			throw new SimulationException("Cart is null");
+		if(tenders == null)
+			throw new SimulationException("List of tenders is null");
+
+		LinkedHashMap<Barcode, Line> lines = new LinkedHashMap<Barcode, Line>();
+		for(BarcodedProduct product : cart) {
+			Line line = lines.get(product.getBarcode());
+			lines.put(product.getBarcode(), new Line(product.getBarcode(), product.getDescription(),
+				line == null ? 1 : line.quantity + 1, Money.toMinorUnits(product.getPrice(), currency)));
+		}
+
+		long id = count + 1;
+		Receipt receipt = new Receipt(id, station, timestamp, new ArrayList<Line>(lines.values()), tenders);
+
+		try {
+			encoded.reset();
+			encode(receipt, out);
+
+			if(open.size() >= BLOCK_SIZE)
+				flush();
+
+			int offset = open.size();
+			encoded.writeTo(open);
+			index(receipt, (long)blockCount << 32 | offset);
+		}
+		catch(IOException e) {
+			throw new SimulationException("Can't write the receipt archive: " + e.getMessage());
+		}
+
+		return id;
+	}
+
+	private static void encode(Receipt receipt, DataOutputStream out) throws IOException {
+		writeVarLong(out, receipt.id);
+		out.writeUTF(receipt.station);
+		out.writeLong(receipt.timestamp);
+
+		writeVarLong(out, receipt.lines.size());
+		for(Line line : receipt.lines) {
+			writeBarcode(out, line.barcode);
+			out.writeUTF(line.description);
+			writeVarLong(out, line.quantity);
+			writeVarLong(out, line.unitPrice);
+		}
+
+		writeVarLong(out, receipt.tenders.size());
+		for(CustomerPayment.Tender tender : receipt.tenders) {
+			out.writeUTF(tender.getMethod());
+			writeVarLong(out, tender.getAmountInMinorUnits());
+		}
+	}
+
+	private static Receipt decode(DataInputStream in) throws IOException {
+		long id = readVarLong(in);
+		String station = in.readUTF();
+		long timestamp = in.readLong();
+
+		int lineCount = (int)readVarLong(in);
+		ArrayList<Line> lines = new ArrayList<Line>(lineCount);
+		for(int i = 0; i < lineCount; i++)
+			lines.add(new Line(readBarcode(in), in.readUTF(), (int)readVarLong(in), readVarLong(in)));
+
+		int tenderCount = (int)readVarLong(in);
+		ArrayList<CustomerPayment.Tender> tenders = new ArrayList<CustomerPayment.Tender>(tenderCount);
+		for(int i = 0; i < tenderCount; i++)
+			tenders.add(new CustomerPayment.Tender(in.readUTF(), readVarLong(in)));
+
+		return new Receipt(id, station, timestamp, lines, tenders);
+	}
+
+	// small non-negative numbers take one byte, seven bits at a time
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while((value & ~0x7FL) != 0) {
+			out.writeByte((int)(value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for(int shift = 0;; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long)(b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+	}
+
+	// two digits to a byte
+	private static void writeBarcode(DataOutputStream out, Barcode barcode) throws IOException {
+		String digits = barcode.toString();
+		out.writeByte(digits.length());
+		for(int i = 0; i < digits.length(); i += 2) {
+			int high = digits.charAt(i) - '0';
+			int low = i + 1 < digits.length() ? digits.charAt(i + 1) - '0' : 0;
+			out.writeByte(high << 4 | low);
+		}
+	}
+
+	private static Barcode readBarcode(DataInputStream in) throws IOException {
+		int length = in.readUnsignedByte();
+		char[] digits = new char[length];
+		for(int i = 0; i < length; i += 2) {
+			int b = in.readUnsignedByte();
+			digits[i] = (char)('0' + (b >>> 4));
+			if(i + 1 < length)
+				digits[i + 1] = (char)('0' + (b & 0xF));
+		}
+		return new Barcode(new String(digits));
+	}
+
+	private void index(Receipt receipt, long location) {
+		if(count == locations.length) {
+			locations = Arrays.copyOf(locations, count * 2);
+			timestamps = Arrays.copyOf(timestamps, count * 2);
+			times = Arrays.copyOf(times, count * 2);
+			timeIds = Arrays.copyOf(timeIds, count * 2);
+		}
+
+		locations[count] = location;
+		timestamps[count] = receipt.timestamp;
+
+		// receipts mostly arrive in time order, so this is almost always an append
+		int at = upperBound(receipt.timestamp);
+		System.arraycopy(times, at, times, at + 1, count - at);
+		System.arraycopy(timeIds, at, timeIds, at + 1, count - at);
+		times[at] = receipt.timestamp;
+		timeIds[at] = receipt.id;
+		count++;
+
+		for(Line line : receipt.lines) {
+			Postings postings = byBarcode.get(line.barcode);
+			if(postings == null)
+				byBarcode.put(line.barcode, postings = new Postings());
+			postings.add(receipt.id);
+		}
+	}
+
+	// the first position whose time is after the indicated one
+	private int upperBound(long time) {
+		int low = 0, high = count;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(times[middle] <= time)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private int lowerBound(long time) {
+		int low = 0, high = count;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(times[middle] < time)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Compresses the receipts stored since the last flush and appends them to the current
+	 * segment, so that they survive the archive being reopened
+	 *
+	 * @throws SimulationException if the receipts can't be written
+	 */
+	public synchronized void flush() {
+		if(open.size() == 0)
+			return;
+
+		try {
+			if(segmentFile == null || segmentFile.length() >= SEGMENT_SIZE) {
+				if(segmentFile != null) {
+					segmentFile.close();
+					segment++;
+				}
+				segmentFile = new RandomAccessFile(segmentFile(segment), "rw");
+			}
+
+			byte[] block = open.toByteArray();
+			int length = open.size();
+			deflater.reset();
+			deflater.setInput(block, 0, length);
+			deflater.finish();
+
+			int compressedLength = 0;
+			while(!deflater.finished()) {
+				if(compressedLength == compressed.length)
+					compressed = Arrays.copyOf(compressed, compressed.length * 2);
+				compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+			}
+
+			CRC32 crc = new CRC32();
+			crc.update(block, 0, length);
+
+			long position = segmentFile.length();
+
+			try {
+				segmentFile.seek(position);
+				segmentFile.writeInt(length);
+				segmentFile.writeInt(compressedLength);
+				segmentFile.writeInt((int)crc.getValue());
+				segmentFile.write(compressed, 0, compressedLength);
+			}
+			catch(IOException e) {
+				// a partly written block would hide every block written after it when the archive
+				// is reopened, so it is cut off; the receipts stay in the open block for the next flush
+				segmentFile.setLength(position);
+				throw e;
+			}
+
+			addBlock((long)segment << 40 | position);
+			open.reset();
+			durable = count;
+		}
+		catch(IOException e) {
+			throw new SimulationException("Can't write the receipt archive: " + e.getMessage());
+		}
+	}
+
+	private void addBlock(long position) {
+		if(blockCount == blocks.length)
+			blocks = Arrays.copyOf(blocks, blockCount * 2);
+		blocks[blockCount++] = position;
+	}
+
+	/**
+	 * Flushes any receipts not yet written and closes the current segment
+	 */
+	public synchronized void close() {
+		flush();
+
+		try {
+			if(segmentFile != null)
+				segmentFile.close();
+			segmentFile = null;
+		}
+		catch(IOException e) {
+			throw new SimulationException("Can't close the receipt archive: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Finds a receipt by its ID
+	 *
+	 * @param id The ID returned when it was stored
+	 * @return The receipt, or null if there is none with that ID
+	 */
+	public synchronized Receipt get(long id) {
+		if(id < 1 || id > count)
+			return null;
+
+		long location = locations[(int)(id - 1)];
+		int block = (int)(location >>> 32);
+		int offset = (int)location;
+
+		try {
+			byte[] bytes;
+			int length;
+
+			if(block == blockCount) {
+				bytes = open.toByteArray();	// still in the open block
+				length = bytes.length;
+			}
+			else {
+				length = readBlock(block);
+				bytes = cache;
+			}
+
+			return decode(new DataInputStream(new ByteArrayInputStream(bytes, offset, length - offset)));
+		}
+		catch(IOException e) {
+			throw new SimulationException("Can't read the receipt archive: " + e.getMessage());
+		}
+	}
+
+	// decompresses a block into the cache, returning its length
+	private int readBlock(int block) throws IOException {
+		if(block == cachedBlock)
+			return cachedLength;
+
+		long position = blocks[block];
+		int segment = (int)(position >>> 40);
+		long offset = position & ((1L << 40) - 1);
+
+		try(RandomAccessFile file = new RandomAccessFile(segmentFile(segment), "r")) {
+			file.seek(offset);
+			int length = file.readInt();
+			int compressedLength = file.readInt();
+			file.readInt();
+
+			byte[] input = new byte[compressedLength];
+			file.readFully(input);
+			inflate(input, compressedLength, length);
+			cachedBlock = block;
+			cachedLength = length;
+			return length;
+		}
+	}
+
+	private void inflate(byte[] input, int compressedLength, int length) throws IOException {
+		if(cache.length < length)
+			cache = new byte[length];
+
+		inflater.reset();
+		inflater.setInput(input, 0, compressedLength);
+		try {
+			int done = 0;
+			while(done < length && !inflater.finished())
+				done += inflater.inflate(cache, done, length - done);
+			if(done != length)
+				throw new IOException("block is truncated");
+		}
+		catch(DataFormatException e) {
+			throw new IOException("block is corrupt");
+		}
+	}
+
+	/**
+	 * Finds the receipts of sessions completed within a time range
+	 *
+	 * @param from Start of the range, in milliseconds since the epoch, inclusive
+	 * @param to End of the range, exclusive
+	 * @return IDs of the receipts, in time order
+	 */
+	public synchronized long[] findByTime(long from, long to) {
+		int start = lowerBound(from), end = lowerBound(to);
+		return end <= start ? new long[0] : Arrays.copyOfRange(timeIds, start, end);
+	}
+
+	/**
+	 * Finds the receipts containing a product, within a time range, e.g. to check a return
+	 *
+	 * @param barcode The product's barcode
+	 * @param from Start of the range, in milliseconds since the epoch, inclusive
+	 * @param to End of the range, exclusive
+	 * @return IDs of the receipts, in the order they were stored
+	 */
+	public synchronized long[] findByBarcode(Barcode barcode, long from, long to) {
+		if(barcode == null)
+			throw new SimulationException("Barcode is null");
+
+		Postings postings = byBarcode.get(barcode);
+		if(postings == null)
+			return new long[0];
+
+		long[] found = new long[postings.size];
+		int size = 0;
+		for(int i = 0; i < postings.size; i++) {
+			long time = timestamps[(int)(postings.ids[i] - 1)];
+			if(time >= from && time < to)
+				found[size++] = postings.ids[i];
+		}
+
+		return Arrays.copyOf(found, size);
+	}
+
+	/**
+	 * Getter for the number of receipts archived
+	 * @return receipts
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Getter for the number of receipts written to the segments, which survive a crash. These are
+	 * the receipts with IDs up to it; the rest are only in memory
+	 * @return durable receipts
+	 */
+	public synchronized long getDurableCount() {
+		return durable;
+	}
+
+	// rebuilds the indexes from the segments, dropping a block left torn by a crash
+	private void recover() throws IOException {
+		File[] files = directory.listFiles((dir, name) -> name.startsWith("receipts."));
+		int last = -1;
+		Map<Integer, File> segments = new HashMap<Integer, File>();
+		if(files != null)
+			for(File file : files) {
+				try {
+					int n = Integer.parseInt(file.getName().substring("receipts.".length()));
+					segments.put(n, file);
+					last = Math.max(last, n);
+				}
+				catch(NumberFormatException e) {}
+			}
+
+		for(int n = 0; n <= last; n++) {
+			if(!segments.containsKey(n))
+				continue;
+
+			try(RandomAccessFile file = new RandomAccessFile(segments.get(n), "rw")) {
+				long position = 0, intact = 0;
+
+				while(true) {
+					int length, compressedLength, checksum;
+					byte[] input;
+
+					try {
+						file.seek(position);
+						length = file.readInt();
+						compressedLength = file.readInt();
+						checksum = file.readInt();
+						if(length < 0 || compressedLength < 0 || compressedLength > file.length() - position - BLOCK_HEADER)
+							break;
+						input = new byte[compressedLength];
+						file.readFully(input);
+						inflate(input, compressedLength, length);
+					}
+					catch(EOFException e) {
+						break;
+					}
+					catch(IOException e) {
+						break;
+					}
+
+					CRC32 crc = new CRC32();
+					crc.update(cache, 0, length);
+					if((int)crc.getValue() != checksum)
+						break;
+
+					addBlock((long)n << 40 | position);
+					DataInputStream in = new DataInputStream(new ByteArrayInputStream(cache, 0, length));
+					while(in.available() > 0) {
+						int offset = length - in.available();
+						index(decode(in), (long)(blockCount - 1) << 32 | offset);
+					}
+
+					position += BLOCK_HEADER + compressedLength;
+					intact = position;
+				}
+
+				file.setLength(intact);
+			}
+
+			segment = n;
+		}
+
+		cachedBlock = -1;
+		durable = count;
+		if(last >= 0)
+			segmentFile = new RandomAccessFile(segmentFile(segment), "rw");
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * 	Class:			ReceiptRenderer.java
+ * 	Description:	Lays out a receipt for a cart: one line per product with its quantity and amount,
+ * 					then the total, each tender and the change, in fixed-width lines that fill the
+ * 					printer's 60 columns. Each line is built in one reusable buffer, numbers and prices
+ * 					are formatted into it digit by digit, and it is handed to the printer a whole line
+ * 					at a time, so rendering allocates nothing per line.
+ * 	Date:			10/19/2026
+ */
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.Money;
+import org.lsmr.selfcheckout.devices.ReceiptPrinter;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+public class ReceiptRenderer {
+
+	private static final int WIDTH = ReceiptPrinter.CHARACTERS_PER_LINE;
+	private static final int AMOUNT_WIDTH = 12;		// amounts are right-aligned in the last 12 columns
+	private static final int QUANTITY_END = WIDTH - AMOUNT_WIDTH - 1;	// quantities end one column before amounts
+
+	private final Currency currency;
+	private final int scale;
+
+	// the line being laid out, and a view of it the printer can read without copying
+	private final char[] line = new char[WIDTH];
+	private final CharSequence view = new CharSequence() {
+		public int length() {
+			return WIDTH;
+		}
+		public char charAt(int index) {
+			return line[index];
+		}
+		public CharSequence subSequence(int start, int end) {
+			return new String(line, start, end - start);
+		}
+		public String toString() {
+			return new String(line);
+		}
+	};
+
+	// where finished lines go, for the receipt being rendered
+	private ReceiptPrinter printer;
+	private StringBuilder out;
+
+	// the cart with repeated products counted together, in the order they were first scanned
+	private final HashMap<Barcode, Integer> positions = new HashMap<Barcode, Integer>();
+	private BarcodedProduct[] products = new BarcodedProduct[16];
+	private int[] quantities = new int[16];
+	private int size;
+
+
+	/**
+	 * Constructor for class and initializes variables
+	 *
+	 * @param currency The currency the amounts on the receipt are in
+	 */
+	public ReceiptRenderer(Currency currency) {
+		if(currency == null)
+			throw new SimulationException("Currency is null");
+
+		this.currency = currency;
+		this.scale = Money.scale(currency);
+	}
+
+	/**
+	 * Prints a receipt straight to a printer, a line at a time. The paper is not cut, so that
+	 * more can be added to the receipt
+	 *
+	 * @param cart The products scanned, in order, with a product scanned several times repeated
+	 * @param tenders The payments made, in order. Whatever they add up to beyond the total is
+	 * shown as change
+	 * @param printer The printer to print on
+	 * @throws SimulationException if the printer runs out of ink or paper, in which case the
+	 * receipt is printed up to the last whole line that fit
+	 */
+	public void render(List<BarcodedProduct> cart, List<CustomerPayment.Tender> tenders, ReceiptPrinter printer) {
+		if(printer == null)
+			throw new SimulationException("Printer is null");
+
+		this.printer = printer;
+
+		try {
+			render(cart, tenders);
+		}
+		finally {
+			this.printer = null;
+		}
+	}
+
+	/**
+	 * Lays out a receipt as text, each line ending with a newline, to be printed later
+	 *
+	 * @param cart The products scanned, in order, with a product scanned several times repeated
+	 * @param tenders The payments made, in order. Whatever they add up to beyond the total is
+	 * shown as change
+	 * @param out Where to append the receipt
+	 */
+	public void render(List<BarcodedProduct> cart, List<CustomerPayment.Tender> tenders, StringBuilder out) {
+		if(out == null)
+			throw new SimulationException("Output is null");
+
+		this.out = out;
+
+		try {
+			render(cart, tenders);
+		}
+		finally {
+			this.out = null;
+		}
+	}
+
+	private void render(List<BarcodedProduct> cart, List<CustomerPayment.Tender> tenders) {
+		if(cart == null)
+			throw new SimulationException("Cart is null");
+
+		if(tenders == null)
+			throw new SimulationException("List of tenders is null");
+
+		aggregate(cart);
+
+		long total = 0;
+		for(int i = 0; i < size; i++) {
+			long unitPrice = Money.toMinorUnits(products[i].getPrice(), currency);
+			long amount = Money.multiply(unitPrice, quantities[i]);
+			total = Money.add(total, amount);
+
+			clear();
+			int start = putAmount(amount, WIDTH);
+			if(quantities[i] > 1) {
+				start = putAmount(unitPrice, QUANTITY_END);
+				start = putText(" @ ", start);
+				start = putNumber(quantities[i], start);
+			}
+			putLeft(products[i].getDescription(), start - 1);
+			emit();
+		}
+
+		Arrays.fill(line, '-');
+		emit();
+
+		summary("TOTAL", total);
+		long tendered = 0;
+		for(int i = 0; i < tenders.size(); i++) {
+			CustomerPayment.Tender tender = tenders.get(i);
+			summary(tender.getMethod(), tender.getAmountInMinorUnits());
+			tendered = Money.add(tendered, tender.getAmountInMinorUnits());
+		}
+		if(tendered > total)
+			summary("CHANGE", Money.subtract(tendered, total));
+	}
+
+	// counts repeats of each product, keeping the arrays for the next receipt
+	private void aggregate(List<BarcodedProduct> cart) {
+		positions.clear();
+		Arrays.fill(products, 0, size, null);
+		size = 0;
+
+		for(int i = 0; i < cart.size(); i++) {
+			BarcodedProduct product = cart.get(i);
+			Integer position = positions.get(product.getBarcode());
+
+			if(position != null) {
+				quantities[position]++;
+				continue;
+			}
+
+			if(size == products.length) {
+				products = Arrays.copyOf(products, size * 2);
+				quantities = Arrays.copyOf(quantities, size * 2);
+			}
+			positions.put(product.getBarcode(), size);
+			products[size] = product;
+			quantities[size++] = 1;
+		}
+	}
+
+	private void summary(String label, long amount) {
+		clear();
+		int start = putAmount(amount, WIDTH);
+		putLeft(label, start - 1);
+		emit();
+	}
+
+	private void clear() {
+		Arrays.fill(line, ' ');
+	}
+
+	private void emit() {
+		if(printer != null)
+			printer.printLine(view);
+		else
+			out.append(line, 0, WIDTH).append('\n');
+	}
+
+	// copies text to the start of the line, cutting it off before limit
+	private void putLeft(String text, int limit) {
+		int length = Math.max(0, Math.min(text.length(), limit));
+		text.getChars(0, length, line, 0);
+	}
+
+	// the put methods write right-aligned, ending just before end, and return where they started
+	private int putText(String text, int end) {
+		int start = end - text.length();
+		text.getChars(0, text.length(), line, start);
+		return start;
+	}
+
+	private int putNumber(long n, int end) {
+		int i = end;
+		do {
+			line[--i] = (char)('0' + n % 10);
+			n /= 10;
+		} while(n > 0);
+		return i;
+	}
+
+	private int putAmount(long minorUnits, int end) {
+		boolean negative = minorUnits < 0;
+		long n = negative ? -minorUnits : minorUnits;
+		int i = end;
+
+		for(int digit = 0; digit < scale; digit++) {
+			line[--i] = (char)('0' + n % 10);
+			n /= 10;
+		}
+		if(scale > 0)
+			line[--i] = '.';
+
+		i = putNumber(n, i);
+		if(negative)
+			line[--i] = '-';
+
+		return i;
+	}
+}
@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Currency;
 import java.util.Locale;
+import java.util.Map;
 
 import org.lsmr.selfcheckout.Banknote;
 import org.lsmr.selfcheckout.Barcode;
@@ -23,6 +24,8 @@ import org.lsmr.selfcheckout.devices.BarcodeScanner;
 import org.lsmr.selfcheckout.devices.CoinValidator;
 import org.lsmr.selfcheckout.devices.DisabledException;
 import org.lsmr.selfcheckout.devices.ElectronicScale;
+import org.lsmr.selfcheckout.devices.EmptyException;
+import org.lsmr.selfcheckout.devices.OverloadException;
 import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
 import org.lsmr.selfcheckout.devices.SimulationException;
 import org.lsmr.selfcheckout.devices.listeners.AbstractDeviceListener;
@@ -41,9 +44,12 @@ public class SoftwareMain {
 	//Global variables
 	public ArrayList<BarcodedItem> previouslyScannedItems;
 	public ProductDatabases productDatabase;
+	private Map<Barcode, BarcodedProduct> catalog = ProductDatabases.BARCODED_PRODUCT_DATABASE;
+	private boolean catalogReadOnly = false;	//A catalog passed in is only read, so stations can share it
 	public SelfCheckoutStation station;
 	public CustomerScanItem customerScanItem;
 	public CustomerPayment customerPayment;
+	public ChangeMaker changeMaker;
 	
 	/**
 	 * Default Constructor that initializes a station and default listeners, intended for testing use
@@ -77,10 +83,44 @@ public class SoftwareMain {
 		this.station = station;
 		customerScanItem = new CustomerScanItem(station.mainScanner, station.handheldScanner, station.baggingArea, previouslyScannedItems);
 		customerPayment = new CustomerPayment(new ArrayList<BarcodedProduct>(), station);
+		changeMaker = new ChangeMaker(station);
+	}
+	
+	/**
+	 * Constructor for a station that looks products up in its own catalog rather than the global
+	 * product database, e.g. one catalog shared read-only by every station in a StationHost. The
+	 * station only reads the catalog, and can't populate it
+	 * 
+	 * @param SelfCheckoutStation station
+	 * 			The station used by CustomerPayment.java and CustomerScanItem.java
+	 * 
+	 * @param Map<Barcode, BarcodedProduct> catalog
+	 * 			The products that can be scanned, indexed by barcode
+	 * 
+	 * @throws SimulationException
+	 * 			If any of the parameters are null
+	 */
+	SoftwareMain(SelfCheckoutStation station, Map<Barcode, BarcodedProduct> catalog){
+		payMode = false;
+		
+		if(station == null)
+			throw new SimulationException("Station is null");
+		
+		if(catalog == null)
+			throw new SimulationException("Catalog is null");
+		
+		this.station = station;
+		this.catalog = catalog;
+		catalogReadOnly = true;
+		previouslyScannedItems = new ArrayList<BarcodedItem>();
+		customerScanItem = new CustomerScanItem(station.mainScanner, station.handheldScanner, station.baggingArea);
+		customerPayment = new CustomerPayment(new ArrayList<BarcodedProduct>(), station);
+		changeMaker = new ChangeMaker(station);
 	}
 
 	/**
-	 * Pay with coin, updates the list of scanned products and enables "payMode"
+	 * Pay with coin, updates the list of scanned products and enables "payMode". Once the total
+	 * is paid, any change is paid out of the station's dispensers
 	 * 
 	 * @param Coin coin
 	 * 			The coin to pay with
@@ -92,14 +132,16 @@ public class SoftwareMain {
 		
 		try {
 			customerPayment.PayCoin(coin);
+			customerPayment.dispenseChange(changeMaker);
 		}
-		catch(DisabledException ex) {
+		catch(DisabledException | EmptyException | OverloadException ex) {
 			ex.printStackTrace();
 		}
 	}
 	
 	/**
-	 * Pay with banknote, updates the list of scanned products and enables "payMode"
+	 * Pay with banknote, updates the list of scanned products and enables "payMode". Once the
+	 * total is paid, any change is paid out of the station's dispensers
 	 * 
 	 * @param Banknote
 	 * 			The banknote to pay with
@@ -111,12 +153,33 @@ public class SoftwareMain {
 		
 		try {
 			customerPayment.PayBanknote(banknote);
+			customerPayment.dispenseChange(changeMaker);
 		}
-		catch(DisabledException ex) {
+		catch(DisabledException | EmptyException | OverloadException ex) {
 			ex.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Pay by card, updates the list of scanned products and enables "payMode". Waits for the
+	 * card's issuer to answer
+	 * 
+	 * @param String cardNumber
+	 * 			The number of the card to pay with
+	 * 
+	 * @param CardAuthorizationClient client
+	 * 			The client used to reach the card's issuer
+	 * 
+	 * @return true if the payment went through, false if it was declined
+	 */
+	public boolean Pay(String cardNumber, CardAuthorizationClient client) {
+		payMode = true;
+		
+		updateScannedProducts();
+		
+		return customerPayment.PayCard(cardNumber, client);
+	}
+	
 	/**
 	 * Scans an item using the main scanner if payMode isn't enabled
 	 */
@@ -184,6 +247,7 @@ public class SoftwareMain {
 			customerScanItem = new CustomerScanItem(station.mainScanner, station.handheldScanner, station.baggingArea, previouslyScannedItems);
 		
 		customerPayment = new CustomerPayment(convertItemToProduct(previouslyScannedItems), station);
+		changeMaker = new ChangeMaker(station);
 	}
 	
 	/**
@@ -253,15 +317,19 @@ public class SoftwareMain {
 	 * 
 	 * @throws SimulationException
 	 * 			If the list provided is null
+	 * 			If the station's catalog is read-only
 	 */
 	public void populateDatabase(ArrayList<BarcodedProduct> list) {
 		if(list == null)
 			throw new SimulationException("Can't populate database with null list");
 		
-		productDatabase.BARCODED_PRODUCT_DATABASE.clear();
+		if(catalogReadOnly)
+			throw new SimulationException("Can't populate a read-only catalog");
+		
+		catalog.clear();
 		
 		for(BarcodedProduct product : list) {
-			productDatabase.BARCODED_PRODUCT_DATABASE.put(product.getBarcode(), product);
+			catalog.put(product.getBarcode(), product);
 		}
 	}
 	
@@ -286,10 +354,12 @@ public class SoftwareMain {
 		ArrayList<BarcodedProduct> productList = new ArrayList<BarcodedProduct>();
 		
 		for(BarcodedItem item : list) {
-			if(!productDatabase.BARCODED_PRODUCT_DATABASE.containsKey(item.getBarcode()))
+			BarcodedProduct product = catalog.get(item.getBarcode());
+			
+			if(product == null)
 				throw new SimulationException("Item not in product database");
 			
-			productList.add(productDatabase.BARCODED_PRODUCT_DATABASE.get(item.getBarcode()));
+			productList.add(product);
 		}
 		
 		return productList;
@@ -312,11 +382,13 @@ public class SoftwareMain {
 	}
 	
 	/**
-	 * Reset function that disabled payMode and clears the list of scanned items.
+	 * Reset function that disabled payMode and clears the list of scanned items, so the next
+	 * customer can start scanning.
 	 */
 	public void reset() {
 		payMode = false;
 		
+		customerPayment.newSession();
 		customerScanItem.clearScannedItems();
 		updateScannedProducts();
 	}
@@ -0,0 +1,372 @@
+/*
+ * 	Class:			StationHost.java
+ * 	Description:	Hosts many simulated lanes in one process, for load testing and for the store
+ * 					server. Each lane is its own SelfCheckoutStation and SoftwareMain controller, with
+ * 					its own devices, cart and payment, while all of them look products up in one
+ * 					read-only catalog. Reports how many sessions per second the lanes get through
+ * 					together, run on a fixed pool of threads or on a thread per session (a virtual
+ * 					thread, where the JVM has them), and how much memory each lane takes.
+ * 	Date:			10/19/2026
+ */
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.BarcodedItem;
+import org.lsmr.selfcheckout.devices.OverloadException;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+import com.sun.management.ThreadMXBean;
+
+public class StationHost {
+
+	// every lane is fitted out like SoftwareMain's default station
+	private static final int[] BANKNOTE_DENOMINATIONS = {5, 10, 20, 50, 100};
+	private static final BigDecimal[] COIN_DENOMINATIONS = {BigDecimal.valueOf(0.05), BigDecimal.valueOf(0.10),
+		BigDecimal.valueOf(0.25), BigDecimal.valueOf(0.50), BigDecimal.valueOf(1.00), BigDecimal.valueOf(2.00)};
+	private static final int SCALE_MAXIMUM_WEIGHT = 25 * 1000;	// in grams
+	private static final int SCALE_SENSITIVITY = 15;			// in grams
+
+	private final Currency currency;
+	private final Map<Barcode, BarcodedProduct> catalog;
+	private final ArrayList<SoftwareMain> controllers = new ArrayList<SoftwareMain>();
+	private final ArrayList<ReentrantLock> locks = new ArrayList<ReentrantLock>();	// held by the session on each lane
+
+	private final AtomicLong sessionCount = new AtomicLong();
+	private final AtomicInteger activeSessions = new AtomicInteger();
+	private final AtomicInteger peakSessions = new AtomicInteger();	// the most active at once in the last drive
+	private long stationBytes = 0;	// allocated while adding the lanes, or -1 if the JVM doesn't count it
+
+
+	/**
+	 * Constructor for class and initializes variables
+	 *
+	 * @param currency The currency every lane accepts
+	 * @param catalog The products that can be scanned. Copied, so that lanes can share it without
+	 * any of them changing it
+	 */
+	public StationHost(Currency currency, Map<Barcode, BarcodedProduct> catalog) {
+		if(currency == null)
+			throw new SimulationException("Currency is null");
+		if(catalog == null)
+			throw new SimulationException("Catalog is null");
+
+		this.currency = currency;
+		this.catalog = Collections.unmodifiableMap(new HashMap<Barcode, BarcodedProduct>(catalog));
+	}
+
+	/**
+	 * Adds lanes
+	 *
+	 * @param count How many lanes to add
+	 */
+	public synchronized void addStations(int count) {
+		if(count <= 0)
+			throw new SimulationException("Count must be positive");
+
+		long before = allocatedBytes();
+		controllers.ensureCapacity(controllers.size() + count);
+		locks.ensureCapacity(locks.size() + count);
+		for(int i = 0; i < count; i++) {
+			SelfCheckoutStation station = new SelfCheckoutStation(currency, BANKNOTE_DENOMINATIONS, COIN_DENOMINATIONS,
+				SCALE_MAXIMUM_WEIGHT, SCALE_SENSITIVITY);
+			controllers.add(new SoftwareMain(station, catalog));
+			locks.add(new ReentrantLock());
+		}
+		long after = allocatedBytes();
+
+		if(before < 0 || after < 0)
+			stationBytes = -1;
+		else if(stationBytes >= 0)
+			stationBytes += after - before;
+	}
+
+	// the bytes this thread has allocated so far, counted by the JVM without a collection, or -1
+	// if it doesn't count them
+	private static long allocatedBytes() {
+		if(!(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean))
+			return -1;
+
+		ThreadMXBean threads = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+		if(!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+			return -1;
+
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Runs one customer's session on a lane: every item in the basket is scanned on the main
+	 * scanner (again, if the scanner misses it) and bagged, the total is paid by card, the
+	 * customer takes their bags, and the lane is reset for the next customer. A lane runs one
+	 * session at a time; a session started on a busy lane waits for it. The lane's devices tell
+	 * their listeners of each event on the session's own thread, while it holds the lane, so the
+	 * lane's state is only ever touched by one thread at a time. The lane is held with a lock
+	 * rather than a monitor, so that a virtual thread waiting on the card's issuer gives up its
+	 * carrier thread
+	 *
+	 * @param station The lane, from 0
+	 * @param basket The items the customer brings, all of which must be in the catalog
+	 * @param cardNumber The card the customer pays with
+	 * @param client The client used to reach the card's issuer
+	 * @return true if the payment went through, false if it was declined
+	 */
+	public boolean runSession(int station, List<BarcodedItem> basket, String cardNumber, CardAuthorizationClient client) {
+		if(basket == null)
+			throw new SimulationException("Basket is null");
+
+		SoftwareMain controller = getController(station);
+		ReentrantLock lock;
+		synchronized(this) {
+			lock = locks.get(station);
+		}
+
+		CustomerScanItem scanItem = controller.customerScanItem;
+		lock.lock();
+		peakSessions.accumulateAndGet(activeSessions.incrementAndGet(), Math::max);
+
+		try {
+			for(BarcodedItem item : basket) {
+				int scanned = scanItem.getScannedItems().size();
+				while(scanItem.getScannedItems().size() == scanned)
+					controller.ScanMain(item);
+				scanItem.placeItemInBagging(item);
+			}
+
+			boolean paid = controller.Pay(cardNumber, client);
+			sessionCount.incrementAndGet();
+			return paid;
+		}
+		catch(OverloadException e) {
+			throw new SimulationException("Bagging area is overloaded");
+		}
+		finally {
+			// the customer takes their bags, paid or not, and the lane is ready for the next
+			try {
+				scanItem.clearBaggedItems();
+				controller.reset();
+			}
+			catch(OverloadException e) {
+				controller.reset();
+			}
+			finally {
+				activeSessions.decrementAndGet();
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Runs the same session over and over on every lane, on a fixed pool of threads, and
+	 * measures how many sessions the lanes get through together
+	 *
+	 * @param sessionsPerStation How many sessions to run on each lane
+	 * @param threads How many threads to run them on
+	 * @param basket The items each customer brings
+	 * @param cardNumber The card each customer pays with
+	 * @param client The client used to reach the card's issuer
+	 * @return Sessions per second
+	 * @throws SimulationException if a session fails
+	 */
+	public double drive(int sessionsPerStation, int threads, List<BarcodedItem> basket, String cardNumber,
+		CardAuthorizationClient client) {
+		if(threads <= 0)
+			throw new SimulationException("Threads must be positive");
+
+		return drive(Executors.newFixedThreadPool(threads), sessionsPerStation, basket, cardNumber, client);
+	}
+
+	/**
+	 * Runs the same session over and over on every lane, each session on a thread of its own,
+	 * and measures how many sessions the lanes get through together. The threads are virtual
+	 * where the JVM has them, so a session waiting on the card's issuer ties up no OS thread;
+	 * elsewhere they are platform threads, kept for the next session once idle
+	 *
+	 * @param sessionsPerStation How many sessions to run on each lane
+	 * @param basket The items each customer brings
+	 * @param cardNumber The card each customer pays with
+	 * @param client The client used to reach the card's issuer
+	 * @return Sessions per second
+	 * @throws SimulationException if a session fails
+	 */
+	public double driveThreadPerSession(int sessionsPerStation, List<BarcodedItem> basket, String cardNumber,
+		CardAuthorizationClient client) {
+		return drive(newSessionExecutor(), sessionsPerStation, basket, cardNumber, client);
+	}
+
+	/**
+	 * Getter for whether this JVM has virtual threads, for sessions to run on
+	 * @return true if it does
+	 */
+	public static boolean hasVirtualThreads() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		}
+		catch(NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	// looked up by name, as the simulation is built for JVMs that predate virtual threads
+	private static ExecutorService newSessionExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	// each lane runs its sessions one after another, each handed to the executor as the last ends
+	private double drive(ExecutorService executor, int sessionsPerStation, List<BarcodedItem> basket,
+		String cardNumber, CardAuthorizationClient client) {
+		try {
+			if(sessionsPerStation <= 0)
+				throw new SimulationException("Sessions per station must be positive");
+			if(basket == null)
+				throw new SimulationException("Basket is null");
+
+			int stations = getStationCount();
+			peakSessions.set(0);
+			CountDownLatch done = new CountDownLatch(stations);
+			AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+			long start = System.nanoTime();
+
+			for(int i = 0; i < stations; i++)
+				executor.execute(new Lane(executor, i, sessionsPerStation, basket, cardNumber, client, done, failure));
+			done.await();
+
+			Throwable cause = failure.get();
+			if(cause instanceof SimulationException)
+				throw (SimulationException)cause;
+			if(cause != null)
+				throw new SimulationException("Session failed: " + cause);
+
+			return (long)stations * sessionsPerStation / ((System.nanoTime() - start) / 1e9);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SimulationException("Interrupted while driving sessions");
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// the sessions left to run on one lane
+	private final class Lane implements Runnable {
+		private final ExecutorService executor;
+		private final int station;
+		private int left;
+		private final List<BarcodedItem> basket;
+		private final String cardNumber;
+		private final CardAuthorizationClient client;
+		private final CountDownLatch done;
+		private final AtomicReference<Throwable> failure;
+
+		Lane(ExecutorService executor, int station, int sessions, List<BarcodedItem> basket, String cardNumber,
+			CardAuthorizationClient client, CountDownLatch done, AtomicReference<Throwable> failure) {
+			this.executor = executor;
+			this.station = station;
+			this.left = sessions;
+			this.basket = basket;
+			this.cardNumber = cardNumber;
+			this.client = client;
+			this.done = done;
+			this.failure = failure;
+		}
+
+		public void run() {
+			try {
+				runSession(station, basket, cardNumber, client);
+
+				// a failure on any lane stops the rest at their next session
+				if(--left > 0 && failure.get() == null) {
+					executor.execute(this);
+					return;
+				}
+			}
+			catch(Throwable t) {
+				failure.compareAndSet(null, t);
+			}
+
+			done.countDown();
+		}
+	}
+
+	/**
+	 * Getter for a lane's controller
+	 *
+	 * @param station The lane, from 0
+	 * @return controller
+	 */
+	public synchronized SoftwareMain getController(int station) {
+		if(station < 0 || station >= controllers.size())
+			throw new SimulationException("No such station: " + station);
+
+		return controllers.get(station);
+	}
+
+	/**
+	 * Getter for the number of lanes
+	 * @return lanes
+	 */
+	public synchronized int getStationCount() {
+		return controllers.size();
+	}
+
+	/**
+	 * Getter for the memory each lane takes: the bytes allocated while adding the lanes, averaged
+	 * over them. What a lane allocates and drops while it is set up is counted too, so this is
+	 * at most a little more than what each keeps, and no collection is needed to measure it
+	 * @return bytes per lane, or -1 if there are no lanes or the JVM doesn't count allocations
+	 */
+	public synchronized long getBytesPerStation() {
+		if(stationBytes < 0 || controllers.isEmpty())
+			return -1;
+
+		return stationBytes / controllers.size();
+	}
+
+	/**
+	 * Getter for the number of sessions run on all lanes
+	 * @return sessions
+	 */
+	public long getSessionCount() {
+		return sessionCount.get();
+	}
+
+	/**
+	 * Getter for the most sessions in progress at once, on all lanes, while the last drive ran.
+	 * A session waiting on the card's issuer is in progress, so on a fixed pool this is at most
+	 * the pool's threads
+	 * @return sessions
+	 */
+	public int getPeakConcurrentSessions() {
+		return peakSessions.get();
+	}
+
+	/**
+	 * Getter for the catalog the lanes share
+	 * @return read-only catalog
+	 */
+	public Map<Barcode, BarcodedProduct> getCatalog() {
+		return catalog;
+	}
+}